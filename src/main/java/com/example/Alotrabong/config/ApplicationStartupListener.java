@@ -1,8 +1,11 @@
 package com.example.Alotrabong.config;
 
 import com.example.Alotrabong.service.AdminCouponService;
+import com.example.Alotrabong.service.ItemSearchService;
+import com.example.Alotrabong.service.ItemStatsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
@@ -13,6 +16,13 @@ import org.springframework.stereotype.Component;
 public class ApplicationStartupListener {
 
     private final AdminCouponService adminCouponService;
+    private final ItemStatsService itemStatsService;
+    private final ItemSearchService itemSearchService;
+
+    // Dòng còn thiếu luôn được bổ sung lúc khởi động (món không có dòng thống kê bị loại khỏi các bảng xếp hạng).
+    // Đối soát toàn bộ đã có job 03:30; chỉ bật khi cần dựng lại ngay lúc khởi động (vd. sau khi nhập dữ liệu)
+    @Value("${app.item-stats.rebuild-on-startup:false}")
+    private boolean rebuildItemStatsOnStartup;
 
     @EventListener(ApplicationReadyEvent.class)
     public void onApplicationReady() {
@@ -23,5 +33,22 @@ public class ApplicationStartupListener {
         } catch (Exception e) {
             log.error("Error during startup coupon cleanup", e);
         }
+
+        try {
+            if (rebuildItemStatsOnStartup) {
+                itemStatsService.rebuildAll();
+            } else {
+                itemStatsService.backfillMissing();
+            }
+        } catch (Exception e) {
+            log.error("Error during startup item stats rebuild", e);
+        }
+
+        // Dựng sẵn search index để request tìm kiếm đầu tiên không phải chờ
+        try {
+            itemSearchService.rebuild();
+        } catch (Exception e) {
+            log.error("Error during startup search index build", e);
+        }
     }
 }
@@ -1,9 +1,7 @@
 package com.example.Alotrabong.config;
 
-import com.example.Alotrabong.dto.UserDTO;
-import com.example.Alotrabong.service.UserService;
-import com.example.Alotrabong.service.CartService; // service của bạn
-import jakarta.servlet.http.HttpSession;
+import com.example.Alotrabong.dto.HeaderInfo;
+import com.example.Alotrabong.service.HeaderInfoService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -16,13 +14,10 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 @RequiredArgsConstructor
 public class GlobalModelAttributes {
 
-    private final UserService userService;
-    private final CartService cartService; // inject
-
-    private static final String SESSION_BRANCH_KEY = "SELECTED_BRANCH_ID";
+    private final HeaderInfoService headerInfoService;
 
     @ModelAttribute
-    public void injectHeader(Model model, Authentication auth, HttpSession session) {
+    public void injectHeader(Model model, Authentication auth) {
         // default
         int cartCount = 0;
 
@@ -30,19 +25,15 @@ public class GlobalModelAttributes {
                 && auth.getName() != null
                 && !"anonymousUser".equals(auth.getName())) {
             try {
-                UserDTO me = userService.getUserByEmail(auth.getName());
-                model.addAttribute("userName", me.getFullName());
-
-                // Lấy branch (nếu có xài chọn chi nhánh)
-                String branchIdOrCode = null;
-                Object b = session.getAttribute(SESSION_BRANCH_KEY);
-                if (b != null) branchIdOrCode = String.valueOf(b);
-
-                // Đếm số lượng từ DB (login-only)
-                cartCount = cartService.getCartItemCount(me.getUserId(), branchIdOrCode);
+                // Đọc từ cache header (tên + số món), không chạm DB mỗi request
+                HeaderInfo header = headerInfoService.get(auth.getName());
+                if (header != null) {
+                    model.addAttribute("userName", header.getDisplayName());
+                    cartCount = header.getCartCount();
+                }
             } catch (Exception ignored) { /* đừng văng lỗi ra header */ }
         }
 
         model.addAttribute("cartCount", cartCount);
     }
-}
\ No newline at end of file
+}
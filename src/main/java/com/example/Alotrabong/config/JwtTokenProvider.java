@@ -1,6 +1,7 @@
 package com.example.Alotrabong.config;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,6 +15,9 @@ import java.util.Date;
 @Component
 public class JwtTokenProvider {
 
+    // Claim loại token (token báo giá checkout đặt "checkout-quote"); token đăng nhập không có claim này
+    private static final String CLAIM_TYPE = "typ";
+
     @Value("${app.jwt.secret:your-secret-key-must-be-at-least-32-characters-long-for-hs512}")
     private String jwtSecret;
 
@@ -49,23 +53,28 @@ public class JwtTokenProvider {
     }
 
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getSigningKey())   // replaces parserBuilder().setSigningKey(...)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-        return claims.getSubject();
+        return parseClaims(token).getSubject();
     }
 
     public boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
+            parseClaims(token);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
+
+    private Claims parseClaims(String token) {
+        Claims claims = Jwts.parser()
+                .verifyWith(getSigningKey())   // replaces parserBuilder().setSigningKey(...)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+        // Token đăng nhập không có "typ"; token mang loại khác (vd. báo giá checkout) không dùng để đăng nhập
+        if (claims.get(CLAIM_TYPE) != null) {
+            throw new JwtException("Not an access token");
+        }
+        return claims;
+    }
 }
@@ -92,6 +92,7 @@ public class SecurityConfig {
                         .requestMatchers(
                                 "/api/auth/**",
                                 "/api/items/**",
+                                "/api/reviews/item/**",
                                 "/api/categories/**",
                                 "/api/branches/**",
                                 "/api/chatbot/**")
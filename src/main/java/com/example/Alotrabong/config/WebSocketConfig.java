@@ -1,15 +1,36 @@
 package com.example.Alotrabong.config;
 
+import com.example.Alotrabong.service.BranchAssignmentService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final String BRANCH_ORDERS_PREFIX = "/topic/branch-orders";
+    private static final String BRANCH_ORDERS_TOPIC = BRANCH_ORDERS_PREFIX + ".";
+
+    // Simple broker so khớp destination subscribe theo kiểu Ant: "/topic/**" sẽ nhận được topic của mọi chi nhánh
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final BranchAssignmentService branchAssignmentService;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").setAllowedOriginPatterns("*").withSockJS();
@@ -21,6 +42,35 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.enableSimpleBroker("/topic", "/queue");
         registry.setUserDestinationPrefix("/user");
     }
-}
-
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Bảng đơn trực tiếp: chỉ quản lý của đúng chi nhánh được subscribe topic của chi nhánh đó
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor == null || accessor.getCommand() != StompCommand.SUBSCRIBE) {
+                    return message;
+                }
+                String destination = accessor.getDestination();
+                if (destination == null) {
+                    return message;
+                }
+                if (PATH_MATCHER.isPattern(destination)) {
+                    throw new MessagingException("Wildcard subscriptions are not allowed: " + destination);
+                }
+                if (!destination.startsWith(BRANCH_ORDERS_PREFIX)) {
+                    return message;
+                }
+                String branchId = accessor.getUser() instanceof Authentication auth
+                        ? branchAssignmentService.getBranchIdFromAuth(auth)
+                        : null;
+                if (branchId == null || !destination.equals(BRANCH_ORDERS_TOPIC + branchId)) {
+                    throw new MessagingException("Not allowed to subscribe to " + destination);
+                }
+                return message;
+            }
+        });
+    }
+}
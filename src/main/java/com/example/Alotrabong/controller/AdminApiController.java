@@ -30,6 +30,8 @@ public class AdminApiController {
     private final AdminShippingService adminShippingService;
     private final AdminBranchCommissionService adminBranchCommissionService;
     private final AdminReportService adminReportService;
+    private final HomeRailsService homeRailsService;
+    private final OutboxService outboxService;
 
     // ==================== USER MANAGEMENT ====================
 
@@ -468,5 +470,26 @@ public class AdminApiController {
         summary.put("activeCommissions", adminBranchCommissionService.getActiveCommissionsCount());
         return ResponseEntity.ok(summary);
     }
-}
 
+    // ==================== CACHE ====================
+
+    @GetMapping("/cache/home-rails")
+    public ResponseEntity<Map<String, Object>> getHomeRailsCacheStats() {
+        return ResponseEntity.ok(homeRailsService.getStats());
+    }
+
+    @PostMapping("/cache/home-rails/invalidate")
+    public ResponseEntity<Map<String, String>> invalidateHomeRailsCache() {
+        log.info("Invalidating home rails cache");
+        homeRailsService.invalidateAll();
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Home rails cache cleared");
+        return ResponseEntity.ok(response);
+    }
+
+    // Outbox đơn hàng: số sự kiện tồn, độ trễ relay, kết quả theo từng subscriber
+    @GetMapping("/outbox/stats")
+    public ResponseEntity<Map<String, Object>> getOutboxStats() {
+        return ResponseEntity.ok(outboxService.getStats());
+    }
+}
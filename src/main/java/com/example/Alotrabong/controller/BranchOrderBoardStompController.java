@@ -0,0 +1,37 @@
+package com.example.Alotrabong.controller;
+
+import com.example.Alotrabong.dto.BranchOrderBoardDTO;
+import com.example.Alotrabong.service.BranchAssignmentService;
+import com.example.Alotrabong.service.BranchOrderBoardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+
+@Controller
+@RequiredArgsConstructor
+@Slf4j
+public class BranchOrderBoardStompController {
+
+    private final BranchOrderBoardService branchOrderBoardService;
+    private final BranchAssignmentService branchAssignmentService;
+
+    /**
+     * Subscribe /app/branch/orders/board: trả ảnh chụp bảng đơn của chi nhánh mà user đang quản lý (1 lần),
+     * delta tiếp theo nhận ở topic trong ảnh chụp (/topic/branch-orders.{branchId}).
+     */
+    @SubscribeMapping("/branch/orders/board")
+    public BranchOrderBoardDTO snapshot(Principal principal) {
+        String branchId = principal instanceof Authentication auth
+                ? branchAssignmentService.getBranchIdFromAuth(auth)
+                : null;
+        if (branchId == null) {
+            throw new MessagingException("User is not assigned to any branch");
+        }
+        return branchOrderBoardService.snapshot(branchId);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.Alotrabong.controller;
 
 import com.example.Alotrabong.dto.AddToCartRequest;
 import com.example.Alotrabong.dto.ApiResponse;
+import com.example.Alotrabong.dto.CartBatchRequest;
 import com.example.Alotrabong.dto.CartItemDTO;
 import com.example.Alotrabong.service.CartService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -45,6 +46,16 @@ public class CartController {
         return ResponseEntity.ok(ApiResponse.success("Item added to cart", item));
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Add / update / remove several cart lines in one transaction")
+    public ResponseEntity<ApiResponse<List<CartItemDTO>>> applyBatch(
+            @Valid @RequestBody CartBatchRequest request,
+            Authentication authentication) {
+        String userId = getUserIdFromAuth(authentication);
+        List<CartItemDTO> items = cartService.applyBatch(userId, request);
+        return ResponseEntity.ok(ApiResponse.success("Cart updated", items));
+    }
+
     @PutMapping("/update/{cartItemId}")
     @Operation(summary = "Update cart item quantity")
     public ResponseEntity<ApiResponse<CartItemDTO>> updateCartItem(
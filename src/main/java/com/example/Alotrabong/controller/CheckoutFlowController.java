@@ -15,8 +15,8 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Controller
 @RequestMapping("/user/checkout")
@@ -31,10 +31,12 @@ public class CheckoutFlowController {
     private final UserRepository userRepository;
     private final AddressRepository addressRepository;
     private final BranchRepository branchRepository;
-    private final CartService cartService;
-    private final ItemMediaRepository itemMediaRepository;
+    private final InventoryReservationService inventoryReservationService;
+    private final ItemThumbnailService itemThumbnailService;
     private final AddressService addressService;
     private final CouponService couponService;
+    private final IdempotencyService idempotencyService;
+    private final CheckoutQuoteService checkoutQuoteService;
 
     // =======================
     // CHỌN ĐỊA CHỈ GIAO HÀNG
@@ -70,6 +72,8 @@ public class CheckoutFlowController {
     @PostMapping("/apply-coupon")
     public String applyCoupon(@RequestParam String code,
             @RequestParam(value = "branchId", required = false) String branchId,
+            @RequestParam(value = "idempotencyKey", required = false) String idempotencyKey,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyHeader,
             Authentication auth,
             HttpSession session,
             RedirectAttributes ra) {
@@ -78,27 +82,30 @@ public class CheckoutFlowController {
             ra.addFlashAttribute("toastError", "Bạn cần đăng nhập để dùng mã.");
             return "redirect:/login";
         }
+        String key = idempotencyHeader != null ? idempotencyHeader : idempotencyKey;
+        // Scope theo mã: cùng form đổi sang mã khác vẫn được áp dụng bình thường
+        return idempotencyService.execute("coupon:" + login + ":" + code.trim(), key,
+                () -> doApplyCoupon(login, code, branchId, session, ra));
+    }
+
+    private String doApplyCoupon(String login, String code, String branchId,
+            HttpSession session, RedirectAttributes ra) {
 
         String effectiveBranchId = (branchId != null && !branchId.isBlank())
                 ? branchId
                 : (String) session.getAttribute("selectedBranchId");
 
-        // Đọc subtotal typed từ session
-        Object attr = session.getAttribute("lastCheckoutSummary");
-        BigDecimal subtotal = (attr instanceof CheckoutSummary cs) ? cs.subtotal() : BigDecimal.ZERO;
-
-        CouponValidationResult vr = couponService.validateAndPreview(login, effectiveBranchId, code, subtotal);
+        // Kiểm tra mã trên báo giá server tính lại (không tin subtotal lưu ở session)
+        CheckoutQuote quote = checkoutQuoteService.quote(login, effectiveBranchId, code);
 
-        if (vr.ok()) {
-            session.setAttribute("appliedCouponCode", code);
-            session.setAttribute("appliedCouponDiscount", vr.previewDiscount());
+        if (quote.getCouponCode() != null) {
+            session.setAttribute("appliedCouponCode", quote.getCouponCode());
             session.removeAttribute("couponError");
-            ra.addFlashAttribute("toastSuccess", vr.message());
+            ra.addFlashAttribute("toastSuccess", quote.getCouponMessage());
         } else {
             session.removeAttribute("appliedCouponCode");
-            session.removeAttribute("appliedCouponDiscount");
-            session.setAttribute("couponError", vr.message());
-            ra.addFlashAttribute("toastError", vr.message());
+            session.setAttribute("couponError", quote.getCouponMessage());
+            ra.addFlashAttribute("toastError", quote.getCouponMessage());
         }
         return "redirect:/user/checkout?branchId=" + (effectiveBranchId != null ? effectiveBranchId : "");
     }
@@ -111,9 +118,24 @@ public class CheckoutFlowController {
             @RequestParam String payment,
             @RequestParam(required = false) String note,
             @RequestParam(value = "branchId", required = false) String branchId,
+            @RequestParam(value = "quoteToken", required = false) String quoteToken,
+            @RequestParam(value = "idempotencyKey", required = false) String idempotencyKey,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyHeader,
             Authentication auth,
             HttpSession session,
             RedirectAttributes ra) {
+        // Bấm "Đặt hàng" 2 lần / retry: cùng key thì chỉ tạo 1 đơn, lần sau nhận lại đúng redirect của lần đầu.
+        // Chưa tạo được đơn (thiếu địa chỉ, hết hàng, ...) thì không giữ kết quả: sửa xong gửi lại cùng key vẫn chạy
+        String login = (auth != null && auth.isAuthenticated()) ? auth.getName() : null;
+        String key = idempotencyHeader != null ? idempotencyHeader : idempotencyKey;
+        AtomicBoolean orderCreated = new AtomicBoolean();
+        return idempotencyService.execute("checkout:" + login, login != null ? key : null,
+                () -> doConfirmOrder(addressId, payment, note, branchId, quoteToken, auth, session, ra, orderCreated),
+                result -> orderCreated.get());
+    }
+
+    private String doConfirmOrder(String addressId, String payment, String note, String branchId, String quoteToken,
+            Authentication auth, HttpSession session, RedirectAttributes ra, AtomicBoolean orderCreated) {
 
         // ==== Validate basic inputs
         if (addressId.isBlank()) {
@@ -146,12 +168,21 @@ public class CheckoutFlowController {
             return "redirect:/user/checkout";
         }
 
-        // ==== Create Order (chỉ tạo dòng & items/subtotal — KHÔNG gộp ship/discount ở
-        // đây)
+        // ==== Map payment method
+        PaymentMethod pm = switch (payment.toUpperCase()) {
+            case "VNPAY" -> PaymentMethod.VNPAY;
+            case "MOMO" -> PaymentMethod.MOMO;
+            default -> PaymentMethod.COD;
+        };
+
+        // ==== Create Order: tổng tiền (ship, giảm giá) do server tính / lấy từ token báo giá
         CreateOrderRequest req = CreateOrderRequest.builder()
                 .branchId(effectiveBranchId)
                 .shippingAddress(addressId)
                 .notes(note)
+                .couponCode((String) session.getAttribute("appliedCouponCode"))
+                .quoteToken(quoteToken)
+                .paymentMethod(pm)
                 .build();
 
         OrderDTO dto;
@@ -168,68 +199,14 @@ public class CheckoutFlowController {
             log.error("Checkout unexpected error: {}", e.getMessage(), e);
             return "redirect:/user/checkout?branchId=" + effectiveBranchId;
         }
-
-        // ==== Map payment method
-        PaymentMethod pm = switch (payment.toUpperCase()) {
-            case "VNPAY" -> PaymentMethod.VNPAY;
-            case "MOMO" -> PaymentMethod.MOMO;
-            default -> PaymentMethod.COD;
-        };
-
-        // ==== Load order vừa tạo
-        Order persisted = orderRepository.findById(dto.getOrderId())
-                .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
-
-        // Set trạng thái thanh toán & method
-        persisted.setPaymentMethod(pm);
-        if (persisted.getPaymentStatus() == null) {
-            persisted.setPaymentStatus(PaymentStatus.UNPAID);
-        }
-
-        // ==== Lấy summary từ session (nguồn chân lý UI)
-        CheckoutSummary sum = (CheckoutSummary) session.getAttribute("lastCheckoutSummary");
-
-        // Shipping fee (ưu tiên từ summary; fallback = 15000)
-        BigDecimal shippingFee = (sum != null && sum.shippingFee() != null)
-                ? sum.shippingFee()
-                : new BigDecimal("15000");
-
-        // Discount (ưu tiên giá trị đã preview apply-coupon; fallback = sum.discount;
-        // else 0)
-        BigDecimal discount = (BigDecimal) session.getAttribute("appliedCouponDiscount");
-        if (discount == null) {
-            discount = (sum != null && sum.discount() != null) ? sum.discount() : BigDecimal.ZERO;
-        }
-        if (discount.signum() < 0) { // sanity
-            discount = BigDecimal.ZERO;
-        }
-
-        // ==== Tính tổng cuối cùng — KHÔNG cộng chồng từ persisted.getTotalAmount()
-        BigDecimal totalAmount;
-        if (sum != null && sum.grandTotal() != null) {
-            // Nếu đã có grand trong summary thì dùng luôn cho khớp UI
-            totalAmount = sum.grandTotal();
-        } else if (sum != null && sum.subtotal() != null) {
-            // Tự tính lại từ subtotal + ship - discount
-            totalAmount = sum.subtotal().add(shippingFee).subtract(discount);
-        } else {
-            // Fallback "an toàn" nếu thiếu summary: chỉ lấy ship - discount (tránh
-            // double-count).
-            // Khuyến nghị: đảm bảo createOrder KHÔNG set totalAmount trước confirm.
-            BigDecimal base = BigDecimal.ZERO;
-            totalAmount = base.add(shippingFee).subtract(discount);
-        }
-        if (totalAmount.signum() < 0)
-            totalAmount = BigDecimal.ZERO;
-
-        // ==== Ghi xuống DB: ship/discount/total
-        persisted.setShippingFee(shippingFee);
-        persisted.setDiscount(discount);
-        persisted.setTotalAmount(totalAmount);
-        orderRepository.save(persisted);
+        orderCreated.set(true);
 
         // ==== Nếu VNPAY thì tạo link và redirect
         if (pm == PaymentMethod.VNPAY) {
+            Order persisted = orderRepository.findById(dto.getOrderId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+            // Giữ hàng đến hết hạn link thanh toán
+            inventoryReservationService.holdForPayment(persisted.getOrderId());
             try {
                 String url = vnpayService.createPaymentUrl(persisted);
                 return "redirect:" + url;
@@ -250,9 +227,7 @@ public class CheckoutFlowController {
         session.removeAttribute("selectedPayment");
         session.removeAttribute("checkoutNote");
         session.removeAttribute("appliedCouponCode");
-        session.removeAttribute("appliedCouponDiscount");
         session.removeAttribute("couponError");
-        session.removeAttribute("lastCheckoutSummary");
     }
 
     // =======================
@@ -305,19 +280,19 @@ public class CheckoutFlowController {
         model.addAttribute("branches", branches);
         model.addAttribute("branchId", selectedBranchId);
 
-        var cartItems = cartService.getCartItems(
-                userLogin != null ? userLogin : "guest",
-                selectedBranchId);
+        // Báo giá server: định giá lại giỏ theo chi nhánh đang chọn (đổi chi nhánh -> giá/khả dụng/tồn kho đổi
+        // theo), phí ship, mã giảm giá; token ký gửi kèm form đặt hàng thay cho summary trong session
+        String appliedCode = (String) session.getAttribute("appliedCouponCode");
+        CheckoutQuote quote = checkoutQuoteService.quote(userLogin, selectedBranchId, appliedCode);
+        List<CartItemDTO> cartItems = quote.getLines();
+        model.addAttribute("cartChanges", quote.getChanges());
 
         var items = new ArrayList<Map<String, Object>>();
+        Map<String, String> thumbs = itemThumbnailService.resolve(
+                cartItems.stream().map(CartItemDTO::getItemId).toList());
         for (var d : cartItems) {
             var it = new HashMap<String, Object>();
-            String thumb = itemMediaRepository
-                    .findByItem_ItemIdOrderBySortOrderAsc(d.getItemId())
-                    .stream()
-                    .findFirst()
-                    .map(ItemMedia::getMediaUrl)
-                    .orElse("/img/products/" + d.getItemId() + ".jpg");
+            String thumb = thumbs.getOrDefault(d.getItemId(), "/img/products/" + d.getItemId() + ".jpg");
             it.put("name", d.getItemName());
             it.put("thumbnailUrl", thumb);
             it.put("unitPrice", d.getUnitPrice());
@@ -326,44 +301,27 @@ public class CheckoutFlowController {
             items.add(it);
         }
 
-        BigDecimal subtotal = cartItems.stream()
-                .map(CartItemDTO::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal shipping = new BigDecimal("15000");
-
         // Danh sách mã đủ điều kiện
-        List<CouponLiteDTO> eligible = couponService.findEligible(userLogin, selectedBranchId, subtotal);
+        List<CouponLiteDTO> eligible = couponService.findEligible(userLogin, selectedBranchId, quote.getSubtotal());
         model.addAttribute("eligibleCoupons", eligible);
 
-        // Áp mã nếu còn hợp lệ
-        String appliedCode = (String) session.getAttribute("appliedCouponCode");
-        BigDecimal discount = BigDecimal.ZERO;
-        if (appliedCode != null) {
-            CouponValidationResult vr = couponService.validateAndPreview(userLogin, selectedBranchId, appliedCode,
-                    subtotal);
-            if (vr.ok()) {
-                discount = vr.previewDiscount();
-            } else {
-                session.removeAttribute("appliedCouponCode");
-                session.removeAttribute("appliedCouponDiscount");
-                model.addAttribute("couponError", vr.message());
-            }
+        // Mã đã chọn không còn hợp lệ (hết hạn, giỏ giảm dưới mức tối thiểu...)
+        if (appliedCode != null && quote.getCouponCode() == null) {
+            session.removeAttribute("appliedCouponCode");
+            session.setAttribute("couponError", quote.getCouponMessage());
+            appliedCode = null;
         }
 
-        BigDecimal grand = subtotal.add(shipping).subtract(discount);
-
         model.addAttribute("items", items);
 
         Map<String, Object> summaryMap = new HashMap<>();
-        summaryMap.put("subtotal", subtotal);
-        summaryMap.put("discount", discount);
-        summaryMap.put("shippingFee", shipping);
-        summaryMap.put("grandTotal", grand);
+        summaryMap.put("subtotal", quote.getSubtotal());
+        summaryMap.put("optionExtras", quote.getOptionExtras());
+        summaryMap.put("discount", quote.getDiscount());
+        summaryMap.put("shippingFee", quote.getShippingFee());
+        summaryMap.put("grandTotal", quote.getGrandTotal());
         model.addAttribute("summary", summaryMap);
-
-        // Lưu bản typed vào session cho /apply-coupon đọc
-        CheckoutSummary summary = new CheckoutSummary(subtotal, discount, shipping, grand);
-        session.setAttribute("lastCheckoutSummary", summary);
+        model.addAttribute("quoteToken", quote.getToken());
 
         List<AddressDTO> addresses = (userLogin != null)
                 ? addressService.getAddressesForUser(userLogin)
@@ -376,6 +334,8 @@ public class CheckoutFlowController {
         model.addAttribute("couponError", session.getAttribute("couponError"));
         model.addAttribute("appliedCoupon",
                 appliedCode != null ? Map.of("code", appliedCode) : null);
+        // Key mới cho mỗi lần render form: submit lặp của cùng 1 form dùng chung key
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
 
         return "user/checkout/checkout";
     }
@@ -2,6 +2,8 @@ package com.example.Alotrabong.controller;
 
 import com.example.Alotrabong.dto.ApiResponse;
 import com.example.Alotrabong.dto.ItemDTO;
+import com.example.Alotrabong.dto.ItemSuggestionDTO;
+import com.example.Alotrabong.service.ItemSearchService;
 import com.example.Alotrabong.service.ItemService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -23,6 +25,7 @@ import java.util.List;
 public class ItemController {
 
     private final ItemService itemService;
+    private final ItemSearchService itemSearchService;
 
     @GetMapping
     @Operation(summary = "Get all items")
@@ -72,11 +75,22 @@ public class ItemController {
 
     @GetMapping("/search")
     @Operation(summary = "Search items by keyword")
-    public ResponseEntity<ApiResponse<List<ItemDTO>>> searchItems(@RequestParam String keyword) {
-        List<ItemDTO> items = itemService.searchItems(keyword);
+    public ResponseEntity<ApiResponse<Page<ItemDTO>>> searchItems(
+            @RequestParam String keyword,
+            Pageable pageable) {
+        Page<ItemDTO> items = itemService.searchItems(keyword, pageable);
         return ResponseEntity.ok(ApiResponse.success("Search results retrieved", items));
     }
 
+    @GetMapping("/suggest")
+    @Operation(summary = "Autocomplete suggestions for the search box")
+    public ResponseEntity<ApiResponse<List<ItemSuggestionDTO>>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit) {
+        List<ItemSuggestionDTO> suggestions = itemSearchService.suggest(q, Math.min(Math.max(limit, 1), 20));
+        return ResponseEntity.ok(ApiResponse.success("Suggestions retrieved", suggestions));
+    }
+
     @PostMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'BRANCH_MANAGER')")
     @Operation(summary = "Create new item")
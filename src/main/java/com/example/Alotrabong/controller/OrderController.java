@@ -3,6 +3,7 @@ package com.example.Alotrabong.controller;
 import com.example.Alotrabong.dto.ApiResponse;
 import com.example.Alotrabong.dto.CreateOrderRequest;
 import com.example.Alotrabong.dto.OrderDTO;
+import com.example.Alotrabong.dto.OrderFeedDTO;
 import com.example.Alotrabong.entity.OrderStatus;
 import com.example.Alotrabong.service.OrderService;
 import com.example.Alotrabong.service.VnpayService;
@@ -18,7 +19,6 @@ import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -44,9 +44,12 @@ public class OrderController {
     @GetMapping("/user")
     @PreAuthorize("hasRole('USER')")
     @Operation(summary = "Get user's orders")
-    public ResponseEntity<ApiResponse<List<OrderDTO>>> getUserOrders(Authentication authentication) {
+    public ResponseEntity<ApiResponse<OrderFeedDTO>> getUserOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
         String userId = getUserIdFromAuth(authentication);
-        List<OrderDTO> orders = orderService.getOrdersByUser(userId);
+        OrderFeedDTO orders = orderService.getOrdersByUser(userId, cursor, size);
         return ResponseEntity.ok(ApiResponse.success("User orders retrieved", orders));
     }
 
@@ -81,16 +84,23 @@ public class OrderController {
     @GetMapping("/branch/{branchId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'BRANCH_MANAGER')")
     @Operation(summary = "Get orders by branch")
-    public ResponseEntity<ApiResponse<List<OrderDTO>>> getOrdersByBranch(@PathVariable String branchId) {
-        List<OrderDTO> orders = orderService.getOrdersByBranch(branchId);
+    public ResponseEntity<ApiResponse<OrderFeedDTO>> getOrdersByBranch(
+            @PathVariable String branchId,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        OrderFeedDTO orders = orderService.getOrdersByBranch(branchId, status, cursor, size);
         return ResponseEntity.ok(ApiResponse.success("Branch orders retrieved", orders));
     }
 
     @GetMapping("/status/{status}")
     @PreAuthorize("hasAnyRole('ADMIN', 'BRANCH_MANAGER')")
     @Operation(summary = "Get orders by status")
-    public ResponseEntity<ApiResponse<List<OrderDTO>>> getOrdersByStatus(@PathVariable OrderStatus status) {
-        List<OrderDTO> orders = orderService.getOrdersByStatus(status);
+    public ResponseEntity<ApiResponse<OrderFeedDTO>> getOrdersByStatus(
+            @PathVariable OrderStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        OrderFeedDTO orders = orderService.getOrdersByStatus(status, cursor, size);
         return ResponseEntity.ok(ApiResponse.success("Orders by status retrieved", orders));
     }
 
@@ -1,5 +1,6 @@
 package com.example.Alotrabong.controller;
 
+import com.example.Alotrabong.service.HeaderInfoService;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -15,6 +16,8 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class PageController {
 
+    private final HeaderInfoService headerInfoService;
+
     @GetMapping("/")
     public String root() {
         return "redirect:/user/home";
@@ -35,6 +38,7 @@ public class PageController {
     public String logoutGet(HttpServletRequest request, HttpServletResponse response) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null) {
+            headerInfoService.invalidate(auth.getName());
             new SecurityContextLogoutHandler().logout(request, response, auth);
         }
         return "redirect:/auth?logout";
@@ -44,6 +48,7 @@ public class PageController {
     public String logoutPost(HttpServletRequest request, HttpServletResponse response) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null) {
+            headerInfoService.invalidate(auth.getName());
             new SecurityContextLogoutHandler().logout(request, response, auth);
         }
         return "redirect:/auth?logout";
@@ -2,6 +2,7 @@ package com.example.Alotrabong.controller;
 
 import com.example.Alotrabong.dto.ApiResponse;
 import com.example.Alotrabong.dto.ReviewDTO;
+import com.example.Alotrabong.dto.ReviewFeedDTO;
 import com.example.Alotrabong.service.ReviewService;
 
 import org.springframework.ui.Model;
@@ -31,6 +32,16 @@ public class ReviewController {
         return ResponseEntity.ok(ApiResponse.success("Reviews retrieved", reviews));
     }
 
+    @GetMapping("/item/{itemId}/feed")
+    @Operation(summary = "Get a page of reviews for infinite scroll")
+    public ResponseEntity<ApiResponse<ReviewFeedDTO>> getReviewFeed(
+            @PathVariable String itemId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        ReviewFeedDTO feed = reviewService.getReviewFeed(itemId, cursor, size);
+        return ResponseEntity.ok(ApiResponse.success("Reviews retrieved", feed));
+    }
+
     @GetMapping("/user")
     @PreAuthorize("hasRole('USER')")
     @Operation(summary = "Get user's reviews")
@@ -1,29 +1,48 @@
 package com.example.Alotrabong.controller;
 
 import com.example.Alotrabong.dto.CartItemDTO;
+import com.example.Alotrabong.dto.HeaderInfo;
 import com.example.Alotrabong.dto.HomeItemVM;
+import com.example.Alotrabong.dto.HomeRails;
 import com.example.Alotrabong.dto.ItemDTO;
+import com.example.Alotrabong.dto.ItemListingQuery;
+import com.example.Alotrabong.dto.KeysetPage;
 import com.example.Alotrabong.dto.OrderDetailVM;
 import com.example.Alotrabong.dto.OrderHistoryVM;
+import com.example.Alotrabong.dto.ReviewDTO;
+import com.example.Alotrabong.dto.ReviewFeedDTO;
 import com.example.Alotrabong.dto.BranchListDTO;
 import com.example.Alotrabong.dto.AddressDTO;
 import com.example.Alotrabong.dto.AddressFormDTO;
+import com.example.Alotrabong.dto.MenuCatalog;
+import com.example.Alotrabong.dto.MenuCatalog.CatalogBranch;
+import com.example.Alotrabong.dto.MenuCatalog.CatalogItem;
 import com.example.Alotrabong.entity.*;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
 import com.example.Alotrabong.repository.*;
 import com.example.Alotrabong.service.CartService;
+import com.example.Alotrabong.service.HeaderInfoService;
+import com.example.Alotrabong.service.ItemSearchService;
+import com.example.Alotrabong.service.HomeRailsService;
 import com.example.Alotrabong.service.ItemService;
+import com.example.Alotrabong.service.ItemThumbnailService;
+import com.example.Alotrabong.service.ItemStatsService;
+import com.example.Alotrabong.service.MenuCatalogService;
 import com.example.Alotrabong.service.OrderHistoryService;
 import com.example.Alotrabong.service.OrderService;
+import com.example.Alotrabong.service.RecentViewService;
+import com.example.Alotrabong.service.RelatedItemsService;
+import com.example.Alotrabong.service.ReviewService;
 import com.example.Alotrabong.service.AddressService;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 
 import org.apache.http.HttpStatus;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.data.domain.PageRequest;
@@ -33,6 +52,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
@@ -58,10 +78,19 @@ public class UserController {
     private final OrderHistoryService orderHistoryService;
     private final AddressService addressService;
     private final OrderService orderService;
+    private final ItemStatsService itemStatsService;
+    private final MenuCatalogService menuCatalogService;
+    private final ItemSearchService itemSearchService;
+    private final ItemThumbnailService itemThumbnailService;
+    private final HomeRailsService homeRailsService;
+    private final ObjectMapper objectMapper;
+    private final RecentViewService recentViewService;
+    private final RelatedItemsService relatedItemsService;
+    private final ReviewService reviewService;
+    private final HeaderInfoService headerInfoService;
 
     // ===== Repositories =====
     private final ItemRepository itemRepository;
-    private final ItemMediaRepository itemMediaRepository;
     private final BranchItemPriceRepository branchItemPriceRepository;
     private final InventoryRepository inventoryRepository;
     private final BranchRepository branchRepository;
@@ -73,6 +102,13 @@ public class UserController {
     private final OrderRepository orderRepository;
     private final FavoriteRepository favoriteRepo;
     private final OrderItemRepository orderItemRepository;
+    private final ItemStatsRepository itemStatsRepository;
+
+    // Số món tối đa lấy từ search index cho trang menu (giữ dưới giới hạn tham số IN của SQL Server)
+    private static final int SEARCH_CANDIDATES = 500;
+    private static final int RECENT_RAIL_SIZE = 5;
+    private static final int RELATED_SIZE = 4;
+    private static final int REVIEW_PAGE_SIZE = 10;
 
     // ===========================
     // ====== NAV / HEADER =======
@@ -90,11 +126,10 @@ public class UserController {
             return null;
         }
 
-        User u = userRepository.findByLogin(login)
-                .orElseGet(() -> userRepository.findById(login).orElse(null));
-
-        if (u != null) {
-            String fullName = u.getFullName();
+        // Cache header (không chạm DB khi đã có)
+        HeaderInfo header = headerInfoService.get(login);
+        if (header != null) {
+            String fullName = header.getDisplayName();
             if (fullName != null && !fullName.isBlank()) {
                 return fullName;
             }
@@ -109,56 +144,48 @@ public class UserController {
     }
 
     @GetMapping({ "/home", "/home/index" })
-    public String home(Model model, Authentication auth) {
+    public String home(Model model, Authentication auth, HttpSession session) {
 
         // tên user cho header
         String displayName = resolveDisplayName(auth);
         model.addAttribute("userName", displayName);
 
-        List<HomeItemVM> productsNew = mapItems(itemService.getNewItems(8));
-        List<HomeItemVM> productsBest = mapItems(itemService.getTopSellingItems(8));
-        List<HomeItemVM> productsFav = mapItems(itemService.getTopFavoritedItems(8));
+        MenuCatalog catalog = menuCatalogService.getCatalog();
 
-        model.addAttribute("productsNew", productsNew);
-        model.addAttribute("productsBest", productsBest);
-        model.addAttribute("productsFav", productsFav);
-        model.addAttribute("recentItems", null);
+        // 3 dải món lấy từ cache (TTL + tự xoá khi menu đổi)
+        HomeRails rails = homeRailsService.getRails((String) session.getAttribute("SELECTED_BRANCH_ID"));
 
-        Branch defBranch = fallbackActiveBranch();
+        model.addAttribute("productsNew", rails.getNewest());
+        model.addAttribute("productsBest", rails.getBestSelling());
+        model.addAttribute("productsFav", rails.getFavorites());
+        model.addAttribute("recentItems", recentlyViewed(auth, catalog));
+
+        CatalogBranch defBranch = catalog.firstActiveBranch();
         model.addAttribute("branchId", defBranch != null ? defBranch.getBranchId() : null);
 
         return "user/home/index";
     }
 
-    private String resolveThumb(ItemDTO i) {
-        // 1) Ưu tiên mediaUrls từ DTO
-        var urls = i.getMediaUrls();
-        if (urls != null) {
-            for (String u : urls) {
-                if (u != null && !u.isBlank())
-                    return u;
-            }
+    // Dải "bạn đã xem gần đây": đọc từ bộ nhớ của RecentViewService, chi tiết món từ snapshot menu
+    private List<HomeItemVM> recentlyViewed(Authentication auth, MenuCatalog catalog) {
+        if (auth == null || !auth.isAuthenticated() || "anonymousUser".equals(auth.getName())) {
+            return null;
         }
-        // 2) Rớt xuống DB: lấy ảnh đầu tiên của item
-        return itemMediaRepository
-                .findFirstByItem_ItemIdAndMediaTypeOrderBySortOrderAscMediaIdAsc(i.getItemId(), MediaType.IMAGE)
-                .map(ItemMedia::getMediaUrl)
-                .filter(u -> u != null && !u.isBlank())
-                // 3) Cuối cùng: placeholder theo itemId (tùy bạn đổi sang /img/placeholder.jpg)
-                .orElse("/img/products/" + i.getItemId() + ".jpg");
-    }
-
-    private List<HomeItemVM> mapItems(List<ItemDTO> src) {
-        if (src == null)
-            return List.of();
-        return src.stream()
+        List<HomeItemVM> items = recentViewService.getRecentItemIds(auth.getName(), RECENT_RAIL_SIZE * 2).stream()
+                .map(catalog::findItem)
+                .flatMap(Optional::stream)
+                .filter(i -> Boolean.TRUE.equals(i.getIsActive()))
+                .limit(RECENT_RAIL_SIZE)
                 .map(i -> HomeItemVM.builder()
                         .id(i.getItemId())
                         .name(i.getName())
                         .price(i.getPrice())
-                        .thumbnailUrl(resolveThumb(i)) // ✅ an toàn, không index 0
+                        .thumbnailUrl(i.getThumbnailUrl() != null
+                                ? i.getThumbnailUrl()
+                                : "/img/products/" + i.getItemId() + ".jpg")
                         .build())
-                .collect(Collectors.toList());
+                .toList();
+        return items.isEmpty() ? null : items;
     }
 
     // dinh dưỡng mặc định
@@ -169,32 +196,59 @@ public class UserController {
             "carb", 45,
             "sodium", 160);
 
-    @GetMapping("/home/more")
-    @ResponseBody
-    public Map<String, Object> homeMore(@RequestParam String type,
-            @RequestParam(required = false, defaultValue = "1000") Integer size) {
-
-        int limit = Math.max(1, Math.min(size, 2000));
-
-        List<ItemDTO> src;
-        switch ((type == null ? "" : type).toLowerCase()) {
-            case "new" -> src = itemService.getNewItems(limit);
-            case "best" -> src = itemService.getTopSellingItems(limit);
-            case "fav" -> src = itemService.getTopSellingItems(limit); // tạm dùng best
-            default -> src = itemService.getNewItems(limit);
-        }
-
-        List<Map<String, Object>> items = src.stream().map(i -> {
-            Map<String, Object> m = new HashMap<>();
-            m.put("id", i.getItemId());
-            m.put("name", i.getName());
-            m.put("price", i.getPrice());
-            m.put("thumbnailUrl", "/img/products/" + i.getItemId() + ".jpg");
-            m.put("slug", i.getItemId());
-            return m;
-        }).toList();
+    // Cuộn "xem thêm" trên trang chủ: trang nhỏ theo keyset, JSON ghi thẳng ra response
+    private static final int HOME_MORE_MAX_SIZE = 48;
 
-        return Map.of("items", items);
+    @GetMapping("/home/more")
+    public ResponseEntity<StreamingResponseBody> homeMore(@RequestParam String type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "16") Integer size) {
+
+        int limit = Math.max(1, Math.min(size, HOME_MORE_MAX_SIZE));
+
+        ItemListingQuery.ListingSort sort = switch ((type == null ? "" : type).toLowerCase()) {
+            case "best" -> ItemListingQuery.ListingSort.BEST;
+            case "fav" -> ItemListingQuery.ListingSort.FAVORITES;
+            default -> ItemListingQuery.ListingSort.NEWEST;
+        };
+        ItemListingQuery query = ItemListingQuery.builder()
+                .sort(sort)
+                .cursor(cursor)
+                .countTotal(false)
+                .build();
+        // Đọc trang trong request thread (còn session JPA); phần ghi JSON chạy sau, không giữ kết nối DB
+        KeysetPage<ItemDTO> page = itemService.listItems(query, PageRequest.of(0, limit));
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                gen.writeStartObject();
+                gen.writeArrayFieldStart("items");
+                for (ItemDTO i : page.getPage().getContent()) {
+                    String thumb = catalog.thumbnailOf(i.getItemId());
+                    gen.writeStartObject();
+                    gen.writeStringField("id", i.getItemId());
+                    gen.writeStringField("name", i.getName());
+                    if (i.getPrice() != null) {
+                        gen.writeNumberField("price", i.getPrice());
+                    } else {
+                        gen.writeNullField("price");
+                    }
+                    gen.writeStringField("thumbnailUrl",
+                            thumb != null ? thumb : "/img/products/" + i.getItemId() + ".jpg");
+                    gen.writeStringField("slug", catalog.findItem(i.getItemId())
+                            .map(CatalogItem::getSlug)
+                            .orElse(i.getItemId()));
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+                gen.writeStringField("next", page.getNextCursor());
+                gen.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(org.springframework.http.MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     // ================== PRODUCT LIST ==================
@@ -208,6 +262,7 @@ public class UserController {
             @RequestParam(required = false) String sort,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "9") int size,
+            @RequestParam(required = false) String cursor,
             Authentication auth,
             HttpSession session,
             Model model) {
@@ -217,91 +272,71 @@ public class UserController {
 
         // ✅ Lưu hoặc lấy branchId từ session
         if (branchId != null && !branchId.isBlank()) {
+            Object previous = session.getAttribute("SELECTED_BRANCH_ID");
             session.setAttribute("SELECTED_BRANCH_ID", branchId);
+            // Đổi chi nhánh -> định giá lại cả giỏ theo chi nhánh mới
+            if (!branchId.equals(previous) && auth != null && auth.isAuthenticated()
+                    && !"anonymousUser".equals(auth.getName())) {
+                cartService.repriceCart(auth.getName(), branchId);
+            }
         } else {
             branchId = (String) session.getAttribute("SELECTED_BRANCH_ID");
         }
 
+        // Chỉ lọc theo chi nhánh khi user đã chọn (param hoặc session)
+        String branchFilter = branchId;
+
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+
         // ✅ fallback branch đầu tiên nếu session vẫn null
         if (branchId == null || branchId.isBlank()) {
-            branchId = branchRepository.findAll().stream()
+            branchId = catalog.getBranches().stream()
                     .findFirst()
-                    .map(Branch::getBranchId)
+                    .map(CatalogBranch::getBranchId)
                     .orElse(null);
         }
 
-        List<Category> categories = categoryRepository.findAll().stream()
-                .filter(c -> Boolean.TRUE.equals(c.getIsActive()))
-                .toList();
-
-        List<Branch> branches = branchRepository.findAll().stream()
-                .filter(b -> Boolean.TRUE.equals(b.getIsActive()))
-                .toList();
+        List<MenuCatalog.CatalogCategory> categories = catalog.getActiveCategories();
+        List<CatalogBranch> branches = catalog.getActiveBranches();
 
         size = Math.max(size, 1);
         Pageable pageable = PageRequest.of(Math.max(page, 0), size);
 
-        Page<Item> itemsPage;
-        if (categoryId != null && !categoryId.isEmpty()) {
-            itemsPage = itemRepository.findActiveByCategoryId(categoryId, pageable);
-        } else if ("best".equals(sort)) {
-            itemsPage = itemRepository.findActiveOrderBySalesDesc(pageable);
-        } else if ("new".equals(sort)) {
-            itemsPage = itemRepository.findActiveOrderByCreatedAtDesc(pageable);
-        } else if (q != null && !q.isEmpty()) {
-            List<Item> searchResults = itemRepository.findByNameContainingIgnoreCaseAndIsActiveTrue(q);
-            itemsPage = new PageImpl<>(searchResults, pageable, searchResults.size());
-        } else {
-            itemsPage = itemRepository.findByIsActiveTrue(pageable);
-        }
-
-        // ✅ Filter theo giá
-        List<Item> filteredItems = itemsPage.getContent();
-        if (minPrice != null || maxPrice != null) {
-            filteredItems = filteredItems.stream()
-                    .filter(item -> {
-                        BigDecimal price = item.getPrice();
-                        if (price == null)
-                            return false;
-                        if (minPrice != null && price.compareTo(minPrice) < 0)
-                            return false;
-                        if (maxPrice != null && price.compareTo(maxPrice) > 0)
-                            return false;
-                        return true;
-                    })
-                    .toList();
-        }
-
-        // ✅ Sort theo giá
-        if ("price_asc".equals(sort)) {
-            filteredItems = filteredItems.stream()
-                    .sorted(Comparator.comparing(Item::getPrice,
-                            Comparator.nullsLast(Comparator.naturalOrder())))
-                    .toList();
-        } else if ("price_desc".equals(sort)) {
-            filteredItems = filteredItems.stream()
-                    .sorted(Comparator.comparing(Item::getPrice,
-                            Comparator.nullsLast(Comparator.reverseOrder())))
-                    .toList();
-        }
+        // ✅ Lọc giá + sort + phân trang đều chạy trong DB (không lọc trên từng trang nữa)
+        // Từ khoá: lấy tập món khớp từ search index (bỏ dấu, chịu lỗi gõ, đã xếp theo độ liên quan) rồi lọc tiếp
+        // trong DB; mặc định giữ thứ tự liên quan đó, chọn sort khác thì DB sắp lại
+        List<String> matchedIds = (q != null && !q.isBlank())
+                ? itemSearchService.searchIds(q, SEARCH_CANDIDATES)
+                : null;
+        ItemListingQuery query = ItemListingQuery.builder()
+                .categoryId(categoryId)
+                .itemIds(matchedIds)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .branchId(branchFilter)
+                .sort(ItemListingQuery.ListingSort.fromParam(sort, matchedIds != null))
+                .cursor(cursor)
+                .build();
+        KeysetPage<ItemDTO> listing = itemService.listItems(query, pageable);
 
         // ✅ Map kết quả
-        List<Map<String, Object>> productMaps = filteredItems.stream()
-                .map(item -> {
-                    Map<String, Object> p = new HashMap<>();
-                    p.put("id", item.getItemId());
-                    p.put("name", item.getName());
-                    p.put("price", item.getPrice());
-                    p.put("priceText", item.getPrice() != null
-                            ? String.format("%,dđ", item.getPrice().longValue())
-                            : "—");
-                    p.put("thumbnailUrl", item.getThumbnailUrl());
-                    p.put("slug", item.getItemCode() != null ? item.getItemCode() : item.getItemId());
-                    return p;
-                })
-                .toList();
-
-        Page<Map<String, Object>> resultPage = new PageImpl<>(productMaps, pageable, itemsPage.getTotalElements());
+        Page<Map<String, Object>> resultPage = listing.getPage().map(item -> {
+            Map<String, Object> p = new HashMap<>();
+            p.put("id", item.getItemId());
+            p.put("name", item.getName());
+            p.put("price", item.getPrice());
+            p.put("priceText", item.getPrice() != null
+                    ? String.format("%,dđ", item.getPrice().longValue())
+                    : "—");
+            String thumb = catalog.thumbnailOf(item.getItemId());
+            p.put("thumbnailUrl", thumb != null ? thumb : "/img/placeholder.jpg");
+            p.put("avgRating", item.getAvgRating());
+            p.put("ratingCount", item.getRatingCount());
+            p.put("slug", catalog.findItem(item.getItemId())
+                    .map(CatalogItem::getSlug)
+                    .orElse(item.getItemId()));
+            return p;
+        });
 
         // ✅ Gửi dữ liệu ra view
         model.addAttribute("page", resultPage);
@@ -314,6 +349,8 @@ public class UserController {
         model.addAttribute("maxPrice", maxPrice);
         model.addAttribute("sort", sort);
         model.addAttribute("size", size);
+        model.addAttribute("branchFilter", branchFilter);
+        model.addAttribute("nextCursor", listing.getNextCursor());
 
         return "user/product/list";
     }
@@ -328,11 +365,17 @@ public class UserController {
 
         model.addAttribute("userName", resolveDisplayName(auth));
 
-        Item item = tryFindItem(idOrCode).orElse(null);
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+        CatalogItem item = catalog.findItemByIdOrCode(idOrCode).orElse(null);
         if (item == null || !Boolean.TRUE.equals(item.getIsActive())) {
             return "redirect:/user/home";
         }
 
+        // Ghi nhận lượt xem vào bộ đệm (ghi DB theo lô ở RecentViewFlushScheduler)
+        if (auth != null && auth.isAuthenticated() && !"anonymousUser".equals(auth.getName())) {
+            recentViewService.recordView(auth.getName(), item.getItemId());
+        }
+
         // ✅ Lấy branchId từ query hoặc session
         String selectedBranchId = (branchId != null && !branchId.isBlank())
                 ? branchId
@@ -340,9 +383,9 @@ public class UserController {
 
         // ✅ Fallback branch đầu tiên nếu không có
         if (selectedBranchId == null || selectedBranchId.isBlank()) {
-            selectedBranchId = branchRepository.findAll().stream()
+            selectedBranchId = catalog.getBranches().stream()
                     .findFirst()
-                    .map(Branch::getBranchId)
+                    .map(CatalogBranch::getBranchId)
                     .orElse(null);
         }
 
@@ -350,58 +393,59 @@ public class UserController {
         boolean available = Boolean.TRUE.equals(item.getIsActive());
         int stockQty = 0;
 
-        // ✅ Tính giá & tồn kho theo branch
-        if (selectedBranchId != null) {
-            Branch branch = branchRepository.findById(selectedBranchId).orElse(null);
-            if (branch != null) {
-                var bipOpt = branchItemPriceRepository.findByItemAndBranch(item, branch);
-                if (bipOpt.isPresent()) {
-                    BranchItemPrice bip = bipOpt.get();
-                    if (bip.getPrice() != null)
-                        finalPrice = bip.getPrice();
-                    if (bip.getIsAvailable() != null)
-                        available = bip.getIsAvailable();
-                }
+        // ✅ Giá & tình trạng theo branch lấy từ snapshot, chỉ tồn kho là đọc DB
+        if (selectedBranchId != null && catalog.findBranch(selectedBranchId).isPresent()) {
+            MenuCatalog.BranchOffer offer = catalog.offer(selectedBranchId, item.getItemId());
+            if (offer != null) {
+                if (offer.getPrice() != null)
+                    finalPrice = offer.getPrice();
+                available = offer.isAvailable();
+            }
 
-                var invOpt = inventoryRepository
-                        .findByBranch_BranchIdAndItem_ItemId(selectedBranchId, item.getItemId());
-                if (invOpt.isPresent() && invOpt.get().getQuantity() != null) {
-                    stockQty = invOpt.get().getQuantity();
-                    available = available && stockQty > 0;
-                }
+            var invOpt = inventoryRepository
+                    .findByBranch_BranchIdAndItem_ItemId(selectedBranchId, item.getItemId());
+            if (invOpt.isPresent() && invOpt.get().getQuantity() != null) {
+                stockQty = invOpt.get().getQuantity();
+                available = available && stockQty > 0;
             }
         }
 
-        // ✅ Gallery + review giữ nguyên
-        List<ItemMedia> media = itemMediaRepository
-                .findByItem_ItemIdAndMediaTypeOrderBySortOrderAscMediaIdAsc(item.getItemId(), MediaType.IMAGE);
-
-        List<Map<String, String>> gallery = media.stream()
-                .filter(m -> m.getMediaUrl() != null && !m.getMediaUrl().isBlank())
-                .map(m -> Map.of("url", m.getMediaUrl(), "thumbnailUrl", m.getMediaUrl()))
+        // ✅ Gallery từ snapshot
+        List<Map<String, String>> gallery = item.getImageUrls().stream()
+                .map(u -> Map.of("url", u, "thumbnailUrl", u))
                 .toList();
 
-        String mainImageUrl = media.stream()
-                .findFirst()
-                .map(ItemMedia::getMediaUrl)
-                .orElse("/img/placeholder.jpg");
+        String mainImageUrl = item.getThumbnailUrl() != null ? item.getThumbnailUrl() : "/img/placeholder.jpg";
 
-        List<Review> reviews = reviewRepository.findByItemIdOrderByCreatedAtDesc(item.getItemId());
+        // Trang đầu của feed đánh giá (ảnh + tên người viết nạp theo lô), phần còn lại tải qua JSON
+        ReviewFeedDTO reviewFeed = reviewService.getReviewFeed(item.getItemId(), null, REVIEW_PAGE_SIZE);
         List<Map<String, Object>> reviewVMs = new ArrayList<>();
-        for (Review r : reviews) {
-            List<ReviewMedia> rms = reviewMediaRepository.findByReview_ReviewId(r.getReviewId());
-            List<Map<String, String>> rmedVM = rms.stream()
-                    .map(x -> Map.of("url", x.getMediaUrl(), "thumbnailUrl", x.getMediaUrl()))
+        for (ReviewDTO r : reviewFeed.getItems()) {
+            List<Map<String, String>> rmedVM = r.getMediaUrls().stream()
+                    .map(u -> Map.of("url", u, "thumbnailUrl", u))
                     .collect(Collectors.toList());
 
             Map<String, Object> rv = new HashMap<>();
-            rv.put("userName", maskUser(r.getUserId()));
+            rv.put("userName", r.getReviewerName());
             rv.put("rating", r.getRating());
             rv.put("content", r.getComment());
             rv.put("createdAt", r.getCreatedAt());
             rv.put("media", rmedVM);
             reviewVMs.add(rv);
         }
+        // Điểm & phân bố sao đọc từ item_stats (cập nhật cùng lúc với review), không quét reviews
+        ItemStats stats = itemStatsRepository.findById(item.getItemId()).orElse(null);
+        long reviewCount = stats != null && stats.getRatingCount() != null ? stats.getRatingCount() : 0L;
+        Double avgRating = reviewCount > 0 ? stats.getRatingAvg() : null;
+        long[] histogram = stats != null ? stats.ratingHistogram() : new long[5];
+        List<Map<String, Object>> ratingBars = new ArrayList<>();
+        for (int star = 5; star >= 1; star--) {
+            long n = histogram[star - 1];
+            ratingBars.add(Map.of(
+                    "star", star,
+                    "count", n,
+                    "percent", reviewCount > 0 ? Math.round(n * 100.0 / reviewCount) : 0L));
+        }
 
         Map<String, Object> product = new HashMap<>();
         product.put("id", item.getItemId());
@@ -417,47 +461,47 @@ public class UserController {
         product.put("isBestSeller", false);
         product.put("isNew", false);
         product.put("isFavorite", false);
-        product.put("rating", calcAverage(reviews));
-        product.put("reviewCount", reviews.size());
+        product.put("rating", avgRating);
+        product.put("reviewCount", reviewCount);
+        product.put("ratingBars", ratingBars);
         product.put("nutrition", DEFAULT_NUTRITION);
 
-        List<Map<String, Object>> related;
-        if (item.getCategory() != null) {
-            related = itemRepository
-                    .findActiveByCategoryId(item.getCategory().getCategoryId(), PageRequest.of(0, 4))
-                    .stream()
-                    .filter(i -> !Objects.equals(i.getItemId(), item.getItemId()))
-                    .map(this::mapRelated)
-                    .collect(Collectors.toList());
-        } else {
-            related = itemRepository.findByIsActiveTrue(PageRequest.of(0, 4))
-                    .stream()
-                    .filter(i -> !Objects.equals(i.getItemId(), item.getItemId()))
-                    .map(this::mapRelated)
-                    .collect(Collectors.toList());
-        }
+        // Ưu tiên món hay được mua cùng (tính sẵn), thiếu thì bù bằng món cùng danh mục
+        List<CatalogItem> relatedSource = item.getCategoryId() != null
+                ? catalog.activeItemsInCategory(item.getCategoryId())
+                : catalog.getActiveItems();
+        List<Map<String, Object>> related = java.util.stream.Stream.concat(
+                activeCatalogItems(catalog, relatedItemsService.getRelatedItemIds(item.getItemId(), RELATED_SIZE * 2)),
+                relatedSource.stream())
+                .filter(i -> !Objects.equals(i.getItemId(), item.getItemId()))
+                .distinct()
+                .limit(RELATED_SIZE)
+                .map(this::mapRelated)
+                .collect(Collectors.toList());
 
         model.addAttribute("product", product);
         model.addAttribute("reviews", reviewVMs);
+        model.addAttribute("reviewsNextCursor", reviewFeed.getNextCursor());
         model.addAttribute("related", related);
         model.addAttribute("branchId", selectedBranchId); // ✅ gửi xuống view
 
         return "user/product/detail";
     }
 
-    private Map<String, Object> mapRelated(Item it) {
+    private static java.util.stream.Stream<CatalogItem> activeCatalogItems(MenuCatalog catalog, List<String> ids) {
+        return ids.stream()
+                .map(catalog::findItem)
+                .flatMap(Optional::stream)
+                .filter(i -> Boolean.TRUE.equals(i.getIsActive()));
+    }
+
+    private Map<String, Object> mapRelated(CatalogItem it) {
         Map<String, Object> m = new HashMap<>();
         m.put("id", it.getItemId());
         m.put("name", it.getName());
         m.put("price", it.getPrice());
-        m.put("slug", it.getItemCode() != null ? it.getItemCode() : it.getItemId());
-
-        String thumb = itemMediaRepository
-                .findFirstByItem_ItemIdAndMediaTypeOrderBySortOrderAscMediaIdAsc(it.getItemId(), MediaType.IMAGE)
-                .map(ItemMedia::getMediaUrl)
-                .orElse("/img/placeholder.jpg");
-
-        m.put("thumbnailUrl", thumb);
+        m.put("slug", it.getSlug());
+        m.put("thumbnailUrl", it.getThumbnailUrl() != null ? it.getThumbnailUrl() : "/img/placeholder.jpg");
         return m;
     }
 
@@ -470,22 +514,6 @@ public class UserController {
         return itemRepository.findByItemCode(idOrCode);
     }
 
-    private String maskUser(String userId) {
-        if (userId == null || userId.length() < 4)
-            return "User";
-        return "User-" + userId.substring(0, 4) + "****";
-    }
-
-    private Double calcAverage(List<Review> reviews) {
-        if (reviews == null || reviews.isEmpty())
-            return null;
-        return reviews.stream()
-                .filter(r -> r.getRating() != null)
-                .mapToInt(Review::getRating)
-                .average()
-                .orElse(Double.NaN);
-    }
-
     private String formatVnCurrency(BigDecimal value) {
         if (value == null)
             return "—";
@@ -509,9 +537,9 @@ public class UserController {
         model.addAttribute("userName", resolveDisplayName(auth));
         String defaultBranchId = ensureDefaultBranchInSession(session);
 
-        List<Branch> all = branchRepository.findAll();
+        List<CatalogBranch> all = menuCatalogService.getCatalog().getBranches();
 
-        List<Branch> filtered = all.stream()
+        List<CatalogBranch> filtered = all.stream()
                 .filter(b -> Boolean.TRUE.equals(b.getIsActive()))
                 .filter(b -> {
                     if (q == null || q.isBlank())
@@ -538,7 +566,7 @@ public class UserController {
         }
 
         List<String> cities = all.stream()
-                .map(Branch::getCity)
+                .map(CatalogBranch::getCity)
                 .filter(c -> c != null && !c.isBlank())
                 .distinct()
                 .toList();
@@ -616,11 +644,8 @@ public class UserController {
         if (cur != null && !cur.isBlank())
             return cur;
 
-        String firstActiveId = branchRepository.findAll().stream()
-                .filter(b -> Boolean.TRUE.equals(b.getIsActive()))
-                .map(Branch::getBranchId)
-                .findFirst()
-                .orElse(null);
+        CatalogBranch firstActive = menuCatalogService.getCatalog().firstActiveBranch();
+        String firstActiveId = firstActive != null ? firstActive.getBranchId() : null;
 
         if (firstActiveId != null) {
             session.setAttribute("DEFAULT_BRANCH_ID", firstActiveId);
@@ -878,7 +903,8 @@ public class UserController {
         }
 
         // 4) Lấy cartCount ngay sau khi add để update header tức thì (cho AJAX)
-        int cartCount = cartService.getCartItemCount(userIdOrLogin, branchId);
+        HeaderInfo header = headerInfoService.get(userIdOrLogin);
+        int cartCount = header != null ? header.getCartCount() : cartService.getCartItemCount(userIdOrLogin, branchId);
 
         // 5) AJAX → trả JSON (frontend cập nhật .cart-badge b)
         if (isAjax(request)) {
@@ -920,7 +946,7 @@ public class UserController {
         // tên user cho header
         model.addAttribute("userName", resolveDisplayName(auth));
 
-        Branch branch = resolveBranch(branchId);
+        CatalogBranch branch = resolveBranch(branchId);
         String resolvedBranchId = branch != null ? branch.getBranchId() : null;
 
         String userKey = (auth != null && auth.isAuthenticated())
@@ -929,17 +955,16 @@ public class UserController {
 
         var dtos = cartService.getCartItems(userKey, resolvedBranchId);
         var items = new ArrayList<Map<String, Object>>();
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+        Map<String, String> thumbs = itemThumbnailService.resolve(
+                dtos.stream().map(CartItemDTO::getItemId).toList());
 
         for (var d : dtos) {
             var it = new HashMap<String, Object>();
-            var item = itemRepository.findById(d.getItemId()).orElse(null);
-            String slug = item != null ? item.getItemCode() : d.getItemId();
-            String thumb = itemMediaRepository
-                    .findByItem_ItemIdOrderBySortOrderAsc(d.getItemId())
-                    .stream()
-                    .findFirst()
-                    .map(ItemMedia::getMediaUrl)
-                    .orElse("/img/products/" + d.getItemId() + ".jpg");
+            String slug = catalog.findItem(d.getItemId())
+                    .map(CatalogItem::getSlug)
+                    .orElse(d.getItemId());
+            String thumb = thumbs.getOrDefault(d.getItemId(), "/img/products/" + d.getItemId() + ".jpg");
             String branchName = branch != null ? branch.getName() : "";
 
             it.put("cartItemId", d.getCartItemId());
@@ -967,8 +992,17 @@ public class UserController {
         summary.put("shippingFee", shipping);
         summary.put("grandTotal", grand);
 
+        // Gợi ý "thường được mua cùng" cho cả giỏ
+        List<String> basketIds = dtos.stream().map(CartItemDTO::getItemId).toList();
+        List<Map<String, Object>> related = activeCatalogItems(catalog,
+                relatedItemsService.getRelatedForBasket(basketIds, RELATED_SIZE * 2))
+                .limit(RELATED_SIZE)
+                .map(this::mapRelated)
+                .collect(Collectors.toList());
+
         model.addAttribute("items", items);
         model.addAttribute("summary", summary);
+        model.addAttribute("related", related);
         model.addAttribute("branchId", resolvedBranchId);
         model.addAttribute("appliedCoupon", null);
         model.addAttribute("couponError", null);
@@ -1210,6 +1244,7 @@ public class UserController {
                     .item(item)
                     .build();
             favoriteRepo.save(fav);
+            itemStatsService.adjustFavorites(itemId, 1);
             ra.addFlashAttribute("toastSuccess", "Đã thêm vào yêu thích!");
         }
 
@@ -1234,6 +1269,7 @@ public class UserController {
 
         var deletedCount = favoriteRepo.deleteByUser_UserIdAndItem_ItemId(user.getUserId(), itemId);
         if (deletedCount > 0) {
+            itemStatsService.adjustFavorites(itemId, -deletedCount);
             ra.addFlashAttribute("toastSuccess", "Đã bỏ khỏi yêu thích!");
         } else {
             ra.addFlashAttribute("toastError", "Món này không nằm trong danh sách yêu thích.");
@@ -1266,10 +1302,12 @@ public class UserController {
 
         var existing = favoriteRepo.findByUser_UserIdAndItem_ItemId(user.getUserId(), itemId);
         if (existing.isPresent()) {
-            favoriteRepo.deleteByUser_UserIdAndItem_ItemId(user.getUserId(), itemId);
+            long deleted = favoriteRepo.deleteByUser_UserIdAndItem_ItemId(user.getUserId(), itemId);
+            itemStatsService.adjustFavorites(itemId, -deleted);
             ra.addFlashAttribute("toastSuccess", "Đã bỏ khỏi yêu thích!");
         } else {
             favoriteRepo.save(Favorite.builder().user(user).item(item).build());
+            itemStatsService.adjustFavorites(itemId, 1);
             ra.addFlashAttribute("toastSuccess", "Đã thêm vào yêu thích!");
         }
 
@@ -1294,14 +1332,12 @@ public class UserController {
         }
 
         var favorites = favoriteRepo.findByUser_UserId(user.getUserId());
+        Map<String, String> thumbs = itemThumbnailService.resolve(favorites.stream()
+                .map(f -> f.getItem().getItemId())
+                .toList());
         var items = favorites.stream().map(f -> {
             var i = f.getItem();
-            var thumb = itemMediaRepository
-                    .findByItem_ItemIdOrderBySortOrderAsc(i.getItemId())
-                    .stream()
-                    .findFirst()
-                    .map(media -> media.getMediaUrl())
-                    .orElse("/img/placeholder-product.jpg");
+            var thumb = thumbs.getOrDefault(i.getItemId(), "/img/placeholder-product.jpg");
 
             var m = new java.util.HashMap<String, Object>();
             m.put("id", i.getItemId());
@@ -1390,11 +1426,7 @@ public class UserController {
             return "redirect:/user/home";
         }
 
-        List<ItemMedia> media = itemMediaRepository.findByItem_ItemIdOrderBySortOrderAsc(item.getItemId());
-
-        String thumb = (media != null && !media.isEmpty() && media.get(0).getMediaUrl() != null)
-                ? media.get(0).getMediaUrl()
-                : "/img/products/" + item.getItemId() + ".jpg";
+        String thumb = itemThumbnailService.resolve(item.getItemId(), "/img/products/" + item.getItemId() + ".jpg");
 
         Map<String, Object> productMini = new HashMap<>();
         productMini.put("id", item.getItemId());
@@ -1438,7 +1470,7 @@ public class UserController {
         model.addAttribute("branchId", roomId);
 
         // Lấy thông tin branch
-        Branch branch = resolveBranch(roomId);
+        CatalogBranch branch = resolveBranch(roomId);
         if (branch != null) {
             model.addAttribute("branchName", branch.getName());
         }
@@ -1452,20 +1484,14 @@ public class UserController {
     }
 
     // ===== helpers =====
-    private Branch resolveBranch(String branchIdMaybe) {
+    private CatalogBranch resolveBranch(String branchIdMaybe) {
+        MenuCatalog catalog = menuCatalogService.getCatalog();
         if (branchIdMaybe != null && !branchIdMaybe.isBlank()) {
-            Optional<Branch> byId = branchRepository.findById(branchIdMaybe);
+            Optional<CatalogBranch> byId = catalog.findBranch(branchIdMaybe);
             if (byId.isPresent())
                 return byId.get();
         }
-        return fallbackActiveBranch();
-    }
-
-    private Branch fallbackActiveBranch() {
-        return branchRepository.findAll().stream()
-                .filter(b -> Boolean.TRUE.equals(b.getIsActive()))
-                .findFirst()
-                .orElse(null);
+        return catalog.firstActiveBranch();
     }
 
     // legacy redirect /checkout -> /user/checkout
@@ -1510,17 +1536,14 @@ public class UserController {
         }
         var item = itemOpt.get();
 
-        Review r = new Review();
-        r.setItemId(item.getItemId());
-        r.setUserId((auth != null && auth.isAuthenticated()) ? auth.getName() : "guest");
-        r.setRating(rating);
-        r.setComment(content);
-        try {
-            r.getClass().getMethod("setOrderCode", String.class).invoke(r, orderCode);
-        } catch (Exception ignore) {
-        }
-        r.setCreatedAt(LocalDateTime.now());
-        r = reviewRepository.save(r);
+        // Qua ReviewService để điểm tổng hợp (item_stats) cập nhật trong cùng transaction
+        ReviewDTO created = reviewService.createReview(ReviewDTO.builder()
+                .itemId(item.getItemId())
+                .userId((auth != null && auth.isAuthenticated()) ? auth.getName() : "guest")
+                .rating(rating)
+                .comment(content)
+                .build());
+        Review r = reviewRepository.getReferenceById(created.getReviewId());
 
         if (media != null && !media.isEmpty()) {
             Path base = Paths.get("uploads", "reviews", r.getReviewId());
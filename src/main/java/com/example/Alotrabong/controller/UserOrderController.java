@@ -2,6 +2,7 @@ package com.example.Alotrabong.controller;
 
 import com.example.Alotrabong.entity.*;
 import com.example.Alotrabong.repository.*;
+import com.example.Alotrabong.service.OrderStateMachine;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.*;
@@ -9,14 +10,13 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
-
 @Controller
 @RequiredArgsConstructor
 public class UserOrderController {
 
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
+    private final OrderStateMachine orderStateMachine;
 
     @PostMapping("/user/order/confirm-received/{orderId}")
     @ResponseBody
@@ -46,10 +46,12 @@ public class UserOrderController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Không thể xác nhận đơn của người khác");
         }
 
-        // Cập nhật trạng thái
-        order.setStatus(OrderStatus.RECEIVED);
-        order.setUpdatedAt(LocalDateTime.now());
-        orderRepository.save(order);
+        // Chỉ xác nhận được khi đơn đang giao / đã giao
+        if (!orderStateMachine.canTransition(order.getStatus(), OrderStatus.RECEIVED,
+                OrderStateMachine.Actor.CUSTOMER)) {
+            return ResponseEntity.badRequest().body("Đơn hàng chưa thể xác nhận đã nhận");
+        }
+        orderStateMachine.transition(order, OrderStatus.RECEIVED, OrderStateMachine.Actor.CUSTOMER, null);
 
         return ResponseEntity.ok("success");
     }
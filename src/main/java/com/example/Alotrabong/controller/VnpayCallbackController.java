@@ -3,7 +3,12 @@ package com.example.Alotrabong.controller;
 import com.example.Alotrabong.entity.Order;
 import com.example.Alotrabong.entity.PaymentMethod;
 import com.example.Alotrabong.entity.PaymentStatus;
+import com.example.Alotrabong.event.OrderEventType;
 import com.example.Alotrabong.repository.OrderRepository;
+import com.example.Alotrabong.service.IdempotencyService;
+import com.example.Alotrabong.service.InventoryReservationService;
+import com.example.Alotrabong.service.OutboxService;
+import com.example.Alotrabong.service.PaymentService;
 import com.example.Alotrabong.service.VnpayService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,6 +21,8 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Slf4j
@@ -26,6 +33,10 @@ public class VnpayCallbackController {
 
     private final VnpayService vnpayService;
     private final OrderRepository orderRepository;
+    private final InventoryReservationService inventoryReservationService;
+    private final IdempotencyService idempotencyService;
+    private final OutboxService outboxService;
+    private final PaymentService paymentService;
 
     @GetMapping("/api/orders/vnpay-return") // 👈 đúng y returnUrl trong log
     @Transactional
@@ -34,33 +45,73 @@ public class VnpayCallbackController {
         boolean valid = vnpayService.validateReturnData(params);
         String status = vnpayService.getPaymentStatus(params); // "SUCCESS"/"FAILED"
         String refRaw = params.getOrDefault("vnp_TxnRef", "");
-        String refNoDash = refRaw.replace("-", "");
+        String transactionNo = params.getOrDefault("vnp_TransactionNo", "");
 
         log.info("[VNPAY-ALIAS] hit return; valid={}, status={}, ref={}", valid, status, refRaw);
 
         if (valid && "SUCCESS".equalsIgnoreCase(status)) {
-            // thử no-dash trước, rồi fallback raw
-            Order order = orderRepository.findByOrderIdNoDash(refNoDash)
-                    .or(() -> orderRepository.findByOrderId(refRaw))
-                    .orElse(null);
-
-            if (order != null && order.getPaymentStatus() != PaymentStatus.PAID) {
-                log.info("[VNPAY-ALIAS] before status={}", order.getPaymentStatus());
-                order.setPaymentStatus(PaymentStatus.PAID);
-                order.setPaymentMethod(PaymentMethod.VNPAY);
-                orderRepository.saveAndFlush(order); // flush ngay
-                log.info("[VNPAY-ALIAS] after status={}", order.getPaymentStatus());
-            } else if (order == null) {
-                log.warn("[VNPAY-ALIAS] Không tìm thấy order cho {}", refRaw);
-            }
+            // Trình duyệt reload / VNPAY gọi lại cùng giao dịch: chỉ xử lý 1 lần, lần sau nhận lại redirect cũ
+            String txnKey = refRaw + ":" + transactionNo;
+            return idempotencyService.execute("vnpay-return", txnKey, () -> markPaid(refRaw, transactionNo, ra));
+        }
 
-            String code = order != null ? order.getOrderId() : refRaw;
-            ra.addFlashAttribute("toastSuccess", "Thanh toán thành công cho đơn #" + code);
-            return "redirect:/user/checkout/success?code=" + URLEncoder.encode(code, StandardCharsets.UTF_8);
+        if (valid) {
+            // Chỉ ghi sự kiện thất bại khi chữ ký hợp lệ (tránh ai cũng bắn được sự kiện giả)
+            paymentService.findOrderByTxnRef(refRaw).ifPresent(o -> {
+                paymentService.recordGatewayResult(refRaw, PaymentStatus.FAILED, transactionNo);
+                outboxService.append(o.getOrderId(), OrderEventType.PAYMENT_FAILED, paymentPayload(o, refRaw));
+            });
         }
 
         ra.addFlashAttribute("toastError", "Thanh toán thất bại hoặc không hợp lệ.");
         return "redirect:/user/checkout/fail";
     }
 
+    private String markPaid(String refRaw, String transactionNo, RedirectAttributes ra) {
+        // txnRef đã lưu lúc tạo link: cache hoặc seek index txn_ref (không REPLACE quét cả bảng)
+        Order order = paymentService.findOrderByTxnRef(refRaw).orElse(null);
+
+        if (order != null) {
+            String orderId = order.getOrderId();
+            Map<String, Object> payload = paymentPayload(order, refRaw);
+            LocalDateTime now = LocalDateTime.now();
+            // Khoá reservation trước rồi mới tới đơn (cùng thứ tự với job hết hạn giữ hàng): đã trả tiền -> trừ hẳn.
+            // Reservation đã bị nhả do hết hạn thì commit không làm gì, đơn lúc đó đã/đang bị huỷ.
+            inventoryReservationService.commit(orderId);
+            if (orderRepository.markPaidIfOpen(orderId, PaymentMethod.VNPAY, now) > 0) {
+                paymentService.recordGatewayResult(refRaw, PaymentStatus.PAID, transactionNo);
+                outboxService.append(orderId, OrderEventType.PAYMENT_SUCCEEDED, payload);
+                log.info("[VNPAY-ALIAS] order {} marked PAID", orderId);
+            } else if (orderRepository.markPaidIfCancelled(orderId, PaymentMethod.VNPAY, now) > 0) {
+                // Tiền về sau khi đơn đã bị huỷ, vd. hết hạn giữ hàng (hàng đã trả kho): không mở lại đơn,
+                // ghi nhận đã thu tiền và phát sự kiện để admin hoàn tiền (CANCELLED -> REFUNDED)
+                paymentService.recordGatewayResult(refRaw, PaymentStatus.PAID, transactionNo);
+                outboxService.append(orderId, OrderEventType.PAYMENT_SUCCEEDED, payload);
+                Map<String, Object> refund = new LinkedHashMap<>(payload);
+                refund.put("transactionNo", transactionNo);
+                outboxService.append(orderId, OrderEventType.PAYMENT_REFUND_REQUIRED, refund);
+                log.warn("[VNPAY-ALIAS] order {} was cancelled before payment arrived, refund required", orderId);
+
+                ra.addFlashAttribute("toastError", "Đơn #" + orderId
+                        + " đã bị huỷ trước khi thanh toán hoàn tất. Khoản thanh toán sẽ được hoàn lại.");
+                return "redirect:/user/checkout/fail";
+            }
+        } else {
+            log.warn("[VNPAY-ALIAS] Không tìm thấy order cho {}", refRaw);
+        }
+
+        String code = order != null ? order.getOrderId() : refRaw;
+        ra.addFlashAttribute("toastSuccess", "Thanh toán thành công cho đơn #" + code);
+        return "redirect:/user/checkout/success?code=" + URLEncoder.encode(code, StandardCharsets.UTF_8);
+    }
+
+    private Map<String, Object> paymentPayload(Order order, String txnRef) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("branchId", order.getBranch() != null ? order.getBranch().getBranchId() : null);
+        payload.put("amount", order.getTotalAmount());
+        payload.put("method", PaymentMethod.VNPAY.name());
+        payload.put("txnRef", txnRef);
+        return payload;
+    }
+
 }
@@ -0,0 +1,61 @@
+package com.example.Alotrabong.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bảng đơn trực tiếp của 1 chi nhánh: ảnh chụp gửi khi subscribe, sau đó chỉ đẩy {@link Delta} qua topic.
+ * Tên field của {@link Card} trùng với OrderDTO để trang đơn hàng dùng chung hàm render.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BranchOrderBoardDTO {
+    private String branchId;
+    private String topic;
+    private long version;
+    private Map<String, Long> counts;            // số đơn theo từng trạng thái
+    private Map<String, Long> stats;             // tổng hợp như /api/orders/stats
+    private Map<String, List<Card>> columns;     // đơn đang mở, nhóm theo trạng thái (mới nhất trước)
+
+    @Data
+    @Builder(toBuilder = true)
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Card {
+        private String orderId;
+        private String status;
+        private String paymentMethod;
+        private String paymentStatus;
+        private BigDecimal grandTotal;
+        private String deliveryAddress;
+        private String customerName;
+        private String customerPhone;
+        private String shipperName;
+        private LocalDateTime createdAt;
+    }
+
+    /** Thay đổi 1 đơn; card = null khi đơn rời bảng (giao xong / huỷ) */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Delta {
+        private String type;        // ORDER_CREATED, ORDER_STATUS_CHANGED, ..., RESYNC
+        private long version;
+        private String orderId;
+        private String from;
+        private String to;
+        private Card card;
+        private Map<String, Long> counts;
+        private Map<String, Long> stats;
+    }
+}
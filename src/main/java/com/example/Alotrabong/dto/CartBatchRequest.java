@@ -0,0 +1,48 @@
+package com.example.Alotrabong.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nhiều thao tác giỏ hàng trong 1 request (dựng lại giỏ, thêm combo...).
+ * Các thao tác chạy theo thứ tự, tất cả thành công hoặc không thao tác nào được áp dụng.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchRequest {
+
+    public enum Action {
+        ADD, UPDATE, REMOVE
+    }
+
+    /** Chi nhánh dùng để kiểm tra giá/tồn kho, null = chi nhánh mặc định */
+    private String branchId;
+
+    @NotEmpty(message = "Operations are required")
+    @Size(max = 100, message = "At most 100 operations per batch")
+    @Valid
+    private List<Operation> operations = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operation {
+        @NotNull(message = "Action is required")
+        private Action action;
+
+        /** Bắt buộc với ADD; với UPDATE/REMOVE dùng thay cho cartItemId nếu client chưa biết id dòng */
+        private String itemId;
+
+        private String cartItemId;
+
+        /** ADD: số lượng thêm (mặc định 1); UPDATE: số lượng mới (<= 0 = xoá) */
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.Alotrabong.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Kết quả định giá lại giỏ hàng theo 1 chi nhánh: giá mới từng dòng và các dòng thay đổi / không đặt được.
+ */
+@Getter
+@AllArgsConstructor
+public class CartRepricingResult {
+
+    public enum Status {
+        OK, UNAVAILABLE, INSUFFICIENT_STOCK
+    }
+
+    @Getter
+    @Builder
+    public static class Line {
+        private final String cartItemId;
+        private final String itemId;
+        private final String itemName;
+        private final int quantity;
+        private final BigDecimal oldUnitPrice;
+        private final BigDecimal newUnitPrice;
+        /** Phụ thu option trên 1 đơn vị (đã nằm trong newUnitPrice) */
+        private final BigDecimal optionExtra;
+        /** Tồn kho tại chi nhánh, null = chi nhánh không quản lý tồn kho món này */
+        private final Integer availableQty;
+        private final Status status;
+
+        public boolean isPriceChanged() {
+            return oldUnitPrice == null || oldUnitPrice.compareTo(newUnitPrice) != 0;
+        }
+
+        public boolean isChanged() {
+            return status != Status.OK || isPriceChanged();
+        }
+
+        public BigDecimal getNewTotal() {
+            return newUnitPrice.multiply(BigDecimal.valueOf(quantity)).setScale(2, RoundingMode.HALF_UP);
+        }
+    }
+
+    private final String branchId;
+    private final List<Line> lines;
+
+    /** Các dòng đổi giá hoặc không đặt được ở chi nhánh này */
+    public List<Line> getChanges() {
+        return lines.stream().filter(Line::isChanged).toList();
+    }
+
+    public boolean hasBlockingIssues() {
+        return lines.stream().anyMatch(l -> l.getStatus() != Status.OK);
+    }
+
+    /** Giỏ theo giá mới */
+    public List<CartItemDTO> toCartItems() {
+        return lines.stream()
+                .map(l -> CartItemDTO.builder()
+                        .cartItemId(l.getCartItemId())
+                        .itemId(l.getItemId())
+                        .itemName(l.getItemName())
+                        .quantity(l.getQuantity())
+                        .unitPrice(l.getNewUnitPrice())
+                        .totalPrice(l.getNewTotal())
+                        .build())
+                .toList();
+    }
+}
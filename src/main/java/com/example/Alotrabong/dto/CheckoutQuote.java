@@ -0,0 +1,49 @@
+package com.example.Alotrabong.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Báo giá checkout do server tính: giá từng dòng theo chi nhánh, phụ thu option, giảm giá, phí ship, tổng cộng.
+ * token (JWT ký HMAC, sống ngắn) mang tổng tiền + dấu vân tay giỏ để bước tạo đơn không phải tính lại.
+ */
+@Getter
+@Builder
+public class CheckoutQuote {
+
+    /** Phần tổng tiền nằm trong token */
+    public record Totals(BigDecimal subtotal, BigDecimal discount, BigDecimal shippingFee, BigDecimal grandTotal,
+                         String couponCode) {
+    }
+
+    private final String branchId;
+    /** Giỏ theo giá mới */
+    private final List<CartItemDTO> lines;
+    /** Các dòng đổi giá hoặc không đặt được ở chi nhánh này */
+    private final List<CartRepricingResult.Line> changes;
+    private final boolean blocking;
+
+    private final BigDecimal subtotal;
+    /** Tổng phụ thu option (đã nằm trong subtotal) */
+    private final BigDecimal optionExtras;
+    private final BigDecimal discount;
+    private final BigDecimal shippingFee;
+    private final BigDecimal grandTotal;
+
+    /** Mã giảm giá được áp dụng, null nếu không có / không hợp lệ */
+    private final String couponCode;
+    /** Thông báo kiểm tra mã khách chọn: "Áp dụng ..." hoặc lý do không áp được */
+    private final String couponMessage;
+
+    /** null nếu giỏ trống hoặc có dòng không đặt được */
+    private final String token;
+    private final Instant expiresAt;
+
+    public Totals toTotals() {
+        return new Totals(subtotal, discount, shippingFee, grandTotal, couponCode);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.Alotrabong.dto;
 
+import com.example.Alotrabong.entity.PaymentMethod;
 import lombok.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -16,4 +17,13 @@ public class CreateOrderRequest {
     private String shippingAddress;
     
     private String notes;
+
+    // Mã giảm giá khách đã chọn
+    private String couponCode;
+
+    // Phương thức thanh toán khách chọn; không gửi = COD
+    private PaymentMethod paymentMethod;
+
+    // Token báo giá từ trang checkout; còn hạn và giỏ không đổi thì dùng luôn tổng tiền trong token
+    private String quoteToken;
 }
\ No newline at end of file
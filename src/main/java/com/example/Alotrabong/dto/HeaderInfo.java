@@ -0,0 +1,15 @@
+package com.example.Alotrabong.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Dữ liệu header dùng chung cho mọi trang: tên hiển thị và số món trong giỏ.
+ */
+@Getter
+@AllArgsConstructor
+public class HeaderInfo {
+    private final String userId;
+    private final String displayName;
+    private final int cartCount;
+}
@@ -0,0 +1,19 @@
+package com.example.Alotrabong.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ba dải món trên trang chủ (mới / bán chạy / yêu thích) đã map sẵn sang view model.
+ */
+@Getter
+@AllArgsConstructor
+public class HomeRails {
+    private final List<HomeItemVM> newest;
+    private final List<HomeItemVM> bestSelling;
+    private final List<HomeItemVM> favorites;
+    private final LocalDateTime builtAt;
+}
@@ -20,4 +20,7 @@ public class ItemDTO {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private List<String> mediaUrls;
+    // Điểm đánh giá từ item_stats (chỉ có ở trang danh sách)
+    private Double avgRating;
+    private Long ratingCount;
 }
@@ -0,0 +1,62 @@
+package com.example.Alotrabong.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Bộ lọc cho trang danh sách món: mọi điều kiện đều tuỳ chọn và được đẩy xuống DB trong 1 câu query.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ItemListingQuery {
+    private String categoryId;
+    private String keyword;     // LIKE trên tên
+    private List<String> itemIds; // chỉ trong tập món này (vd. kết quả từ search index)
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private String branchId; // chỉ lấy món chi nhánh đang bán
+
+    @Builder.Default
+    private ListingSort sort = ListingSort.NEWEST;
+
+    private String cursor; // keyset token (KeysetCursor) của trang trước; null -> phân trang offset
+
+    // false: bỏ câu COUNT (cuộn vô hạn chỉ cần biết còn trang sau hay không)
+    @Builder.Default
+    private boolean countTotal = true;
+
+    public enum ListingSort {
+        NEWEST,
+        BEST,
+        FAVORITES,
+        PRICE_ASC,
+        PRICE_DESC,
+        RATING,
+        RELEVANCE; // giữ đúng thứ tự của itemIds (kết quả search index đã xếp theo điểm); không có itemIds -> NEWEST
+
+        /** Map tham số sort trên URL (new/best/fav/rating/price_asc/price_desc/relevance) */
+        public static ListingSort fromParam(String sort) {
+            return fromParam(sort, false);
+        }
+
+        /** Như trên; đang tìm theo từ khoá mà không chọn sort thì mặc định xếp theo độ liên quan */
+        public static ListingSort fromParam(String sort, boolean searching) {
+            if (sort == null || sort.isBlank()) {
+                return searching ? RELEVANCE : NEWEST;
+            }
+            return switch (sort.toLowerCase()) {
+                case "relevance" -> RELEVANCE;
+                case "best" -> BEST;
+                case "fav" -> FAVORITES;
+                case "rating" -> RATING;
+                case "price_asc" -> PRICE_ASC;
+                case "price_desc" -> PRICE_DESC;
+                default -> NEWEST;
+            };
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.Alotrabong.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Gợi ý khi gõ ô tìm kiếm (autocomplete)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ItemSuggestionDTO {
+    private String itemId;
+    private String name;
+    private String slug;
+    private String categoryName;
+    private BigDecimal price;
+    private String thumbnailUrl;
+}
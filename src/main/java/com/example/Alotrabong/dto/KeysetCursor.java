@@ -0,0 +1,43 @@
+package com.example.Alotrabong.dto;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Token keyset "opaque" cho client: base64url của "giá trị cột sort|id".
+ * Client chỉ việc gửi lại nguyên văn, không cần hiểu nội dung.
+ */
+public final class KeysetCursor {
+
+    private static final String SEP = "|";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(Object sortValue, String id) {
+        if (sortValue == null || id == null) {
+            return null;
+        }
+        String value = sortValue instanceof BigDecimal bd ? bd.toPlainString() : String.valueOf(sortValue);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((value + SEP + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @return {sortValue, id} hoặc null nếu token rỗng/không hợp lệ */
+    public static String[] decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idx = raw.lastIndexOf(SEP);
+            if (idx <= 0 || idx == raw.length() - 1) {
+                return null;
+            }
+            return new String[] { raw.substring(0, idx), raw.substring(idx + 1) };
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.Alotrabong.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Page;
+
+import java.util.function.Function;
+
+/**
+ * Một trang kết quả kèm token để lấy trang kế tiếp theo keyset (null nếu đã hết).
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetPage<T> {
+    private final Page<T> page;
+    private final String nextCursor;
+
+    public <R> KeysetPage<R> map(Function<? super T, ? extends R> converter) {
+        return new KeysetPage<>(page.map(converter), nextCursor);
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.Alotrabong.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Snapshot bất biến của thực đơn: món, danh mục, chi nhánh, giá/tình trạng theo chi nhánh và ảnh đại diện.
+ * Không bao giờ sửa tại chỗ - mỗi lần menu đổi sẽ dựng snapshot mới rồi tráo nguyên tử (xem MenuCatalogService).
+ */
+@Getter
+public final class MenuCatalog {
+
+    private final long version;
+    private final LocalDateTime builtAt;
+
+    /** Món đang bán, mới nhất trước */
+    private final List<CatalogItem> activeItems;
+    private final List<CatalogCategory> activeCategories;
+    private final List<CatalogBranch> branches;
+    private final List<CatalogBranch> activeBranches;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<String, CatalogItem> itemsById;
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<String, CatalogItem> itemsByCode;
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<String, List<CatalogItem>> activeItemsByCategory;
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<String, CatalogBranch> branchesById;
+    // branchId -> itemId -> giá/tình trạng tại chi nhánh
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<String, Map<String, BranchOffer>> offersByBranch;
+
+    public MenuCatalog(long version,
+            List<CatalogItem> items,
+            List<CatalogCategory> categories,
+            List<CatalogBranch> branches,
+            Map<String, Map<String, BranchOffer>> offersByBranch) {
+        this.version = version;
+        this.builtAt = LocalDateTime.now();
+
+        Map<String, CatalogItem> byId = new HashMap<>();
+        Map<String, CatalogItem> byCode = new HashMap<>();
+        Map<String, List<CatalogItem>> byCategory = new HashMap<>();
+        List<CatalogItem> active = new ArrayList<>();
+        for (CatalogItem it : items) {
+            byId.put(it.getItemId(), it);
+            if (it.getItemCode() != null) {
+                byCode.put(it.getItemCode(), it);
+            }
+            if (Boolean.TRUE.equals(it.getIsActive())) {
+                active.add(it);
+                if (it.getCategoryId() != null) {
+                    byCategory.computeIfAbsent(it.getCategoryId(), k -> new ArrayList<>()).add(it);
+                }
+            }
+        }
+        Comparator<CatalogItem> newestFirst = Comparator.comparing(CatalogItem::getCreatedAt,
+                Comparator.nullsLast(Comparator.reverseOrder()));
+        active.sort(newestFirst);
+        byCategory.values().forEach(l -> l.sort(newestFirst));
+
+        Map<String, List<CatalogItem>> byCategoryFrozen = new HashMap<>();
+        byCategory.forEach((k, v) -> byCategoryFrozen.put(k, List.copyOf(v)));
+
+        Map<String, CatalogBranch> branchMap = new LinkedHashMap<>();
+        for (CatalogBranch b : branches) {
+            branchMap.put(b.getBranchId(), b);
+        }
+
+        Map<String, Map<String, BranchOffer>> offersFrozen = new HashMap<>();
+        offersByBranch.forEach((k, v) -> offersFrozen.put(k, Map.copyOf(v)));
+
+        this.itemsById = Map.copyOf(byId);
+        this.itemsByCode = Map.copyOf(byCode);
+        this.activeItems = List.copyOf(active);
+        this.activeItemsByCategory = Map.copyOf(byCategoryFrozen);
+        this.activeCategories = categories.stream()
+                .filter(c -> Boolean.TRUE.equals(c.getIsActive()))
+                .toList();
+        this.branches = List.copyOf(branches);
+        this.activeBranches = branches.stream()
+                .filter(b -> Boolean.TRUE.equals(b.getIsActive()))
+                .toList();
+        this.branchesById = Collections.unmodifiableMap(branchMap);
+        this.offersByBranch = Map.copyOf(offersFrozen);
+    }
+
+    public static MenuCatalog empty() {
+        return new MenuCatalog(0L, List.of(), List.of(), List.of(), Map.of());
+    }
+
+    // ======================= lookup =======================
+
+    public Optional<CatalogItem> findItem(String itemId) {
+        return itemId == null ? Optional.empty() : Optional.ofNullable(itemsById.get(itemId));
+    }
+
+    /** Tìm theo itemId trước, sau đó theo item_code (slug) */
+    public Optional<CatalogItem> findItemByIdOrCode(String idOrCode) {
+        if (idOrCode == null) {
+            return Optional.empty();
+        }
+        CatalogItem it = itemsById.get(idOrCode);
+        return Optional.ofNullable(it != null ? it : itemsByCode.get(idOrCode));
+    }
+
+    public List<CatalogItem> activeItemsInCategory(String categoryId) {
+        return categoryId == null ? List.of() : activeItemsByCategory.getOrDefault(categoryId, List.of());
+    }
+
+    public Optional<CatalogBranch> findBranch(String branchId) {
+        return branchId == null ? Optional.empty() : Optional.ofNullable(branchesById.get(branchId));
+    }
+
+    /** Chi nhánh active đầu tiên (fallback khi user chưa chọn) */
+    public CatalogBranch firstActiveBranch() {
+        return activeBranches.isEmpty() ? null : activeBranches.get(0);
+    }
+
+    /** Giá/tình trạng món tại chi nhánh; null nếu chi nhánh chưa bán món này */
+    public BranchOffer offer(String branchId, String itemId) {
+        if (branchId == null || itemId == null) {
+            return null;
+        }
+        Map<String, BranchOffer> offers = offersByBranch.get(branchId);
+        return offers == null ? null : offers.get(itemId);
+    }
+
+    /** Ảnh IMAGE đầu tiên theo sort_order, null nếu món chưa có ảnh */
+    public String thumbnailOf(String itemId) {
+        CatalogItem it = itemId == null ? null : itemsById.get(itemId);
+        return it == null ? null : it.getThumbnailUrl();
+    }
+
+    public int size() {
+        return itemsById.size();
+    }
+
+    // ======================= value types =======================
+
+    @Value
+    @Builder
+    public static class CatalogItem {
+        String itemId;
+        String itemCode;
+        String name;
+        String description;
+        BigDecimal price;
+        String categoryId;
+        String categoryName;
+        Boolean isActive;
+        LocalDateTime createdAt;
+        String thumbnailUrl;
+        List<String> imageUrls;
+
+        public String getSlug() {
+            return itemCode != null ? itemCode : itemId;
+        }
+    }
+
+    @Value
+    @Builder
+    public static class CatalogCategory {
+        String categoryId;
+        String name;
+        String description;
+        Boolean isActive;
+    }
+
+    @Value
+    @Builder
+    public static class CatalogBranch {
+        String branchId;
+        String branchCode;
+        String name;
+        String address;
+        String phone;
+        String district;
+        String city;
+        BigDecimal latitude;
+        BigDecimal longitude;
+        Boolean isActive;
+        String openHours;
+    }
+
+    @Value
+    public static class BranchOffer {
+        BigDecimal price;
+        boolean available;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.Alotrabong.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Một trang danh sách đơn (keyset theo createdAt); nextCursor null nghĩa là đã hết.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderFeedDTO {
+    private List<OrderDTO> items;
+    private String nextCursor;
+}
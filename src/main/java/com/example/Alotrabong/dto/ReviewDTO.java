@@ -2,6 +2,7 @@ package com.example.Alotrabong.dto;
 
 import lombok.*;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -16,4 +17,8 @@ public class ReviewDTO {
     private Boolean isActive;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+
+    // Chỉ có khi đọc qua feed
+    private String reviewerName;
+    private List<String> mediaUrls;
 }
\ No newline at end of file
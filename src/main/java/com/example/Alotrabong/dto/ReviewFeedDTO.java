@@ -0,0 +1,17 @@
+package com.example.Alotrabong.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Một trang feed đánh giá; nextCursor null nghĩa là đã hết.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReviewFeedDTO {
+    private List<ReviewDTO> items;
+    private String nextCursor;
+}
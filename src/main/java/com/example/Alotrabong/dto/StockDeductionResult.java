@@ -0,0 +1,23 @@
+package com.example.Alotrabong.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Kết quả trừ kho cho cả đơn: thành công hết, hoặc không trừ gì và trả về các dòng thiếu hàng.
+ */
+@Getter
+@AllArgsConstructor
+public class StockDeductionResult {
+
+    public record Shortage(String itemId, int requested, int available) {
+    }
+
+    private final List<Shortage> shortages;
+
+    public boolean isSuccess() {
+        return shortages.isEmpty();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.Alotrabong.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bộ đếm số lượng đã bán theo (chi nhánh, món) để xếp hạng best-seller từng chi nhánh.
+ */
+@Entity
+@Table(name = "branch_item_stats", uniqueConstraints = @UniqueConstraint(name = "uk_bis_branch_item", columnNames = {
+        "branch_id", "item_id" }), indexes = @Index(name = "ix_bis_branch_sold", columnList = "branch_id, sold_count"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BranchItemStats {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "stats_id")
+    private Long statsId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "branch_id")
+    private Branch branch;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id")
+    private Item item;
+
+    @Builder.Default
+    @Column(name = "sold_count", nullable = false)
+    private Long soldCount = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
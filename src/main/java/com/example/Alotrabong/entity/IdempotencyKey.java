@@ -0,0 +1,39 @@
+package com.example.Alotrabong.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả của request đầu tiên mang 1 idempotency key (vd. bấm "Đặt hàng" 2 lần).
+ * completed = false: request đầu đang chạy, giữ khoá tới lockedUntil.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "ix_idem_expires", columnList = "expires_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyKey {
+    // scope:key, vd. "checkout:{login}:{uuid}"
+    @Id
+    @Column(name = "idem_key", length = 200)
+    private String idemKey;
+
+    @Column(name = "completed", nullable = false)
+    private Boolean completed;
+
+    @Column(name = "result", length = 1000)
+    private String result;
+
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
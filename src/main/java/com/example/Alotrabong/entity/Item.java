@@ -7,7 +7,13 @@ import java.math.BigDecimal;
 import java.util.Comparator;
 
 @Entity
-@Table(name = "items", indexes = @Index(name = "ix_items_code", columnList = "item_code", unique = true))
+@Table(name = "items", indexes = {
+        @Index(name = "ix_items_code", columnList = "item_code", unique = true),
+        // phục vụ trang danh sách: lọc is_active (+ category) rồi sort theo created_at / base_price
+        @Index(name = "ix_items_active_created", columnList = "is_active, created_at, item_id"),
+        @Index(name = "ix_items_active_price", columnList = "is_active, base_price, item_id"),
+        @Index(name = "ix_items_category_active", columnList = "category_id, is_active, created_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
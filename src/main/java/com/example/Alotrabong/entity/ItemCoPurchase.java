@@ -0,0 +1,40 @@
+package com.example.Alotrabong.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ma trận đồng mua (thưa): số đơn có cả item và relatedItem. Lưu cả 2 chiều (a,b) và (b,a)
+ * để tra láng giềng của 1 món chỉ cần quét theo item_id.
+ */
+@Entity
+@Table(name = "item_co_purchase", uniqueConstraints = @UniqueConstraint(name = "uk_icp_item_related", columnNames = {
+        "item_id", "related_item_id" }), indexes = @Index(name = "ix_icp_item_count", columnList = "item_id, pair_count"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ItemCoPurchase {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "pair_id")
+    private Long pairId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id")
+    private Item item;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "related_item_id")
+    private Item relatedItem;
+
+    @Builder.Default
+    @Column(name = "pair_count", nullable = false)
+    private Long pairCount = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
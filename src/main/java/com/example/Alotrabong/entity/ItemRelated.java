@@ -0,0 +1,29 @@
+package com.example.Alotrabong.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Top-N món hay được mua cùng của mỗi món, đã tính sẵn từ item_co_purchase.
+ * related_ids là danh sách itemId cách nhau bởi dấu phẩy, theo thứ tự giảm dần.
+ */
+@Entity
+@Table(name = "item_related")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ItemRelated {
+    @Id
+    @Column(name = "item_id", length = 36)
+    private String itemId;
+
+    @Column(name = "related_ids", length = 1000)
+    private String relatedIds;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
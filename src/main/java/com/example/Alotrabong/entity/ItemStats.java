@@ -0,0 +1,87 @@
+package com.example.Alotrabong.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bộ đếm phi chuẩn hoá theo món: số lượng đã bán (đơn DELIVERED), số lượt yêu thích và điểm đánh giá.
+ * Dùng cho các truy vấn xếp hạng thay cho subquery trên order_items / favorites / reviews.
+ */
+@Entity
+@Table(name = "item_stats", indexes = {
+        @Index(name = "ix_item_stats_sold", columnList = "sold_count"),
+        @Index(name = "ix_item_stats_fav", columnList = "favorite_count"),
+        @Index(name = "ix_item_stats_rating", columnList = "rating_avg, rating_count")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ItemStats {
+    @Id
+    @Column(name = "item_id", length = 36)
+    private String itemId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id")
+    private Item item;
+
+    @Builder.Default
+    @Column(name = "sold_count", nullable = false)
+    private Long soldCount = 0L;
+
+    @Builder.Default
+    @Column(name = "favorite_count", nullable = false)
+    private Long favoriteCount = 0L;
+
+    // ---- Đánh giá đang hiển thị: tổng, số lượt và phân bố 1-5 sao ----
+    // DEFAULT 0 để ddl-auto thêm được cột NOT NULL vào bảng đã có dữ liệu
+    @Builder.Default
+    @Column(name = "rating_count", columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private Long ratingCount = 0L;
+
+    @Builder.Default
+    @Column(name = "rating_sum", columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private Long ratingSum = 0L;
+
+    @Builder.Default
+    @Column(name = "rating_1", columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private Long rating1 = 0L;
+
+    @Builder.Default
+    @Column(name = "rating_2", columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private Long rating2 = 0L;
+
+    @Builder.Default
+    @Column(name = "rating_3", columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private Long rating3 = 0L;
+
+    @Builder.Default
+    @Column(name = "rating_4", columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private Long rating4 = 0L;
+
+    @Builder.Default
+    @Column(name = "rating_5", columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private Long rating5 = 0L;
+
+    // rating_sum / rating_count, lưu sẵn để sort theo index
+    @Builder.Default
+    @Column(name = "rating_avg", columnDefinition = "FLOAT DEFAULT 0 NOT NULL")
+    private Double ratingAvg = 0.0;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    /** Số lượt theo sao, index 0 = 1 sao ... index 4 = 5 sao */
+    public long[] ratingHistogram() {
+        return new long[] { nz(rating1), nz(rating2), nz(rating3), nz(rating4), nz(rating5) };
+    }
+
+    private static long nz(Long v) {
+        return v == null ? 0L : v;
+    }
+}
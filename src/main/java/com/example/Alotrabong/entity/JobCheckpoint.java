@@ -0,0 +1,28 @@
+package com.example.Alotrabong.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mốc đã xử lý của các job chạy tăng dần (lần sau chỉ đọc dữ liệu mới hơn mốc này).
+ */
+@Entity
+@Table(name = "job_checkpoints")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobCheckpoint {
+    @Id
+    @Column(name = "job_name", length = 64)
+    private String jobName;
+
+    @Column(name = "last_processed_at")
+    private LocalDateTime lastProcessedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
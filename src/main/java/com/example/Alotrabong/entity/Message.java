@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @Builder
 public class Message {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     @Column(name = "message_id", length = 36, columnDefinition = "NVARCHAR(36)")
     private String messageId;
 
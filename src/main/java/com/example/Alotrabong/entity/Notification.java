@@ -12,7 +12,7 @@ import lombok.*;
 @Builder
 public class Notification extends Auditable {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     @Column(name = "notification_id", length = 36, columnDefinition = "NVARCHAR(36)")
     private String notificationId;
 
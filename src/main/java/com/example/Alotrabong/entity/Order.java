@@ -7,7 +7,12 @@ import java.math.BigDecimal;
 import java.util.*;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "ix_orders_user_created", columnList = "user_id, created_at"),
+        @Index(name = "ix_orders_branch_created", columnList = "branch_id, created_at"),
+        @Index(name = "ix_orders_status_created", columnList = "status, created_at"),
+        @Index(name = "ix_orders_txn_ref", columnList = "txn_ref")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,7 +20,7 @@ import java.util.*;
 @Builder
 public class Order extends Auditable {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     @Column(name = "order_id", length = 36, columnDefinition = "NVARCHAR(36)")
     private String orderId;
 
@@ -56,6 +61,10 @@ public class Order extends Auditable {
     @Column(name = "payment_status")
     private PaymentStatus paymentStatus; // UNPAID/PAID/REFUNDED
 
+    // Mã tham chiếu gửi cổng thanh toán (vnp_TxnRef), gán khi tạo link thanh toán
+    @Column(name = "txn_ref", length = 64, columnDefinition = "NVARCHAR(64)")
+    private String txnRef;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     private OrderStatus status; // NEW..REFUNDED
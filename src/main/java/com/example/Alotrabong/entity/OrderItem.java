@@ -14,7 +14,7 @@ import java.math.BigDecimal;
 @Builder
 public class OrderItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     @Column(name = "order_item_id", length = 36, columnDefinition = "NVARCHAR(36)")
     private String orderItemId;
 
@@ -6,7 +6,7 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "order_status_history")
+@Table(name = "order_status_history", indexes = @Index(name = "ix_osh_order", columnList = "order_id, created_at"))
 @Getter
 @Setter
 @NoArgsConstructor
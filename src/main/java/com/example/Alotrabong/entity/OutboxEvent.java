@@ -0,0 +1,63 @@
+package com.example.Alotrabong.entity;
+
+import com.example.Alotrabong.event.OrderEventType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transactional outbox: sự kiện đơn hàng ghi cùng transaction với thay đổi của Order,
+ * relay đọc theo id tăng dần rồi giao cho các subscriber.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "ix_outbox_status_id", columnList = "status, event_id"),
+        @Index(name = "ix_outbox_aggregate", columnList = "aggregate_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+    // IDENTITY: thứ tự id = thứ tự ghi (các sự kiện của 1 đơn ghi tuần tự vì cùng khoá dòng orders)
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "event_id")
+    private Long id;
+
+    @Column(name = "aggregate_id", length = 36, nullable = false)
+    private String aggregateId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", length = 40, nullable = false)
+    private OrderEventType eventType;
+
+    @Column(name = "payload", columnDefinition = "nvarchar(max)")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 10, nullable = false)
+    private OutboxStatus status;
+
+    @Builder.Default
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    // Tên các subscriber đã nhận xong (phân cách bằng dấu phẩy): thử lại chỉ giao cho subscriber còn lỗi
+    @Column(name = "delivered_to", length = 500)
+    private String deliveredTo;
+
+    @Column(name = "last_error", length = 1000, columnDefinition = "NVARCHAR(1000)")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,7 @@
+package com.example.Alotrabong.entity;
+
+public enum OutboxStatus {
+    PENDING,
+    DONE,
+    FAILED      // hết số lần thử, cần xem lastError
+}
@@ -7,7 +7,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments", indexes = @Index(name = "ix_payments_order", columnList = "order_id"))
+@Table(name = "payments", indexes = {
+        @Index(name = "ix_payments_order", columnList = "order_id"),
+        @Index(name = "ix_payments_txn_ref", columnList = "txn_ref")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,7 +18,7 @@ import java.time.LocalDateTime;
 @Builder
 public class Payment {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     @Column(name = "payment_id", length = 36, columnDefinition = "NVARCHAR(36)")
     private String paymentId;
 
@@ -32,6 +35,10 @@ public class Payment {
     @Column(name = "txn_code", length = 80, columnDefinition = "NVARCHAR(80)")
     private String txnCode;
 
+    // Mã tham chiếu gửi cổng (vnp_TxnRef); txnCode là mã giao dịch cổng trả về
+    @Column(name = "txn_ref", length = 64, columnDefinition = "NVARCHAR(64)")
+    private String txnRef;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     private PaymentStatus status; // INIT/SUCCESS/FAIL -> mapped to enum PAID/...
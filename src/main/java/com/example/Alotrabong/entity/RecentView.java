@@ -6,7 +6,9 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "recent_views")
+@Table(name = "recent_views",
+        uniqueConstraints = @UniqueConstraint(name = "uk_recent_views_user_item", columnNames = {"user_id", "item_id"}),
+        indexes = @Index(name = "ix_recent_views_user_time", columnList = "user_id, viewed_at"))
 @Getter
 @Setter
 @NoArgsConstructor
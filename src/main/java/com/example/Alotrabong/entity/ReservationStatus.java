@@ -0,0 +1,7 @@
+package com.example.Alotrabong.entity;
+
+public enum ReservationStatus {
+    HELD,       // đang giữ hàng, hết hạn thì trả lại kho
+    COMMITTED,  // đơn đã xác nhận / thanh toán: trừ hẳn
+    RELEASED    // đã trả lại kho (hết hạn hoặc huỷ đơn)
+}
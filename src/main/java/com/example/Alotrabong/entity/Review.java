@@ -5,7 +5,7 @@ import lombok.*;
 
 @Entity
 @Table(name = "reviews", uniqueConstraints = @UniqueConstraint(name = "uk_review_order_item", columnNames = {
-        "order_id", "item_id", "user_id" }))
+        "order_id", "item_id", "user_id" }), indexes = @Index(name = "ix_reviews_item_created", columnList = "item_id, created_at, review_id"))
 @Getter
 @Setter
 @NoArgsConstructor
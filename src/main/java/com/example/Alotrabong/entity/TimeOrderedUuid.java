@@ -0,0 +1,20 @@
+package com.example.Alotrabong.entity;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Khoá chính UUIDv7 dạng chuỗi 36 ký tự (cùng kiểu cột NVARCHAR(36) như GenerationType.UUID).
+ * Thay cho GenerationType.UUID ở các bảng ghi nhiều: id tăng theo thời gian nên dòng mới chèn vào cuối
+ * clustered index thay vì trang ngẫu nhiên, và id có sẵn trước khi INSERT nên Hibernate gom được batch.
+ * Số page split / độ phân mảnh thực tế đo bằng OrderIdInsertBenchmarkTest trên SQL Server.
+ */
+@IdGeneratorType(TimeOrderedUuidGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedUuid {
+}
@@ -0,0 +1,56 @@
+package com.example.Alotrabong.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.UUID;
+
+/**
+ * Sinh UUIDv7 (RFC 9562): 48 bit epoch millis | ver 7 | 12 bit đếm | variant | 62 bit ngẫu nhiên.
+ * 12 bit đếm tăng dần trong cùng 1 millisecond để id sinh trong 1 JVM luôn tăng ngặt.
+ * Chuỗi hex thường nên so sánh chuỗi (collation SQL Server) cũng ra đúng thứ tự thời gian.
+ */
+public class TimeOrderedUuidGenerator implements BeforeExecutionGenerator {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static long lastMillis = -1;
+    private static int counter;
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return next().toString();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    public static UUID next() {
+        long millis;
+        int seq;
+        synchronized (TimeOrderedUuidGenerator.class) {
+            millis = Math.max(System.currentTimeMillis(), lastMillis);
+            if (millis == lastMillis) {
+                if (++counter > 0xFFF) {
+                    // Hết 4096 id trong 1 ms: mượn ms kế tiếp thay vì chờ
+                    millis++;
+                    counter = 0;
+                }
+            } else {
+                counter = RANDOM.nextInt(0x800); // bắt đầu ngẫu nhiên ở nửa dưới, còn chỗ để tăng
+            }
+            lastMillis = millis;
+            seq = counter;
+        }
+        long msb = (millis << 16) | 0x7000L | seq;
+        long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.Alotrabong.event;
+
+/**
+ * Giỏ hàng của user vừa đổi. delta = thay đổi tổng số lượng (đã biết chính xác),
+ * null nghĩa là không rõ -> các cache phải đọc lại số lượng.
+ */
+public record CartChangedEvent(String userId, Integer delta) {
+}
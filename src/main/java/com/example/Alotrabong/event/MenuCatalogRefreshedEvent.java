@@ -0,0 +1,8 @@
+package com.example.Alotrabong.event;
+
+/**
+ * Phát ra sau khi snapshot menu mới được tráo vào (món, giá, tình trạng hoặc ảnh đã thay đổi).
+ * Các cache dựng từ dữ liệu menu lắng nghe event này để tự làm mới.
+ */
+public record MenuCatalogRefreshedEvent(long version) {
+}
@@ -0,0 +1,11 @@
+package com.example.Alotrabong.event;
+
+/** Loại sự kiện vòng đời đơn hàng ghi vào outbox */
+public enum OrderEventType {
+    ORDER_CREATED,
+    ORDER_STATUS_CHANGED,
+    PAYMENT_SUCCEEDED,
+    PAYMENT_FAILED,
+    PAYMENT_REFUND_REQUIRED, // tiền về sau khi đơn đã bị huỷ (vd. hết hạn giữ hàng)
+    SHIPPER_ASSIGNED
+}
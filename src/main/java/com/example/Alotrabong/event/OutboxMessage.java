@@ -0,0 +1,11 @@
+package com.example.Alotrabong.event;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Sự kiện outbox giao cho subscriber. Giao ít nhất 1 lần: subscriber phải chịu được nhận trùng (dùng id để bỏ trùng).
+ */
+public record OutboxMessage(Long id, String orderId, OrderEventType type, Map<String, Object> payload,
+                            LocalDateTime createdAt) {
+}
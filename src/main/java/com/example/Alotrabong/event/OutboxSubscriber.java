@@ -0,0 +1,18 @@
+package com.example.Alotrabong.event;
+
+/**
+ * Subscriber in-process của outbox (khai báo là Spring bean là được relay nhận).
+ * Sự kiện của cùng 1 đơn đến theo đúng thứ tự ghi; ném exception = relay thử lại sau (backoff),
+ * chỉ với subscriber lỗi, các sự kiện sau của đơn đó chờ tới khi sự kiện này xong.
+ */
+public interface OutboxSubscriber {
+
+    /** Tên cố định, dùng để nhớ subscriber nào đã nhận sự kiện */
+    String name();
+
+    default boolean supports(OrderEventType type) {
+        return true;
+    }
+
+    void handle(OutboxMessage message) throws Exception;
+}
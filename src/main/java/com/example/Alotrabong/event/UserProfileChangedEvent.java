@@ -0,0 +1,7 @@
+package com.example.Alotrabong.event;
+
+/**
+ * Thông tin hiển thị của user (tên, email, sđt) vừa được cập nhật.
+ */
+public record UserProfileChangedEvent(String userId) {
+}
@@ -8,6 +8,7 @@ import org.springframework.stereotype.Repository;
 
 import com.example.Alotrabong.entity.Item;
 import com.example.Alotrabong.entity.Branch;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,8 @@ public interface BranchItemPriceRepository extends JpaRepository<BranchItemPrice
     List<BranchItemPrice> findByBranch_BranchId(String branchId);
     Optional<BranchItemPrice> findByItemAndBranch(Item item, Branch branch);
     Optional<BranchItemPrice> findByBranch_BranchIdAndItem_ItemId(String branchId, String itemId);
+
+    List<BranchItemPrice> findByBranch_BranchIdAndItem_ItemIdIn(String branchId, Collection<String> itemIds);
     
     @Query("SELECT bip FROM BranchItemPrice bip WHERE bip.branch.branchId = :branchId AND bip.isAvailable = true")
     List<BranchItemPrice> findAvailableByBranchId(@Param("branchId") String branchId);
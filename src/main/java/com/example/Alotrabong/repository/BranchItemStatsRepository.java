@@ -0,0 +1,55 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.entity.BranchItemStats;
+import com.example.Alotrabong.entity.OrderStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface BranchItemStatsRepository extends JpaRepository<BranchItemStats, Long> {
+
+    @Modifying
+    @Query("""
+            update BranchItemStats s
+            set s.soldCount = s.soldCount + :qty, s.updatedAt = :now
+            where s.branch.branchId = :branchId and s.item.itemId = :itemId
+            """)
+    int incrementSold(@Param("branchId") String branchId,
+            @Param("itemId") String itemId,
+            @Param("qty") long qty,
+            @Param("now") LocalDateTime now);
+
+    // ===== Đối soát toàn bộ (xem ItemStatsRepository) =====
+
+    // Dòng không còn đơn đã giao nào (vd. đơn bị hoàn tiền) về 0
+    @Modifying
+    @Query("""
+            update BranchItemStats s
+            set s.soldCount = coalesce((select sum(oi.quantity) from OrderItem oi
+                                        where oi.item.itemId = s.item.itemId
+                                          and oi.order.branch.branchId = s.branch.branchId
+                                          and oi.order.status in :statuses), 0),
+                s.updatedAt = :now
+            """)
+    int recomputeSold(@Param("statuses") Collection<OrderStatus> statuses, @Param("now") LocalDateTime now);
+
+    // Cặp chi nhánh/món đã có đơn giao nhưng chưa có dòng thống kê
+    @Modifying
+    @Query(value = """
+            insert into branch_item_stats (branch_id, item_id, sold_count, updated_at)
+            select o.branch_id, oi.item_id, sum(oi.quantity), :now
+            from order_items oi
+            join orders o on o.order_id = oi.order_id
+            where o.status in (:statuses) and o.branch_id is not null and oi.item_id is not null
+              and not exists (select 1 from branch_item_stats b
+                              where b.branch_id = o.branch_id and b.item_id = oi.item_id)
+            group by o.branch_id, oi.item_id
+            """, nativeQuery = true)
+    int insertMissing(@Param("statuses") Collection<String> statuses, @Param("now") LocalDateTime now);
+}
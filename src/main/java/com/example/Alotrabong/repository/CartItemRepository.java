@@ -3,9 +3,13 @@ package com.example.Alotrabong.repository;
 import com.example.Alotrabong.entity.Cart;
 import com.example.Alotrabong.entity.CartItem;
 import com.example.Alotrabong.entity.Item;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,8 +17,20 @@ import java.util.Optional;
 public interface CartItemRepository extends JpaRepository<CartItem, String> {
     
     List<CartItem> findByCart(Cart cart);
+
+    // Cả giỏ kèm món + option trong 1 query (dùng cho thao tác theo lô)
+    @EntityGraph(attributePaths = {"item", "options"})
+    List<CartItem> findWithItemAndOptionsByCart(Cart cart);
     
     Optional<CartItem> findByCartAndItem(Cart cart, Item item);
     
     void deleteByCart(Cart cart);
+
+    @Query("select coalesce(sum(ci.quantity), 0) from CartItem ci where ci.cart.user.userId = :userId")
+    long sumQuantityByUserId(@Param("userId") String userId);
+
+    // [cartItemId, tổng phụ thu option]
+    @Query("select o.cartItem.cartItemId, coalesce(sum(o.extraPrice), 0) from CartItemOption o "
+            + "where o.cartItem.cartItemId in :ids group by o.cartItem.cartItemId")
+    List<Object[]> sumOptionExtras(@Param("ids") Collection<String> cartItemIds);
 }
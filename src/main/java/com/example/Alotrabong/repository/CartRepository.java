@@ -13,4 +13,5 @@ public interface CartRepository extends JpaRepository<Cart, String> {
     
     Optional<Cart> findByUserAndBranch(User user, Branch branch);
     Optional<Cart> findByUser(User user);
+    Optional<Cart> findByUser_UserId(String userId);
 }
\ No newline at end of file
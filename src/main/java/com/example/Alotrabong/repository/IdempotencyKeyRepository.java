@@ -0,0 +1,48 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    // INSERT thẳng (không merge) để 2 request cùng key đụng khoá chính, chỉ 1 bên thắng
+    @Modifying
+    @Query(value = """
+            insert into idempotency_keys (idem_key, completed, locked_until, expires_at, created_at)
+            values (:key, 0, :lockedUntil, :expiresAt, :now)
+            """, nativeQuery = true)
+    int claim(@Param("key") String key, @Param("lockedUntil") LocalDateTime lockedUntil,
+            @Param("expiresAt") LocalDateTime expiresAt, @Param("now") LocalDateTime now);
+
+    // Request đầu chết giữa chừng (hết lockedUntil): request sau giành lại khoá
+    @Modifying
+    @Query("""
+            update IdempotencyKey k set k.lockedUntil = :lockedUntil
+            where k.idemKey = :key and k.completed = false and k.lockedUntil < :now
+            """)
+    int takeOver(@Param("key") String key, @Param("lockedUntil") LocalDateTime lockedUntil,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+            update IdempotencyKey k set k.completed = true, k.result = :result, k.expiresAt = :expiresAt
+            where k.idemKey = :key
+            """)
+    int complete(@Param("key") String key, @Param("result") String result,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.idemKey = :key and k.completed = false")
+    int release(@Param("key") String key);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +16,10 @@ public interface InventoryRepository extends JpaRepository<Inventory, Integer> {
     Optional<Inventory> findByBranch_BranchIdAndItem_ItemId(String branchId, String itemId);
     
     List<Inventory> findByBranch_BranchId(String branchId);
+
+    // [itemId, quantity] của nhiều món tại 1 chi nhánh
+    @Query("SELECT i.item.itemId, i.quantity FROM Inventory i WHERE i.branch.branchId = :branchId AND i.item.itemId IN :itemIds")
+    List<Object[]> findQuantities(@Param("branchId") String branchId, @Param("itemIds") Collection<String> itemIds);
     
     @Query("SELECT i FROM Inventory i WHERE i.branch.branchId = :branchId AND i.quantity <= i.safetyStock")
     List<Inventory> findLowStockItems(@Param("branchId") String branchId);
@@ -0,0 +1,56 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.entity.InventoryReservation;
+import com.example.Alotrabong.entity.ReservationStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface InventoryReservationRepository extends JpaRepository<InventoryReservation, Long> {
+
+    List<InventoryReservation> findByOrder_OrderIdAndStatus(String orderId, ReservationStatus status);
+
+    boolean existsByOrder_OrderIdAndStatus(String orderId, ReservationStatus status);
+
+    // Đổi trạng thái cả đơn trong 1 câu lệnh: các dòng của 1 đơn luôn chuyển cùng nhau
+    @Modifying
+    @Query("""
+            update InventoryReservation r set r.status = :to, r.updatedAt = :now
+            where r.order.orderId = :orderId and r.status = :from
+            """)
+    int transition(@Param("orderId") String orderId, @Param("from") ReservationStatus from,
+            @Param("to") ReservationStatus to, @Param("now") LocalDateTime now);
+
+    // Chỉ nhả khi thật sự đã quá hạn (hạn có thể vừa được gia hạn ở instance khác)
+    @Modifying
+    @Query("""
+            update InventoryReservation r set r.status = com.example.Alotrabong.entity.ReservationStatus.RELEASED,
+                r.updatedAt = :now
+            where r.order.orderId = :orderId
+              and r.status = com.example.Alotrabong.entity.ReservationStatus.HELD
+              and r.expiresAt <= :now
+            """)
+    int releaseIfExpired(@Param("orderId") String orderId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+            update InventoryReservation r set r.expiresAt = :expiresAt, r.updatedAt = :now
+            where r.order.orderId = :orderId and r.status = com.example.Alotrabong.entity.ReservationStatus.HELD
+            """)
+    int updateExpiry(@Param("orderId") String orderId, @Param("expiresAt") LocalDateTime expiresAt,
+            @Param("now") LocalDateTime now);
+
+    // Khởi động lại: [orderId, hạn] của mọi đơn còn giữ hàng
+    @Query("""
+            select r.order.orderId, max(r.expiresAt) from InventoryReservation r
+            where r.status = com.example.Alotrabong.entity.ReservationStatus.HELD
+            group by r.order.orderId
+            """)
+    List<Object[]> findHeldDeadlines();
+}
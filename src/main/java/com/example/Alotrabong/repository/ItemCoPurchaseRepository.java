@@ -0,0 +1,23 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.entity.ItemCoPurchase;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ItemCoPurchaseRepository extends JpaRepository<ItemCoPurchase, Long> {
+
+    // (itemId, relatedItemId, pairCount) của các món cần tính lại top-N, nhiều nhất trước
+    @Query("""
+            select p.item.itemId, p.relatedItem.itemId, p.pairCount from ItemCoPurchase p
+            where p.item.itemId in :itemIds and p.pairCount >= :minSupport
+            order by p.item.itemId, p.pairCount desc
+            """)
+    List<Object[]> findPairsForItems(@Param("itemIds") Collection<String> itemIds,
+            @Param("minSupport") long minSupport);
+}
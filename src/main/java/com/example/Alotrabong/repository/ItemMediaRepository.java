@@ -3,8 +3,11 @@ package com.example.Alotrabong.repository;
 import com.example.Alotrabong.entity.ItemMedia;
 import com.example.Alotrabong.entity.MediaType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,4 +26,23 @@ public interface ItemMediaRepository extends JpaRepository<ItemMedia, Integer> {
 
     List<ItemMedia> findByItem_ItemIdAndMediaTypeOrderBySortOrderAscMediaIdAsc(
             String itemId, MediaType mediaType);
+
+    List<ItemMedia> findByMediaType(MediaType mediaType);
+
+    // (itemId, url) của nhiều món trong 1 query, cùng thứ tự với Item#getThumbnailUrl
+    @Query("""
+            select m.item.itemId, m.mediaUrl from ItemMedia m
+            where m.item.itemId in :itemIds and m.mediaType = :mediaType
+            order by m.item.itemId, coalesce(m.sortOrder, 9999), m.mediaId
+            """)
+    List<Object[]> findUrlsByItemIds(@Param("itemIds") Collection<String> itemIds,
+            @Param("mediaType") MediaType mediaType);
+
+    // Toàn bộ media của nhiều món (thay cho lazy-load mediaList từng món)
+    @Query("""
+            select m from ItemMedia m
+            where m.item.itemId in :itemIds
+            order by m.item.itemId, coalesce(m.sortOrder, 9999), m.mediaId
+            """)
+    List<ItemMedia> findByItemIds(@Param("itemIds") Collection<String> itemIds);
 }
@@ -9,11 +9,12 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ItemRepository extends JpaRepository<Item, String> {
+public interface ItemRepository extends JpaRepository<Item, String>, ItemRepositoryCustom {
 
         Page<Item> findByCategoryAndIsActiveTrue(Category category, Pageable pageable);
 
@@ -28,10 +29,14 @@ public interface ItemRepository extends JpaRepository<Item, String> {
                         """)
         Page<Item> findActiveOrderByCreatedAtDesc(Pageable pageable);
 
-        @Query("""
-                        select i from Item i
+        // Xếp hạng đọc từ item_stats (ix_item_stats_sold), không quét order_items
+        @Query(value = """
+                        select i from ItemStats s join s.item i
                         where i.isActive = true
-                        order by (select count(oi) from OrderItem oi where oi.item = i) desc
+                        order by s.soldCount desc, i.createdAt desc
+                        """, countQuery = """
+                        select count(s) from ItemStats s
+                        where s.item.isActive = true
                         """)
         Page<Item> findActiveOrderBySalesDesc(Pageable pageable);
 
@@ -53,26 +58,49 @@ public interface ItemRepository extends JpaRepository<Item, String> {
                         """)
         List<Item> findTopNewItems(Pageable pageable);
 
-        @Query("""
-                        select i from Item i
+        @Query(value = """
+                        select i from ItemStats s join s.item i
                         where i.isActive = true
-                        order by (
-                            select coalesce(sum(oi.quantity), 0)
-                            from OrderItem oi
-                            where oi.item = i
-                        ) desc
+                        order by s.soldCount desc, i.createdAt desc
+                        """, countQuery = """
+                        select count(s) from ItemStats s
+                        where s.item.isActive = true
                         """)
         Page<Item> findTopSellingItems(Pageable pageable);
 
-        @Query("""
-                        select i
-                        from Item i
+        // Best-seller theo chi nhánh (ix_bis_branch_sold)
+        @Query(value = """
+                        select i from BranchItemStats s join s.item i
+                        where s.branch.branchId = :branchId and i.isActive = true
+                        order by s.soldCount desc, i.createdAt desc
+                        """, countQuery = """
+                        select count(s) from BranchItemStats s
+                        where s.branch.branchId = :branchId and s.item.isActive = true
+                        """)
+        Page<Item> findTopSellingItemsByBranch(@Param("branchId") String branchId, Pageable pageable);
+
+        @Query(value = """
+                        select i from ItemStats s join s.item i
                         where i.isActive = true
-                        order by (
-                            select count(f)
-                            from Favorite f
-                            where f.item = i
-                        ) desc
+                        order by s.favoriteCount desc, i.createdAt desc
+                        """, countQuery = """
+                        select count(s) from ItemStats s
+                        where s.item.isActive = true
                         """)
         Page<Item> findTopFavoritedItems(Pageable pageable);
+
+        // Dựng snapshot menu: 1 query lấy luôn category
+        @Query("select i from Item i left join fetch i.category")
+        List<Item> findAllWithCategory();
+
+        // Định giá lại giỏ: [itemId, name, price, isActive, branchPrice, branchAvailable, stock] trong 1 query
+        @Query("""
+                        select i.itemId, i.name, i.price, i.isActive, bip.price, bip.isAvailable, inv.quantity
+                        from Item i
+                        left join BranchItemPrice bip on bip.item = i and bip.branch.branchId = :branchId
+                        left join Inventory inv on inv.item = i and inv.branch.branchId = :branchId
+                        where i.itemId in :itemIds
+                        """)
+        List<Object[]> findBranchPricing(@Param("branchId") String branchId,
+                        @Param("itemIds") Collection<String> itemIds);
 }
@@ -0,0 +1,15 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.dto.ItemListingQuery;
+import com.example.Alotrabong.dto.KeysetPage;
+import com.example.Alotrabong.entity.Item;
+import org.springframework.data.domain.Pageable;
+
+public interface ItemRepositoryCustom {
+
+    /**
+     * Lọc + sort + phân trang hoàn toàn trong DB. Có cursor thì dùng keyset (không OFFSET),
+     * tổng số bản ghi luôn tính bằng COUNT cùng điều kiện lọc.
+     */
+    KeysetPage<Item> findListing(ItemListingQuery query, Pageable pageable);
+}
@@ -0,0 +1,194 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.dto.ItemListingQuery;
+import com.example.Alotrabong.dto.ItemListingQuery.ListingSort;
+import com.example.Alotrabong.dto.KeysetCursor;
+import com.example.Alotrabong.dto.KeysetPage;
+import com.example.Alotrabong.entity.Item;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+public class ItemRepositoryImpl implements ItemRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public KeysetPage<Item> findListing(ItemListingQuery query, Pageable pageable) {
+        ListingSort sort = query.getSort() != null ? query.getSort() : ListingSort.NEWEST;
+        if (sort == ListingSort.RELEVANCE && query.getItemIds() == null) {
+            sort = ListingSort.NEWEST; // không có thứ hạng từ search index để giữ
+        }
+        Map<String, Object> params = new HashMap<>();
+
+        StringBuilder from = new StringBuilder(" from Item i");
+        if (sort == ListingSort.BEST || sort == ListingSort.FAVORITES || sort == ListingSort.RATING) {
+            from.append(" join ItemStats s on s.item = i");
+        }
+
+        // ---- điều kiện lọc (chỉ thêm những điều kiện có giá trị) ----
+        StringBuilder where = new StringBuilder(" where i.isActive = true");
+        if (hasText(query.getCategoryId())) {
+            where.append(" and i.category.categoryId = :categoryId");
+            params.put("categoryId", query.getCategoryId());
+        }
+        if (hasText(query.getKeyword())) {
+            where.append(" and lower(i.name) like :keyword");
+            params.put("keyword", "%" + query.getKeyword().trim().toLowerCase() + "%");
+        }
+        if (query.getItemIds() != null) {
+            if (query.getItemIds().isEmpty()) {
+                return new KeysetPage<>(Page.empty(pageable), null);
+            }
+            where.append(" and i.itemId in :itemIds");
+            params.put("itemIds", query.getItemIds());
+        }
+        if (query.getMinPrice() != null) {
+            where.append(" and i.price >= :minPrice");
+            params.put("minPrice", query.getMinPrice());
+        }
+        if (query.getMaxPrice() != null) {
+            where.append(" and i.price <= :maxPrice");
+            params.put("maxPrice", query.getMaxPrice());
+        }
+        if (sort == ListingSort.PRICE_ASC || sort == ListingSort.PRICE_DESC) {
+            where.append(" and i.price is not null");
+        }
+        if (hasText(query.getBranchId())) {
+            where.append("""
+                     and exists (
+                        select 1 from BranchItemPrice b
+                        where b.item = i and b.branch.branchId = :branchId
+                          and (b.isAvailable is null or b.isAvailable = true))""");
+            params.put("branchId", query.getBranchId());
+        }
+
+        if (sort == ListingSort.RELEVANCE) {
+            return findByRelevance(query, pageable, from.toString(), where.toString(), params);
+        }
+
+        // Giá trị sort không được null: cursor của dòng cuối phải encode được, và NULL không so sánh được
+        // trong điều kiện keyset. Cột item_stats là NOT NULL, giá đã lọc "is not null" ở trên;
+        // created_at còn dòng cũ để trống nên coalesce về mốc 1970 (dùng chung cho ORDER BY và keyset)
+        String sortExpr = switch (sort) {
+            case BEST -> "s.soldCount";
+            case FAVORITES -> "s.favoriteCount";
+            case RATING -> "s.ratingAvg";
+            case PRICE_ASC, PRICE_DESC -> "i.price";
+            case NEWEST, RELEVANCE -> "coalesce(i.createdAt, {ts '1970-01-01 00:00:00'})"; // RELEVANCE: xem trên
+        };
+        boolean asc = sort == ListingSort.PRICE_ASC;
+        String dir = asc ? " asc" : " desc";
+
+        // ---- keyset: (sortExpr, itemId) sau vị trí của trang trước ----
+        StringBuilder pageWhere = new StringBuilder(where);
+        Map<String, Object> pageParams = new HashMap<>(params);
+        String[] after = KeysetCursor.decode(query.getCursor());
+        Object afterValue = after != null ? parseSortValue(sort, after[0]) : null;
+        boolean keyset = afterValue != null;
+        if (keyset) {
+            String op = asc ? ">" : "<";
+            pageWhere.append(" and (").append(sortExpr).append(' ').append(op).append(" :afterValue or (")
+                    .append(sortExpr).append(" = :afterValue and i.itemId ").append(op).append(" :afterId))");
+            pageParams.put("afterValue", afterValue);
+            pageParams.put("afterId", after[1]);
+        }
+
+        TypedQuery<Object[]> pageQuery = entityManager.createQuery(
+                "select i, " + sortExpr + from + pageWhere + " order by " + sortExpr + dir + ", i.itemId" + dir,
+                Object[].class);
+        pageParams.forEach(pageQuery::setParameter);
+        pageQuery.setFirstResult(keyset ? 0 : (int) pageable.getOffset());
+        pageQuery.setMaxResults(pageable.getPageSize());
+
+        List<Object[]> rows = pageQuery.getResultList();
+        List<Item> items = rows.stream().map(r -> (Item) r[0]).toList();
+
+        String nextCursor = null;
+        if (rows.size() == pageable.getPageSize()) {
+            Object[] last = rows.get(rows.size() - 1);
+            nextCursor = KeysetCursor.encode(last[1], ((Item) last[0]).getItemId());
+        }
+
+        // ---- tổng số (không kèm điều kiện keyset) ----
+        long total;
+        if (query.isCountTotal()) {
+            TypedQuery<Long> countQuery = entityManager.createQuery("select count(i)" + from + where, Long.class);
+            params.forEach(countQuery::setParameter);
+            total = countQuery.getSingleResult();
+        } else {
+            total = pageable.getOffset() + items.size() + (nextCursor != null ? 1 : 0);
+        }
+        return new KeysetPage<>(new PageImpl<>(items, pageable, total), nextCursor);
+    }
+
+    /**
+     * Thứ tự do search index quyết định (itemIds đã xếp theo điểm liên quan): DB chỉ lọc ra id còn khớp điều kiện,
+     * sắp lại theo thứ hạng trong Java (tối đa vài trăm id) rồi nạp món của riêng trang hiện tại.
+     * Cursor = (thứ hạng, id) của món cuối trang.
+     */
+    private KeysetPage<Item> findByRelevance(ItemListingQuery query, Pageable pageable, String from, String where,
+            Map<String, Object> params) {
+        TypedQuery<String> idQuery = entityManager.createQuery("select i.itemId" + from + where, String.class);
+        params.forEach(idQuery::setParameter);
+        Set<String> matched = new HashSet<>(idQuery.getResultList());
+        List<String> ranked = query.getItemIds().stream().filter(matched::contains).distinct().toList();
+
+        int start = (int) Math.min(pageable.getOffset(), ranked.size());
+        String[] after = KeysetCursor.decode(query.getCursor());
+        Object afterRank = after != null ? parseSortValue(ListingSort.RELEVANCE, after[0]) : null;
+        if (afterRank != null) {
+            // Tìm lại theo id (index có thể vừa dựng lại làm lệch thứ hạng), không thấy thì dùng thứ hạng đã lưu
+            int idx = ranked.indexOf(after[1]);
+            start = Math.max(0, Math.min(idx >= 0 ? idx + 1 : (Integer) afterRank + 1, ranked.size()));
+        }
+        List<String> pageIds = ranked.subList(start, Math.min(start + pageable.getPageSize(), ranked.size()));
+
+        List<Item> items = List.of();
+        if (!pageIds.isEmpty()) {
+            Map<String, Item> byId = new HashMap<>();
+            entityManager.createQuery("select i from Item i where i.itemId in :ids", Item.class)
+                    .setParameter("ids", pageIds)
+                    .getResultList()
+                    .forEach(i -> byId.put(i.getItemId(), i));
+            items = pageIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+        }
+
+        int end = start + pageIds.size();
+        String nextCursor = !pageIds.isEmpty() && end < ranked.size()
+                ? KeysetCursor.encode(end - 1, pageIds.get(pageIds.size() - 1))
+                : null;
+        return new KeysetPage<>(new PageImpl<>(items, pageable, ranked.size()), nextCursor);
+    }
+
+    private static Object parseSortValue(ListingSort sort, String raw) {
+        try {
+            return switch (sort) {
+                case BEST, FAVORITES -> Long.parseLong(raw);
+                case RATING -> Double.parseDouble(raw);
+                case PRICE_ASC, PRICE_DESC -> new BigDecimal(raw);
+                case NEWEST -> LocalDateTime.parse(raw);
+                case RELEVANCE -> Integer.parseInt(raw);
+            };
+        } catch (RuntimeException e) {
+            return null; // token hỏng -> quay về phân trang offset
+        }
+    }
+
+    private static boolean hasText(String s) {
+        return s != null && !s.isBlank();
+    }
+}
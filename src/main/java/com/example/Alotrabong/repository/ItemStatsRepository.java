@@ -0,0 +1,147 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.entity.ItemStats;
+import com.example.Alotrabong.entity.OrderStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ItemStatsRepository extends JpaRepository<ItemStats, String> {
+
+    // Cộng dồn tại chỗ (1 câu UPDATE), trả về 0 nếu chưa có dòng thống kê cho món
+    @Modifying
+    @Query("""
+            update ItemStats s
+            set s.soldCount = s.soldCount + :qty, s.updatedAt = :now
+            where s.itemId = :itemId
+            """)
+    int incrementSold(@Param("itemId") String itemId, @Param("qty") long qty, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+            update ItemStats s
+            set s.favoriteCount = case when s.favoriteCount + :delta < 0 then 0 else s.favoriteCount + :delta end,
+                s.updatedAt = :now
+            where s.itemId = :itemId
+            """)
+    int adjustFavorites(@Param("itemId") String itemId, @Param("delta") long delta, @Param("now") LocalDateTime now);
+
+    // Cộng/trừ điểm đánh giá trong 1 câu UPDATE; vế phải đọc giá trị cũ nên rating_avg tính luôn được
+    @Modifying
+    @Query("""
+            update ItemStats s
+            set s.ratingCount = s.ratingCount + :dCount,
+                s.ratingSum = s.ratingSum + :dSum,
+                s.rating1 = s.rating1 + :d1,
+                s.rating2 = s.rating2 + :d2,
+                s.rating3 = s.rating3 + :d3,
+                s.rating4 = s.rating4 + :d4,
+                s.rating5 = s.rating5 + :d5,
+                s.ratingAvg = case when s.ratingCount + :dCount > 0
+                                   then (s.ratingSum + :dSum) * 1.0 / (s.ratingCount + :dCount)
+                                   else 0.0 end,
+                s.updatedAt = :now
+            where s.itemId = :itemId
+            """)
+    int adjustRating(@Param("itemId") String itemId,
+            @Param("dCount") long dCount, @Param("dSum") long dSum,
+            @Param("d1") long d1, @Param("d2") long d2, @Param("d3") long d3,
+            @Param("d4") long d4, @Param("d5") long d5,
+            @Param("now") LocalDateTime now);
+
+    // (itemId, ratingCount, ratingAvg) cho 1 trang danh sách
+    @Query("select s.itemId, s.ratingCount, s.ratingAvg from ItemStats s where s.itemId in :itemIds")
+    List<Object[]> findRatings(@Param("itemIds") Collection<String> itemIds);
+
+    // ===== Đối soát toàn bộ bằng câu lệnh tập hợp (không đọc-sửa-ghi qua Java) =====
+    // UPDATE giữ khoá dòng đến khi commit: incrementSold/adjustFavorites/adjustRating chạy song song
+    // hoặc đã commit trước (nằm trong số tổng hợp) hoặc chờ rồi cộng delta lên số mới -> không mất lượt cộng
+
+    // Thêm dòng cho các món chưa có thống kê, tính luôn bộ đếm của riêng các món đó (đủ rẻ để chạy mỗi lần khởi động);
+    // SQL chuẩn nên chạy được cả SQL Server lẫn H2. active = true (bind tham số để đúng kiểu bit/boolean)
+    @Modifying
+    @Query(value = """
+            insert into item_stats (item_id, sold_count, favorite_count, rating_count, rating_sum,
+                                    rating_1, rating_2, rating_3, rating_4, rating_5, rating_avg, updated_at)
+            select x.item_id, x.sold, x.favs,
+                   x.r1 + x.r2 + x.r3 + x.r4 + x.r5,
+                   x.r1 + 2 * x.r2 + 3 * x.r3 + 4 * x.r4 + 5 * x.r5,
+                   x.r1, x.r2, x.r3, x.r4, x.r5,
+                   case when x.r1 + x.r2 + x.r3 + x.r4 + x.r5 > 0
+                        then (x.r1 + 2 * x.r2 + 3 * x.r3 + 4 * x.r4 + 5 * x.r5) * 1.0
+                             / (x.r1 + x.r2 + x.r3 + x.r4 + x.r5)
+                        else 0.0 end,
+                   :now
+            from (select i.item_id,
+                         coalesce((select sum(oi.quantity) from order_items oi
+                                   join orders o on o.order_id = oi.order_id
+                                   where oi.item_id = i.item_id and o.status in (:statuses)), 0) as sold,
+                         (select count(*) from favorites f where f.item_id = i.item_id) as favs,
+                         (select count(*) from reviews r where r.item_id = i.item_id and r.rating = 1
+                            and (r.is_active is null or r.is_active = :active)) as r1,
+                         (select count(*) from reviews r where r.item_id = i.item_id and r.rating = 2
+                            and (r.is_active is null or r.is_active = :active)) as r2,
+                         (select count(*) from reviews r where r.item_id = i.item_id and r.rating = 3
+                            and (r.is_active is null or r.is_active = :active)) as r3,
+                         (select count(*) from reviews r where r.item_id = i.item_id and r.rating = 4
+                            and (r.is_active is null or r.is_active = :active)) as r4,
+                         (select count(*) from reviews r where r.item_id = i.item_id and r.rating = 5
+                            and (r.is_active is null or r.is_active = :active)) as r5
+                  from items i
+                  where not exists (select 1 from item_stats s where s.item_id = i.item_id)) x
+            """, nativeQuery = true)
+    int insertMissing(@Param("statuses") Collection<String> statuses, @Param("active") boolean active,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+            update ItemStats s
+            set s.soldCount = coalesce((select sum(oi.quantity) from OrderItem oi
+                                        where oi.item.itemId = s.itemId and oi.order.status in :statuses), 0),
+                s.favoriteCount = (select count(f) from Favorite f where f.item.itemId = s.itemId),
+                s.updatedAt = :now
+            """)
+    int recomputeCounters(@Param("statuses") Collection<OrderStatus> statuses, @Param("now") LocalDateTime now);
+
+    // Phân bố 1-5 sao từ review đang hiển thị; sau đó gọi recomputeRatingTotals để ra tổng / trung bình
+    @Modifying
+    @Query("""
+            update ItemStats s
+            set s.rating1 = (select count(r) from Review r where r.itemId = s.itemId and r.rating = 1
+                             and (r.isActive is null or r.isActive = true)),
+                s.rating2 = (select count(r) from Review r where r.itemId = s.itemId and r.rating = 2
+                             and (r.isActive is null or r.isActive = true)),
+                s.rating3 = (select count(r) from Review r where r.itemId = s.itemId and r.rating = 3
+                             and (r.isActive is null or r.isActive = true)),
+                s.rating4 = (select count(r) from Review r where r.itemId = s.itemId and r.rating = 4
+                             and (r.isActive is null or r.isActive = true)),
+                s.rating5 = (select count(r) from Review r where r.itemId = s.itemId and r.rating = 5
+                             and (r.isActive is null or r.isActive = true)),
+                s.updatedAt = :now
+            """)
+    int recomputeRatings(@Param("now") LocalDateTime now);
+
+    // Chạy sau recomputeRatings trong cùng transaction: tổng/trung bình suy ra từ phân bố 1-5 sao vừa tính
+    @Modifying
+    @Query("""
+            update ItemStats s
+            set s.ratingCount = s.rating1 + s.rating2 + s.rating3 + s.rating4 + s.rating5,
+                s.ratingSum = s.rating1 + 2 * s.rating2 + 3 * s.rating3 + 4 * s.rating4 + 5 * s.rating5,
+                s.ratingAvg = case when s.rating1 + s.rating2 + s.rating3 + s.rating4 + s.rating5 > 0
+                                   then (s.rating1 + 2 * s.rating2 + 3 * s.rating3 + 4 * s.rating4 + 5 * s.rating5) * 1.0
+                                        / (s.rating1 + s.rating2 + s.rating3 + s.rating4 + s.rating5)
+                                   else 0.0 end
+            """)
+    int recomputeRatingTotals();
+
+    // Chỉ lấy 3 cột bộ đếm (không load Item) - dùng cho điểm phổ biến của search index
+    @Query("select s.itemId, s.soldCount, s.favoriteCount from ItemStats s")
+    List<Object[]> findAllCounters();
+}
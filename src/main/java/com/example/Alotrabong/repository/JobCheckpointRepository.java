@@ -0,0 +1,9 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+}
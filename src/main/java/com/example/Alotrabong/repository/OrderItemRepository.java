@@ -12,6 +12,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,6 +20,14 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, String> {
 
     List<OrderItem> findByOrder(Order order);
 
+    // Dòng món của cả trang đơn trong 1 query (orderId, orderItemId, itemId, itemName, quantity, unitPrice)
+    @Query("""
+            SELECT oi.order.orderId, oi.orderItemId, i.itemId, COALESCE(oi.itemName, i.name), oi.quantity, oi.unitPrice
+            FROM OrderItem oi LEFT JOIN oi.item i
+            WHERE oi.order.orderId IN :orderIds
+          """)
+    List<Object[]> findDtoRowsByOrderIds(@Param("orderIds") Collection<String> orderIds);
+
     @Query("""
             SELECT oi.item.itemId, SUM(oi.quantity)
             FROM OrderItem oi
@@ -54,4 +63,18 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, String> {
             @Param("endDate") LocalDateTime endDate,
             Pageable pageable
     );
+
+    // (orderId, itemId) của các đơn tạo trong (from, to] - dữ liệu giỏ hàng cho job đồng mua
+    @Query("""
+            select oi.order.orderId, oi.item.itemId from OrderItem oi
+            where oi.order.createdAt > :from and oi.order.createdAt <= :to
+              and oi.order.status not in :excluded
+            order by oi.order.orderId
+            """)
+    List<Object[]> findBasketLines(@Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("excluded") List<OrderStatus> excluded);
+
+    @Query("select min(oi.order.createdAt) from OrderItem oi")
+    LocalDateTime findFirstOrderLineCreatedAt();
 }
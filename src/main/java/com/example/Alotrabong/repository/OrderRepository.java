@@ -3,24 +3,27 @@ package com.example.Alotrabong.repository;
 import com.example.Alotrabong.entity.Branch;
 import com.example.Alotrabong.entity.Order;
 import com.example.Alotrabong.entity.OrderStatus;
+import com.example.Alotrabong.entity.PaymentMethod;
 import com.example.Alotrabong.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.repository.query.Param;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, String> {
+public interface OrderRepository extends JpaRepository<Order, String>, OrderRepositoryCustom {
 
   // ===== Lọc nhanh theo user/branch/status (sort mới nhất) =====
   List<Order> findByUserOrderByCreatedAtDesc(User user);
@@ -90,6 +93,20 @@ public interface OrderRepository extends JpaRepository<Order, String> {
 
   Long countByBranch_BranchIdAndStatus(String branchId, OrderStatus status);
 
+  // Bảng đơn trực tiếp: nạp 1 lần cho mỗi chi nhánh (đơn đang mở + số đơn theo trạng thái)
+  @Query("""
+      select o.orderId, o.status, o.paymentMethod, o.paymentStatus, o.totalAmount, o.shippingAddress,
+             o.createdAt, u.fullName, u.phone
+      from Order o join o.user u
+      where o.branch.branchId = :branchId and o.status in :statuses
+      order by o.createdAt desc
+      """)
+  List<Object[]> findBoardRowsByBranch(@Param("branchId") String branchId,
+      @Param("statuses") Collection<OrderStatus> statuses);
+
+  @Query("select o.status, count(o) from Order o where o.branch.branchId = :branchId group by o.status")
+  List<Object[]> countByBranchGroupByStatus(@Param("branchId") String branchId);
+
   // Revenue methods
   @Query("SELECT COALESCE(SUM(o.totalAmount), 0) FROM Order o WHERE o.branch.branchId = :branchId AND CAST(o.createdAt AS date) = CURRENT_DATE AND o.status = :status")
   BigDecimal getTodayRevenue(@Param("branchId") String branchId, @Param("status") OrderStatus status);
@@ -132,8 +149,45 @@ public interface OrderRepository extends JpaRepository<Order, String> {
 
   Optional<Order> findByOrderId(String orderId);
 
-  // OrderRepository.java
-  @Query("SELECT o FROM Order o WHERE function('REPLACE', o.orderId, '-', '') = :ref")
-  Optional<Order> findByOrderIdNoDash(@Param("ref") String ref);
+  // Mã tham chiếu cổng thanh toán (vnp_TxnRef): seek theo ix_orders_txn_ref
+  Optional<Order> findByTxnRef(String txnRef);
+
+  @Modifying
+  @Query("update Order o set o.txnRef = :txnRef where o.orderId = :orderId and o.txnRef is null")
+  int assignTxnRef(@Param("orderId") String orderId, @Param("txnRef") String txnRef);
+
+  // Các cập nhật trạng thái có điều kiện dưới đây dùng khi job hết hạn giữ hàng và callback thanh toán có thể
+  // chạy cùng lúc: điều kiện nằm trong UPDATE nên chỉ 1 bên thắng (cả 2 đều khoá reservation trước rồi mới tới đơn)
+
+  // Hết hạn giữ hàng: huỷ đơn nếu vẫn PENDING và chưa thanh toán
+  @Modifying
+  @Query("""
+      update Order o set o.status = com.example.Alotrabong.entity.OrderStatus.CANCELLED, o.updatedAt = :now
+      where o.orderId = :orderId and o.status = com.example.Alotrabong.entity.OrderStatus.PENDING
+        and (o.paymentStatus is null or o.paymentStatus <> com.example.Alotrabong.entity.PaymentStatus.PAID)
+      """)
+  int cancelIfUnpaid(@Param("orderId") String orderId, @Param("now") LocalDateTime now);
+
+  // Tiền về cho đơn chưa bị huỷ
+  @Modifying
+  @Query("""
+      update Order o set o.paymentStatus = com.example.Alotrabong.entity.PaymentStatus.PAID,
+        o.paymentMethod = :method, o.updatedAt = :now
+      where o.orderId = :orderId and o.status <> com.example.Alotrabong.entity.OrderStatus.CANCELLED
+        and (o.paymentStatus is null or o.paymentStatus <> com.example.Alotrabong.entity.PaymentStatus.PAID)
+      """)
+  int markPaidIfOpen(@Param("orderId") String orderId, @Param("method") PaymentMethod method,
+      @Param("now") LocalDateTime now);
+
+  // Tiền về sau khi đơn đã bị huỷ: chỉ ghi nhận đã thu để hoàn (CANCELLED -> REFUNDED yêu cầu PAID)
+  @Modifying
+  @Query("""
+      update Order o set o.paymentStatus = com.example.Alotrabong.entity.PaymentStatus.PAID,
+        o.paymentMethod = :method, o.updatedAt = :now
+      where o.orderId = :orderId and o.status = com.example.Alotrabong.entity.OrderStatus.CANCELLED
+        and (o.paymentStatus is null or o.paymentStatus <> com.example.Alotrabong.entity.PaymentStatus.PAID)
+      """)
+  int markPaidIfCancelled(@Param("orderId") String orderId, @Param("method") PaymentMethod method,
+      @Param("now") LocalDateTime now);
 
 }
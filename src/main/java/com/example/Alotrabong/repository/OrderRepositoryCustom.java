@@ -0,0 +1,19 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.entity.OrderStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderRepositoryCustom {
+
+    /**
+     * Một trang đơn dạng projection (không nạp entity, không lazy load), sort createdAt desc, orderId desc.
+     * Bộ lọc null thì bỏ qua; afterAt/afterId là vị trí keyset của trang trước (null = trang đầu).
+     * <p>
+     * Cột: orderId, status, paymentMethod, totalAmount, shippingAddress, notes, createdAt, updatedAt,
+     * userId, customerName, customerPhone, branchId
+     */
+    List<Object[]> findOrderRows(String userId, String branchId, OrderStatus status,
+                                 LocalDateTime afterAt, String afterId, int limit);
+}
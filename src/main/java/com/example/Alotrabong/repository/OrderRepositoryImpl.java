@@ -0,0 +1,52 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.entity.OrderStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OrderRepositoryImpl implements OrderRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Object[]> findOrderRows(String userId, String branchId, OrderStatus status,
+                                        LocalDateTime afterAt, String afterId, int limit) {
+        Map<String, Object> params = new HashMap<>();
+
+        // Chỉ thêm điều kiện có giá trị để SQL Server dùng đúng index (user/branch/status, created_at)
+        StringBuilder where = new StringBuilder(" where 1 = 1");
+        if (userId != null) {
+            where.append(" and o.user.userId = :userId");
+            params.put("userId", userId);
+        }
+        if (branchId != null) {
+            where.append(" and o.branch.branchId = :branchId");
+            params.put("branchId", branchId);
+        }
+        if (status != null) {
+            where.append(" and o.status = :status");
+            params.put("status", status);
+        }
+        if (afterAt != null && afterId != null) {
+            where.append(" and (o.createdAt < :afterAt or (o.createdAt = :afterAt and o.orderId < :afterId))");
+            params.put("afterAt", afterAt);
+            params.put("afterId", afterId);
+        }
+
+        TypedQuery<Object[]> query = entityManager.createQuery("""
+                select o.orderId, o.status, o.paymentMethod, o.totalAmount, o.shippingAddress, o.notes,
+                       o.createdAt, o.updatedAt, u.userId, u.fullName, u.phone, o.branch.branchId
+                from Order o join o.user u""" + where + " order by o.createdAt desc, o.orderId desc",
+                Object[].class);
+        params.forEach(query::setParameter);
+        query.setMaxResults(limit);
+        return query.getResultList();
+    }
+}
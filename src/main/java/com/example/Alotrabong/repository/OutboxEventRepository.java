@@ -0,0 +1,51 @@
+package com.example.Alotrabong.repository;
+
+import com.example.Alotrabong.entity.OutboxEvent;
+import com.example.Alotrabong.entity.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Sự kiện PENDING tới lượt giao (chưa thử lần nào hoặc đã hết thời gian chờ backoff)
+    @Query("""
+            select e from OutboxEvent e
+            where e.status = com.example.Alotrabong.entity.OutboxStatus.PENDING
+              and (e.nextAttemptAt is null or e.nextAttemptAt <= :now)
+            order by e.id
+            """)
+    List<OutboxEvent> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Đơn nào trong danh sách đang có sự kiện chờ backoff (sự kiện đó luôn là sự kiện chưa xong đầu tiên của đơn)
+    @Query("""
+            select distinct e.aggregateId from OutboxEvent e
+            where e.status = com.example.Alotrabong.entity.OutboxStatus.PENDING
+              and e.nextAttemptAt > :now and e.aggregateId in :aggregateIds
+            """)
+    List<String> findWaitingAggregates(@Param("aggregateIds") Collection<String> aggregateIds,
+                                       @Param("now") LocalDateTime now);
+
+    long countByStatus(OutboxStatus status);
+
+    @Query("select min(e.createdAt) from OutboxEvent e where e.status = :status")
+    LocalDateTime findOldestCreatedAt(@Param("status") OutboxStatus status);
+
+    @Modifying
+    @Query("update OutboxEvent e set e.status = com.example.Alotrabong.entity.OutboxStatus.DONE, "
+            + "e.processedAt = :now where e.id in :ids")
+    int markDone(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.status = com.example.Alotrabong.entity.OutboxStatus.DONE "
+            + "and e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -1,13 +1,25 @@
 package com.example.Alotrabong.repository;
 
 import com.example.Alotrabong.entity.Payment;
+import com.example.Alotrabong.entity.PaymentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, String> {
     
     List<Payment> findByOrderId(String orderId);
+
+    boolean existsByTxnRef(String txnRef);
+
+    @Modifying
+    @Query("update Payment p set p.status = :status, p.txnCode = :txnCode, p.paidAt = :paidAt where p.txnRef = :txnRef")
+    int updateStatusByTxnRef(@Param("txnRef") String txnRef, @Param("status") PaymentStatus status,
+                             @Param("txnCode") String txnCode, @Param("paidAt") LocalDateTime paidAt);
 }
\ No newline at end of file
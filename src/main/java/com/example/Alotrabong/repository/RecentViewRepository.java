@@ -1,12 +1,38 @@
 package com.example.Alotrabong.repository;
 
 import com.example.Alotrabong.entity.RecentView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface RecentViewRepository extends JpaRepository<RecentView, Integer> {
+public interface RecentViewRepository extends JpaRepository<RecentView, Long> {
     List<RecentView> findByUser_UserIdOrderByViewedAtDesc(String userId);
+
+    // (itemId, viewedAt) mới nhất trước - không load Item
+    @Query("""
+            select r.item.itemId, r.viewedAt from RecentView r
+            where r.user.userId = :userId
+            order by r.viewedAt desc
+            """)
+    List<Object[]> findRecentItems(@Param("userId") String userId, Pageable pageable);
+
+    // Mỗi (user, item) chỉ 1 dòng: xem lại thì chỉ cập nhật thời điểm
+    @Modifying
+    @Query("""
+            update RecentView r set r.viewedAt = :viewedAt
+            where r.user.userId = :userId and r.item.itemId = :itemId
+            """)
+    int touch(@Param("userId") String userId,
+            @Param("itemId") String itemId,
+            @Param("viewedAt") LocalDateTime viewedAt);
+
+    @Query("select r.viewId from RecentView r where r.user.userId = :userId order by r.viewedAt desc")
+    List<Long> findViewIdsNewestFirst(@Param("userId") String userId);
 }
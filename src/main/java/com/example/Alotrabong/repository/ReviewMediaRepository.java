@@ -2,8 +2,20 @@ package com.example.Alotrabong.repository;
 
 import com.example.Alotrabong.entity.ReviewMedia;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface ReviewMediaRepository extends JpaRepository<ReviewMedia, Long> {
     List<ReviewMedia> findByReview_ReviewId(String reviewId);
+
+    // (reviewId, mediaUrl) của cả trang đánh giá trong 1 query
+    @Query("""
+            select m.review.reviewId, m.mediaUrl from ReviewMedia m
+            where m.review.reviewId in :reviewIds
+            order by m.mediaId
+            """)
+    List<Object[]> findUrlsByReviewIds(@Param("reviewIds") Collection<String> reviewIds);
 }
@@ -1,9 +1,13 @@
 package com.example.Alotrabong.repository;
 
 import com.example.Alotrabong.entity.Review;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -12,4 +16,23 @@ public interface ReviewRepository extends JpaRepository<Review, String> {
     List<Review> findByItemIdOrderByCreatedAtDesc(String itemId);
     
     List<Review> findByUserIdOrderByCreatedAtDesc(String userId);
+
+    // Feed đánh giá theo keyset (createdAt desc, reviewId desc); Pageable chỉ dùng để giới hạn số dòng
+    @Query("""
+            select r from Review r
+            where r.itemId = :itemId and (r.isActive is null or r.isActive = true)
+            order by r.createdAt desc, r.reviewId desc
+            """)
+    List<Review> findFeedFirst(@Param("itemId") String itemId, Pageable limit);
+
+    @Query("""
+            select r from Review r
+            where r.itemId = :itemId and (r.isActive is null or r.isActive = true)
+              and (r.createdAt < :afterAt or (r.createdAt = :afterAt and r.reviewId < :afterId))
+            order by r.createdAt desc, r.reviewId desc
+            """)
+    List<Review> findFeedAfter(@Param("itemId") String itemId,
+            @Param("afterAt") LocalDateTime afterAt,
+            @Param("afterId") String afterId,
+            Pageable limit);
 }
\ No newline at end of file
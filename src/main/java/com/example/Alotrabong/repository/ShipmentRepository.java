@@ -1,15 +1,18 @@
 package com.example.Alotrabong.repository;
 
 import com.example.Alotrabong.entity.Order;
+import com.example.Alotrabong.entity.OrderStatus;
 import com.example.Alotrabong.entity.Shipment;
 import com.example.Alotrabong.entity.Shipper;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,6 +41,12 @@ public interface ShipmentRepository extends JpaRepository<Shipment, String> {
 
     List<Shipment> findByShipper_ShipperId(String shipperId);
 
+    // Tên shipper của các đơn đang mở trong chi nhánh (bảng đơn trực tiếp)
+    @Query("SELECT s.order.orderId, u.fullName FROM Shipment s JOIN s.shipper sh JOIN sh.user u " +
+            "WHERE s.order.branch.branchId = :branchId AND s.order.status IN :statuses")
+    List<Object[]> findShipperNamesByBranchAndOrderStatus(@Param("branchId") String branchId,
+                                                          @Param("statuses") Collection<OrderStatus> statuses);
+
     // 1️⃣ Đếm số đơn theo trạng thái (0: chờ nhận, 1: đang giao, 2: đã giao)
     long countByShipper_ShipperIdAndStatus(String shipperId, Integer status);
 
@@ -53,4 +62,14 @@ public interface ShipmentRepository extends JpaRepository<Shipment, String> {
     List<Shipment> findByShipper_ShipperIdAndStatusAndCreatedAtBetween(
             String shipperId, Integer status, LocalDateTime start, LocalDateTime end);
 
+    // Đồng bộ shipment theo trạng thái đơn (chỉ tiến, không lùi; dòng đã đúng trạng thái thì bỏ qua)
+    @Modifying
+    @Query("UPDATE Shipment s SET s.status = 2, s.deliveredTime = COALESCE(s.deliveredTime, :now) " +
+            "WHERE s.order.orderId = :orderId AND s.status IN (0, 1)")
+    int markDelivered(@Param("orderId") String orderId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE Shipment s SET s.status = 3 WHERE s.order.orderId = :orderId AND s.status IN (0, 1)")
+    int markCanceled(@Param("orderId") String orderId);
+
 }
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 import java.util.Optional;
@@ -42,6 +43,10 @@ public interface UserRepository extends JpaRepository<User, String> {
 
     long countByIsActive(Boolean isActive);
 
+    // (userId, fullName) để hiển thị tên người đánh giá theo lô
+    @Query("select u.userId, u.fullName from User u where u.userId in :ids")
+    List<Object[]> findFullNamesByIds(@Param("ids") Collection<String> ids);
+
     Optional<User> findByEmailIgnoreCase(String email);
     boolean existsByEmailIgnoreCase(String email);
 
@@ -0,0 +1,29 @@
+package com.example.Alotrabong.scheduler;
+
+import com.example.Alotrabong.service.BranchOrderBoardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BranchOrderBoardResyncScheduler {
+
+    private final BranchOrderBoardService branchOrderBoardService;
+
+    /**
+     * Nạp lại bảng đơn trực tiếp của các chi nhánh đang giữ trong bộ nhớ (sửa lệch nếu có)
+     * Mặc định mỗi 10 phút (app.branch-board.resync-interval-ms)
+     */
+    @Scheduled(fixedDelayString = "${app.branch-board.resync-interval-ms:600000}",
+            initialDelayString = "${app.branch-board.resync-interval-ms:600000}")
+    public void resyncBranchOrderBoards() {
+        try {
+            branchOrderBoardService.resyncAll();
+        } catch (Exception e) {
+            log.error("Error in scheduled task: Resync branch order boards", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.Alotrabong.scheduler;
+
+import com.example.Alotrabong.service.impl.RedisCartServiceImpl;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "app.cart.store", havingValue = "redis")
+@RequiredArgsConstructor
+@Slf4j
+public class CartFlushScheduler {
+
+    private final RedisCartServiceImpl redisCartService;
+
+    /**
+     * Ghi các giỏ hàng đã đổi trên Redis xuống carts/cart_items theo lô
+     * Mặc định mỗi 3 giây (app.cart.flush-interval-ms)
+     */
+    @Scheduled(fixedDelayString = "${app.cart.flush-interval-ms:3000}")
+    public void flushCarts() {
+        try {
+            redisCartService.flush();
+        } catch (Exception e) {
+            log.error("Error in scheduled task: Flush carts", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.Alotrabong.scheduler;
+
+import com.example.Alotrabong.service.IdempotencyService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyCleanupScheduler {
+
+    private final IdempotencyService idempotencyService;
+
+    /**
+     * Xoá idempotency key đã hết hạn
+     * Chạy mỗi giờ (phút 15)
+     */
+    @Scheduled(cron = "0 15 * * * ?")
+    public void purgeExpiredKeys() {
+        try {
+            int removed = idempotencyService.purgeExpired();
+            if (removed > 0) {
+                log.info("Purged {} expired idempotency keys", removed);
+            }
+        } catch (Exception e) {
+            log.error("Error in scheduled task: Purge expired idempotency keys", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.Alotrabong.scheduler;
+
+import com.example.Alotrabong.service.ItemStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ItemStatsScheduler {
+
+    private final ItemStatsService itemStatsService;
+
+    /**
+     * Đối soát lại bộ đếm bán/yêu thích từ order_items & favorites
+     * Chạy mỗi ngày lúc 03:30 (ngoài giờ cao điểm)
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void rebuildItemStats() {
+        log.info("Starting scheduled task: Rebuild item stats");
+        try {
+            itemStatsService.rebuildAll();
+            log.info("Scheduled task completed successfully");
+        } catch (Exception e) {
+            log.error("Error in scheduled task: Rebuild item stats", e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.Alotrabong.scheduler;
+
+import com.example.Alotrabong.service.OrderStatusHistoryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderStatusHistoryFlushScheduler {
+
+    private final OrderStatusHistoryService orderStatusHistoryService;
+
+    /**
+     * Đẩy lịch sử trạng thái đơn từ bộ đệm xuống order_status_history theo lô
+     * Mặc định mỗi 1 giây (app.order-history.flush-interval-ms)
+     */
+    @Scheduled(fixedDelayString = "${app.order-history.flush-interval-ms:1000}")
+    public void flushOrderStatusHistory() {
+        try {
+            orderStatusHistoryService.flush();
+        } catch (Exception e) {
+            log.error("Error in scheduled task: Flush order status history", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.Alotrabong.scheduler;
+
+import com.example.Alotrabong.service.OutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Relay outbox chỉ nên bật ở 1 instance (app.outbox.relay-enabled=false ở các instance còn lại)
+ * để giữ thứ tự sự kiện theo đơn.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "app.outbox.relay-enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelayScheduler {
+
+    // Số lô tối đa mỗi lượt khi còn tồn (tránh giữ thread scheduler quá lâu)
+    private static final int MAX_ROUNDS = 10;
+
+    private final OutboxService outboxService;
+
+    /**
+     * Giao sự kiện outbox cho các subscriber theo lô
+     * Mặc định mỗi 500ms (app.outbox.poll-interval-ms)
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:500}")
+    public void relayOutbox() {
+        try {
+            for (int i = 0; i < MAX_ROUNDS && outboxService.relay() > 0; i++) {
+                // còn sự kiện thì chạy lô tiếp
+            }
+        } catch (Exception e) {
+            log.error("Error in scheduled task: Relay outbox events", e);
+        }
+    }
+
+    /**
+     * Xoá sự kiện đã giao xong quá hạn giữ (app.outbox.retention)
+     * Chạy mỗi ngày lúc 03:30
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void purgeProcessedEvents() {
+        try {
+            int removed = outboxService.purgeProcessed();
+            log.info("Purged {} processed outbox events", removed);
+        } catch (Exception e) {
+            log.error("Error in scheduled task: Purge processed outbox events", e);
+        }
+    }
+}
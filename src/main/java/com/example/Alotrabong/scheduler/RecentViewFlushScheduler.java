@@ -0,0 +1,28 @@
+package com.example.Alotrabong.scheduler;
+
+import com.example.Alotrabong.service.RecentViewService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RecentViewFlushScheduler {
+
+    private final RecentViewService recentViewService;
+
+    /**
+     * Đẩy "món đã xem" từ bộ đệm xuống recent_views theo lô
+     * Mặc định mỗi 5 giây (app.recent-views.flush-interval-ms)
+     */
+    @Scheduled(fixedDelayString = "${app.recent-views.flush-interval-ms:5000}")
+    public void flushRecentViews() {
+        try {
+            recentViewService.flush();
+        } catch (Exception e) {
+            log.error("Error in scheduled task: Flush recent views", e);
+        }
+    }
+}
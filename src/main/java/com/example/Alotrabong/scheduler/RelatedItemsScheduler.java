@@ -0,0 +1,29 @@
+package com.example.Alotrabong.scheduler;
+
+import com.example.Alotrabong.service.RelatedItemsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RelatedItemsScheduler {
+
+    private final RelatedItemsService relatedItemsService;
+
+    /**
+     * Cập nhật gợi ý "thường được mua cùng" từ các đơn mới
+     * Chạy mỗi 30 phút, chỉ đọc phần đơn phát sinh sau lần chạy trước
+     */
+    @Scheduled(cron = "${app.related-items.cron:0 */30 * * * ?}")
+    public void updateCoPurchase() {
+        log.debug("Starting scheduled task: Update co-purchase recommendations");
+        try {
+            relatedItemsService.rebuildIncremental();
+        } catch (Exception e) {
+            log.error("Error in scheduled task: Update co-purchase recommendations", e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.dto.BranchOrderBoardDTO;
+
+import java.util.Map;
+
+/**
+ * Bảng đơn trực tiếp theo chi nhánh, giữ trong bộ nhớ và cập nhật từ sự kiện outbox của đơn hàng.
+ * Màn hình chi nhánh nhận ảnh chụp khi subscribe rồi nhận delta qua topic STOMP, không cần poll DB.
+ */
+public interface BranchOrderBoardService {
+
+    /** Topic STOMP nhận delta của chi nhánh */
+    String topic(String branchId);
+
+    BranchOrderBoardDTO snapshot(String branchId);
+
+    /** Số đơn tổng hợp (totalOrders, pendingOrders, processingOrders, completedOrders, cancelledOrders) */
+    Map<String, Long> getOrderStats(String branchId);
+
+    /** Số đơn theo từng trạng thái (tên enum OrderStatus) */
+    Map<String, Long> getStatusCounts(String branchId);
+
+    /** Nạp lại các bảng đang giữ từ DB và đẩy ảnh chụp mới cho client (tự sửa nếu lệch) */
+    void resyncAll();
+}
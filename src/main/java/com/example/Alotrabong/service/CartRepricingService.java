@@ -0,0 +1,15 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.dto.CartItemDTO;
+import com.example.Alotrabong.dto.CartRepricingResult;
+
+import java.util.List;
+
+public interface CartRepricingService {
+
+    /**
+     * Tính lại đơn giá (giá chi nhánh + phụ thu option), khả dụng và tồn kho của các dòng giỏ tại 1 chi nhánh.
+     * Chỉ đọc, không ghi gì vào giỏ.
+     */
+    CartRepricingResult reprice(List<CartItemDTO> lines, String branchId);
+}
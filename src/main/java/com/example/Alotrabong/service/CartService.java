@@ -1,7 +1,9 @@
 package com.example.Alotrabong.service;
 
 import com.example.Alotrabong.dto.AddToCartRequest;
+import com.example.Alotrabong.dto.CartBatchRequest;
 import com.example.Alotrabong.dto.CartItemDTO;
+import com.example.Alotrabong.dto.CartRepricingResult;
 
 import jakarta.servlet.http.HttpSession;
 
@@ -25,4 +27,25 @@ public interface CartService {
     int getCartItemCount(String userId, String branchId);
 
     int getCartCountForUser(String userId, HttpSession session);
+
+    /**
+     * Áp nhiều thao tác thêm/sửa/xoá trong 1 transaction, giá và tồn kho kiểm tra theo lô.
+     * Trả về trạng thái giỏ sau khi áp dụng.
+     */
+    List<CartItemDTO> applyBatch(String userId, CartBatchRequest request);
+
+    /**
+     * Định giá lại cả giỏ theo chi nhánh (khi user đổi chi nhánh) và lưu đơn giá mới.
+     * Dòng không còn bán / thiếu hàng vẫn giữ trong giỏ, chỉ được báo trong kết quả.
+     */
+    CartRepricingResult repriceCart(String userId, String branchId);
+
+    /** Ảnh chụp giỏ hàng nhất quán (đọc 1 lần) để tạo đơn */
+    List<CartItemDTO> getCheckoutSnapshot(String userId);
+
+    /**
+     * Bỏ các dòng đã đặt khỏi giỏ sau khi tạo đơn, gọi trong transaction tạo đơn.
+     * Chỉ trừ đúng số lượng trong snapshot, món khách vừa thêm trong lúc đặt vẫn còn.
+     */
+    void consumeCheckoutSnapshot(String userId, List<CartItemDTO> snapshot);
 }
\ No newline at end of file
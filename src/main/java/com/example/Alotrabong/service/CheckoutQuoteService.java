@@ -0,0 +1,27 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.dto.CartItemDTO;
+import com.example.Alotrabong.dto.CartRepricingResult;
+import com.example.Alotrabong.dto.CheckoutQuote;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface CheckoutQuoteService {
+
+    /**
+     * Báo giá cho trang checkout: định giá lại giỏ theo chi nhánh (lưu giá mới vào giỏ), phí ship, mã giảm giá,
+     * kèm token ký. userLogin null = khách chưa đăng nhập, trả báo giá rỗng.
+     */
+    CheckoutQuote quote(String userLogin, String branchId, String couponCode);
+
+    /** Tính tổng cho giỏ đã định giá, không ký token (dùng khi tạo đơn không có token hợp lệ) */
+    CheckoutQuote price(String userIdOrLogin, CartRepricingResult priced, String couponCode);
+
+    /**
+     * Token còn hạn, đúng chữ ký, đúng user / chi nhánh / mã giảm giá và giỏ không đổi kể từ lúc báo giá
+     * -> tổng tiền trong token. Ngược lại empty (caller tự tính lại).
+     */
+    Optional<CheckoutQuote.Totals> verify(String token, String userId, String branchId, String couponCode,
+                                          List<CartItemDTO> cartLines);
+}
@@ -1,9 +1,8 @@
 package com.example.Alotrabong.service;
 
-import com.example.Alotrabong.entity.Category;
+import com.example.Alotrabong.dto.MenuCatalog;
 import com.example.Alotrabong.entity.Item;
 import com.example.Alotrabong.entity.Promotion;
-import com.example.Alotrabong.repository.CategoryRepository;
 import com.example.Alotrabong.repository.ItemRepository;
 import com.example.Alotrabong.repository.PromotionRepository;
 import lombok.RequiredArgsConstructor;
@@ -19,38 +18,36 @@ import java.util.List;
 @Transactional(readOnly = true)
 public class ContextService {
 
-    private final CategoryRepository categoryRepository;
     private final ItemRepository itemRepository;
     private final PromotionRepository promotionRepository;
+    private final MenuCatalogService menuCatalogService;
 
     /**
      * Lấy toàn bộ context public (menu, categories, promotions) để AI có thể trả lời câu hỏi
      */
     public String getPublicContext() {
         StringBuilder context = new StringBuilder();
+        MenuCatalog catalog = menuCatalogService.getCatalog();
         
-        // 1. Categories
-        List<Category> categories = categoryRepository.findAll()
-                .stream()
-                .filter(c -> Boolean.TRUE.equals(c.getIsActive()))
-                .toList();
+        // 1. Categories (đọc từ snapshot menu, không query DB)
+        List<MenuCatalog.CatalogCategory> categories = catalog.getActiveCategories();
         context.append("=== DANH MỤC MÓN ĂN ===\n");
-        for (Category cat : categories) {
+        for (MenuCatalog.CatalogCategory cat : categories) {
             context.append(String.format("- %s: %s\n", cat.getName(), 
                     cat.getDescription() != null ? cat.getDescription() : ""));
         }
         
         // 2. Menu items (top 50 để không quá dài)
-        List<Item> items = itemRepository.findByIsActive(true)
+        List<MenuCatalog.CatalogItem> items = catalog.getActiveItems()
                 .stream()
                 .limit(50)
                 .toList();
         context.append("\n=== THỰC ĐƠN HIỆN CÓ ===\n");
-        for (Item item : items) {
+        for (MenuCatalog.CatalogItem item : items) {
             context.append(String.format("- %s: %s - Giá: %,.0f VND\n", 
                     item.getName(),
                     item.getDescription() != null ? item.getDescription() : "",
-                    item.getPrice().doubleValue()));
+                    item.getPrice() != null ? item.getPrice().doubleValue() : 0));
         }
         
         // 3. Active promotions
@@ -90,8 +87,9 @@ public class ContextService {
      * Lấy context compact cho AI (chỉ tổng quan, không chi tiết)
      */
     public String getCompactContext() {
-        long categoryCount = categoryRepository.count();
-        long itemCount = itemRepository.findByIsActive(true).size();
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+        long categoryCount = catalog.getActiveCategories().size();
+        long itemCount = catalog.getActiveItems().size();
         long promotionCount = promotionRepository.countByIsActive(true);
         
         return String.format("""
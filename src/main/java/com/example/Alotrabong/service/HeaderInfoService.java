@@ -0,0 +1,12 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.dto.HeaderInfo;
+
+public interface HeaderInfoService {
+
+    /** Header của user đang đăng nhập (login = email/sđt/userId), null nếu không tìm thấy user */
+    HeaderInfo get(String login);
+
+    /** Bỏ cache của user (đăng nhập, đăng xuất, đổi thông tin) */
+    void invalidate(String userIdOrLogin);
+}
@@ -0,0 +1,21 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.dto.HomeRails;
+
+import java.util.Map;
+
+public interface HomeRailsService {
+
+    /**
+     * Các dải món trang chủ, lấy từ cache nếu còn hạn.
+     *
+     * @param branchId chi nhánh user đang chọn; chỉ có tác dụng khi bật cache theo chi nhánh
+     */
+    HomeRails getRails(String branchId);
+
+    /** Xoá toàn bộ cache (lần truy cập kế tiếp sẽ dựng lại) */
+    void invalidateAll();
+
+    /** Số liệu hit/miss để theo dõi hiệu quả cache */
+    Map<String, Object> getStats();
+}
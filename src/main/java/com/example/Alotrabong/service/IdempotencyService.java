@@ -0,0 +1,27 @@
+package com.example.Alotrabong.service;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+
+    /**
+     * Chạy action đúng 1 lần cho mỗi (scope, key) trong thời gian TTL và trả lại kết quả đã lưu cho các lần lặp.
+     * Request trùng đến khi request đầu còn đang chạy thì chờ kết quả của nó. key rỗng = chạy bình thường.
+     * Action ném exception thì không lưu gì, client có thể thử lại với cùng key.
+     *
+     * @return kết quả (vd. view / redirect) của lần chạy đầu tiên
+     */
+    default String execute(String scope, String key, Supplier<String> action) {
+        return execute(scope, key, action, result -> true);
+    }
+
+    /**
+     * Như {@link #execute(String, String, Supplier)} nhưng chỉ lưu kết quả khi {@code keep} trả về true; ngược lại
+     * nhả key như khi action lỗi (vd. lỗi nhập liệu, chưa tạo gì) để lần gửi lại với cùng key được chạy thật.
+     */
+    String execute(String scope, String key, Supplier<String> action, Predicate<String> keep);
+
+    /** Xoá các key đã hết hạn */
+    int purgeExpired();
+}
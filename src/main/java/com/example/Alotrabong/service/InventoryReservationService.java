@@ -0,0 +1,36 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.dto.StockDeductionResult;
+import com.example.Alotrabong.entity.Order;
+
+import java.util.Map;
+
+public interface InventoryReservationService {
+
+    /**
+     * Giữ hàng cho đơn vừa tạo (trừ kho ngay, tất cả hoặc không). Hết hạn mà đơn chưa được xác nhận /
+     * thanh toán thì tự trả lại kho và huỷ đơn.
+     */
+    StockDeductionResult reserve(Order order, Map<String, Integer> qtyByItem);
+
+    /** Đơn chuyển sang chờ thanh toán online: hạn giữ hàng = hạn link thanh toán (VNPAY 15') + một chút trễ */
+    void holdForPayment(String orderId);
+
+    /**
+     * Đơn đã xác nhận / thanh toán: giữ hàng thành trừ hẳn, không còn hết hạn.
+     *
+     * @return true nếu đơn có hàng đã trừ qua reservation (không cần trừ kho lần nữa)
+     */
+    boolean commit(String orderId);
+
+    /** Huỷ đơn: trả lại kho phần đang giữ */
+    void release(String orderId);
+
+    /**
+     * Huỷ đơn đã xác nhận nhưng bếp chưa làm (trước READY): phần đã chốt trừ hẳn cũng được trả lại kho.
+     * Chuyển trạng thái bằng UPDATE có điều kiện nên huỷ trùng chỉ cộng trả 1 lần.
+     *
+     * @return true nếu có hàng được trả lại
+     */
+    boolean releaseCommitted(String orderId);
+}
@@ -0,0 +1,20 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.dto.StockDeductionResult;
+
+import java.util.Map;
+
+public interface InventoryService {
+
+    /**
+     * Trừ kho cho mọi dòng của 1 đơn tại 1 chi nhánh bằng UPDATE có điều kiện (chỉ trừ khi đủ hàng).
+     * Tất cả hoặc không: thiếu dù 1 dòng thì không dòng nào bị trừ và kết quả liệt kê các dòng thiếu.
+     * Món không có dòng inventory ở chi nhánh coi như không quản lý tồn kho (bỏ qua).
+     *
+     * @param qtyByItem itemId -> số lượng cần trừ
+     */
+    StockDeductionResult deduct(String branchId, Map<String, Integer> qtyByItem);
+
+    /** Cộng trả kho (huỷ đơn / bù lại phần đã trừ) */
+    void restock(String branchId, Map<String, Integer> qtyByItem);
+}
@@ -0,0 +1,21 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.dto.ItemSuggestionDTO;
+
+import java.util.List;
+
+public interface ItemSearchService {
+
+    /**
+     * Tìm món đang bán theo tên/mô tả/danh mục (không phân biệt dấu, chấp nhận gõ thiếu/sai 1-2 ký tự).
+     *
+     * @return itemId theo thứ tự liên quan + độ phổ biến giảm dần
+     */
+    List<String> searchIds(String query, int limit);
+
+    /** Gợi ý theo tiền tố cho ô tìm kiếm */
+    List<ItemSuggestionDTO> suggest(String prefix, int limit);
+
+    /** Dựng lại toàn bộ index từ snapshot menu hiện tại */
+    void rebuild();
+}
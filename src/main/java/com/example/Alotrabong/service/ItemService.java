@@ -1,6 +1,8 @@
 package com.example.Alotrabong.service;
 
 import com.example.Alotrabong.dto.ItemDTO;
+import com.example.Alotrabong.dto.ItemListingQuery;
+import com.example.Alotrabong.dto.KeysetPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -20,8 +22,17 @@ public interface ItemService {
     List<ItemDTO> getItemsByBranch(String branchId);
     
     List<ItemDTO> searchItems(String keyword);
+
+    /** Tìm kiếm có xếp hạng (liên quan + phổ biến) và phân trang */
+    Page<ItemDTO> searchItems(String keyword, Pageable pageable);
+
+    /** Danh sách món cho trang menu: lọc/sort/phân trang trong DB */
+    KeysetPage<ItemDTO> listItems(ItemListingQuery query, Pageable pageable);
     
     List<ItemDTO> getTopSellingItems(int limit);
+
+    /** Top bán chạy trong một chi nhánh (đọc từ branch_item_stats) */
+    List<ItemDTO> getTopSellingItemsByBranch(String branchId, int limit);
     
     List<ItemDTO> getNewItems(int limit);
     
@@ -0,0 +1,31 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.entity.Item;
+import com.example.Alotrabong.entity.Order;
+
+public interface ItemStatsService {
+
+    /** Tạo dòng thống kê rỗng cho món mới (để món xuất hiện trong các truy vấn xếp hạng) */
+    void ensureStats(Item item);
+
+    /** Cộng số lượng đã bán khi đơn chuyển sang DELIVERED */
+    void recordDelivered(Order order);
+
+    /** Tăng/giảm lượt yêu thích khi user bật/tắt favorite */
+    void adjustFavorites(String itemId, long delta);
+
+    /**
+     * Cập nhật điểm đánh giá khi review được tạo / sửa / ẩn.
+     * oldRating, newRating = null nghĩa là review không được tính (chưa có hoặc đã ẩn).
+     */
+    void recordRatingChange(String itemId, Integer oldRating, Integer newRating);
+
+    /**
+     * Tạo dòng thống kê (tính sẵn bộ đếm) cho các món / cặp chi nhánh-món chưa có, vd. món nhập thẳng vào DB
+     * hoặc có từ trước khi có bảng thống kê. Chỉ đụng tới dòng còn thiếu nên chạy mỗi lần khởi động được.
+     */
+    void backfillMissing();
+
+    /** Tính lại toàn bộ bộ đếm từ order_items / favorites / reviews */
+    void rebuildAll();
+}
@@ -0,0 +1,21 @@
+package com.example.Alotrabong.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface ItemThumbnailService {
+
+    /**
+     * Ảnh đại diện (IMAGE đầu tiên theo sort_order) của nhiều món cùng lúc: phần chưa có trong cache
+     * được lấy bằng 1 query.
+     *
+     * @return itemId -> url; món không có ảnh sẽ không có trong map
+     */
+    Map<String, String> resolve(Collection<String> itemIds);
+
+    /** Ảnh đại diện của 1 món, hoặc fallback nếu món chưa có ảnh */
+    String resolve(String itemId, String fallback);
+
+    /** Bỏ cache của món (gọi khi media của món thay đổi) */
+    void evict(String itemId);
+}
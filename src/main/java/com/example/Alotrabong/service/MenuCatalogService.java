@@ -0,0 +1,15 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.dto.MenuCatalog;
+
+public interface MenuCatalogService {
+
+    /** Snapshot hiện tại (không chạm DB, trừ lần dựng đầu tiên) */
+    MenuCatalog getCatalog();
+
+    /** Dựng lại snapshot ngay và tráo vào */
+    MenuCatalog refresh();
+
+    /** Báo menu đã thay đổi: snapshot sẽ được dựng lại sau khi transaction hiện tại commit */
+    void markDirty();
+}
@@ -0,0 +1,17 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.entity.Order;
+import com.example.Alotrabong.entity.OrderStatus;
+
+/**
+ * Ghi dấu vết 1 lần đổi trạng thái đơn: lịch sử (ghi trễ theo lô, chỉ khi commit) và sự kiện outbox (cùng transaction).
+ * Dùng chung cho {@link OrderStateMachine} và các luồng hệ thống không đi qua nó (vd. hết hạn giữ hàng).
+ */
+public interface OrderEventRecorder {
+
+    /** Đơn đã đổi from -> to; phải gọi trong transaction đã ghi trạng thái mới */
+    void recordStatusChange(Order order, OrderStatus from, OrderStatus to, OrderStateMachine.Actor actor, String note);
+
+    /** Đơn vừa tạo (trạng thái đầu tiên) */
+    void recordCreated(Order order);
+}
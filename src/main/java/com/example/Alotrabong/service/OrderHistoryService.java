@@ -12,11 +12,14 @@ import com.example.Alotrabong.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
@@ -24,9 +27,11 @@ public class OrderHistoryService {
 
     private final OrderRepository orderRepo;
     private final AddressRepository addressRepo;
+    private final ItemThumbnailService itemThumbnailService;
+    private final OrderStateMachine orderStateMachine;
 
     private static final String PLACEHOLDER_URL = "/images/placeholder.png";
-    private static final String ITEM_THUMB_TEMPLATE = "/uploads/items/%s/thumb.jpg";
+    private static final int HISTORY_ITEMS_PER_ORDER = 5;
 
     // ========== 1) LỊCH SỬ ĐƠN ==========
     public Page<OrderHistoryVM> getHistory(
@@ -58,13 +63,20 @@ public class OrderHistoryService {
                     : orderRepo.findByUser(user, pageable);
         }
 
-        return orders.map(this::toHistoryVM);
+        // Ảnh của mọi món trên trang: tra 1 lần cho cả trang
+        Map<String, String> thumbs = itemThumbnailService.resolve(orders.getContent().stream()
+                .flatMap(o -> o.getItems().stream().limit(HISTORY_ITEMS_PER_ORDER))
+                .map(this::itemIdOf)
+                .filter(Objects::nonNull)
+                .toList());
+
+        return orders.map(o -> toHistoryVM(o, thumbs));
     }
 
-    private OrderHistoryVM toHistoryVM(Order o) {
+    private OrderHistoryVM toHistoryVM(Order o, Map<String, String> thumbs) {
         List<OrderHistoryVM.ItemVM> items = o.getItems().stream()
-                .limit(5)
-                .map(this::toHistoryItemVM)
+                .limit(HISTORY_ITEMS_PER_ORDER)
+                .map(oi -> toHistoryItemVM(oi, thumbs))
                 .toList();
 
         return new OrderHistoryVM(
@@ -77,7 +89,7 @@ public class OrderHistoryService {
         );
     }
 
-    private OrderHistoryVM.ItemVM toHistoryItemVM(OrderItem oi) {
+    private OrderHistoryVM.ItemVM toHistoryItemVM(OrderItem oi, Map<String, String> thumbs) {
         BigDecimal unitPrice = nz(oi.getUnitPrice());
         int qty = oi.getQuantity() != null ? oi.getQuantity() : 0;
 
@@ -91,7 +103,7 @@ public class OrderHistoryService {
                 qty,
                 unitPrice,
                 subtotal,
-                thumbFromOrderItem(oi)
+                thumbFromOrderItem(oi, thumbs)
         );
     }
 
@@ -107,6 +119,11 @@ public class OrderHistoryService {
             return null;
         }
 
+        Map<String, String> thumbs = itemThumbnailService.resolve(order.getItems().stream()
+                .map(this::itemIdOf)
+                .filter(Objects::nonNull)
+                .toList());
+
         List<OrderDetailVM.ItemVM> itemVMs = order.getItems().stream()
                 .map(oi -> {
                     BigDecimal unitPrice = nz(oi.getUnitPrice());
@@ -121,7 +138,7 @@ public class OrderHistoryService {
                             oi.getQuantity(),
                             unitPrice,
                             lineTotal,
-                            thumbFromOrderItem(oi)
+                            thumbFromOrderItem(oi, thumbs)
                     );
                 })
                 .toList();
@@ -249,11 +266,16 @@ public class OrderHistoryService {
         return "Món";
     }
 
-    private String thumbFromOrderItem(OrderItem oi) {
-        if (oi.getItem() != null && oi.getItem().getItemId() != null) {
-            String key = oi.getItem().getItemId().toString();
-            if (!key.isBlank()) {
-                return String.format(ITEM_THUMB_TEMPLATE, key);
+    private String itemIdOf(OrderItem oi) {
+        return (oi.getItem() != null) ? oi.getItem().getItemId() : null;
+    }
+
+    private String thumbFromOrderItem(OrderItem oi, Map<String, String> thumbs) {
+        String itemId = itemIdOf(oi);
+        if (itemId != null) {
+            String url = thumbs.get(itemId);
+            if (url != null) {
+                return url;
             }
         }
         return PLACEHOLDER_URL;
@@ -274,6 +296,7 @@ public class OrderHistoryService {
     }
 
     // ========== 4) HỦY ĐƠN ==========
+    @Transactional
     public boolean cancelOrderForUser(User user, String code) {
         Order order = orderRepo.findFirstByOrderId(code);
         if (order == null) {
@@ -284,18 +307,14 @@ public class OrderHistoryService {
             return false;
         }
 
-        OrderStatus st = order.getStatus();
-        boolean cancellable = switch (st) {
-            case PENDING, CONFIRMED, PREPARING -> true;
-            default -> false;
-        };
-
-        if (!cancellable) {
+        if (!orderStateMachine.canTransition(order.getStatus(), OrderStatus.CANCELLED,
+                OrderStateMachine.Actor.CUSTOMER)) {
             return false;
         }
 
-        order.setStatus(OrderStatus.CANCELLED);
-        orderRepo.save(order);
+        // Trả hàng đang giữ, huỷ shipment, ghi lịch sử: OrderStateMachine
+        orderStateMachine.transition(order, OrderStatus.CANCELLED, OrderStateMachine.Actor.CUSTOMER,
+                "Cancelled by customer");
         return true;
     }
 }
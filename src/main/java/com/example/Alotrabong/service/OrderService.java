@@ -2,11 +2,11 @@ package com.example.Alotrabong.service;
 
 import com.example.Alotrabong.dto.CreateOrderRequest;
 import com.example.Alotrabong.dto.OrderDTO;
+import com.example.Alotrabong.dto.OrderFeedDTO;
 import com.example.Alotrabong.entity.OrderStatus;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.List;
 
 public interface OrderService {
     
@@ -14,15 +14,16 @@ public interface OrderService {
     
     OrderDTO getOrderById(String orderId);
     
-    List<OrderDTO> getOrdersByUser(String userId);
+    // Danh sách đơn phân trang keyset (createdAt desc); cursor null = trang đầu
+    OrderFeedDTO getOrdersByUser(String userId, String cursor, int size);
     
-    List<OrderDTO> getOrdersByBranch(String branchId);
+    OrderFeedDTO getOrdersByBranch(String branchId, OrderStatus status, String cursor, int size);
     
     OrderDTO updateOrderStatus(String orderId, OrderStatus status);
     
     OrderDTO cancelOrder(String orderId, String reason);
     
-    List<OrderDTO> getOrdersByStatus(OrderStatus status);
+    OrderFeedDTO getOrdersByStatus(OrderStatus status, String cursor, int size);
     
     BigDecimal getTotalRevenue(String branchId, LocalDateTime startDate, LocalDateTime endDate);
 
@@ -0,0 +1,28 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.entity.Order;
+import com.example.Alotrabong.entity.OrderStatus;
+
+/**
+ * Nơi duy nhất đổi Order.status: kiểm tra chuyển trạng thái hợp lệ theo người thao tác, chạy các tác động kèm theo
+ * (giữ / trừ / trả kho, shipment, thanh toán, thống kê) và ghi lịch sử trạng thái.
+ */
+public interface OrderStateMachine {
+
+    enum Actor {
+        CUSTOMER, BRANCH, SHIPPER, ADMIN, SYSTEM
+    }
+
+    boolean canTransition(OrderStatus from, OrderStatus to, Actor actor);
+
+    /**
+     * Chuyển đơn sang trạng thái mới. Đang ở đúng trạng thái đó thì không làm gì.
+     *
+     * @throws com.example.Alotrabong.exception.BadRequestException nếu không được phép chuyển
+     *                                                              hoặc không đủ tồn kho
+     */
+    Order transition(Order order, OrderStatus target, Actor actor, String note);
+
+    /** Ghi lịch sử cho đơn vừa tạo (trạng thái đầu tiên) */
+    void recordCreated(Order order);
+}
@@ -0,0 +1,12 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.entity.OrderStatus;
+
+public interface OrderStatusHistoryService {
+
+    /** Ghi nhận 1 lần đổi trạng thái (chỉ ghi vào bộ đệm, không chạm DB) */
+    void record(String orderId, OrderStatus status, String notes);
+
+    /** Đẩy bộ đệm xuống bảng order_status_history theo lô */
+    void flush();
+}
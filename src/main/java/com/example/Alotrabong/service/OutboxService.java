@@ -0,0 +1,22 @@
+package com.example.Alotrabong.service;
+
+import com.example.Alotrabong.event.OrderEventType;
+
+import java.util.Map;
+
+public interface OutboxService {
+
+    /**
+     * Ghi sự kiện vào outbox trong transaction hiện tại (bắt buộc có transaction: rollback thì sự kiện cũng mất).
+     */
+    void append(String orderId, OrderEventType type, Map<String, Object> payload);
+
+    /** Giao 1 lô sự kiện đang chờ cho các subscriber; trả về số sự kiện đã xong */
+    int relay();
+
+    /** Xoá sự kiện đã giao xong quá hạn giữ */
+    int purgeProcessed();
+
+    /** Số chờ / lỗi, độ trễ, số lần giao theo subscriber */
+    Map<String, Object> getStats();
+}
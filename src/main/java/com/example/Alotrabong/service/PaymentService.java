@@ -1,8 +1,12 @@
 package com.example.Alotrabong.service;
 
+import com.example.Alotrabong.entity.Order;
 import com.example.Alotrabong.entity.Payment;
+import com.example.Alotrabong.entity.PaymentMethod;
+import com.example.Alotrabong.entity.PaymentStatus;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface PaymentService {
     
@@ -11,4 +15,13 @@ public interface PaymentService {
     Payment createPayment(Payment payment);
     
     Payment updatePaymentStatus(String paymentId, String status);
+
+    /** Gán (hoặc dùng lại) mã tham chiếu gửi cổng thanh toán cho đơn, lưu trên Order + Payment */
+    String assignTxnRef(Order order, PaymentMethod provider);
+
+    /** Tìm đơn theo mã tham chiếu cổng trả về (cache txnRef -> orderId, trượt thì seek index txn_ref) */
+    Optional<Order> findOrderByTxnRef(String txnRef);
+
+    /** Ghi kết quả cổng trả về vào các Payment của txnRef */
+    void recordGatewayResult(String txnRef, PaymentStatus status, String txnCode);
 }
\ No newline at end of file
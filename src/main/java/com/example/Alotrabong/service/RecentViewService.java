@@ -0,0 +1,15 @@
+package com.example.Alotrabong.service;
+
+import java.util.List;
+
+public interface RecentViewService {
+
+    /** Ghi nhận user vừa xem món (chỉ ghi vào bộ đệm, không chạm DB) */
+    void recordView(String login, String itemId);
+
+    /** itemId user xem gần đây, mới nhất trước */
+    List<String> getRecentItemIds(String login, int limit);
+
+    /** Đẩy bộ đệm xuống bảng recent_views theo lô */
+    void flush();
+}
@@ -0,0 +1,16 @@
+package com.example.Alotrabong.service;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface RelatedItemsService {
+
+    /** Các món hay được mua cùng itemId (đã tính sẵn), nhiều nhất trước */
+    List<String> getRelatedItemIds(String itemId, int limit);
+
+    /** Gợi ý cho cả giỏ: gộp láng giềng của các món trong giỏ, bỏ các món đã có trong giỏ */
+    List<String> getRelatedForBasket(Collection<String> itemIds, int limit);
+
+    /** Đọc các dòng đơn mới kể từ lần chạy trước, cộng dồn vào ma trận đồng mua và tính lại top-N */
+    void rebuildIncremental();
+}
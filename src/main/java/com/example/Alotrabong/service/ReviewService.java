@@ -1,12 +1,17 @@
 package com.example.Alotrabong.service;
 
 import com.example.Alotrabong.dto.ReviewDTO;
+import com.example.Alotrabong.dto.ReviewFeedDTO;
 
 import java.util.List;
 
 public interface ReviewService {
     
+    /** Trang đầu của feed đánh giá (kèm tên người viết và ảnh) */
     List<ReviewDTO> getReviewsByItem(String itemId);
+
+    /** Feed đánh giá theo keyset: mỗi trang cố định 3 query dù có bao nhiêu đánh giá/ảnh */
+    ReviewFeedDTO getReviewFeed(String itemId, String cursor, int size);
     
     List<ReviewDTO> getReviewsByUser(String userId);
     
@@ -8,6 +8,7 @@ import com.example.Alotrabong.repository.UserRepository;
 import com.example.Alotrabong.repository.UserRoleRepository;
 import com.example.Alotrabong.repository.RoleRepository;
 import com.example.Alotrabong.service.AdminBranchService;
+import com.example.Alotrabong.service.MenuCatalogService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -29,6 +30,7 @@ public class AdminBranchServiceImpl implements AdminBranchService {
     private final UserRepository userRepository;
     private final UserRoleRepository userRoleRepository;
     private final RoleRepository roleRepository;
+    private final MenuCatalogService menuCatalogService;
 
     @Override
     public Page<BranchManagementDTO> getAllBranches(Pageable pageable, String search) {
@@ -62,6 +64,7 @@ public class AdminBranchServiceImpl implements AdminBranchService {
                 .build();
 
         branch = branchRepository.save(branch);
+        menuCatalogService.markDirty();
         return convertToDTO(branch);
     }
 
@@ -81,6 +84,7 @@ public class AdminBranchServiceImpl implements AdminBranchService {
         branch.setOpenHours(dto.getOpenHours());
 
         branch = branchRepository.save(branch);
+        menuCatalogService.markDirty();
         return convertToDTO(branch);
     }
 
@@ -91,6 +95,7 @@ public class AdminBranchServiceImpl implements AdminBranchService {
                 .orElseThrow(() -> new ResourceNotFoundException("Branch not found with id: " + branchId));
         branch.setIsActive(true);
         branchRepository.save(branch);
+        menuCatalogService.markDirty();
     }
 
     @Override
@@ -100,6 +105,7 @@ public class AdminBranchServiceImpl implements AdminBranchService {
                 .orElseThrow(() -> new ResourceNotFoundException("Branch not found with id: " + branchId));
         branch.setIsActive(false);
         branchRepository.save(branch);
+        menuCatalogService.markDirty();
     }
 
     @Override
@@ -5,6 +5,7 @@ import com.example.Alotrabong.entity.Category;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
 import com.example.Alotrabong.repository.CategoryRepository;
 import com.example.Alotrabong.service.AdminCategoryService;
+import com.example.Alotrabong.service.MenuCatalogService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -22,6 +23,7 @@ import java.util.stream.Collectors;
 public class AdminCategoryServiceImpl implements AdminCategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final MenuCatalogService menuCatalogService;
 
     @Override
     public Page<CategoryDTO> getAllCategories(Pageable pageable) {
@@ -54,6 +56,7 @@ public class AdminCategoryServiceImpl implements AdminCategoryService {
         }
 
         category = categoryRepository.save(category);
+        menuCatalogService.markDirty();
         log.info("Category created successfully: {}", category.getCategoryId());
         return convertToDTO(category);
     }
@@ -77,6 +80,7 @@ public class AdminCategoryServiceImpl implements AdminCategoryService {
         }
 
         category = categoryRepository.save(category);
+        menuCatalogService.markDirty();
         log.info("Category updated successfully: {}", categoryId);
         return convertToDTO(category);
     }
@@ -87,6 +91,7 @@ public class AdminCategoryServiceImpl implements AdminCategoryService {
         Category category = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + categoryId));
         categoryRepository.delete(category);
+        menuCatalogService.markDirty();
         log.info("Category deleted successfully: {}", categoryId);
     }
 
@@ -2,9 +2,14 @@ package com.example.Alotrabong.service.impl;
 
 import com.example.Alotrabong.dto.*;
 import com.example.Alotrabong.entity.*;
+import com.example.Alotrabong.event.OrderEventType;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
 import com.example.Alotrabong.repository.*;
 import com.example.Alotrabong.service.BranchManagerService;
+import com.example.Alotrabong.service.BranchOrderBoardService;
+import com.example.Alotrabong.service.MenuCatalogService;
+import com.example.Alotrabong.service.OrderStateMachine;
+import com.example.Alotrabong.service.OutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -18,6 +23,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -44,6 +50,10 @@ public class BranchManagerServiceImpl implements BranchManagerService {
     private final RoleRepository roleRepository;
     private final UserRoleRepository userRoleRepository;
     private final BranchCommissionRepository branchCommissionRepository;
+    private final MenuCatalogService menuCatalogService;
+    private final OrderStateMachine orderStateMachine;
+    private final OutboxService outboxService;
+    private final BranchOrderBoardService branchOrderBoardService;
 
     // ==================== DASHBOARD ====================
 
@@ -55,11 +65,12 @@ public class BranchManagerServiceImpl implements BranchManagerService {
         Branch branch = branchRepository.findById(branchId)
                 .orElseThrow(() -> new ResourceNotFoundException("Branch not found"));
 
-        // Thống kê đơn hàng
-        Long totalOrders = orderRepository.countByBranch_BranchId(branchId);
-        Long pendingOrders = orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.PENDING);
-        Long completedOrders = orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.DELIVERED);
-        Long cancelledOrders = orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.CANCELLED);
+        // Thống kê đơn hàng: lấy từ bảng đơn trực tiếp trong bộ nhớ, không đếm lại trên DB
+        Map<String, Long> orderStats = branchOrderBoardService.getOrderStats(branchId);
+        Long totalOrders = orderStats.get("totalOrders");
+        Long pendingOrders = orderStats.get("pendingOrders");
+        Long completedOrders = orderStats.get("completedOrders");
+        Long cancelledOrders = orderStats.get("cancelledOrders");
 
         // Thống kê doanh thu
         BigDecimal todayRevenue = orderRepository.getTodayRevenue(branchId, OrderStatus.DELIVERED);
@@ -131,6 +142,7 @@ public class BranchManagerServiceImpl implements BranchManagerService {
         branch.setIsActive(branchDTO.getIsActive());
 
         branch = branchRepository.save(branch);
+        menuCatalogService.markDirty();
         return convertToBranchDTO(branch);
     }
 
@@ -170,34 +182,8 @@ public class BranchManagerServiceImpl implements BranchManagerService {
     @Transactional(readOnly = true)
     public Map<String, Long> getOrderStats(String branchId) {
         log.info("Getting order stats for branch: {}", branchId);
-        
-        Map<String, Long> stats = new HashMap<>();
-        
-        // Tổng đơn hàng
-        Long totalOrders = orderRepository.countByBranch_BranchId(branchId);
-        stats.put("totalOrders", totalOrders);
-        
-        // Đơn hàng chờ xử lý
-        Long pendingOrders = orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.PENDING);
-        stats.put("pendingOrders", pendingOrders);
-        
-        // Đơn hàng đang xử lý (CONFIRMED, PREPARING, READY, DELIVERING)
-        Long processingOrders = 
-            orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.CONFIRMED) +
-            orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.PREPARING) +
-            orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.READY) +
-            orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.DELIVERING);
-        stats.put("processingOrders", processingOrders);
-        
-        // Đơn hàng hoàn thành
-        Long completedOrders = orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.DELIVERED);
-        stats.put("completedOrders", completedOrders);
-        
-        // Đơn hàng đã hủy
-        Long cancelledOrders = orderRepository.countByBranch_BranchIdAndStatus(branchId, OrderStatus.CANCELLED);
-        stats.put("cancelledOrders", cancelledOrders);
-        
-        return stats;
+        // Bảng đơn trực tiếp giữ sẵn số đơn theo trạng thái (cập nhật từ outbox), thay cho 7 câu COUNT mỗi lần tải
+        return branchOrderBoardService.getOrderStats(branchId);
     }
 
     @Override
@@ -209,37 +195,10 @@ public class BranchManagerServiceImpl implements BranchManagerService {
             throw new ResourceNotFoundException("Order not found");
         }
 
-        OrderStatus oldStatus = order.getStatus();
         OrderStatus orderStatus = OrderStatus.valueOf(status.toUpperCase());
-        
-        // Trừ tồn kho khi đơn hàng chuyển sang READY (đồ ăn sẵn sàng)
-        if (orderStatus == OrderStatus.READY && oldStatus != OrderStatus.READY) {
-            List<OrderItem> orderItems = orderItemRepository.findByOrder(order);
-            for (OrderItem orderItem : orderItems) {
-                Inventory inventory = inventoryRepository
-                        .findByBranch_BranchIdAndItem_ItemId(branchId, orderItem.getItem().getItemId())
-                        .orElse(null);
-                
-                if (inventory != null) {
-                    // Kiểm tra tồn kho trước khi trừ
-                    if (inventory.getQuantity() < orderItem.getQuantity()) {
-                        throw new RuntimeException("Insufficient inventory for item: " + orderItem.getItem().getName() + 
-                            ". Available: " + inventory.getQuantity() + ", Required: " + orderItem.getQuantity());
-                    }
-                    
-                    inventory.setQuantity(inventory.getQuantity() - orderItem.getQuantity());
-                    inventoryRepository.save(inventory);
-                    
-                    log.info("Deducted {} units of item {} from branch inventory (Order READY). Remaining: {}", 
-                        orderItem.getQuantity(), orderItem.getItem().getName(), inventory.getQuantity());
-                }
-            }
-        }
-        
-        order.setStatus(orderStatus);
-        order.setUpdatedAt(LocalDateTime.now());
 
-        order = orderRepository.save(order);
+        // Kiểm tra chuyển trạng thái + kho / shipment / thanh toán / lịch sử: OrderStateMachine
+        order = orderStateMachine.transition(order, orderStatus, OrderStateMachine.Actor.BRANCH, null);
         return convertToOrderDTO(order);
     }
 
@@ -266,19 +225,24 @@ public class BranchManagerServiceImpl implements BranchManagerService {
 
         shipmentRepository.save(shipment);
 
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("branchId", branchId);
+        payload.put("shipperId", shipperId);
+        payload.put("shipperName", shipper.getUser() != null ? shipper.getUser().getFullName() : null);
+        outboxService.append(order.getOrderId(), OrderEventType.SHIPPER_ASSIGNED, payload);
+
         // Chỉ cập nhật trạng thái nếu đơn hàng chưa được xác nhận
         // Không quay ngược trạng thái nếu đã ở trạng thái cao hơn
         if (order.getStatus() == OrderStatus.PENDING) {
-            order.setStatus(OrderStatus.CONFIRMED);
+            order = orderStateMachine.transition(order, OrderStatus.CONFIRMED, OrderStateMachine.Actor.BRANCH,
+                    "Assigned shipper " + shipperId);
         }
         // Nếu đơn hàng đã READY thì có thể chuyển sang DELIVERING
         else if (order.getStatus() == OrderStatus.READY) {
-            order.setStatus(OrderStatus.DELIVERING);
+            order = orderStateMachine.transition(order, OrderStatus.DELIVERING, OrderStateMachine.Actor.BRANCH,
+                    "Assigned shipper " + shipperId);
         }
         // Các trạng thái khác giữ nguyên
-        
-        order.setUpdatedAt(LocalDateTime.now());
-        order = orderRepository.save(order);
 
         return convertToOrderDTO(order);
     }
@@ -306,6 +270,7 @@ public class BranchManagerServiceImpl implements BranchManagerService {
 
         branchItemPrice.setPrice(newPrice);
         branchItemPrice = branchItemPriceRepository.save(branchItemPrice);
+        menuCatalogService.markDirty();
 
         return convertToBranchMenuItemDTO(branchItemPrice);
     }
@@ -320,6 +285,7 @@ public class BranchManagerServiceImpl implements BranchManagerService {
 
         branchItemPrice.setIsAvailable(isAvailable);
         branchItemPrice = branchItemPriceRepository.save(branchItemPrice);
+        menuCatalogService.markDirty();
 
         return convertToBranchMenuItemDTO(branchItemPrice);
     }
@@ -854,6 +820,7 @@ public class BranchManagerServiceImpl implements BranchManagerService {
                 .build();
         
         inventoryRepository.save(inventory);
+        menuCatalogService.markDirty();
         
         log.info("Successfully added item {} to branch {}", request.getItemId(), branchId);
         
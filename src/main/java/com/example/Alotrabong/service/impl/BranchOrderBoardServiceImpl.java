@@ -0,0 +1,350 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.BranchOrderBoardDTO;
+import com.example.Alotrabong.entity.OrderStatus;
+import com.example.Alotrabong.entity.PaymentMethod;
+import com.example.Alotrabong.entity.PaymentStatus;
+import com.example.Alotrabong.event.OrderEventType;
+import com.example.Alotrabong.event.OutboxMessage;
+import com.example.Alotrabong.event.OutboxSubscriber;
+import com.example.Alotrabong.repository.OrderRepository;
+import com.example.Alotrabong.repository.ShipmentRepository;
+import com.example.Alotrabong.service.BranchOrderBoardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bảng đơn trực tiếp trong bộ nhớ, mỗi chi nhánh 1 bảng, nạp từ DB lần đầu có người xem (3 query) rồi chỉ
+ * cập nhật từ sự kiện outbox. Mỗi thay đổi được đẩy dạng delta lên topic của chi nhánh.
+ * <p>
+ * - Chi nhánh chưa ai xem thì bỏ qua sự kiện (không tốn gì); sự kiện đến trong lúc đang nạp sẽ chờ nạp xong
+ *   (cùng khoá của ConcurrentHashMap) nên không bị mất.
+ * - Áp dụng idempotent: sự kiện giao lại (at-least-once) hoặc đã có trong dữ liệu lúc nạp thì bỏ qua.
+ * - Chỉ đúng khi relay outbox và client STOMP cùng 1 node (simple broker); resync định kỳ để tự sửa nếu lệch.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BranchOrderBoardServiceImpl implements BranchOrderBoardService, OutboxSubscriber {
+
+    private static final Set<OrderStatus> OPEN = EnumSet.of(OrderStatus.PENDING, OrderStatus.CONFIRMED,
+            OrderStatus.PREPARING, OrderStatus.READY, OrderStatus.DELIVERING);
+    private static final int RECENT_EVENTS = 1024;
+
+    private final OrderRepository orderRepository;
+    private final ShipmentRepository shipmentRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final ConcurrentHashMap<String, Board> boards = new ConcurrentHashMap<>();
+
+    private static final class Board {
+        final Map<String, BranchOrderBoardDTO.Card> open = new HashMap<>();
+        final EnumMap<OrderStatus, Long> counts = new EnumMap<>(OrderStatus.class);
+        // Id outbox vừa áp dụng, để nhận ra sự kiện bị giao lại
+        final Set<Long> recentEvents = Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > RECENT_EVENTS;
+            }
+        });
+        long version;
+    }
+
+    @Override
+    public String topic(String branchId) {
+        return "/topic/branch-orders." + branchId;
+    }
+
+    @Override
+    public BranchOrderBoardDTO snapshot(String branchId) {
+        Board board = board(branchId);
+        synchronized (board) {
+            Map<String, List<BranchOrderBoardDTO.Card>> columns = new LinkedHashMap<>();
+            for (OrderStatus s : OPEN) {
+                columns.put(s.name(), new ArrayList<>());
+            }
+            for (BranchOrderBoardDTO.Card card : board.open.values()) {
+                columns.get(card.getStatus()).add(card.toBuilder().build());
+            }
+            Comparator<BranchOrderBoardDTO.Card> newestFirst = Comparator.comparing(
+                    BranchOrderBoardDTO.Card::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()));
+            columns.values().forEach(list -> list.sort(newestFirst));
+
+            return BranchOrderBoardDTO.builder()
+                    .branchId(branchId)
+                    .topic(topic(branchId))
+                    .version(board.version)
+                    .counts(countsOf(board))
+                    .stats(statsOf(board))
+                    .columns(columns)
+                    .build();
+        }
+    }
+
+    @Override
+    public Map<String, Long> getOrderStats(String branchId) {
+        Board board = board(branchId);
+        synchronized (board) {
+            return statsOf(board);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getStatusCounts(String branchId) {
+        Board board = board(branchId);
+        synchronized (board) {
+            return countsOf(board);
+        }
+    }
+
+    @Override
+    public void resyncAll() {
+        for (String branchId : new ArrayList<>(boards.keySet())) {
+            long[] version = new long[1];
+            boards.compute(branchId, (k, old) -> {
+                Board fresh = load(k);
+                fresh.version = (old != null ? old.version : 0) + 1;
+                version[0] = fresh.version;
+                return fresh;
+            });
+            // Client nhận RESYNC thì lấy lại ảnh chụp
+            messagingTemplate.convertAndSend(topic(branchId), BranchOrderBoardDTO.Delta.builder()
+                    .type("RESYNC")
+                    .version(version[0])
+                    .build());
+        }
+    }
+
+    // ==================== OUTBOX ====================
+
+    @Override
+    public String name() {
+        return "branch-board";
+    }
+
+    @Override
+    public void handle(OutboxMessage message) {
+        String branchId = str(message.payload().get("branchId"));
+        if (branchId == null) {
+            return;
+        }
+        BranchOrderBoardDTO.Delta[] out = new BranchOrderBoardDTO.Delta[1];
+        boards.computeIfPresent(branchId, (k, board) -> {
+            synchronized (board) {
+                out[0] = apply(board, message);
+            }
+            return board;
+        });
+        if (out[0] != null) {
+            messagingTemplate.convertAndSend(topic(branchId), out[0]);
+        }
+    }
+
+    private BranchOrderBoardDTO.Delta apply(Board board, OutboxMessage message) {
+        if (message.id() != null && !board.recentEvents.add(message.id())) {
+            return null;
+        }
+        Map<String, Object> p = message.payload();
+        String orderId = message.orderId();
+        BranchOrderBoardDTO.Card card = board.open.get(orderId);
+
+        switch (message.type()) {
+            case ORDER_CREATED -> {
+                OrderStatus status = status(p.get("status"));
+                // Đã có trên bảng = bảng nạp sau khi đơn commit
+                if (card != null || status == null || !OPEN.contains(status)) {
+                    return null;
+                }
+                card = BranchOrderBoardDTO.Card.builder()
+                        .orderId(orderId)
+                        .status(status.name())
+                        .paymentMethod(str(p.get("paymentMethod")))
+                        .paymentStatus(str(p.get("paymentStatus")))
+                        .grandTotal(decimal(p.get("totalAmount")))
+                        .deliveryAddress(str(p.get("shippingAddress")))
+                        .customerName(str(p.get("customerName")))
+                        .customerPhone(str(p.get("customerPhone")))
+                        .createdAt(message.createdAt())
+                        .build();
+                board.open.put(orderId, card);
+                increment(board, status);
+                return delta(board, message, null, status, card);
+            }
+            case ORDER_STATUS_CHANGED -> {
+                OrderStatus from = status(p.get("from"));
+                OrderStatus to = status(p.get("to"));
+                if (to == null) {
+                    return null;
+                }
+                if (card != null) {
+                    OrderStatus current = OrderStatus.valueOf(card.getStatus());
+                    if (current == to) {
+                        return null;
+                    }
+                    decrement(board, current);
+                    increment(board, to);
+                    card.setStatus(to.name());
+                    if (p.get("paymentStatus") != null) {
+                        card.setPaymentStatus(str(p.get("paymentStatus")));
+                    }
+                    if (!OPEN.contains(to)) {
+                        board.open.remove(orderId);
+                        return delta(board, message, current, to, null);
+                    }
+                    return delta(board, message, current, to, card);
+                }
+                // Đơn đã đóng (DELIVERED -> RECEIVED / REFUNDED...): không có thẻ, chỉ đổi số đếm.
+                // Đơn còn mở mà không có thẻ = bảng nạp sau commit, dữ liệu nạp đã gồm thay đổi này.
+                if (from == null || OPEN.contains(from)) {
+                    return null;
+                }
+                decrement(board, from);
+                increment(board, to);
+                return delta(board, message, from, to, null);
+            }
+            case PAYMENT_SUCCEEDED, PAYMENT_FAILED -> {
+                if (card == null) {
+                    return null;
+                }
+                boolean paid = message.type() == OrderEventType.PAYMENT_SUCCEEDED;
+                card.setPaymentStatus((paid ? PaymentStatus.PAID : PaymentStatus.FAILED).name());
+                if (paid && p.get("method") != null) {
+                    card.setPaymentMethod(str(p.get("method")));
+                }
+                return delta(board, message, null, null, card);
+            }
+            case SHIPPER_ASSIGNED -> {
+                if (card == null) {
+                    return null;
+                }
+                card.setShipperName(str(p.get("shipperName")));
+                return delta(board, message, null, null, card);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private BranchOrderBoardDTO.Delta delta(Board board, OutboxMessage message, OrderStatus from, OrderStatus to,
+                                            BranchOrderBoardDTO.Card card) {
+        board.version++;
+        return BranchOrderBoardDTO.Delta.builder()
+                .type(message.type().name())
+                .version(board.version)
+                .orderId(message.orderId())
+                .from(from != null ? from.name() : null)
+                .to(to != null ? to.name() : null)
+                .card(card != null ? card.toBuilder().build() : null)
+                .counts(countsOf(board))
+                .stats(statsOf(board))
+                .build();
+    }
+
+    // ==================== NẠP TỪ DB ====================
+
+    private Board board(String branchId) {
+        if (branchId == null) {
+            return new Board();
+        }
+        // Nạp trong khoá của map: sự kiện cùng chi nhánh (computeIfPresent) chờ tới khi nạp xong
+        return boards.computeIfAbsent(branchId, this::load);
+    }
+
+    private Board load(String branchId) {
+        long start = System.currentTimeMillis();
+        Board board = new Board();
+        for (Object[] r : orderRepository.findBoardRowsByBranch(branchId, OPEN)) {
+            String orderId = (String) r[0];
+            board.open.put(orderId, BranchOrderBoardDTO.Card.builder()
+                    .orderId(orderId)
+                    .status(((OrderStatus) r[1]).name())
+                    .paymentMethod(r[2] != null ? ((PaymentMethod) r[2]).name() : null)
+                    .paymentStatus(r[3] != null ? ((PaymentStatus) r[3]).name() : null)
+                    .grandTotal((BigDecimal) r[4])
+                    .deliveryAddress((String) r[5])
+                    .createdAt((LocalDateTime) r[6])
+                    .customerName((String) r[7])
+                    .customerPhone((String) r[8])
+                    .build());
+        }
+        for (Object[] r : shipmentRepository.findShipperNamesByBranchAndOrderStatus(branchId, OPEN)) {
+            BranchOrderBoardDTO.Card card = board.open.get((String) r[0]);
+            if (card != null) {
+                card.setShipperName((String) r[1]);
+            }
+        }
+        for (Object[] r : orderRepository.countByBranchGroupByStatus(branchId)) {
+            if (r[0] != null) {
+                board.counts.put((OrderStatus) r[0], ((Number) r[1]).longValue());
+            }
+        }
+        log.info("Loaded order board for branch {}: {} open orders in {} ms",
+                branchId, board.open.size(), System.currentTimeMillis() - start);
+        return board;
+    }
+
+    // ==================== HELPERS ====================
+
+    private static Map<String, Long> countsOf(Board board) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (OrderStatus s : OrderStatus.values()) {
+            counts.put(s.name(), board.counts.getOrDefault(s, 0L));
+        }
+        return counts;
+    }
+
+    // Cùng cách tính với /branch-manager/api/orders/stats trước đây
+    private static Map<String, Long> statsOf(Board board) {
+        Map<String, Long> stats = new HashMap<>();
+        long total = 0;
+        for (long c : board.counts.values()) {
+            total += c;
+        }
+        stats.put("totalOrders", total);
+        stats.put("pendingOrders", count(board, OrderStatus.PENDING));
+        stats.put("processingOrders", count(board, OrderStatus.CONFIRMED) + count(board, OrderStatus.PREPARING)
+                + count(board, OrderStatus.READY) + count(board, OrderStatus.DELIVERING));
+        stats.put("completedOrders", count(board, OrderStatus.DELIVERED));
+        stats.put("cancelledOrders", count(board, OrderStatus.CANCELLED));
+        return stats;
+    }
+
+    private static long count(Board board, OrderStatus status) {
+        return board.counts.getOrDefault(status, 0L);
+    }
+
+    private static void increment(Board board, OrderStatus status) {
+        board.counts.merge(status, 1L, Long::sum);
+    }
+
+    private static void decrement(Board board, OrderStatus status) {
+        board.counts.computeIfPresent(status, (k, v) -> v > 1 ? v - 1 : null);
+    }
+
+    private static OrderStatus status(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return OrderStatus.valueOf(value.toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String str(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static BigDecimal decimal(Object value) {
+        return value != null ? new BigDecimal(value.toString()) : null;
+    }
+}
@@ -5,6 +5,7 @@ import com.example.Alotrabong.entity.Branch;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
 import com.example.Alotrabong.repository.BranchRepository;
 import com.example.Alotrabong.service.BranchService;
+import com.example.Alotrabong.service.MenuCatalogService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -20,6 +21,7 @@ import java.util.stream.Collectors;
 public class BranchServiceImpl implements BranchService {
 
     private final BranchRepository branchRepository;
+    private final MenuCatalogService menuCatalogService;
 
     @Override
     public BranchDTO createBranch(BranchDTO branchDTO) {
@@ -33,6 +35,7 @@ public class BranchServiceImpl implements BranchService {
                 .build();
         
         branch = branchRepository.save(branch);
+        menuCatalogService.markDirty();
         log.info("Branch created successfully: {}", branch.getBranchId());
         
         return convertToDTO(branch);
@@ -66,6 +69,7 @@ public class BranchServiceImpl implements BranchService {
         branch.setPhone(branchDTO.getPhone());
         
         branch = branchRepository.save(branch);
+        menuCatalogService.markDirty();
         log.info("Branch updated successfully: {}", branchId);
         
         return convertToDTO(branch);
@@ -80,6 +84,7 @@ public class BranchServiceImpl implements BranchService {
         
         branch.setIsActive(false);
         branchRepository.save(branch);
+        menuCatalogService.markDirty();
         
         log.info("Branch deactivated: {}", branchId);
     }
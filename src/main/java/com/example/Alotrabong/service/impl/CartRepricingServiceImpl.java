@@ -0,0 +1,99 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.CartItemDTO;
+import com.example.Alotrabong.dto.CartRepricingResult;
+import com.example.Alotrabong.dto.CartRepricingResult.Line;
+import com.example.Alotrabong.dto.CartRepricingResult.Status;
+import com.example.Alotrabong.repository.CartItemRepository;
+import com.example.Alotrabong.repository.ItemRepository;
+import com.example.Alotrabong.service.CartRepricingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * Định giá lại cả giỏ theo lô: 1 query lấy giá/khả dụng/tồn kho của mọi món tại chi nhánh,
+ * 1 query lấy phụ thu option của các dòng. Dùng khi đổi chi nhánh và lúc chốt đơn.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class CartRepricingServiceImpl implements CartRepricingService {
+
+    private final ItemRepository itemRepository;
+    private final CartItemRepository cartItemRepository;
+
+    private record Pricing(String name, BigDecimal price, boolean available, Integer stock) {
+    }
+
+    @Override
+    public CartRepricingResult reprice(List<CartItemDTO> lines, String branchId) {
+        if (lines == null || lines.isEmpty()) {
+            return new CartRepricingResult(branchId, List.of());
+        }
+
+        Set<String> itemIds = new HashSet<>();
+        Set<String> cartItemIds = new HashSet<>();
+        for (CartItemDTO l : lines) {
+            itemIds.add(l.getItemId());
+            if (l.getCartItemId() != null) {
+                cartItemIds.add(l.getCartItemId());
+            }
+        }
+
+        Map<String, Pricing> pricing = new HashMap<>();
+        for (Object[] row : itemRepository.findBranchPricing(branchId, itemIds)) {
+            BigDecimal price = row[4] != null ? (BigDecimal) row[4] : (BigDecimal) row[2];
+            boolean available = Boolean.TRUE.equals(row[3]) && !Boolean.FALSE.equals(row[5]);
+            Integer stock = row[6] != null ? ((Number) row[6]).intValue() : null;
+            pricing.put((String) row[0], new Pricing((String) row[1], price, available, stock));
+        }
+
+        Map<String, BigDecimal> extras = new HashMap<>();
+        if (!cartItemIds.isEmpty()) {
+            for (Object[] row : cartItemRepository.sumOptionExtras(cartItemIds)) {
+                extras.put((String) row[0], (BigDecimal) row[1]);
+            }
+        }
+
+        List<Line> result = new ArrayList<>(lines.size());
+        for (CartItemDTO l : lines) {
+            Pricing p = pricing.get(l.getItemId());
+            int qty = l.getQuantity() != null ? l.getQuantity() : 0;
+
+            BigDecimal newUnit = l.getUnitPrice() != null ? l.getUnitPrice() : BigDecimal.ZERO;
+            BigDecimal extra = extras.getOrDefault(l.getCartItemId(), BigDecimal.ZERO);
+            Status status = Status.UNAVAILABLE;
+            if (p != null) {
+                BigDecimal base = p.price() != null ? p.price() : BigDecimal.ZERO;
+                newUnit = base.add(extra).setScale(2, RoundingMode.HALF_UP);
+                if (!p.available()) {
+                    status = Status.UNAVAILABLE;
+                } else if (p.stock() != null && p.stock() < qty) {
+                    status = Status.INSUFFICIENT_STOCK;
+                } else {
+                    status = Status.OK;
+                }
+            }
+
+            result.add(Line.builder()
+                    .cartItemId(l.getCartItemId())
+                    .itemId(l.getItemId())
+                    .itemName(p != null && p.name() != null ? p.name() : l.getItemName())
+                    .quantity(qty)
+                    .oldUnitPrice(l.getUnitPrice())
+                    .newUnitPrice(newUnit)
+                    .optionExtra(extra)
+                    .availableQty(p != null ? p.stock() : null)
+                    .status(status)
+                    .build());
+        }
+        return new CartRepricingResult(branchId, result);
+    }
+}
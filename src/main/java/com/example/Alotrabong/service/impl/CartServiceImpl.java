@@ -1,26 +1,37 @@
 package com.example.Alotrabong.service.impl;
 
 import com.example.Alotrabong.dto.AddToCartRequest;
+import com.example.Alotrabong.dto.CartBatchRequest;
 import com.example.Alotrabong.dto.CartItemDTO;
+import com.example.Alotrabong.dto.CartRepricingResult;
 import com.example.Alotrabong.entity.*;
+import com.example.Alotrabong.event.CartChangedEvent;
 import com.example.Alotrabong.exception.BadRequestException;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
 import com.example.Alotrabong.repository.*;
+import com.example.Alotrabong.service.CartRepricingService;
 import com.example.Alotrabong.service.CartService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Giỏ hàng lưu trực tiếp trên SQL Server (mặc định, app.cart.store=sql).
+ * Chế độ Redis: {@link RedisCartServiceImpl}.
+ */
 @Service
+@ConditionalOnProperty(name = "app.cart.store", havingValue = "sql", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 @Transactional
@@ -35,6 +46,8 @@ public class CartServiceImpl implements CartService {
         private final ItemRepository itemRepository;
         private final BranchItemPriceRepository branchItemPriceRepository;
         private final InventoryRepository inventoryRepository;
+        private final ApplicationEventPublisher eventPublisher;
+        private final CartRepricingService cartRepricingService;
 
         // =====================================================
         // PUBLIC METHODS
@@ -82,12 +95,12 @@ public class CartServiceImpl implements CartService {
                 BigDecimal optionExtras = calcOptionExtras(cartItem);
                 BigDecimal effectiveUnit = baseUnit.add(optionExtras).setScale(2, RoundingMode.HALF_UP);
 
-                int newQty = Math.min(
-                                (cartItem.getQuantity() == null ? 0 : cartItem.getQuantity()) + wantQty,
-                                MAX_QTY);
+                int oldQty = cartItem.getQuantity() == null ? 0 : cartItem.getQuantity();
+                int newQty = Math.min(oldQty + wantQty, MAX_QTY);
                 cartItem.setQuantity(newQty);
                 cartItem.setUnitPrice(effectiveUnit);
                 cartItem = cartItemRepository.save(cartItem);
+                publishChange(user.getUserId(), newQty - oldQty);
 
                 log.info("Added/merged cartItem={} qty={} unit={}", cartItem.getCartItemId(), newQty, effectiveUnit);
                 return convertToDTO(cartItem);
@@ -117,22 +130,20 @@ public class CartServiceImpl implements CartService {
                                 .orElseThrow(() -> new ResourceNotFoundException("Cart item not found"));
 
                 ensureOwnership(userIdOrLogin, cartItem.getCart());
+                String ownerId = cartItem.getCart().getUser().getUserId();
+                int oldQty = cartItem.getQuantity() == null ? 0 : cartItem.getQuantity();
 
                 if (quantity <= 0) {
                         cartItemRepository.delete(cartItem);
+                        publishChange(ownerId, -oldQty);
                         log.info("Removed cart item due to qty<=0 | {}", cartItemId);
                         return null;
                 }
 
-                cartItem.setQuantity(Math.min(quantity, MAX_QTY));
-                Branch defaultBranch = branchRepository.findFirstByIsActiveTrueOrderByCreatedAtAsc().orElse(null);
-                PriceAvail pa = resolvePriceAndAvailability(cartItem.getItem(), defaultBranch);
-
-                BigDecimal base = pa.price != null ? pa.price
-                                : (cartItem.getItem().getPrice() != null ? cartItem.getItem().getPrice()
-                                                : BigDecimal.ZERO);
-                BigDecimal extra = calcOptionExtras(cartItem);
-                cartItem.setUnitPrice(base.add(extra).setScale(2, RoundingMode.HALF_UP));
+                // Chỉ đổi số lượng; đơn giá giữ theo chi nhánh lúc thêm / lần repriceCart gần nhất
+                int newQty = Math.min(quantity, MAX_QTY);
+                cartItem.setQuantity(newQty);
+                publishChange(ownerId, newQty - oldQty);
 
                 cartItem = cartItemRepository.save(cartItem);
                 log.info("Updated cart item ok | {}", cartItemId);
@@ -145,6 +156,8 @@ public class CartServiceImpl implements CartService {
                                 .orElseThrow(() -> new ResourceNotFoundException("Cart item not found"));
                 ensureOwnership(userIdOrLogin, cartItem.getCart());
                 cartItemRepository.delete(cartItem);
+                publishChange(cartItem.getCart().getUser().getUserId(),
+                                -(cartItem.getQuantity() == null ? 0 : cartItem.getQuantity()));
         }
 
         @Override
@@ -154,6 +167,7 @@ public class CartServiceImpl implements CartService {
                 if (opt.isEmpty())
                         return;
                 cartItemRepository.deleteByCart(opt.get());
+                eventPublisher.publishEvent(new CartChangedEvent(user.getUserId(), null));
         }
 
         @Override
@@ -167,9 +181,184 @@ public class CartServiceImpl implements CartService {
         @Override
         @Transactional(readOnly = true)
         public int getCartItemCount(String userIdOrLogin, String branchIdOrCode) {
-                return getCartItems(userIdOrLogin, branchIdOrCode).stream()
-                                .mapToInt(CartItemDTO::getQuantity)
-                                .sum();
+                // ❗️dùng chung giỏ hàng, không lọc branch; SUM trên DB thay vì nạp cả giỏ
+                return (int) cartItemRepository.sumQuantityByUserId(resolveUser(userIdOrLogin).getUserId());
+        }
+
+        @Override
+        @Transactional(readOnly = true)
+        public List<CartItemDTO> getCheckoutSnapshot(String userIdOrLogin) {
+                return getCartItems(userIdOrLogin, null);
+        }
+
+        @Override
+        public void consumeCheckoutSnapshot(String userIdOrLogin, List<CartItemDTO> snapshot) {
+                // Cùng transaction với đơn hàng: xoá các dòng đã đặt
+                List<String> ids = snapshot.stream().map(CartItemDTO::getCartItemId).toList();
+                cartItemRepository.deleteAllById(ids);
+                eventPublisher.publishEvent(new CartChangedEvent(resolveUser(userIdOrLogin).getUserId(), null));
+        }
+
+        @Override
+        public List<CartItemDTO> applyBatch(String userIdOrLogin, CartBatchRequest request) {
+                List<CartBatchRequest.Operation> ops = request.getOperations() != null ? request.getOperations()
+                                : List.of();
+                log.info("Applying cart batch | user={}, branch={}, ops={}",
+                                userIdOrLogin, request.getBranchId(), ops.size());
+
+                User user = resolveUser(userIdOrLogin);
+                Branch branch = resolveBranch(request.getBranchId());
+                Cart cart = getOrCreateCart(user);
+
+                // 1 query: cả giỏ hiện tại (kèm món + option)
+                Map<String, CartItem> lines = new LinkedHashMap<>();
+                Map<String, String> itemIdByLine = new HashMap<>();
+                int before = 0;
+                for (CartItem ci : cartItemRepository.findWithItemAndOptionsByCart(cart)) {
+                        lines.put(ci.getItem().getItemId(), ci);
+                        itemIdByLine.put(ci.getCartItemId(), ci.getItem().getItemId());
+                        before += ci.getQuantity() != null ? ci.getQuantity() : 0;
+                }
+
+                // 1 query: các món được thêm mà chưa có trong giỏ
+                Set<String> newItemIds = ops.stream()
+                                .filter(op -> op.getAction() == CartBatchRequest.Action.ADD && op.getItemId() != null)
+                                .map(CartBatchRequest.Operation::getItemId)
+                                .filter(id -> !lines.containsKey(id))
+                                .collect(Collectors.toSet());
+                Map<String, Item> newItems = newItemIds.isEmpty() ? Map.of()
+                                : itemRepository.findAllById(newItemIds).stream()
+                                                .collect(Collectors.toMap(Item::getItemId, Function.identity()));
+
+                // Áp lần lượt trên bản trong bộ nhớ; touched = dòng cần kiểm tra giá/tồn kho
+                Set<String> touched = new LinkedHashSet<>();
+                for (int i = 0; i < ops.size(); i++) {
+                        CartBatchRequest.Operation op = ops.get(i);
+                        String where = "Operation #" + (i + 1) + ": ";
+                        if (op.getAction() == CartBatchRequest.Action.ADD) {
+                                CartItem line = lines.get(op.getItemId());
+                                if (line == null) {
+                                        Item item = newItems.get(op.getItemId());
+                                        if (item == null) {
+                                                throw new ResourceNotFoundException(where + "Item not found");
+                                        }
+                                        line = CartItem.builder().cart(cart).item(item).quantity(0)
+                                                        .unitPrice(BigDecimal.ZERO).build();
+                                        lines.put(item.getItemId(), line);
+                                }
+                                if (Boolean.FALSE.equals(line.getItem().getIsActive())) {
+                                        throw new BadRequestException(where + "Item is inactive");
+                                }
+                                int want = op.getQuantity() == null || op.getQuantity() <= 0 ? 1 : op.getQuantity();
+                                int current = line.getQuantity() != null ? line.getQuantity() : 0;
+                                line.setQuantity(Math.min(current + Math.min(want, MAX_QTY), MAX_QTY));
+                                touched.add(op.getItemId());
+                        } else {
+                                String itemId = op.getCartItemId() != null ? itemIdByLine.get(op.getCartItemId())
+                                                : op.getItemId();
+                                CartItem line = itemId != null ? lines.get(itemId) : null;
+                                if (line == null) {
+                                        throw new ResourceNotFoundException(where + "Cart item not found");
+                                }
+                                int qty = op.getAction() == CartBatchRequest.Action.REMOVE || op.getQuantity() == null
+                                                ? 0 : Math.min(op.getQuantity(), MAX_QTY);
+                                line.setQuantity(Math.max(qty, 0));
+                                touched.add(itemId);
+                        }
+                }
+
+                // 2 query: giá/khả dụng và tồn kho của mọi dòng bị đụng tới
+                List<String> check = touched.stream()
+                                .filter(id -> lines.get(id).getQuantity() > 0)
+                                .toList();
+                Map<String, BranchItemPrice> prices = new HashMap<>();
+                Map<String, Integer> stock = new HashMap<>();
+                if (branch != null && !check.isEmpty()) {
+                        for (BranchItemPrice bip : branchItemPriceRepository
+                                        .findByBranch_BranchIdAndItem_ItemIdIn(branch.getBranchId(), check)) {
+                                prices.put(bip.getItem().getItemId(), bip);
+                        }
+                        for (Object[] row : inventoryRepository.findQuantities(branch.getBranchId(), check)) {
+                                stock.put((String) row[0], row[1] == null ? 0 : ((Number) row[1]).intValue());
+                        }
+                }
+                for (String itemId : check) {
+                        CartItem line = lines.get(itemId);
+                        Item item = line.getItem();
+                        PriceAvail pa = priceAndAvailability(item, prices.get(itemId));
+                        if (!pa.available) {
+                                throw new BadRequestException("Item is not available at this branch: " + item.getName());
+                        }
+                        Integer inStock = stock.get(itemId);
+                        if (inStock != null && inStock < line.getQuantity()) {
+                                throw new BadRequestException("Insufficient inventory: " + item.getName());
+                        }
+                        BigDecimal base = pa.price != null ? pa.price : BigDecimal.ZERO;
+                        line.setUnitPrice(base.add(calcOptionExtras(line)).setScale(2, RoundingMode.HALF_UP));
+                }
+
+                // Ghi theo lô, cùng 1 transaction
+                List<CartItem> toDelete = new ArrayList<>();
+                List<CartItem> toSave = new ArrayList<>();
+                int after = 0;
+                for (CartItem line : lines.values()) {
+                        if (line.getQuantity() == null || line.getQuantity() <= 0) {
+                                if (line.getCartItemId() != null) {
+                                        toDelete.add(line);
+                                }
+                        } else {
+                                after += line.getQuantity();
+                                if (touched.contains(line.getItem().getItemId())) {
+                                        toSave.add(line);
+                                }
+                        }
+                }
+                cartItemRepository.deleteAll(toDelete);
+                cartItemRepository.saveAll(toSave);
+                publishChange(user.getUserId(), after - before);
+
+                log.info("Cart batch applied | user={}, saved={}, deleted={}", user.getUserId(), toSave.size(),
+                                toDelete.size());
+                return lines.values().stream()
+                                .filter(ci -> ci.getQuantity() != null && ci.getQuantity() > 0)
+                                .map(this::convertToDTO)
+                                .collect(toList());
+        }
+
+        @Override
+        public CartRepricingResult repriceCart(String userIdOrLogin, String branchIdOrCode) {
+                User user = resolveUser(userIdOrLogin);
+                Branch branch = resolveBranch(branchIdOrCode);
+                String branchId = branch != null ? branch.getBranchId() : null;
+
+                Optional<Cart> opt = cartRepository.findByUser(user);
+                if (opt.isEmpty())
+                        return new CartRepricingResult(branchId, List.of());
+
+                List<CartItem> lines = cartItemRepository.findWithItemAndOptionsByCart(opt.get());
+                CartRepricingResult result = cartRepricingService.reprice(
+                                lines.stream().map(this::convertToDTO).collect(toList()), branchId);
+
+                // Lưu giá mới cho các dòng còn bán được mà đổi giá
+                Map<String, BigDecimal> newPrices = new HashMap<>();
+                for (CartRepricingResult.Line l : result.getLines()) {
+                        if (l.getStatus() != CartRepricingResult.Status.UNAVAILABLE && l.isPriceChanged()) {
+                                newPrices.put(l.getCartItemId(), l.getNewUnitPrice());
+                        }
+                }
+                List<CartItem> changed = new ArrayList<>();
+                for (CartItem ci : lines) {
+                        BigDecimal price = newPrices.get(ci.getCartItemId());
+                        if (price != null) {
+                                ci.setUnitPrice(price);
+                                changed.add(ci);
+                        }
+                }
+                cartItemRepository.saveAll(changed);
+
+                log.info("Cart repriced | user={}, branch={}, lines={}, repriced={}",
+                                user.getUserId(), branchId, lines.size(), changed.size());
+                return result;
         }
 
         // =====================================================
@@ -195,6 +384,13 @@ public class CartServiceImpl implements CartService {
                 return branchRepository.findFirstByIsActiveTrueOrderByCreatedAtAsc().orElse(null);
         }
 
+        /** Báo cho cache header (số món trong giỏ); áp dụng sau khi transaction commit */
+        private void publishChange(String userId, int delta) {
+                if (delta != 0) {
+                        eventPublisher.publishEvent(new CartChangedEvent(userId, delta));
+                }
+        }
+
         private Cart getOrCreateCart(User user) {
                 return cartRepository.findByUser(user)
                                 .orElseGet(() -> cartRepository.save(Cart.builder().user(user).build()));
@@ -209,18 +405,21 @@ public class CartServiceImpl implements CartService {
         }
 
         private PriceAvail resolvePriceAndAvailability(Item item, Branch branch) {
+                BranchItemPrice bip = branch != null
+                                ? branchItemPriceRepository.findByItemAndBranch(item, branch).orElse(null)
+                                : null;
+                return priceAndAvailability(item, bip);
+        }
+
+        private static PriceAvail priceAndAvailability(Item item, BranchItemPrice bip) {
                 BigDecimal price = item.getPrice();
                 boolean available = Boolean.TRUE.equals(item.getIsActive());
 
-                if (branch != null) {
-                        var bipOpt = branchItemPriceRepository.findByItemAndBranch(item, branch);
-                        if (bipOpt.isPresent()) {
-                                BranchItemPrice bip = bipOpt.get();
-                                if (bip.getPrice() != null)
-                                        price = bip.getPrice();
-                                if (bip.getIsAvailable() != null)
-                                        available = available && bip.getIsAvailable();
-                        }
+                if (bip != null) {
+                        if (bip.getPrice() != null)
+                                price = bip.getPrice();
+                        if (bip.getIsAvailable() != null)
+                                available = available && bip.getIsAvailable();
                 }
                 return new PriceAvail(price, available);
         }
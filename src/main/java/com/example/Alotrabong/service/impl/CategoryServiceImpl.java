@@ -5,6 +5,7 @@ import com.example.Alotrabong.entity.Category;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
 import com.example.Alotrabong.repository.CategoryRepository;
 import com.example.Alotrabong.service.CategoryService;
+import com.example.Alotrabong.service.MenuCatalogService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -20,6 +21,7 @@ import java.util.stream.Collectors;
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final MenuCatalogService menuCatalogService;
 
     @Override
     public CategoryDTO createCategory(CategoryDTO categoryDTO) {
@@ -32,6 +34,7 @@ public class CategoryServiceImpl implements CategoryService {
                 .build();
         
         category = categoryRepository.save(category);
+        menuCatalogService.markDirty();
         log.info("Category created successfully: {}", category.getCategoryId());
         
         return convertToDTO(category);
@@ -64,6 +67,7 @@ public class CategoryServiceImpl implements CategoryService {
         category.setDescription(categoryDTO.getDescription());
         
         category = categoryRepository.save(category);
+        menuCatalogService.markDirty();
         log.info("Category updated successfully: {}", categoryId);
         
         return convertToDTO(category);
@@ -78,6 +82,7 @@ public class CategoryServiceImpl implements CategoryService {
         
         category.setIsActive(false);
         categoryRepository.save(category);
+        menuCatalogService.markDirty();
         
         log.info("Category deactivated: {}", categoryId);
     }
@@ -0,0 +1,239 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.CartItemDTO;
+import com.example.Alotrabong.dto.CartRepricingResult;
+import com.example.Alotrabong.dto.CheckoutQuote;
+import com.example.Alotrabong.dto.CouponValidationResult;
+import com.example.Alotrabong.entity.ShippingRate;
+import com.example.Alotrabong.entity.User;
+import com.example.Alotrabong.exception.ResourceNotFoundException;
+import com.example.Alotrabong.repository.ShippingRateRepository;
+import com.example.Alotrabong.repository.UserRepository;
+import com.example.Alotrabong.service.CartService;
+import com.example.Alotrabong.service.CheckoutQuoteService;
+import com.example.Alotrabong.service.CouponService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Báo giá checkout tính 1 lượt theo lô: định giá giỏ (1 query giá/tồn kho + 1 query phụ thu option),
+ * 1 query phí ship của chi nhánh, 1 query mã giảm giá.
+ * Token là JWT ký HMAC (cùng thư viện với JwtTokenProvider) nên node nào cũng kiểm tra được, không cần session.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CheckoutQuoteServiceImpl implements CheckoutQuoteService {
+
+    // Loại token: token báo giá không bao giờ được nhận như token đăng nhập và ngược lại (xem JwtTokenProvider)
+    private static final String CLAIM_TYPE = "typ";
+    private static final String TOKEN_TYPE = "checkout-quote";
+
+    private static final String CLAIM_BRANCH = "br";
+    private static final String CLAIM_COUPON = "cp";
+    private static final String CLAIM_CART = "cart";
+    private static final String CLAIM_SUBTOTAL = "st";
+    private static final String CLAIM_DISCOUNT = "ds";
+    private static final String CLAIM_SHIPPING = "sf";
+    private static final String CLAIM_GRAND = "gt";
+
+    private final CartService cartService;
+    private final CouponService couponService;
+    private final ShippingRateRepository shippingRateRepository;
+    private final UserRepository userRepository;
+
+    // Khoá riêng, không dùng chung app.jwt.secret
+    @Value("${app.checkout.quote-secret}")
+    private String quoteSecret;
+
+    @Value("${app.checkout.quote-ttl:PT15M}")
+    private Duration quoteTtl;
+
+    // Chi nhánh chưa cấu hình shipping_rates
+    @Value("${app.checkout.default-shipping-fee:15000}")
+    private BigDecimal defaultShippingFee;
+
+    @Override
+    public CheckoutQuote quote(String userLogin, String branchId, String couponCode) {
+        if (userLogin == null) {
+            return price(null, new CartRepricingResult(branchId, List.of()), null);
+        }
+        User user = userRepository.findByLogin(userLogin)
+                .or(() -> userRepository.findById(userLogin))
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        CartRepricingResult priced = cartService.repriceCart(user.getUserId(), branchId);
+        CheckoutQuote q = price(user.getUserId(), priced, couponCode);
+        if (q.getLines().isEmpty() || q.isBlocking()) {
+            return q;
+        }
+
+        Instant expiresAt = Instant.now().plus(quoteTtl);
+        String token = Jwts.builder()
+                .subject(user.getUserId())
+                .claim(CLAIM_TYPE, TOKEN_TYPE)
+                .claim(CLAIM_BRANCH, q.getBranchId())
+                .claim(CLAIM_COUPON, q.getCouponCode())
+                .claim(CLAIM_CART, fingerprint(q.getLines()))
+                .claim(CLAIM_SUBTOTAL, q.getSubtotal().toPlainString())
+                .claim(CLAIM_DISCOUNT, q.getDiscount().toPlainString())
+                .claim(CLAIM_SHIPPING, q.getShippingFee().toPlainString())
+                .claim(CLAIM_GRAND, q.getGrandTotal().toPlainString())
+                .expiration(Date.from(expiresAt))
+                .signWith(signingKey())
+                .compact();
+
+        return CheckoutQuote.builder()
+                .branchId(q.getBranchId())
+                .lines(q.getLines())
+                .changes(q.getChanges())
+                .blocking(false)
+                .subtotal(q.getSubtotal())
+                .optionExtras(q.getOptionExtras())
+                .discount(q.getDiscount())
+                .shippingFee(q.getShippingFee())
+                .grandTotal(q.getGrandTotal())
+                .couponCode(q.getCouponCode())
+                .couponMessage(q.getCouponMessage())
+                .token(token)
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    @Override
+    public CheckoutQuote price(String userIdOrLogin, CartRepricingResult priced, String couponCode) {
+        List<CartItemDTO> lines = priced.toCartItems();
+
+        BigDecimal subtotal = BigDecimal.ZERO;
+        BigDecimal optionExtras = BigDecimal.ZERO;
+        for (CartRepricingResult.Line l : priced.getLines()) {
+            subtotal = subtotal.add(l.getNewTotal());
+            if (l.getOptionExtra() != null) {
+                optionExtras = optionExtras.add(l.getOptionExtra().multiply(BigDecimal.valueOf(l.getQuantity())));
+            }
+        }
+
+        BigDecimal shipping = lines.isEmpty() ? BigDecimal.ZERO : shippingFee(priced.getBranchId(), subtotal);
+
+        BigDecimal discount = BigDecimal.ZERO;
+        String appliedCode = null;
+        String couponMessage = null;
+        if (couponCode != null && !couponCode.isBlank()) {
+            CouponValidationResult vr = couponService.validateAndPreview(userIdOrLogin, priced.getBranchId(),
+                    couponCode, subtotal);
+            couponMessage = vr.message();
+            if (vr.ok()) {
+                discount = vr.previewDiscount();
+                appliedCode = couponCode.trim();
+            }
+        }
+
+        BigDecimal grand = subtotal.add(shipping).subtract(discount);
+        if (grand.signum() < 0) {
+            grand = BigDecimal.ZERO;
+        }
+
+        return CheckoutQuote.builder()
+                .branchId(priced.getBranchId())
+                .lines(lines)
+                .changes(priced.getChanges())
+                .blocking(priced.hasBlockingIssues())
+                .subtotal(subtotal)
+                .optionExtras(optionExtras)
+                .discount(discount)
+                .shippingFee(shipping)
+                .grandTotal(grand)
+                .couponCode(appliedCode)
+                .couponMessage(couponMessage)
+                .build();
+    }
+
+    @Override
+    public Optional<CheckoutQuote.Totals> verify(String token, String userId, String branchId, String couponCode,
+                                                 List<CartItemDTO> cartLines) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        Claims claims;
+        try {
+            claims = Jwts.parser()
+                    .verifyWith(signingKey())
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Quote token rejected: {}", e.getMessage());
+            return Optional.empty();
+        }
+
+        String quotedCoupon = claims.get(CLAIM_COUPON, String.class);
+        String requestedCoupon = couponCode != null && !couponCode.isBlank() ? couponCode.trim() : null;
+        if (!TOKEN_TYPE.equals(claims.get(CLAIM_TYPE, String.class))
+                || !Objects.equals(userId, claims.getSubject())
+                || !Objects.equals(branchId, claims.get(CLAIM_BRANCH, String.class))
+                // Mã trên đơn phải đúng mã đã báo giá (kể cả khi 1 bên không có mã): khác thì tính lại
+                || !Objects.equals(quotedCoupon, requestedCoupon)
+                || !fingerprint(cartLines).equals(claims.get(CLAIM_CART, String.class))) {
+            log.debug("Quote token does not match current checkout for user {}", userId);
+            return Optional.empty();
+        }
+
+        return Optional.of(new CheckoutQuote.Totals(
+                new BigDecimal(claims.get(CLAIM_SUBTOTAL, String.class)),
+                new BigDecimal(claims.get(CLAIM_DISCOUNT, String.class)),
+                new BigDecimal(claims.get(CLAIM_SHIPPING, String.class)),
+                new BigDecimal(claims.get(CLAIM_GRAND, String.class)),
+                quotedCoupon));
+    }
+
+    // Phí cố định theo chi nhánh, miễn phí từ ngưỡng free ship (per_km_fee cần khoảng cách, chưa có dữ liệu)
+    private BigDecimal shippingFee(String branchId, BigDecimal subtotal) {
+        ShippingRate rate = branchId != null
+                ? shippingRateRepository.findActiveByBranchId(branchId).orElse(null)
+                : null;
+        if (rate == null || rate.getBaseFee() == null) {
+            return defaultShippingFee;
+        }
+        BigDecimal threshold = rate.getFreeShipThreshold();
+        if (threshold != null && threshold.signum() > 0 && subtotal.compareTo(threshold) >= 0) {
+            return BigDecimal.ZERO;
+        }
+        return rate.getBaseFee();
+    }
+
+    /** Dấu vân tay giỏ: đổi dòng / số lượng / đơn giá là token hết hiệu lực */
+    private static String fingerprint(List<CartItemDTO> lines) {
+        List<String> parts = new ArrayList<>(lines.size());
+        for (CartItemDTO l : lines) {
+            parts.add(l.getCartItemId() + "|" + l.getItemId() + "|" + l.getQuantity() + "|"
+                    + (l.getUnitPrice() != null ? l.getUnitPrice().stripTrailingZeros().toPlainString() : ""));
+        }
+        Collections.sort(parts);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(String.join("\n", parts).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private SecretKey signingKey() {
+        return Keys.hmacShaKeyFor(quoteSecret.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.HeaderInfo;
+import com.example.Alotrabong.entity.User;
+import com.example.Alotrabong.event.CartChangedEvent;
+import com.example.Alotrabong.event.UserProfileChangedEvent;
+import com.example.Alotrabong.repository.UserRepository;
+import com.example.Alotrabong.service.CartService;
+import com.example.Alotrabong.service.HeaderInfoService;
+import com.example.Alotrabong.util.LruMap;
+import com.example.Alotrabong.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache header theo user: tên hiển thị + số món trong giỏ.
+ * <p>
+ * Đọc O(1) từ bộ nhớ; giỏ hàng / hồ sơ đổi thì entry bị bỏ sau khi transaction commit và request sau đọc lại từ DB.
+ * Mỗi lần bỏ được đánh số: lần nạp bắt đầu trước lần bỏ (đã đọc số cũ) sẽ không được ghi vào cache.
+ * Mỗi entry sống tối đa {@link #TTL_MINUTES} phút để tự sửa nếu lệch (vd. đổi giỏ từ instance khác).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HeaderInfoServiceImpl implements HeaderInfoService {
+
+    private static final long TTL_MINUTES = 10;
+    private static final int MAX_CACHED_USERS = 10_000;
+
+    private final UserRepository userRepository;
+    private final CartService cartService;
+
+    private record Entry(String userId, String displayName, int cartCount, long expiresAtNanos) {
+    }
+
+    // userId -> header, LRU (khoá của map cũng dùng để ghép "kiểm tra số lần bỏ + ghi" thành 1 bước)
+    private final Map<String, Entry> byUserId = LruMap.synchronizedMap(MAX_CACHED_USERS);
+    // userId -> số thứ tự của lần bỏ gần nhất
+    private final Map<String, Long> invalidatedAt = LruMap.synchronizedMap(MAX_CACHED_USERS);
+    // login/email/phone -> userId
+    private final Map<String, String> userIdByLogin = LruMap.synchronizedMap(MAX_CACHED_USERS);
+    private final AtomicLong invalidationSeq = new AtomicLong();
+
+    @Override
+    public HeaderInfo get(String login) {
+        if (login == null || login.isBlank()) {
+            return null;
+        }
+        String userId = userIdByLogin.get(login);
+        Entry e = userId != null ? byUserId.get(userId) : null;
+        if (e == null || System.nanoTime() > e.expiresAtNanos()) {
+            e = load(login);
+            if (e == null) {
+                return null;
+            }
+        }
+        return new HeaderInfo(e.userId(), e.displayName(), Math.max(0, e.cartCount()));
+    }
+
+    private Entry load(String login) {
+        long startedAt = invalidationSeq.get();
+        User u = userRepository.findByLogin(login)
+                .orElseGet(() -> userRepository.findById(login).orElse(null));
+        if (u == null) {
+            return null;
+        }
+        int count = cartService.getCartItemCount(u.getUserId(), null);
+        Entry e = new Entry(u.getUserId(), u.getFullName(), count,
+                System.nanoTime() + TimeUnit.MINUTES.toNanos(TTL_MINUTES));
+        userIdByLogin.put(login, u.getUserId());
+        synchronized (byUserId) {
+            Long invalidated = invalidatedAt.get(u.getUserId());
+            if (invalidated == null || invalidated <= startedAt) {
+                byUserId.put(u.getUserId(), e);
+            }
+        }
+        return e;
+    }
+
+    @Override
+    public void invalidate(String userIdOrLogin) {
+        if (userIdOrLogin == null) {
+            return;
+        }
+        String userId = userIdByLogin.remove(userIdOrLogin);
+        evict(userIdOrLogin);
+        if (userId != null) {
+            evict(userId);
+        }
+    }
+
+    private void evict(String userId) {
+        synchronized (byUserId) {
+            invalidatedAt.put(userId, invalidationSeq.incrementAndGet());
+            byUserId.remove(userId);
+        }
+    }
+
+    // ======================= events =======================
+
+    @EventListener
+    public void onCartChanged(CartChangedEvent event) {
+        if (event.userId() == null) {
+            return;
+        }
+        // Bỏ ngay (request khác không đọc số cũ trong lúc chờ commit) và bỏ lần nữa sau commit
+        evict(event.userId());
+        TransactionHooks.afterCommit(() -> evict(event.userId()));
+    }
+
+    @EventListener
+    public void onProfileChanged(UserProfileChangedEvent event) {
+        TransactionHooks.afterCommit(() -> invalidate(event.userId()));
+    }
+
+    @EventListener
+    public void onLogin(AuthenticationSuccessEvent event) {
+        invalidate(event.getAuthentication().getName());
+    }
+}
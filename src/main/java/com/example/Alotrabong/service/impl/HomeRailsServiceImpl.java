@@ -0,0 +1,221 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.HomeItemVM;
+import com.example.Alotrabong.dto.HomeRails;
+import com.example.Alotrabong.dto.ItemDTO;
+import com.example.Alotrabong.dto.MenuCatalog;
+import com.example.Alotrabong.dto.MenuCatalog.BranchOffer;
+import com.example.Alotrabong.event.MenuCatalogRefreshedEvent;
+import com.example.Alotrabong.service.HomeRailsService;
+import com.example.Alotrabong.service.ItemService;
+import com.example.Alotrabong.service.ItemThumbnailService;
+import com.example.Alotrabong.service.MenuCatalogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache các dải món trang chủ theo TTL.
+ * <p>
+ * - Hết hạn: chỉ 1 request dựng lại (single-flight), các request khác trả bản cũ hoặc chờ chung kết quả.
+ * - Menu đổi (món, giá, ảnh): xoá cache qua {@link MenuCatalogRefreshedEvent}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HomeRailsServiceImpl implements HomeRailsService {
+
+    private static final int RAIL_SIZE = 8;
+    private static final String ALL_BRANCHES = "*";
+
+    private final ItemService itemService;
+    private final MenuCatalogService menuCatalogService;
+    private final ItemThumbnailService itemThumbnailService;
+
+    @Value("${app.home-rails.ttl:PT5M}")
+    private Duration ttl;
+
+    // true: mỗi chi nhánh 1 bản (món mới/bán chạy theo chi nhánh); false: 1 bản chung
+    @Value("${app.home-rails.per-branch:false}")
+    private boolean perBranch;
+
+    private final Map<String, CachedRails> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<HomeRails>> inFlight = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate: bản dựng bắt đầu trước đó sẽ không được ghi vào cache
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    private record CachedRails(HomeRails rails, long expiresAtNanos) {
+    }
+
+    @Override
+    public HomeRails getRails(String branchId) {
+        String key = (perBranch && branchId != null && !branchId.isBlank()) ? branchId : ALL_BRANCHES;
+        CachedRails cached = cache.get(key);
+        if (cached != null && System.nanoTime() < cached.expiresAtNanos()) {
+            hits.increment();
+            return cached.rails();
+        }
+
+        CompletableFuture<HomeRails> mine = new CompletableFuture<>();
+        CompletableFuture<HomeRails> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // Đã có request khác đang dựng lại: trả bản cũ nếu có, không thì chờ chung kết quả
+            if (cached != null) {
+                staleHits.increment();
+                return cached.rails();
+            }
+            misses.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        misses.increment();
+        long gen = generation.get();
+        long start = System.nanoTime();
+        try {
+            HomeRails rails = build(key);
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+            if (generation.get() == gen) {
+                cache.put(key, new CachedRails(rails, System.nanoTime() + ttl.toNanos()));
+            }
+            mine.complete(rails);
+            return rails;
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            mine.completeExceptionally(e);
+            if (cached != null) {
+                log.warn("Home rails rebuild failed for {}, serving stale copy: {}", key, e.getMessage());
+                return cached.rails();
+            }
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    @EventListener
+    public void onMenuRefreshed(MenuCatalogRefreshedEvent event) {
+        log.debug("Menu catalog v{} published, dropping home rails cache", event.version());
+        invalidateAll();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long h = hits.sum();
+        long s = staleHits.sum();
+        long m = misses.sum();
+        long l = loads.sum();
+        long total = h + s + m;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", h);
+        stats.put("staleHits", s);
+        stats.put("misses", m);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (h + s) / total);
+        stats.put("loads", l);
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("avgLoadMillis", l == 0 ? 0.0 : loadNanos.sum() / 1_000_000.0 / l);
+        stats.put("entries", cache.size());
+        stats.put("ttlSeconds", ttl.toSeconds());
+        stats.put("perBranch", perBranch);
+        return stats;
+    }
+
+    // ======================= build =======================
+
+    private HomeRails build(String key) {
+        String branchId = ALL_BRANCHES.equals(key) ? null : key;
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+
+        // Món mới lấy thẳng từ snapshot menu (đã sort theo createdAt)
+        List<HomeItemVM> newest = catalog.getActiveItems().stream()
+                .filter(i -> branchId == null || isOffered(catalog, branchId, i.getItemId()))
+                .limit(RAIL_SIZE)
+                .map(i -> HomeItemVM.builder()
+                        .id(i.getItemId())
+                        .name(i.getName())
+                        .price(i.getPrice())
+                        .thumbnailUrl(i.getThumbnailUrl() != null
+                                ? i.getThumbnailUrl()
+                                : "/img/products/" + i.getItemId() + ".jpg")
+                        .build())
+                .toList();
+
+        List<ItemDTO> best = branchId == null
+                ? itemService.getTopSellingItems(RAIL_SIZE)
+                : itemService.getTopSellingItemsByBranch(branchId, RAIL_SIZE);
+        List<ItemDTO> favorites = itemService.getTopFavoritedItems(RAIL_SIZE);
+
+        return new HomeRails(newest, mapItems(best), mapItems(favorites), LocalDateTime.now());
+    }
+
+    private static boolean isOffered(MenuCatalog catalog, String branchId, String itemId) {
+        BranchOffer offer = catalog.offer(branchId, itemId);
+        return offer != null && offer.isAvailable();
+    }
+
+    private List<HomeItemVM> mapItems(List<ItemDTO> src) {
+        if (src == null || src.isEmpty()) {
+            return List.of();
+        }
+        Map<String, String> thumbs = itemThumbnailService.resolve(src.stream()
+                .filter(i -> firstMediaUrl(i) == null)
+                .map(ItemDTO::getItemId)
+                .toList());
+        return src.stream()
+                .map(i -> {
+                    String thumb = firstMediaUrl(i);
+                    if (thumb == null) {
+                        thumb = thumbs.getOrDefault(i.getItemId(), "/img/products/" + i.getItemId() + ".jpg");
+                    }
+                    return HomeItemVM.builder()
+                            .id(i.getItemId())
+                            .name(i.getName())
+                            .price(i.getPrice())
+                            .thumbnailUrl(thumb)
+                            .build();
+                })
+                .toList();
+    }
+
+    private static String firstMediaUrl(ItemDTO i) {
+        if (i.getMediaUrls() != null) {
+            for (String u : i.getMediaUrls()) {
+                if (u != null && !u.isBlank()) {
+                    return u;
+                }
+            }
+        }
+        return null;
+    }
+}
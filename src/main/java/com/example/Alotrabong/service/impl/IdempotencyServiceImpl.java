@@ -0,0 +1,214 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.IdempotencyKey;
+import com.example.Alotrabong.exception.BadRequestException;
+import com.example.Alotrabong.repository.IdempotencyKeyRepository;
+import com.example.Alotrabong.service.IdempotencyService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency key lưu trong bảng idempotency_keys.
+ * <p>
+ * - Request đầu INSERT dòng "đang chạy" (transaction riêng, commit ngay) rồi mới chạy action; request trùng
+ *   đụng khoá chính nên không chạy lại action mà chờ tới khi dòng có kết quả.
+ * - Trùng trong cùng JVM (double-click) thì chờ thẳng trên {@link CompletableFuture} của request đầu, không hỏi DB.
+ * - Action chạy trong transaction của caller thì chỉ ghi kết quả sau khi transaction đó commit; rollback thì
+ *   nhả key để client thử lại. Kết quả caller không muốn giữ (predicate keep) cũng nhả key như vậy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 200;
+    private static final long POLL_MILLIS = 150;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.idempotency.ttl:PT24H}")
+    private Duration ttl;
+
+    // Request đầu chết giữa chừng thì sau khoảng này request khác được chạy lại
+    @Value("${app.idempotency.lock-timeout:PT30S}")
+    private Duration lockTimeout;
+
+    // Thời gian tối đa request trùng chờ request đầu
+    @Value("${app.idempotency.wait-timeout:PT15S}")
+    private Duration waitTimeout;
+
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private record Claim(boolean owner, String result) {
+    }
+
+    @Override
+    public String execute(String scope, String key, Supplier<String> action, Predicate<String> keep) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        String id = scope + ":" + key.trim();
+        if (id.length() > MAX_KEY_LENGTH) {
+            id = scope + ":" + UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8));
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            String result = runOnce(id, action, keep);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    private String runOnce(String id, Supplier<String> action, Predicate<String> keep) {
+        long waitUntil = System.currentTimeMillis() + waitTimeout.toMillis();
+        while (true) {
+            Claim claim = tryClaim(id);
+            if (claim != null && !claim.owner()) {
+                log.debug("Idempotent replay for {}", id);
+                return claim.result();
+            }
+            if (claim != null) {
+                return runClaimed(id, action, keep);
+            }
+            // Request khác (instance khác) đang chạy
+            if (System.currentTimeMillis() > waitUntil) {
+                throw new BadRequestException("Yêu cầu đang được xử lý, vui lòng thử lại sau giây lát.");
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BadRequestException("Request interrupted");
+            }
+        }
+    }
+
+    private String runClaimed(String id, Supplier<String> action, Predicate<String> keep) {
+        String result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            release(id);
+            throw e;
+        }
+
+        boolean store = keep.test(result);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (store && status == STATUS_COMMITTED) {
+                        complete(id, result);
+                    } else {
+                        release(id);
+                    }
+                }
+            });
+        } else if (store) {
+            complete(id, result);
+        } else {
+            release(id);
+        }
+        return result;
+    }
+
+    private void complete(String id, String result) {
+        inNewTransaction(() -> idempotencyKeyRepository.complete(id, result, LocalDateTime.now().plus(ttl)));
+    }
+
+    private void release(String id) {
+        inNewTransaction(() -> idempotencyKeyRepository.release(id));
+    }
+
+    /**
+     * @return Claim(owner = true) nếu request này được chạy action, Claim(owner = false, result) nếu đã có kết quả,
+     *         null nếu request khác đang chạy
+     */
+    private Claim tryClaim(String id) {
+        try {
+            return new TransactionTemplate(transactionManager, requiresNew()).execute(s -> {
+                LocalDateTime now = LocalDateTime.now();
+                IdempotencyKey existing = idempotencyKeyRepository.findById(id).orElse(null);
+                if (existing != null && existing.getExpiresAt().isBefore(now)) {
+                    idempotencyKeyRepository.delete(existing);
+                    idempotencyKeyRepository.flush();
+                    existing = null;
+                }
+                if (existing == null) {
+                    idempotencyKeyRepository.claim(id, now.plus(lockTimeout), now.plus(ttl), now);
+                    return new Claim(true, null);
+                }
+                if (Boolean.TRUE.equals(existing.getCompleted())) {
+                    return new Claim(false, existing.getResult());
+                }
+                if (idempotencyKeyRepository.takeOver(id, now.plus(lockTimeout), now) > 0) {
+                    log.warn("Idempotency key {} was stuck, taking over", id);
+                    return new Claim(true, null);
+                }
+                return null;
+            });
+        } catch (DataIntegrityViolationException e) {
+            return null; // vừa bị request khác INSERT trước
+        }
+    }
+
+    private String await(CompletableFuture<String> running) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new BadRequestException("Yêu cầu đang được xử lý, vui lòng thử lại sau giây lát.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BadRequestException("Request interrupted");
+        }
+    }
+
+    @Override
+    public int purgeExpired() {
+        Integer n = new TransactionTemplate(transactionManager)
+                .execute(s -> idempotencyKeyRepository.deleteExpired(LocalDateTime.now()));
+        return n != null ? n : 0;
+    }
+
+    private void inNewTransaction(Runnable work) {
+        new TransactionTemplate(transactionManager, requiresNew()).executeWithoutResult(s -> work.run());
+    }
+
+    private static TransactionDefinition requiresNew() {
+        TransactionTemplate def = new TransactionTemplate();
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return def;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.StockDeductionResult;
+import com.example.Alotrabong.entity.*;
+import com.example.Alotrabong.repository.InventoryReservationRepository;
+import com.example.Alotrabong.repository.ItemRepository;
+import com.example.Alotrabong.repository.OrderRepository;
+import com.example.Alotrabong.service.InventoryReservationService;
+import com.example.Alotrabong.service.InventoryService;
+import com.example.Alotrabong.service.OrderEventRecorder;
+import com.example.Alotrabong.service.OrderStateMachine;
+import com.example.Alotrabong.util.HashedTimingWheel;
+import com.example.Alotrabong.util.TransactionHooks;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Giữ hàng cho đơn mới: trừ kho ngay lúc đặt (qua {@link InventoryService#deduct}), ghi các dòng
+ * inventory_reservations trạng thái HELD kèm hạn chót.
+ * <p>
+ * Hạn chót nằm trên 1 {@link HashedTimingWheel} trong bộ nhớ (tick 1s) chứ không quét bảng định kỳ.
+ * Khi tới hạn, việc nhả hàng chạy trên executor riêng và kiểm tra lại trong DB bằng UPDATE có điều kiện
+ * (status = HELD và expires_at <= now), nên gia hạn / xác nhận ở instance khác vẫn an toàn.
+ * Khởi động lại: nạp lại hạn của mọi đơn còn HELD.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class InventoryReservationServiceImpl implements InventoryReservationService {
+
+    private final InventoryReservationRepository reservationRepository;
+    private final InventoryService inventoryService;
+    private final OrderRepository orderRepository;
+    private final ItemRepository itemRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final OrderEventRecorder orderEventRecorder;
+
+    // Chờ chi nhánh xác nhận (COD)
+    @Value("${app.inventory.reservation-ttl:PT30M}")
+    private Duration reservationTtl;
+
+    // Chờ thanh toán online: vnp_ExpireDate 15' + trễ callback
+    @Value("${app.inventory.payment-reservation-ttl:PT17M}")
+    private Duration paymentTtl;
+
+    private final HashedTimingWheel wheel = new HashedTimingWheel("reservation-wheel", 1000, 1024, this::onDeadline);
+    private final ExecutorService releaser = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "reservation-release");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    void startWheel() {
+        wheel.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        wheel.stop();
+        releaser.shutdownNow();
+    }
+
+    @Override
+    public StockDeductionResult reserve(Order order, Map<String, Integer> qtyByItem) {
+        String branchId = order.getBranch().getBranchId();
+        StockDeductionResult result = inventoryService.deduct(branchId, qtyByItem);
+        if (!result.isSuccess()) {
+            return result;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(reservationTtl);
+        List<InventoryReservation> rows = new ArrayList<>();
+        qtyByItem.forEach((itemId, qty) -> {
+            if (qty != null && qty > 0) {
+                rows.add(InventoryReservation.builder()
+                        .order(order)
+                        .branch(order.getBranch())
+                        .item(itemRepository.getReferenceById(itemId))
+                        .quantity(qty)
+                        .status(ReservationStatus.HELD)
+                        .expiresAt(expiresAt)
+                        .createdAt(now)
+                        .updatedAt(now)
+                        .build());
+            }
+        });
+        reservationRepository.saveAll(rows);
+
+        String orderId = order.getOrderId();
+        TransactionHooks.afterCommit(() -> wheel.schedule(orderId, toInstant(expiresAt)));
+        log.debug("Reserved {} lines for order {} until {}", rows.size(), orderId, expiresAt);
+        return result;
+    }
+
+    @Override
+    public void holdForPayment(String orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(paymentTtl);
+        if (reservationRepository.updateExpiry(orderId, expiresAt, now) > 0) {
+            TransactionHooks.afterCommit(() -> wheel.schedule(orderId, toInstant(expiresAt)));
+        }
+    }
+
+    @Override
+    public boolean commit(String orderId) {
+        if (reservationRepository.transition(orderId, ReservationStatus.HELD, ReservationStatus.COMMITTED,
+                LocalDateTime.now()) > 0) {
+            TransactionHooks.afterCommit(() -> wheel.cancel(orderId));
+            log.info("Reservation committed for order {}", orderId);
+            return true;
+        }
+        return reservationRepository.existsByOrder_OrderIdAndStatus(orderId, ReservationStatus.COMMITTED);
+    }
+
+    @Override
+    public void release(String orderId) {
+        List<InventoryReservation> held = reservationRepository.findByOrder_OrderIdAndStatus(orderId,
+                ReservationStatus.HELD);
+        if (held.isEmpty()) {
+            return;
+        }
+        if (reservationRepository.transition(orderId, ReservationStatus.HELD, ReservationStatus.RELEASED,
+                LocalDateTime.now()) > 0) {
+            restock(held);
+            TransactionHooks.afterCommit(() -> wheel.cancel(orderId));
+            log.info("Reservation released for cancelled order {}", orderId);
+        }
+    }
+
+    @Override
+    public boolean releaseCommitted(String orderId) {
+        List<InventoryReservation> committed = reservationRepository.findByOrder_OrderIdAndStatus(orderId,
+                ReservationStatus.COMMITTED);
+        if (committed.isEmpty()) {
+            return false;
+        }
+        if (reservationRepository.transition(orderId, ReservationStatus.COMMITTED, ReservationStatus.RELEASED,
+                LocalDateTime.now()) == 0) {
+            return false;
+        }
+        restock(committed);
+        log.info("Committed reservation returned to stock for cancelled order {}", orderId);
+        return true;
+    }
+
+    // ======================= expiry =======================
+
+    /** Chạy trên thread bánh xe: chỉ chuyển việc sang executor */
+    private void onDeadline(String orderId) {
+        releaser.submit(() -> {
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(s -> expire(orderId));
+            } catch (Exception e) {
+                log.error("Could not release expired reservation for order {}", orderId, e);
+            }
+        });
+    }
+
+    private void expire(String orderId) {
+        List<InventoryReservation> held = reservationRepository.findByOrder_OrderIdAndStatus(orderId,
+                ReservationStatus.HELD);
+        if (held.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime deadline = held.stream().map(InventoryReservation::getExpiresAt)
+                .max(Comparator.naturalOrder()).orElse(now);
+        if (deadline.isAfter(now)) {
+            // Đã được gia hạn (vd. ở instance khác): xếp lại theo hạn mới
+            wheel.schedule(orderId, toInstant(deadline));
+            return;
+        }
+        if (reservationRepository.releaseIfExpired(orderId, now) == 0) {
+            return;
+        }
+        restock(held);
+
+        // Chưa ai xác nhận / thanh toán -> huỷ đơn
+        orderRepository.findById(orderId).ifPresent(order -> {
+            // Không qua OrderStateMachine (nó phụ thuộc service này); hàng đã trả kho ở trên, chỉ còn đổi trạng thái
+            // Điều kiện "chưa thanh toán" nằm ngay trong UPDATE: callback VNPAY tới cùng lúc thì chỉ 1 bên thắng
+            if (orderRepository.cancelIfUnpaid(orderId, now) > 0) {
+                orderEventRecorder.recordStatusChange(order, OrderStatus.PENDING, OrderStatus.CANCELLED,
+                        OrderStateMachine.Actor.SYSTEM, "Reservation expired");
+            }
+        });
+        log.info("Reservation expired for order {}: {} lines returned to stock", orderId, held.size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverPending() {
+        try {
+            List<Object[]> rows = reservationRepository.findHeldDeadlines();
+            for (Object[] row : rows) {
+                wheel.schedule((String) row[0], toInstant((LocalDateTime) row[1]));
+            }
+            log.info("Recovered {} pending inventory reservations", rows.size());
+        } catch (Exception e) {
+            log.error("Could not recover pending inventory reservations", e);
+        }
+    }
+
+    // ======================= helpers =======================
+
+    private void restock(List<InventoryReservation> rows) {
+        Map<String, Map<String, Integer>> byBranch = new HashMap<>();
+        for (InventoryReservation r : rows) {
+            byBranch.computeIfAbsent(r.getBranch().getBranchId(), k -> new HashMap<>())
+                    .merge(r.getItem().getItemId(), r.getQuantity(), Integer::sum);
+        }
+        byBranch.forEach(inventoryService::restock);
+    }
+
+    private static Instant toInstant(LocalDateTime t) {
+        return t.atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.StockDeductionResult;
+import com.example.Alotrabong.dto.StockDeductionResult.Shortage;
+import com.example.Alotrabong.service.InventoryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Trừ/cộng kho theo lô: mỗi dòng là 1 câu UPDATE có điều kiện, cả đơn gửi đi trong 1 JDBC batch.
+ * <p>
+ * Điều kiện {@code quantity >= yêu cầu} nằm ngay trong UPDATE nên mỗi dòng được kiểm tra và trừ
+ * nguyên tử dưới khoá ghi của DB: 2 đơn đồng thời không thể cùng đọc số cũ rồi ghi đè nhau
+ * (lost update) hay làm tồn kho âm. Dòng nào không đủ thì update count = 0; khi đó phần đã trừ
+ * được cộng lại ngay trong cùng transaction (các dòng vẫn đang bị khoá nên không ai chen vào được).
+ * Chỉ dùng SQL chuẩn nên chạy được cả trên SQL Server lẫn H2.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class InventoryServiceImpl implements InventoryService {
+
+    // Số item_id trong 1 câu IN (...), dưới giới hạn 2100 tham số của SQL Server
+    private static final int CHUNK = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public StockDeductionResult deduct(String branchId, Map<String, Integer> qtyByItem) {
+        Map<String, Integer> wanted = normalize(qtyByItem);
+        if (branchId == null || wanted.isEmpty()) {
+            return new StockDeductionResult(List.of());
+        }
+
+        // normalize() sắp theo itemId: các đơn đồng thời khoá dòng theo cùng thứ tự, ít deadlock hơn
+        List<Map.Entry<String, Integer>> lines = new ArrayList<>(wanted.entrySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[] counts = jdbcTemplate.batchUpdate(
+                "update inventory set quantity = quantity - ?, updated_at = ? "
+                        + "where branch_id = ? and item_id = ? and quantity >= ?",
+                lines.stream()
+                        .map(e -> new Object[] { e.getValue(), now, branchId, e.getKey(), e.getValue() })
+                        .toList());
+        Map<String, Integer> deducted = new HashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                deducted.put(lines.get(i).getKey(), lines.get(i).getValue());
+            }
+        }
+
+        // Các món chưa trừ được: có dòng inventory mà không đủ hàng -> thiếu; không có dòng -> không quản lý kho
+        List<String> missed = wanted.keySet().stream().filter(id -> !deducted.containsKey(id)).toList();
+        List<Shortage> shortages = new ArrayList<>();
+        if (!missed.isEmpty()) {
+            Map<String, Integer> stock = currentStock(branchId, missed);
+            for (String itemId : missed) {
+                Integer available = stock.get(itemId);
+                if (available != null) {
+                    shortages.add(new Shortage(itemId, wanted.get(itemId), available));
+                }
+            }
+        }
+
+        if (!shortages.isEmpty()) {
+            restock(branchId, deducted);
+            log.info("Stock deduction rejected at branch {}: {} short lines", branchId, shortages.size());
+            return new StockDeductionResult(shortages);
+        }
+        log.debug("Deducted stock at branch {} for {} lines", branchId, deducted.size());
+        return new StockDeductionResult(List.of());
+    }
+
+    @Override
+    public void restock(String branchId, Map<String, Integer> qtyByItem) {
+        Map<String, Integer> lines = normalize(qtyByItem);
+        if (branchId == null || lines.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "update inventory set quantity = quantity + ?, updated_at = ? where branch_id = ? and item_id = ?",
+                lines.entrySet().stream()
+                        .map(e -> new Object[] { e.getValue(), now, branchId, e.getKey() })
+                        .toList());
+    }
+
+    // ======================= helpers =======================
+
+    private Map<String, Integer> currentStock(String branchId, List<String> itemIds) {
+        Map<String, Integer> stock = new HashMap<>();
+        for (int from = 0; from < itemIds.size(); from += CHUNK) {
+            List<String> part = itemIds.subList(from, Math.min(from + CHUNK, itemIds.size()));
+            List<Object> params = new ArrayList<>(part);
+            params.add(branchId);
+            jdbcTemplate.query("select item_id, quantity from inventory where item_id in ("
+                            + String.join(",", Collections.nCopies(part.size(), "?")) + ") and branch_id = ?",
+                    rs -> {
+                        stock.put(rs.getString(1), rs.getInt(2));
+                    }, params.toArray());
+        }
+        return stock;
+    }
+
+    /** Gộp trùng, bỏ dòng số lượng <= 0, sắp theo itemId */
+    private static Map<String, Integer> normalize(Map<String, Integer> qtyByItem) {
+        Map<String, Integer> m = new TreeMap<>();
+        if (qtyByItem != null) {
+            qtyByItem.forEach((itemId, qty) -> {
+                if (itemId != null && qty != null && qty > 0) {
+                    m.merge(itemId, qty, Integer::sum);
+                }
+            });
+        }
+        return m;
+    }
+}
@@ -6,6 +6,8 @@ import com.example.Alotrabong.entity.ItemMedia;
 import com.example.Alotrabong.repository.ItemMediaRepository;
 import com.example.Alotrabong.repository.ItemRepository;
 import com.example.Alotrabong.service.ItemMediaService;
+import com.example.Alotrabong.service.ItemThumbnailService;
+import com.example.Alotrabong.service.MenuCatalogService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,6 +21,8 @@ public class ItemMediaServiceImpl implements ItemMediaService {
 
     private final ItemMediaRepository itemMediaRepository;
     private final ItemRepository itemRepository;
+    private final MenuCatalogService menuCatalogService;
+    private final ItemThumbnailService itemThumbnailService;
 
     @Override
     @Transactional
@@ -44,6 +48,8 @@ public class ItemMediaServiceImpl implements ItemMediaService {
         }
 
         ItemMedia saved = itemMediaRepository.save(media);
+        itemThumbnailService.evict(item.getItemId());
+        menuCatalogService.markDirty();
         return mapToDTO(saved);
     }
 
@@ -69,13 +75,18 @@ public class ItemMediaServiceImpl implements ItemMediaService {
         }
 
         ItemMedia updated = itemMediaRepository.save(media);
+        itemThumbnailService.evict(media.getItem().getItemId());
+        menuCatalogService.markDirty();
         return mapToDTO(updated);
     }
 
     @Override
     @Transactional
     public void deleteMedia(Integer mediaId) {
+        itemMediaRepository.findById(mediaId)
+                .ifPresent(m -> itemThumbnailService.evict(m.getItem().getItemId()));
         itemMediaRepository.deleteById(mediaId);
+        menuCatalogService.markDirty();
     }
 
     @Override
@@ -97,6 +108,8 @@ public class ItemMediaServiceImpl implements ItemMediaService {
     @Transactional
     public void deleteAllMediaByItem(String itemId) {
         itemMediaRepository.deleteByItem_ItemId(itemId);
+        itemThumbnailService.evict(itemId);
+        menuCatalogService.markDirty();
     }
 
     private ItemMediaDTO mapToDTO(ItemMedia media) {
@@ -0,0 +1,328 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.ItemSuggestionDTO;
+import com.example.Alotrabong.dto.MenuCatalog;
+import com.example.Alotrabong.dto.MenuCatalog.CatalogItem;
+import com.example.Alotrabong.repository.ItemStatsRepository;
+import com.example.Alotrabong.service.ItemSearchService;
+import com.example.Alotrabong.service.MenuCatalogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index trong bộ nhớ cho món đang bán (tên, danh mục, mô tả).
+ * <p>
+ * - Bỏ dấu tiếng Việt khi index và khi tìm ("com suon" khớp "Cơm sườn").
+ * - Mỗi token khớp chính xác, theo tiền tố (gõ dở) hoặc sai 1-2 ký tự.
+ * - Điểm = độ liên quan (field nào khớp, khớp kiểu gì, có khớp cả cụm trong tên không) x độ phổ biến.
+ * <p>
+ * Index đi theo version của {@link MenuCatalog}: khi snapshot menu đổi, chỉ những món bị thêm/sửa/xoá
+ * mới được index lại.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ItemSearchServiceImpl implements ItemSearchService {
+
+    // Trọng số theo field
+    private static final float W_NAME = 3f;
+    private static final float W_CATEGORY = 2f;
+    private static final float W_DESCRIPTION = 1f;
+
+    // Hệ số theo kiểu khớp
+    private static final float EXACT = 1f;
+    private static final float PREFIX = 0.6f;
+    private static final float FUZZY = 0.35f;
+
+    private static final float PHRASE_BONUS = 1.5f;
+    private static final long POPULARITY_TTL_MS = 5 * 60 * 1000L;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^a-z0-9]+");
+
+    private final MenuCatalogService menuCatalogService;
+    private final ItemStatsRepository itemStatsRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // term -> itemId -> trọng số field cao nhất chứa term (TreeMap để quét tiền tố)
+    private final TreeMap<String, Map<String, Float>> postings = new TreeMap<>();
+    private final Map<String, IndexedDoc> docs = new HashMap<>();
+    private volatile long indexedVersion = -1;
+
+    // itemId -> sold + 2 * favorite
+    private volatile Map<String, Long> popularity = Map.of();
+    private volatile long popularityLoadedAt = 0;
+
+    private record IndexedDoc(String signature, String foldedName, Set<String> terms) {
+    }
+
+    // ======================= query =======================
+
+    @Override
+    public List<String> searchIds(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        ensureCurrent();
+        Map<String, Long> pop = popularity();
+        String phrase = String.join(" ", tokens);
+
+        Map<String, Float> relevance = new HashMap<>();
+        Map<String, Integer> matchedTokens = new HashMap<>();
+        Map<String, Float> scores = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            for (String token : tokens) {
+                matchToken(token).forEach((itemId, s) -> {
+                    relevance.merge(itemId, s, Float::sum);
+                    matchedTokens.merge(itemId, 1, Integer::sum);
+                });
+            }
+
+            // Ưu tiên món khớp đủ mọi token; nếu không có thì chấp nhận khớp từ một nửa số token
+            int required = tokens.size();
+            boolean anyFull = matchedTokens.values().stream().anyMatch(c -> c == required);
+            int minMatched = anyFull ? required : (required + 1) / 2;
+
+            relevance.forEach((itemId, rel) -> {
+                int matched = matchedTokens.get(itemId);
+                if (matched < minMatched) {
+                    return;
+                }
+                float score = rel * matched / required;
+                IndexedDoc doc = docs.get(itemId);
+                if (doc != null && doc.foldedName().contains(phrase)) {
+                    score *= PHRASE_BONUS;
+                }
+                long p = pop.getOrDefault(itemId, 0L);
+                scores.put(itemId, (float) (score * (1 + 0.1 * Math.log1p(p))));
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Float>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Override
+    public List<ItemSuggestionDTO> suggest(String prefix, int limit) {
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+        return searchIds(prefix, limit).stream()
+                .map(catalog::findItem)
+                .flatMap(Optional::stream)
+                .map(it -> ItemSuggestionDTO.builder()
+                        .itemId(it.getItemId())
+                        .name(it.getName())
+                        .slug(it.getSlug())
+                        .categoryName(it.getCategoryName())
+                        .price(it.getPrice())
+                        .thumbnailUrl(it.getThumbnailUrl() != null ? it.getThumbnailUrl() : "/img/placeholder.jpg")
+                        .build())
+                .toList();
+    }
+
+    /** Điểm tốt nhất của từng món cho 1 token: khớp chính xác > tiền tố > gần đúng */
+    private Map<String, Float> matchToken(String token) {
+        Map<String, Float> best = new HashMap<>();
+
+        Map<String, Float> exact = postings.get(token);
+        if (exact != null) {
+            exact.forEach((id, w) -> best.merge(id, w * EXACT, Math::max));
+        }
+
+        if (token.length() >= 2) {
+            postings.subMap(token, false, token + Character.MAX_VALUE, false)
+                    .values()
+                    .forEach(m -> m.forEach((id, w) -> best.merge(id, w * PREFIX, Math::max)));
+        }
+
+        // Sai chính tả: chỉ thử khi token đủ dài và không có khớp chính xác.
+        // Từ vựng của menu chỉ vài nghìn âm tiết nên quét tuyến tính là đủ nhanh.
+        if (exact == null && token.length() >= 4) {
+            int maxDist = token.length() >= 7 ? 2 : 1;
+            for (Map.Entry<String, Map<String, Float>> e : postings.entrySet()) {
+                String term = e.getKey();
+                if (Math.abs(term.length() - token.length()) <= maxDist
+                        && withinDistance(token, term, maxDist)) {
+                    e.getValue().forEach((id, w) -> best.merge(id, w * FUZZY, Math::max));
+                }
+            }
+        }
+        return best;
+    }
+
+    // ======================= index maintenance =======================
+
+    @Override
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docs.clear();
+            indexedVersion = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        popularityLoadedAt = 0;
+        ensureCurrent();
+    }
+
+    /** Đồng bộ index với snapshot menu hiện tại (chỉ xử lý phần chênh lệch) */
+    private void ensureCurrent() {
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+        if (catalog.getVersion() <= indexedVersion) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (catalog.getVersion() <= indexedVersion) {
+                return;
+            }
+            Map<String, CatalogItem> active = new HashMap<>();
+            for (CatalogItem it : catalog.getActiveItems()) {
+                active.put(it.getItemId(), it);
+            }
+
+            int removed = 0;
+            int indexed = 0;
+            for (String itemId : new ArrayList<>(docs.keySet())) {
+                if (!active.containsKey(itemId)) {
+                    removeDoc(itemId);
+                    removed++;
+                }
+            }
+            for (CatalogItem it : active.values()) {
+                String signature = signature(it);
+                IndexedDoc old = docs.get(it.getItemId());
+                if (old != null && old.signature().equals(signature)) {
+                    continue;
+                }
+                if (old != null) {
+                    removeDoc(it.getItemId());
+                }
+                addDoc(it, signature);
+                indexed++;
+            }
+            indexedVersion = catalog.getVersion();
+            log.info("Search index synced to menu v{}: {} (re)indexed, {} removed, {} docs, {} terms",
+                    catalog.getVersion(), indexed, removed, docs.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addDoc(CatalogItem it, String signature) {
+        Map<String, Float> weights = new HashMap<>();
+        tokenize(it.getName()).forEach(t -> weights.merge(t, W_NAME, Math::max));
+        tokenize(it.getCategoryName()).forEach(t -> weights.merge(t, W_CATEGORY, Math::max));
+        tokenize(it.getDescription()).forEach(t -> weights.merge(t, W_DESCRIPTION, Math::max));
+
+        weights.forEach((term, w) -> postings.computeIfAbsent(term, k -> new HashMap<>()).put(it.getItemId(), w));
+        docs.put(it.getItemId(), new IndexedDoc(signature, String.join(" ", tokenize(it.getName())),
+                Set.copyOf(weights.keySet())));
+    }
+
+    private void removeDoc(String itemId) {
+        IndexedDoc doc = docs.remove(itemId);
+        if (doc == null) {
+            return;
+        }
+        for (String term : doc.terms()) {
+            Map<String, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(itemId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static String signature(CatalogItem it) {
+        return it.getName() + '\u0001' + it.getCategoryName() + '\u0001' + it.getDescription();
+    }
+
+    private Map<String, Long> popularity() {
+        long now = System.currentTimeMillis();
+        if (now - popularityLoadedAt > POPULARITY_TTL_MS) {
+            try {
+                Map<String, Long> loaded = new HashMap<>();
+                for (Object[] row : itemStatsRepository.findAllCounters()) {
+                    long sold = row[1] != null ? ((Number) row[1]).longValue() : 0L;
+                    long fav = row[2] != null ? ((Number) row[2]).longValue() : 0L;
+                    loaded.put((String) row[0], sold + 2 * fav);
+                }
+                popularity = loaded;
+            } catch (Exception e) {
+                log.warn("Could not load item popularity for search ranking: {}", e.getMessage());
+            }
+            popularityLoadedAt = now;
+        }
+        return popularity;
+    }
+
+    // ======================= text helpers =======================
+
+    /** Chữ thường, bỏ dấu (kể cả đ -> d), tách theo ký tự không phải chữ/số */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD))
+                .replaceAll("")
+                .replace('đ', 'd');
+        List<String> tokens = new ArrayList<>();
+        for (String t : NON_WORD.split(folded)) {
+            if (!t.isEmpty()) {
+                tokens.add(t);
+            }
+        }
+        return tokens;
+    }
+
+    /** Khoảng cách Damerau-Levenshtein (OSA) có cắt sớm khi vượt maxDist */
+    static boolean withinDistance(String a, String b, int maxDist) {
+        int n = a.length();
+        int m = b.length();
+        int[] prev2 = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    v = Math.min(v, prev2[j - 2] + 1);
+                }
+                cur[j] = v;
+                rowMin = Math.min(rowMin, v);
+            }
+            if (rowMin > maxDist) {
+                return false;
+            }
+            int[] tmp = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return prev[m] <= maxDist;
+    }
+}
@@ -1,13 +1,21 @@
 package com.example.Alotrabong.service.impl;
 
 import com.example.Alotrabong.dto.ItemDTO;
+import com.example.Alotrabong.dto.ItemListingQuery;
+import com.example.Alotrabong.dto.KeysetPage;
+import com.example.Alotrabong.dto.MenuCatalog;
+import com.example.Alotrabong.dto.MenuCatalog.CatalogItem;
 import com.example.Alotrabong.entity.*;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
 import com.example.Alotrabong.repository.*;
+import com.example.Alotrabong.service.ItemSearchService;
 import com.example.Alotrabong.service.ItemService;
+import com.example.Alotrabong.service.ItemStatsService;
+import com.example.Alotrabong.service.MenuCatalogService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -28,10 +36,17 @@ public class ItemServiceImpl implements ItemService {
         private final CategoryRepository categoryRepository;
         private final BranchRepository branchRepository;
         private final BranchItemPriceRepository branchItemPriceRepository;
+        private final ItemMediaRepository itemMediaRepository;
 
         // ====== NEW: bơm thêm 2 repo để tính best-seller & favorites ======
         private final OrderItemRepository orderItemRepository; // add repo này
         private final FavoriteRepository favoriteRepository; // add repo này
+        private final ItemStatsService itemStatsService;
+        private final ItemStatsRepository itemStatsRepository;
+        private final MenuCatalogService menuCatalogService;
+        private final ItemSearchService itemSearchService;
+
+        private static final int SEARCH_MAX_RESULTS = 200;
 
         @Override
         public ItemDTO createItem(ItemDTO itemDTO) {
@@ -49,6 +64,8 @@ public class ItemServiceImpl implements ItemService {
                                 .build();
 
                 item = itemRepository.save(item);
+                itemStatsService.ensureStats(item);
+                menuCatalogService.markDirty();
                 log.info("Item created successfully: {}", item.getItemId());
 
                 return convertToDTO(item);
@@ -97,22 +114,59 @@ public class ItemServiceImpl implements ItemService {
         @Override
         @Transactional(readOnly = true)
         public List<ItemDTO> searchItems(String keyword) {
-                // Repo hiện trả về List (không Pageable)
-                return itemRepository.findByNameContainingIgnoreCaseAndIsActiveTrue(keyword).stream()
-                                .map(this::convertToDTO)
+                return searchItems(keyword, PageRequest.of(0, 50)).getContent();
+        }
+
+        @Override
+        public Page<ItemDTO> searchItems(String keyword, Pageable pageable) {
+                // Xếp hạng bằng search index trong bộ nhớ, dữ liệu món lấy từ snapshot menu -> không chạm DB
+                List<String> ids = itemSearchService.searchIds(keyword, SEARCH_MAX_RESULTS);
+                MenuCatalog catalog = menuCatalogService.getCatalog();
+                int from = (int) Math.min(pageable.getOffset(), ids.size());
+                int to = Math.min(from + pageable.getPageSize(), ids.size());
+                List<ItemDTO> content = ids.subList(from, to).stream()
+                                .map(catalog::findItem)
+                                .flatMap(Optional::stream)
+                                .map(this::convertCatalogItemToDTO)
                                 .collect(Collectors.toList());
+                return new PageImpl<>(content, pageable, ids.size());
+        }
+
+        @Override
+        @Transactional(readOnly = true)
+        public KeysetPage<ItemDTO> listItems(ItemListingQuery query, Pageable pageable) {
+                // Không map mediaList ở đây (tránh N+1), ảnh lấy từ snapshot menu ở controller
+                KeysetPage<ItemDTO> listing = itemRepository.findListing(query, pageable).map(this::convertToListingDTO);
+                List<ItemDTO> content = listing.getPage().getContent();
+                if (!content.isEmpty()) {
+                        // Điểm đánh giá của cả trang: 1 query trên item_stats
+                        Map<String, ItemDTO> byId = content.stream()
+                                        .collect(Collectors.toMap(ItemDTO::getItemId, d -> d, (a, b) -> a));
+                        for (Object[] row : itemStatsRepository.findRatings(byId.keySet())) {
+                                ItemDTO dto = byId.get((String) row[0]);
+                                long count = row[1] == null ? 0L : ((Number) row[1]).longValue();
+                                if (dto != null && count > 0) {
+                                        dto.setRatingCount(count);
+                                        dto.setAvgRating(((Number) row[2]).doubleValue());
+                                }
+                        }
+                }
+                return listing;
         }
 
         @Override
         @Transactional(readOnly = true)
         public List<ItemDTO> getTopSellingItems(int limit) {
                 Page<Item> page = itemRepository.findTopSellingItems(PageRequest.of(0, limit));
-                                for(Item i : page.getContent()) {
-                        i.getMediaList().size(); 
-                }
-                return page.getContent().stream()
-                                .map(this::convertToDTO)
-                                .collect(Collectors.toList());
+                return convertAllWithMedia(page.getContent());
+        }
+
+        @Override
+        @Transactional(readOnly = true)
+        public List<ItemDTO> getTopSellingItemsByBranch(String branchId, int limit) {
+                Page<Item> page = itemRepository.findTopSellingItemsByBranch(branchId,
+                                PageRequest.of(0, Math.max(1, limit)));
+                return convertAllWithMedia(page.getContent());
         }
 
         @Override
@@ -121,12 +175,7 @@ public class ItemServiceImpl implements ItemService {
                 // Dùng repo: findActiveOrderByCreatedAtDesc(Pageable)
                 Page<Item> page = itemRepository.findActiveOrderByCreatedAtDesc(
                                 PageRequest.of(0, Math.max(1, limit)));
-                for(Item i : page.getContent()) {
-                        i.getMediaList().size(); 
-                }
-                return page.getContent().stream()
-                                .map(this::convertToDTO)
-                                .collect(Collectors.toList());
+                return convertAllWithMedia(page.getContent());
         }
 
         @Override
@@ -145,6 +194,7 @@ public class ItemServiceImpl implements ItemService {
                 item.setCategory(category);
 
                 item = itemRepository.save(item);
+                menuCatalogService.markDirty();
                 log.info("Item updated successfully: {}", itemId);
 
                 return convertToDTO(item);
@@ -159,6 +209,7 @@ public class ItemServiceImpl implements ItemService {
 
                 item.setIsActive(false);
                 itemRepository.save(item);
+                menuCatalogService.markDirty();
 
                 log.info("Item deactivated: {}", itemId);
         }
@@ -172,6 +223,7 @@ public class ItemServiceImpl implements ItemService {
 
                 item.setIsActive(true);
                 item = itemRepository.save(item);
+                menuCatalogService.markDirty();
 
                 log.info("Item activated: {}", itemId);
                 return convertToDTO(item);
@@ -196,6 +248,7 @@ public class ItemServiceImpl implements ItemService {
 
                 branchPrice.setPrice(price);
                 branchItemPriceRepository.save(branchPrice);
+                menuCatalogService.markDirty();
 
                 log.info("Branch price set successfully");
                 return convertToDTO(item);
@@ -207,15 +260,59 @@ public class ItemServiceImpl implements ItemService {
                 Page<Item> page = itemRepository.findTopFavoritedItems(
                                 PageRequest.of(0, Math.max(1, limit)));
                                 
-                                for(Item i : page.getContent()) {
-                        i.getMediaList().size(); }
-                return page.getContent().stream()
-                                .map(this::convertToDTO)
-                                .collect(Collectors.toList());
+                return convertAllWithMedia(page.getContent());
         }
 
         // ======================= helper =======================
+        private ItemDTO convertCatalogItemToDTO(CatalogItem item) {
+                return ItemDTO.builder()
+                                .itemId(item.getItemId())
+                                .name(item.getName())
+                                .description(item.getDescription())
+                                .price(item.getPrice())
+                                .categoryId(item.getCategoryId())
+                                .categoryName(item.getCategoryName())
+                                .isActive(item.getIsActive())
+                                .createdAt(item.getCreatedAt())
+                                .mediaUrls(item.getImageUrls())
+                                .build();
+        }
+
+        private ItemDTO convertToListingDTO(Item item) {
+                return ItemDTO.builder()
+                                .itemId(item.getItemId())
+                                .name(item.getName())
+                                .description(item.getDescription())
+                                .price(item.getPrice())
+                                .categoryId(item.getCategory() != null ? item.getCategory().getCategoryId() : null)
+                                .isActive(item.getIsActive())
+                                .createdAt(item.getCreatedAt())
+                                .updatedAt(item.getUpdatedAt())
+                                .build();
+        }
+
+        // Nạp media của cả danh sách bằng 1 query thay vì lazy-load mediaList từng món
+        private List<ItemDTO> convertAllWithMedia(List<Item> items) {
+                if (items.isEmpty()) {
+                        return List.of();
+                }
+                Map<String, List<String>> urlsByItem = itemMediaRepository
+                                .findByItemIds(items.stream().map(Item::getItemId).toList()).stream()
+                                .collect(Collectors.groupingBy(m -> m.getItem().getItemId(),
+                                                Collectors.mapping(ItemMedia::getMediaUrl, Collectors.toList())));
+                return items.stream()
+                                .map(i -> convertToDTO(i, urlsByItem.getOrDefault(i.getItemId(), List.of())))
+                                .collect(Collectors.toList());
+        }
+
         private ItemDTO convertToDTO(Item item) {
+                return convertToDTO(item, item.getMediaList() != null ?
+                                item.getMediaList().stream()
+                                .map(ItemMedia::getMediaUrl)
+                                .collect(Collectors.toList()) : Collections.emptyList());
+        }
+
+        private ItemDTO convertToDTO(Item item, List<String> mediaUrls) {
                 return ItemDTO.builder()
                                 .itemId(item.getItemId())
                                 .name(item.getName())
@@ -225,10 +322,7 @@ public class ItemServiceImpl implements ItemService {
                                 .categoryName(item.getCategory() != null ? item.getCategory().getName() : null)
                                 .isActive(item.getIsActive())
                                 .createdAt(item.getCreatedAt())
-                                .mediaUrls(item.getMediaList() != null ? 
-                                        item.getMediaList().stream()
-                                        .map(ItemMedia::getMediaUrl)
-                                        .collect(Collectors.toList()) : Collections.emptyList())
+                                .mediaUrls(mediaUrls)
                                 .updatedAt(item.getUpdatedAt())
                                 .build();
         }
@@ -0,0 +1,180 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.*;
+import com.example.Alotrabong.repository.*;
+import com.example.Alotrabong.service.ItemStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class ItemStatsServiceImpl implements ItemStatsService {
+
+    // Đơn đã giao (RECEIVED là bước sau DELIVERED nên cũng tính là đã bán)
+    private static final List<OrderStatus> SOLD_STATUSES = List.of(OrderStatus.DELIVERED, OrderStatus.RECEIVED);
+
+    // Mốc trong job_checkpoints: đã tính lại điểm đánh giá cho review viết trước khi có bộ đếm rating
+    static final String RATING_BACKFILL_JOB = "item-stats-rating-backfill";
+
+    private final ItemStatsRepository itemStatsRepository;
+    private final BranchItemStatsRepository branchItemStatsRepository;
+    private final ItemRepository itemRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+
+    @Override
+    public void ensureStats(Item item) {
+        if (item == null || item.getItemId() == null || itemStatsRepository.existsById(item.getItemId())) {
+            return;
+        }
+        itemStatsRepository.save(ItemStats.builder()
+                .item(item)
+                .updatedAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Override
+    public void recordDelivered(Order order) {
+        // Gộp theo món trước (1 món có thể nằm ở nhiều dòng với option khác nhau)
+        Map<String, Long> qtyByItem = new LinkedHashMap<>();
+        Map<String, Item> itemsById = new HashMap<>();
+        for (OrderItem line : orderItemRepository.findByOrder(order)) {
+            if (line.getItem() == null || line.getQuantity() == null) {
+                continue;
+            }
+            String itemId = line.getItem().getItemId();
+            qtyByItem.merge(itemId, line.getQuantity().longValue(), Long::sum);
+            itemsById.putIfAbsent(itemId, line.getItem());
+        }
+
+        Branch branch = order.getBranch();
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<String, Long> e : qtyByItem.entrySet()) {
+            String itemId = e.getKey();
+            long qty = e.getValue();
+
+            if (itemStatsRepository.incrementSold(itemId, qty, now) == 0) {
+                itemStatsRepository.save(ItemStats.builder()
+                        .item(itemsById.get(itemId))
+                        .soldCount(qty)
+                        .updatedAt(now)
+                        .build());
+            }
+
+            if (branch != null
+                    && branchItemStatsRepository.incrementSold(branch.getBranchId(), itemId, qty, now) == 0) {
+                branchItemStatsRepository.save(BranchItemStats.builder()
+                        .branch(branch)
+                        .item(itemsById.get(itemId))
+                        .soldCount(qty)
+                        .updatedAt(now)
+                        .build());
+            }
+        }
+        log.debug("Item stats updated for delivered order {}: {} items", order.getOrderId(), qtyByItem.size());
+    }
+
+    @Override
+    public void adjustFavorites(String itemId, long delta) {
+        if (itemId == null || delta == 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (itemStatsRepository.adjustFavorites(itemId, delta, now) == 0 && delta > 0) {
+            itemRepository.findById(itemId).ifPresent(item -> itemStatsRepository.save(ItemStats.builder()
+                    .item(item)
+                    .favoriteCount(delta)
+                    .updatedAt(now)
+                    .build()));
+        }
+    }
+
+    @Override
+    public void recordRatingChange(String itemId, Integer oldRating, Integer newRating) {
+        Integer from = validRating(oldRating);
+        Integer to = validRating(newRating);
+        if (itemId == null || Objects.equals(from, to)) {
+            return;
+        }
+        long[] d = new long[5];
+        long dCount = 0;
+        long dSum = 0;
+        if (from != null) {
+            d[from - 1]--;
+            dCount--;
+            dSum -= from;
+        }
+        if (to != null) {
+            d[to - 1]++;
+            dCount++;
+            dSum += to;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (itemStatsRepository.adjustRating(itemId, dCount, dSum, d[0], d[1], d[2], d[3], d[4], now) == 0
+                && to != null && from == null) {
+            // Chưa có dòng thống kê: tạo mới với đúng review này
+            itemRepository.findById(itemId).ifPresent(item -> itemStatsRepository.save(ItemStats.builder()
+                    .item(item)
+                    .ratingCount(1L)
+                    .ratingSum(to.longValue())
+                    .rating1(d[0]).rating2(d[1]).rating3(d[2]).rating4(d[3]).rating5(d[4])
+                    .ratingAvg(to.doubleValue())
+                    .updatedAt(now)
+                    .build()));
+        }
+    }
+
+    private static Integer validRating(Integer rating) {
+        return rating != null && rating >= 1 && rating <= 5 ? rating : null;
+    }
+
+    @Override
+    public void backfillMissing() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> soldStatuses = SOLD_STATUSES.stream().map(Enum::name).toList();
+        int items = itemStatsRepository.insertMissing(soldStatuses, true, now);
+        int branchRows = branchItemStatsRepository.insertMissing(soldStatuses, now);
+        if (items > 0 || branchRows > 0) {
+            log.info("Item stats backfilled: {} items, {} branch/item rows", items, branchRows);
+        }
+
+        // Dòng có sẵn từ trước khi đếm rating (tạo lúc thêm món / giao đơn / yêu thích) chưa tính các review cũ:
+        // tính lại phân bố sao 1 lần rồi ghi mốc, các lần khởi động sau bỏ qua
+        if (!jobCheckpointRepository.existsById(RATING_BACKFILL_JOB)) {
+            int rows = itemStatsRepository.recomputeRatings(now);
+            itemStatsRepository.recomputeRatingTotals();
+            jobCheckpointRepository.save(JobCheckpoint.builder()
+                    .jobName(RATING_BACKFILL_JOB)
+                    .lastProcessedAt(now)
+                    .updatedAt(now)
+                    .build());
+            log.info("Item rating aggregates backfilled from reviews: {} items", rows);
+        }
+    }
+
+    @Override
+    public void rebuildAll() {
+        log.info("Rebuilding item stats from order_items / favorites / reviews...");
+        LocalDateTime now = LocalDateTime.now();
+
+        // Tính lại ngay trong DB bằng vài câu UPDATE/INSERT tập hợp, không kéo toàn bảng lên bộ nhớ
+        List<String> soldStatuses = SOLD_STATUSES.stream().map(Enum::name).toList();
+        int inserted = itemStatsRepository.insertMissing(soldStatuses, true, now);
+        int items = itemStatsRepository.recomputeCounters(SOLD_STATUSES, now);
+        itemStatsRepository.recomputeRatings(now);
+        itemStatsRepository.recomputeRatingTotals();
+
+        int branchRows = branchItemStatsRepository.recomputeSold(SOLD_STATUSES, now);
+        branchRows += branchItemStatsRepository.insertMissing(soldStatuses, now);
+
+        log.info("Item stats rebuilt: {} items ({} new), {} branch/item rows", items, inserted, branchRows);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.MediaType;
+import com.example.Alotrabong.repository.ItemMediaRepository;
+import com.example.Alotrabong.service.ItemThumbnailService;
+import com.example.Alotrabong.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ItemThumbnailServiceImpl implements ItemThumbnailService {
+
+    // Giữ mỗi câu IN dưới giới hạn 2100 tham số của SQL Server
+    private static final int CHUNK_SIZE = 500;
+    // Đánh dấu "đã tra, món không có ảnh" để không query lại
+    private static final String NONE = "";
+
+    private final ItemMediaRepository itemMediaRepository;
+
+    // itemId -> url ảnh đại diện (hoặc NONE)
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    @Override
+    public Map<String, String> resolve(Collection<String> itemIds) {
+        if (itemIds == null || itemIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(itemIds)) {
+            if (id == null) {
+                continue;
+            }
+            String cached = cache.get(id);
+            if (cached == null) {
+                missing.add(id);
+            } else if (!cached.isEmpty()) {
+                result.put(id, cached);
+            }
+        }
+
+        for (int from = 0; from < missing.size(); from += CHUNK_SIZE) {
+            List<String> chunk = missing.subList(from, Math.min(from + CHUNK_SIZE, missing.size()));
+            Map<String, String> loaded = new HashMap<>();
+            // Đã sort theo (item, sort_order, media_id) -> dòng đầu tiên của mỗi món là ảnh đại diện
+            for (Object[] row : itemMediaRepository.findUrlsByItemIds(chunk, MediaType.IMAGE)) {
+                String url = (String) row[1];
+                if (url != null && !url.isBlank()) {
+                    loaded.putIfAbsent((String) row[0], url);
+                }
+            }
+            for (String id : chunk) {
+                String url = loaded.get(id);
+                cache.put(id, url != null ? url : NONE);
+                if (url != null) {
+                    result.put(id, url);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String resolve(String itemId, String fallback) {
+        if (itemId == null) {
+            return fallback;
+        }
+        return resolve(List.of(itemId)).getOrDefault(itemId, fallback);
+    }
+
+    @Override
+    public void evict(String itemId) {
+        if (itemId == null) {
+            return;
+        }
+        cache.remove(itemId);
+        // Bỏ thêm 1 lần sau commit: request đọc xen giữa có thể đã nạp lại giá trị cũ
+        TransactionHooks.afterCommit(() -> cache.remove(itemId));
+    }
+}
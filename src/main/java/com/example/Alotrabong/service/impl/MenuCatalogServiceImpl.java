@@ -0,0 +1,169 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.MenuCatalog;
+import com.example.Alotrabong.dto.MenuCatalog.BranchOffer;
+import com.example.Alotrabong.dto.MenuCatalog.CatalogBranch;
+import com.example.Alotrabong.dto.MenuCatalog.CatalogCategory;
+import com.example.Alotrabong.dto.MenuCatalog.CatalogItem;
+import com.example.Alotrabong.entity.*;
+import com.example.Alotrabong.event.MenuCatalogRefreshedEvent;
+import com.example.Alotrabong.repository.*;
+import com.example.Alotrabong.service.MenuCatalogService;
+import com.example.Alotrabong.util.TransactionHooks;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MenuCatalogServiceImpl implements MenuCatalogService {
+
+    private final ItemRepository itemRepository;
+    private final CategoryRepository categoryRepository;
+    private final BranchRepository branchRepository;
+    private final BranchItemPriceRepository branchItemPriceRepository;
+    private final ItemMediaRepository itemMediaRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicReference<MenuCatalog> current = new AtomicReference<>();
+    private final AtomicLong versionSeq = new AtomicLong();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean(false);
+    private final Object buildLock = new Object();
+
+    // 1 thread duy nhất dựng snapshot -> nhiều thay đổi liên tiếp được gộp thành 1 lần dựng
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "menu-catalog-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Override
+    public MenuCatalog getCatalog() {
+        MenuCatalog catalog = current.get();
+        return catalog != null ? catalog : refresh();
+    }
+
+    @Override
+    public MenuCatalog refresh() {
+        MenuCatalog built;
+        synchronized (buildLock) {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setReadOnly(true);
+            built = tx.execute(status -> build(versionSeq.incrementAndGet()));
+            current.set(built);
+            log.info("Menu catalog v{} built: {} items, {} branches",
+                    built.getVersion(), built.size(), built.getBranches().size());
+        }
+        // Báo cho các cache dựng từ menu (vd. dải món trang chủ)
+        eventPublisher.publishEvent(new MenuCatalogRefreshedEvent(built.getVersion()));
+        return built;
+    }
+
+    @Override
+    public void markDirty() {
+        TransactionHooks.afterCommit(this::scheduleRefresh);
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshQueued.compareAndSet(false, true)) {
+            return; // đã có 1 lần dựng đang chờ, nó sẽ thấy thay đổi này
+        }
+        refresher.submit(() -> {
+            refreshQueued.set(false);
+            try {
+                refresh();
+            } catch (Exception e) {
+                log.error("Menu catalog refresh failed, keeping v{}",
+                        current.get() != null ? current.get().getVersion() : 0, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    // ======================= build =======================
+
+    private MenuCatalog build(long version) {
+        // Ảnh IMAGE theo món, cùng thứ tự với Item#getThumbnailUrl
+        Map<String, List<String>> imagesByItem = itemMediaRepository.findByMediaType(MediaType.IMAGE).stream()
+                .filter(m -> m.getItem() != null && m.getMediaUrl() != null && !m.getMediaUrl().isBlank())
+                .sorted(Comparator
+                        .comparing((ItemMedia m) -> m.getSortOrder() == null ? 9999 : m.getSortOrder())
+                        .thenComparing(ItemMedia::getMediaId))
+                .collect(Collectors.groupingBy(m -> m.getItem().getItemId(), LinkedHashMap::new,
+                        Collectors.mapping(ItemMedia::getMediaUrl, Collectors.toList())));
+
+        List<CatalogItem> items = itemRepository.findAllWithCategory().stream()
+                .map(i -> {
+                    List<String> images = imagesByItem.getOrDefault(i.getItemId(), List.of());
+                    return CatalogItem.builder()
+                            .itemId(i.getItemId())
+                            .itemCode(i.getItemCode())
+                            .name(i.getName())
+                            .description(i.getDescription())
+                            .price(i.getPrice())
+                            .categoryId(i.getCategory() != null ? i.getCategory().getCategoryId() : null)
+                            .categoryName(i.getCategory() != null ? i.getCategory().getName() : null)
+                            .isActive(i.getIsActive())
+                            .createdAt(i.getCreatedAt())
+                            .thumbnailUrl(images.isEmpty() ? null : images.get(0))
+                            .imageUrls(List.copyOf(images))
+                            .build();
+                })
+                .toList();
+
+        List<CatalogCategory> categories = categoryRepository.findAll().stream()
+                .map(c -> CatalogCategory.builder()
+                        .categoryId(c.getCategoryId())
+                        .name(c.getName())
+                        .description(c.getDescription())
+                        .isActive(c.getIsActive())
+                        .build())
+                .toList();
+
+        List<CatalogBranch> branches = branchRepository.findAll().stream()
+                .map(b -> CatalogBranch.builder()
+                        .branchId(b.getBranchId())
+                        .branchCode(b.getBranchCode())
+                        .name(b.getName())
+                        .address(b.getAddress())
+                        .phone(b.getPhone())
+                        .district(b.getDistrict())
+                        .city(b.getCity())
+                        .latitude(b.getLatitude())
+                        .longitude(b.getLongitude())
+                        .isActive(b.getIsActive())
+                        .openHours(b.getOpenHours())
+                        .build())
+                .toList();
+
+        Map<String, Map<String, BranchOffer>> offers = new HashMap<>();
+        for (BranchItemPrice bip : branchItemPriceRepository.findAll()) {
+            if (bip.getBranch() == null || bip.getItem() == null) {
+                continue;
+            }
+            offers.computeIfAbsent(bip.getBranch().getBranchId(), k -> new HashMap<>())
+                    .put(bip.getItem().getItemId(),
+                            new BranchOffer(bip.getPrice(), !Boolean.FALSE.equals(bip.getIsAvailable())));
+        }
+
+        return new MenuCatalog(version, items, categories, branches, offers);
+    }
+}
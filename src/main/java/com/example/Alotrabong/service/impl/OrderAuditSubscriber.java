@@ -0,0 +1,41 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.AuditLog;
+import com.example.Alotrabong.event.OutboxMessage;
+import com.example.Alotrabong.event.OutboxSubscriber;
+import com.example.Alotrabong.repository.AuditLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ghi mọi sự kiện vòng đời đơn vào audit_logs (meta_json kèm outboxId để nhận ra bản ghi trùng khi bị giao lại).
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderAuditSubscriber implements OutboxSubscriber {
+
+    private final AuditLogRepository auditLogRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String name() {
+        return "audit";
+    }
+
+    @Override
+    public void handle(OutboxMessage message) throws Exception {
+        Map<String, Object> meta = new LinkedHashMap<>(message.payload());
+        meta.put("outboxId", message.id());
+        auditLogRepository.save(AuditLog.builder()
+                .action(message.type().name())
+                .entity("Order")
+                .entityId(message.orderId())
+                .metaJson(objectMapper.writeValueAsString(meta))
+                .createdAt(message.createdAt())
+                .build());
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.Order;
+import com.example.Alotrabong.entity.OrderStatus;
+import com.example.Alotrabong.event.OrderEventType;
+import com.example.Alotrabong.service.OrderEventRecorder;
+import com.example.Alotrabong.service.OrderStateMachine;
+import com.example.Alotrabong.service.OrderStatusHistoryService;
+import com.example.Alotrabong.service.OutboxService;
+import com.example.Alotrabong.util.TransactionHooks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderEventRecorderImpl implements OrderEventRecorder {
+
+    private final OrderStatusHistoryService orderStatusHistoryService;
+    private final OutboxService outboxService;
+
+    @Override
+    public void recordStatusChange(Order order, OrderStatus from, OrderStatus to, OrderStateMachine.Actor actor,
+            String note) {
+        String orderId = order.getOrderId();
+        // Lịch sử ghi trễ theo lô, chỉ khi transaction commit; sự kiện outbox ghi cùng transaction
+        TransactionHooks.afterCommit(() -> orderStatusHistoryService.record(orderId, to, historyNote(actor, note)));
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("branchId", order.getBranch() != null ? order.getBranch().getBranchId() : null);
+        payload.put("from", from.name());
+        payload.put("to", to.name());
+        payload.put("actor", actor.name());
+        payload.put("note", note);
+        payload.put("paymentStatus", order.getPaymentStatus() != null ? order.getPaymentStatus().name() : null);
+        outboxService.append(orderId, OrderEventType.ORDER_STATUS_CHANGED, payload);
+        log.info("Order {} status {} -> {} by {}", orderId, from, to, actor);
+    }
+
+    @Override
+    public void recordCreated(Order order) {
+        String orderId = order.getOrderId();
+        OrderStatus status = order.getStatus();
+        TransactionHooks.afterCommit(() -> orderStatusHistoryService.record(orderId, status, "Order created"));
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("userId", order.getUser() != null ? order.getUser().getUserId() : null);
+        payload.put("branchId", order.getBranch() != null ? order.getBranch().getBranchId() : null);
+        payload.put("status", status != null ? status.name() : null);
+        payload.put("totalAmount", order.getTotalAmount());
+        payload.put("paymentMethod", order.getPaymentMethod() != null ? order.getPaymentMethod().name() : null);
+        payload.put("paymentStatus", order.getPaymentStatus() != null ? order.getPaymentStatus().name() : null);
+        payload.put("customerName", order.getUser() != null ? order.getUser().getFullName() : null);
+        payload.put("customerPhone", order.getUser() != null ? order.getUser().getPhone() : null);
+        payload.put("shippingAddress", order.getShippingAddress());
+        outboxService.append(orderId, OrderEventType.ORDER_CREATED, payload);
+    }
+
+    private static String historyNote(OrderStateMachine.Actor actor, String note) {
+        return note != null && !note.isBlank() ? actor + ": " + note : actor.toString();
+    }
+}
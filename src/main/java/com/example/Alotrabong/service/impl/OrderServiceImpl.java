@@ -1,13 +1,24 @@
 package com.example.Alotrabong.service.impl;
 
+import com.example.Alotrabong.dto.CartItemDTO;
+import com.example.Alotrabong.dto.CartRepricingResult;
+import com.example.Alotrabong.dto.CheckoutQuote;
 import com.example.Alotrabong.dto.CreateOrderRequest;
+import com.example.Alotrabong.dto.KeysetCursor;
 import com.example.Alotrabong.dto.OrderDTO;
+import com.example.Alotrabong.dto.OrderFeedDTO;
 import com.example.Alotrabong.dto.OrderItemDTO;
+import com.example.Alotrabong.dto.StockDeductionResult;
 import com.example.Alotrabong.entity.*;
 import com.example.Alotrabong.exception.BadRequestException;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
 import com.example.Alotrabong.repository.*;
+import com.example.Alotrabong.service.CartRepricingService;
+import com.example.Alotrabong.service.CartService;
+import com.example.Alotrabong.service.CheckoutQuoteService;
+import com.example.Alotrabong.service.InventoryReservationService;
 import com.example.Alotrabong.service.OrderService;
+import com.example.Alotrabong.service.OrderStateMachine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,7 +26,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,15 +39,19 @@ import java.util.stream.Collectors;
 @Transactional
 public class OrderServiceImpl implements OrderService {
 
+	private static final int MAX_FEED_SIZE = 100;
+
 	private final OrderRepository orderRepository;
 	private final OrderItemRepository orderItemRepository;
 	private final UserRepository userRepository;
 	private final BranchRepository branchRepository;
-	private final CartRepository cartRepository;
-	private final CartItemRepository cartItemRepository;
+	private final ItemRepository itemRepository;
+	private final CartService cartService;
+	private final CartRepricingService cartRepricingService;
+	private final CheckoutQuoteService checkoutQuoteService;
+	private final InventoryReservationService inventoryReservationService;
 	private final AddressRepository addressRepository;
-	private final InventoryRepository inventoryRepository;
-	// private final PaymentRepository paymentRepository; // TODO: Implement payment logic
+	private final OrderStateMachine orderStateMachine;
 
 	@Override
 	public OrderDTO createOrder(String userId, CreateOrderRequest request) {
@@ -44,31 +63,35 @@ public class OrderServiceImpl implements OrderService {
 		Branch branch = branchRepository.findById(request.getBranchId())
 				.orElseThrow(() -> new ResourceNotFoundException("Branch not found"));
 
-		// Get cart items (CartService uses findByUser, not findByUserAndBranch)
-		Cart cart = cartRepository.findByUser(user)
-				.orElseThrow(() -> new ResourceNotFoundException("Cart is empty"));
-
-		List<CartItem> cartItems = cartItemRepository.findByCart(cart);
+		// Ảnh chụp giỏ đọc 1 lần qua CartService (SQL hoặc Redis), cả đơn dùng đúng bản này
+		List<CartItemDTO> cartItems = cartService.getCheckoutSnapshot(user.getUserId());
 		if (cartItems.isEmpty()) {
 			throw new BadRequestException("Cart is empty");
 		}
 
-		// Check inventory availability (do not deduct yet)
-		for (CartItem cartItem : cartItems) {
-			Inventory inventory = inventoryRepository
-					.findByBranch_BranchIdAndItem_ItemId(branch.getBranchId(), cartItem.getItem().getItemId())
-					.orElseThrow(() -> new BadRequestException("Item not available in this branch: " + cartItem.getItem().getName()));
-			if (inventory.getQuantity() < cartItem.getQuantity()) {
-				throw new BadRequestException("Insufficient inventory for item: " + cartItem.getItem().getName() +
-						". Available: " + inventory.getQuantity() + ", Requested: " + cartItem.getQuantity());
+		// Báo giá còn hiệu lực (đúng user / chi nhánh / mã, giỏ không đổi): lấy luôn giá trong giỏ + tổng tiền đã ký,
+		// không định giá lại. Tồn kho vẫn được chặn ở bước giữ hàng bên dưới.
+		CheckoutQuote.Totals totals = checkoutQuoteService.verify(request.getQuoteToken(), user.getUserId(),
+				branch.getBranchId(), request.getCouponCode(), cartItems).orElse(null);
+		List<CartItemDTO> orderLines;
+		if (totals != null) {
+			orderLines = cartItems;
+		} else {
+			// Định giá lại cả giỏ theo chi nhánh đặt hàng (giá, khả dụng, tồn kho: 1 query) - chưa trừ kho
+			CartRepricingResult priced = cartRepricingService.reprice(cartItems, branch.getBranchId());
+			for (CartRepricingResult.Line line : priced.getLines()) {
+				if (line.getStatus() == CartRepricingResult.Status.UNAVAILABLE || line.getAvailableQty() == null) {
+					throw new BadRequestException("Item not available in this branch: " + line.getItemName());
+				}
+				if (line.getStatus() == CartRepricingResult.Status.INSUFFICIENT_STOCK) {
+					throw new BadRequestException("Insufficient inventory for item: " + line.getItemName() +
+							". Available: " + line.getAvailableQty() + ", Requested: " + line.getQuantity());
+				}
 			}
+			orderLines = priced.toCartItems();
+			totals = checkoutQuoteService.price(user.getUserId(), priced, request.getCouponCode()).toTotals();
 		}
 
-		// Calculate total amount (items only)
-		BigDecimal totalAmount = cartItems.stream()
-				.map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
-
 		// Handle address - try to parse as ID first, fallback to text
 		Address addressSnapshot = null;
 		String shippingAddressText = request.getShippingAddress();
@@ -94,28 +117,51 @@ public class OrderServiceImpl implements OrderService {
 				.user(user)
 				.branch(branch)
 				.status(OrderStatus.PENDING)
-				.paymentMethod(PaymentMethod.COD)
-				.totalAmount(totalAmount)
+				.paymentMethod(request.getPaymentMethod() != null ? request.getPaymentMethod() : PaymentMethod.COD)
+				.paymentStatus(PaymentStatus.UNPAID)
+				.shippingFee(totals.shippingFee())
+				.discount(totals.discount())
+				.totalAmount(totals.grandTotal())
 				.addressSnapshot(addressSnapshot)
 				.shippingAddress(shippingAddressText)
 				.notes(request.getNotes())
 				.build();
 
-		order = orderRepository.saveAndFlush(order);
+		// Id (UUIDv7) sinh sẵn trước INSERT: không flush ở đây, đơn + các dòng + giữ hàng được ghi
+		// cùng lúc khi commit theo JDBC batch (hibernate.jdbc.batch_size / order_inserts)
+		order = orderRepository.save(order);
 
 		// Create order items
-		for (CartItem cartItem : cartItems) {
-			OrderItem orderItem = OrderItem.builder()
+		List<OrderItem> orderItems = new ArrayList<>(orderLines.size());
+		for (CartItemDTO cartItem : orderLines) {
+			orderItems.add(OrderItem.builder()
 					.order(order)
-					.item(cartItem.getItem())
+					.item(itemRepository.getReferenceById(cartItem.getItemId()))
+					.itemName(cartItem.getItemName())
 					.quantity(cartItem.getQuantity())
 					.unitPrice(cartItem.getUnitPrice())
-					.build();
-			orderItemRepository.save(orderItem);
+					.build());
+		}
+		orderItemRepository.saveAll(orderItems);
+
+		// Giữ hàng ngay khi đặt (trừ kho có điều kiện, tất cả hoặc không); thiếu thì huỷ cả transaction tạo đơn
+		Map<String, Integer> qtyByItem = new HashMap<>();
+		Map<String, String> names = new HashMap<>();
+		for (CartItemDTO line : orderLines) {
+			qtyByItem.merge(line.getItemId(), line.getQuantity(), Integer::sum);
+			names.putIfAbsent(line.getItemId(), line.getItemName());
+		}
+		StockDeductionResult held = inventoryReservationService.reserve(order, qtyByItem);
+		if (!held.isSuccess()) {
+			StockDeductionResult.Shortage s = held.getShortages().get(0);
+			throw new BadRequestException("Insufficient inventory for item: " + names.get(s.itemId()) +
+					". Available: " + s.available() + ", Requested: " + s.requested());
 		}
 
-		// Clear cart
-		cartItemRepository.deleteByCart(cart);
+		orderStateMachine.recordCreated(order);
+
+		// Clear cart (chỉ các dòng đã đặt)
+		cartService.consumeCheckoutSnapshot(user.getUserId(), cartItems);
 
 		log.info("Order created successfully: {}", order.getOrderId());
 		return convertToDTO(order);
@@ -131,24 +177,20 @@ public class OrderServiceImpl implements OrderService {
 
 	@Override
 	@Transactional(readOnly = true)
-	public List<OrderDTO> getOrdersByUser(String userId) {
-		User user = userRepository.findById(userId)
-				.orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-		return orderRepository.findByUserOrderByCreatedAtDesc(user).stream()
-				.map(this::convertToDTO)
-				.collect(Collectors.toList());
+	public OrderFeedDTO getOrdersByUser(String userId, String cursor, int size) {
+		if (!userRepository.existsById(userId)) {
+			throw new ResourceNotFoundException("User not found");
+		}
+		return getOrderFeed(userId, null, null, cursor, size);
 	}
 
 	@Override
 	@Transactional(readOnly = true)
-	public List<OrderDTO> getOrdersByBranch(String branchId) {
-		Branch branch = branchRepository.findById(branchId)
-				.orElseThrow(() -> new ResourceNotFoundException("Branch not found"));
-
-		return orderRepository.findByBranchOrderByCreatedAtDesc(branch).stream()
-				.map(this::convertToDTO)
-				.collect(Collectors.toList());
+	public OrderFeedDTO getOrdersByBranch(String branchId, OrderStatus status, String cursor, int size) {
+		if (!branchRepository.existsById(branchId)) {
+			throw new ResourceNotFoundException("Branch not found");
+		}
+		return getOrderFeed(null, branchId, status, cursor, size);
 	}
 
 	@Override
@@ -158,16 +200,7 @@ public class OrderServiceImpl implements OrderService {
 		Order order = orderRepository.findById(orderId)
 				.orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
-		order.setStatus(status);
-		order = orderRepository.save(order);
-
-		// TODO: Create status history entry
-		// OrderStatusHistory statusHistory = OrderStatusHistory.builder()
-		// .order(order)
-		// .status(status)
-		// .notes("Status updated to " + status)
-		// .build();
-		// TODO: Save status history
+		order = orderStateMachine.transition(order, status, OrderStateMachine.Actor.ADMIN, null);
 
 		log.info("Order status updated: {} to {}", orderId, status);
 		return convertToDTO(order);
@@ -180,12 +213,10 @@ public class OrderServiceImpl implements OrderService {
 		Order order = orderRepository.findById(orderId)
 				.orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
-		if (order.getStatus() == OrderStatus.DELIVERED || order.getStatus() == OrderStatus.CANCELLED) {
+		if (!orderStateMachine.canTransition(order.getStatus(), OrderStatus.CANCELLED, OrderStateMachine.Actor.ADMIN)) {
 			throw new BadRequestException("Cannot cancel order in current status");
 		}
-
-		order.setStatus(OrderStatus.CANCELLED);
-		order = orderRepository.save(order);
+		order = orderStateMachine.transition(order, OrderStatus.CANCELLED, OrderStateMachine.Actor.ADMIN, reason);
 
 		log.info("Order cancelled: {}", orderId);
 		return convertToDTO(order);
@@ -193,10 +224,8 @@ public class OrderServiceImpl implements OrderService {
 
 	@Override
 	@Transactional(readOnly = true)
-	public List<OrderDTO> getOrdersByStatus(OrderStatus status) {
-		return orderRepository.findByStatusOrderByCreatedAtDesc(status).stream()
-				.map(this::convertToDTO)
-				.collect(Collectors.toList());
+	public OrderFeedDTO getOrdersByStatus(OrderStatus status, String cursor, int size) {
+		return getOrderFeed(null, null, status, cursor, size);
 	}
 
 	@Override
@@ -213,6 +242,74 @@ public class OrderServiceImpl implements OrderService {
 				.reduce(BigDecimal.ZERO, BigDecimal::add);
 	}
 
+	/**
+	 * Một trang đơn đúng 2 query: đơn + thông tin khách (projection), rồi dòng món của cả trang.
+	 * Không nạp entity nên không có lazy load user / branch / item theo từng đơn.
+	 */
+	private OrderFeedDTO getOrderFeed(String userId, String branchId, OrderStatus status, String cursor, int size) {
+		int limit = Math.min(Math.max(size, 1), MAX_FEED_SIZE);
+
+		String[] after = KeysetCursor.decode(cursor);
+		LocalDateTime afterAt = after != null ? parseTime(after[0]) : null;
+		// Lấy dư 1 dòng để biết còn trang sau hay không
+		List<Object[]> rows = orderRepository.findOrderRows(userId, branchId, status,
+				afterAt, afterAt != null ? after[1] : null, limit + 1);
+
+		boolean hasMore = rows.size() > limit;
+		List<Object[]> page = hasMore ? rows.subList(0, limit) : rows;
+		if (page.isEmpty()) {
+			return OrderFeedDTO.builder().items(List.of()).build();
+		}
+
+		List<String> orderIds = page.stream().map(r -> (String) r[0]).toList();
+		Map<String, List<OrderItemDTO>> itemsByOrder = new HashMap<>();
+		for (Object[] r : orderItemRepository.findDtoRowsByOrderIds(orderIds)) {
+			BigDecimal unitPrice = (BigDecimal) r[5];
+			Integer quantity = (Integer) r[4];
+			itemsByOrder.computeIfAbsent((String) r[0], k -> new ArrayList<>()).add(OrderItemDTO.builder()
+					.orderItemId((String) r[1])
+					.itemId((String) r[2])
+					.itemName((String) r[3])
+					.quantity(quantity)
+					.unitPrice(unitPrice)
+					.totalPrice(unitPrice != null && quantity != null
+							? unitPrice.multiply(BigDecimal.valueOf(quantity)) : null)
+					.build());
+		}
+
+		List<OrderDTO> items = new ArrayList<>(page.size());
+		for (Object[] r : page) {
+			String orderId = (String) r[0];
+			items.add(OrderDTO.builder()
+					.orderId(orderId)
+					.status(r[1] != null ? r[1].toString() : null)
+					.paymentMethod(r[2] != null ? r[2].toString() : null)
+					.totalAmount((BigDecimal) r[3])
+					.shippingAddress((String) r[4])
+					.notes((String) r[5])
+					.createdAt((LocalDateTime) r[6])
+					.updatedAt((LocalDateTime) r[7])
+					.userId((String) r[8])
+					.customerName((String) r[9])
+					.customerPhone((String) r[10])
+					.branchId((String) r[11])
+					.orderItems(itemsByOrder.getOrDefault(orderId, List.of()))
+					.build());
+		}
+
+		Object[] last = page.get(page.size() - 1);
+		String next = hasMore ? KeysetCursor.encode(last[6], (String) last[0]) : null;
+		return OrderFeedDTO.builder().items(items).nextCursor(next).build();
+	}
+
+	private static LocalDateTime parseTime(String value) {
+		try {
+			return LocalDateTime.parse(value);
+		} catch (DateTimeParseException e) {
+			return null; // cursor hỏng -> đọc lại từ đầu
+		}
+	}
+
 	private OrderDTO convertToDTO(Order order) {
 		List<OrderItemDTO> orderItems = orderItemRepository.findByOrder(order).stream()
 				.map(this::convertOrderItemToDTO)
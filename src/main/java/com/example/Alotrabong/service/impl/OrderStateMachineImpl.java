@@ -0,0 +1,181 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.StockDeductionResult;
+import com.example.Alotrabong.entity.Order;
+import com.example.Alotrabong.entity.OrderItem;
+import com.example.Alotrabong.entity.OrderStatus;
+import com.example.Alotrabong.entity.PaymentStatus;
+import com.example.Alotrabong.exception.BadRequestException;
+import com.example.Alotrabong.repository.OrderItemRepository;
+import com.example.Alotrabong.repository.OrderRepository;
+import com.example.Alotrabong.repository.ShipmentRepository;
+import com.example.Alotrabong.service.InventoryReservationService;
+import com.example.Alotrabong.service.InventoryService;
+import com.example.Alotrabong.service.ItemStatsService;
+import com.example.Alotrabong.service.OrderEventRecorder;
+import com.example.Alotrabong.service.OrderStateMachine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.example.Alotrabong.entity.OrderStatus.*;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class OrderStateMachineImpl implements OrderStateMachine {
+
+    // from -> các trạng thái được chuyển tới (bỏ qua bước giữa được, không lùi)
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+    // Người thao tác -> các trạng thái được phép đặt
+    private static final Map<Actor, Set<OrderStatus>> ACTOR_TARGETS = new EnumMap<>(Actor.class);
+
+    // Khách chỉ tự huỷ được khi bếp chưa làm xong
+    private static final Set<OrderStatus> CUSTOMER_CANCELLABLE = EnumSet.of(PENDING, CONFIRMED, PREPARING);
+
+    // Đơn được nhận làm / đang đi tiếp: hàng đang giữ thành trừ hẳn
+    private static final Set<OrderStatus> COMMITS_RESERVATION = EnumSet.of(CONFIRMED, PREPARING, READY, DELIVERING,
+            DELIVERED);
+
+    // Đồ ăn đã sẵn sàng (READY trở đi, không tính huỷ / hoàn)
+    private static final Set<OrderStatus> PAST_READY = EnumSet.of(READY, DELIVERING, DELIVERED, RECEIVED);
+
+    // Huỷ khi bếp chưa làm xong: trả lại kho cả phần đã chốt trừ lúc xác nhận (từ READY trở đi hàng đã dùng)
+    private static final Set<OrderStatus> RESTOCKS_ON_CANCEL = EnumSet.of(PENDING, CONFIRMED, PREPARING);
+
+    static {
+        TRANSITIONS.put(PENDING, EnumSet.of(CONFIRMED, PREPARING, READY, DELIVERING, DELIVERED, CANCELLED));
+        TRANSITIONS.put(CONFIRMED, EnumSet.of(PREPARING, READY, DELIVERING, DELIVERED, CANCELLED));
+        TRANSITIONS.put(PREPARING, EnumSet.of(READY, DELIVERING, DELIVERED, CANCELLED));
+        TRANSITIONS.put(READY, EnumSet.of(DELIVERING, DELIVERED, CANCELLED));
+        TRANSITIONS.put(DELIVERING, EnumSet.of(DELIVERED, RECEIVED, CANCELLED));
+        TRANSITIONS.put(DELIVERED, EnumSet.of(RECEIVED, REFUNDED));
+        TRANSITIONS.put(RECEIVED, EnumSet.of(REFUNDED));
+        TRANSITIONS.put(CANCELLED, EnumSet.of(REFUNDED));
+        TRANSITIONS.put(REFUNDED, EnumSet.noneOf(OrderStatus.class));
+
+        ACTOR_TARGETS.put(Actor.CUSTOMER, EnumSet.of(CANCELLED, RECEIVED));
+        ACTOR_TARGETS.put(Actor.SHIPPER, EnumSet.of(DELIVERING, DELIVERED));
+        ACTOR_TARGETS.put(Actor.BRANCH, EnumSet.complementOf(EnumSet.of(PENDING, RECEIVED)));
+        ACTOR_TARGETS.put(Actor.ADMIN, EnumSet.complementOf(EnumSet.of(PENDING)));
+        ACTOR_TARGETS.put(Actor.SYSTEM, EnumSet.complementOf(EnumSet.of(PENDING)));
+    }
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final ShipmentRepository shipmentRepository;
+    private final InventoryService inventoryService;
+    private final InventoryReservationService inventoryReservationService;
+    private final ItemStatsService itemStatsService;
+    private final OrderEventRecorder orderEventRecorder;
+
+    @Override
+    public boolean canTransition(OrderStatus from, OrderStatus to, Actor actor) {
+        if (from == null || to == null || from == to) {
+            return false;
+        }
+        if (!TRANSITIONS.getOrDefault(from, Set.of()).contains(to)
+                || !ACTOR_TARGETS.getOrDefault(actor, Set.of()).contains(to)) {
+            return false;
+        }
+        return actor != Actor.CUSTOMER || to != CANCELLED || CUSTOMER_CANCELLABLE.contains(from);
+    }
+
+    @Override
+    public Order transition(Order order, OrderStatus target, Actor actor, String note) {
+        OrderStatus from = order.getStatus();
+        if (from == target) {
+            return order;
+        }
+        if (!canTransition(from, target, actor)) {
+            throw new BadRequestException("Cannot change order status from " + from + " to " + target);
+        }
+        if (target == REFUNDED && order.getPaymentStatus() != PaymentStatus.PAID) {
+            throw new BadRequestException("Order has not been paid");
+        }
+
+        String orderId = order.getOrderId();
+        LocalDateTime now = LocalDateTime.now();
+        // Khách xác nhận đã nhận khi shipper chưa bấm "đã giao" -> tính luôn là đã giao
+        boolean delivered = target == DELIVERED || (target == RECEIVED && from == DELIVERING);
+
+        // ---- Kho: huỷ -> trả hàng đang giữ (và phần đã chốt nếu bếp chưa làm); đơn được nhận làm -> giữ hàng
+        // thành trừ hẳn
+        if (target == CANCELLED) {
+            inventoryReservationService.release(orderId);
+            if (RESTOCKS_ON_CANCEL.contains(from)) {
+                inventoryReservationService.releaseCommitted(orderId);
+            }
+        } else if (COMMITS_RESERVATION.contains(target) || delivered) {
+            boolean reserved = inventoryReservationService.commit(orderId);
+            // Đơn cũ chưa có reservation: trừ kho khi đơn đi qua READY (đồ ăn sẵn sàng)
+            if (!reserved && !PAST_READY.contains(from) && PAST_READY.contains(target)) {
+                deductForLegacyOrder(order);
+            }
+        }
+
+        // ---- Shipment (lấy hàng do shipper tự xác nhận; ở đây chỉ chốt khi đơn giao xong hoặc bị huỷ)
+        if (delivered) {
+            shipmentRepository.markDelivered(orderId, now);
+        } else if (target == CANCELLED) {
+            shipmentRepository.markCanceled(orderId);
+        }
+
+        // ---- Thanh toán: giao xong là đã thu tiền (COD), hoàn tiền thì đánh dấu REFUNDED
+        if (delivered) {
+            order.setPaymentStatus(PaymentStatus.PAID);
+        } else if (target == REFUNDED) {
+            order.setPaymentStatus(PaymentStatus.REFUNDED);
+        }
+
+        order.setStatus(target);
+        order.setUpdatedAt(now);
+        order = orderRepository.save(order);
+
+        if (delivered) {
+            itemStatsService.recordDelivered(order);
+        }
+
+        orderEventRecorder.recordStatusChange(order, from, target, actor, note);
+        return order;
+    }
+
+    @Override
+    public void recordCreated(Order order) {
+        orderEventRecorder.recordCreated(order);
+    }
+
+    private void deductForLegacyOrder(Order order) {
+        Map<String, Integer> qtyByItem = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        for (OrderItem orderItem : orderItemRepository.findByOrder(order)) {
+            if (orderItem.getItem() == null || orderItem.getQuantity() == null) {
+                continue;
+            }
+            String itemId = orderItem.getItem().getItemId();
+            qtyByItem.merge(itemId, orderItem.getQuantity(), Integer::sum);
+            names.putIfAbsent(itemId, orderItem.getItemName() != null ? orderItem.getItemName() : itemId);
+        }
+
+        StockDeductionResult deduction = inventoryService.deduct(order.getBranch().getBranchId(), qtyByItem);
+        if (!deduction.isSuccess()) {
+            String detail = deduction.getShortages().stream()
+                    .map(s -> names.get(s.itemId()) + ". Available: " + s.available() + ", Required: " + s.requested())
+                    .collect(Collectors.joining("; "));
+            throw new BadRequestException("Insufficient inventory for item: " + detail);
+        }
+        log.info("Deducted branch inventory for order {}: {} items", order.getOrderId(), qtyByItem.size());
+    }
+
+}
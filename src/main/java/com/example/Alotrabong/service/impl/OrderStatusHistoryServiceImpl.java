@@ -0,0 +1,121 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.OrderStatus;
+import com.example.Alotrabong.entity.TimeOrderedUuidGenerator;
+import com.example.Alotrabong.service.OrderStatusHistoryService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lịch sử trạng thái đơn kiểu write-behind: đổi trạng thái chỉ xếp 1 dòng vào hàng đợi trong bộ nhớ,
+ * {@link #flush()} (chạy định kỳ) ghi cả lô xuống order_status_history bằng JDBC batch insert,
+ * mỗi lô {@link #BATCH_SIZE} dòng 1 transaction: lô lỗi rollback hết nên xếp lại không bị trùng khoá.
+ * Id sinh sẵn (UUIDv7) nên dòng lịch sử giữ đúng thứ tự thời gian kể cả khi ghi trễ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderStatusHistoryServiceImpl implements OrderStatusHistoryService {
+
+    private static final String INSERT_SQL = "insert into order_status_history "
+            + "(history_id, order_id, status, notes, created_at) values (?, ?, ?, ?, ?)";
+    private static final int BATCH_SIZE = 500;
+    // Quá số dòng chờ ghi này thì flush sớm, không đợi lịch
+    private static final int EARLY_FLUSH_ROWS = 2_000;
+    private static final int NOTES_MAX = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    private record Entry(String historyId, String orderId, OrderStatus status, String notes, LocalDateTime at) {
+    }
+
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final Object flushLock = new Object();
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean(false);
+    private final ExecutorService earlyFlusher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "order-history-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Override
+    public void record(String orderId, OrderStatus status, String notes) {
+        if (orderId == null || status == null) {
+            return;
+        }
+        String trimmed = notes != null && notes.length() > NOTES_MAX ? notes.substring(0, NOTES_MAX) : notes;
+        pending.add(new Entry(TimeOrderedUuidGenerator.next().toString(), orderId, status, trimmed,
+                LocalDateTime.now()));
+
+        if (pendingCount.incrementAndGet() > EARLY_FLUSH_ROWS && earlyFlushQueued.compareAndSet(false, true)) {
+            earlyFlusher.submit(() -> {
+                earlyFlushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            List<Entry> batch = new ArrayList<>();
+            Entry e;
+            while ((e = pending.poll()) != null) {
+                batch.add(e);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            pendingCount.addAndGet(-batch.size());
+
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            int written = 0;
+            try {
+                for (int i = 0; i < batch.size(); i += BATCH_SIZE) {
+                    List<Object[]> rows = batch.subList(i, Math.min(i + BATCH_SIZE, batch.size())).stream()
+                            .map(h -> new Object[] { h.historyId(), h.orderId(), h.status().name(), h.notes(),
+                                    Timestamp.valueOf(h.at()) })
+                            .toList();
+                    tx.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows));
+                    written += rows.size();
+                }
+                log.debug("Flushed {} order status history rows", written);
+            } catch (Exception ex) {
+                // Lô lỗi đã rollback hết: trả lô đó và phần sau lại hàng đợi để lần flush sau thử tiếp
+                // (id sinh sẵn nên thứ tự không đổi)
+                List<Entry> failed = batch.subList(written, batch.size());
+                log.error("Order status history flush failed, re-queueing {} rows", failed.size(), ex);
+                pending.addAll(failed);
+                pendingCount.addAndGet(failed.size());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        earlyFlusher.shutdownNow();
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Could not flush order status history on shutdown: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.OutboxEvent;
+import com.example.Alotrabong.entity.OutboxStatus;
+import com.example.Alotrabong.event.OrderEventType;
+import com.example.Alotrabong.event.OutboxMessage;
+import com.example.Alotrabong.event.OutboxSubscriber;
+import com.example.Alotrabong.repository.OutboxEventRepository;
+import com.example.Alotrabong.service.OutboxService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Relay của transactional outbox: đọc sự kiện PENDING theo id tăng dần, giao cho từng {@link OutboxSubscriber}.
+ * <p>
+ * - Thứ tự theo đơn: sự kiện đầu tiên chưa xong của 1 đơn (lỗi / đang chờ backoff) chặn các sự kiện sau của đơn đó;
+ *   lô chỉ gồm sự kiện đã tới lượt nên đơn đang chờ không chặn đơn khác.
+ * - Giao ít nhất 1 lần: chỉ đánh dấu DONE sau khi mọi subscriber nhận xong; subscriber lỗi được thử lại theo
+ *   backoff luỹ thừa, subscriber đã nhận thì không bị giao lại (delivered_to).
+ * - Quá app.outbox.max-attempts thì chuyển FAILED để không chặn đơn mãi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxServiceImpl implements OutboxService {
+
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final List<OutboxSubscriber> subscribers;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.outbox.retention:P7D}")
+    private Duration retention;
+
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+
+    private final Object relayLock = new Object();
+
+    // Số liệu: giao thành công / lỗi theo subscriber, độ trễ từ lúc ghi tới lúc giao xong
+    private final Map<String, AtomicLong> delivered = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> failures = new ConcurrentHashMap<>();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String orderId, OrderEventType type, Map<String, Object> payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload != null ? payload : Map.of());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload is not serializable: " + type, e);
+        }
+        outboxEventRepository.save(OutboxEvent.builder()
+                .aggregateId(orderId)
+                .eventType(type)
+                .payload(json)
+                .status(OutboxStatus.PENDING)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Override
+    public int relay() {
+        synchronized (relayLock) {
+            // Chỉ lấy sự kiện đã tới lượt: sự kiện đang chờ backoff không chiếm chỗ trong lô, nên nhiều đơn lỗi
+            // cùng lúc cũng không chặn được các đơn khác
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> batch = outboxEventRepository.findDue(now, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            // Đơn có sự kiện trước đó còn chờ backoff: giữ nguyên thứ tự, các sự kiện sau của đơn chờ theo
+            Set<String> blocked = new HashSet<>(outboxEventRepository.findWaitingAggregates(
+                    batch.stream().map(OutboxEvent::getAggregateId).collect(Collectors.toSet()), now));
+            List<Long> done = new ArrayList<>();
+            List<OutboxEvent> retries = new ArrayList<>();
+
+            for (OutboxEvent e : batch) {
+                if (blocked.contains(e.getAggregateId())) {
+                    continue;
+                }
+                if (dispatch(e)) {
+                    done.add(e.getId());
+                    long lag = Duration.between(e.getCreatedAt(), LocalDateTime.now()).toMillis();
+                    lastLagMillis.set(lag);
+                    maxLagMillis.accumulateAndGet(lag, Math::max);
+                } else {
+                    blocked.add(e.getAggregateId());
+                    retries.add(e);
+                }
+            }
+
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.executeWithoutResult(s -> {
+                if (!done.isEmpty()) {
+                    outboxEventRepository.markDone(done, LocalDateTime.now());
+                }
+                outboxEventRepository.saveAll(retries);
+            });
+            if (!retries.isEmpty()) {
+                log.warn("Outbox relay: {} events delivered, {} scheduled for retry", done.size(), retries.size());
+            }
+            return done.size();
+        }
+    }
+
+    /** Giao cho các subscriber chưa nhận; true nếu tất cả đã nhận xong */
+    private boolean dispatch(OutboxEvent e) {
+        Set<String> receivedBy = new LinkedHashSet<>();
+        if (e.getDeliveredTo() != null && !e.getDeliveredTo().isBlank()) {
+            receivedBy.addAll(Arrays.asList(e.getDeliveredTo().split(",")));
+        }
+
+        OutboxMessage message;
+        try {
+            message = new OutboxMessage(e.getId(), e.getAggregateId(), e.getEventType(),
+                    objectMapper.readValue(e.getPayload() != null ? e.getPayload() : "{}", PAYLOAD_TYPE),
+                    e.getCreatedAt());
+        } catch (JsonProcessingException ex) {
+            return fail(e, receivedBy, "payload: " + ex.getMessage(), true);
+        }
+
+        String error = null;
+        for (OutboxSubscriber subscriber : subscribers) {
+            if (receivedBy.contains(subscriber.name()) || !subscriber.supports(e.getEventType())) {
+                continue;
+            }
+            try {
+                subscriber.handle(message);
+                receivedBy.add(subscriber.name());
+                delivered.computeIfAbsent(subscriber.name(), k -> new AtomicLong()).incrementAndGet();
+            } catch (Exception ex) {
+                failures.computeIfAbsent(subscriber.name(), k -> new AtomicLong()).incrementAndGet();
+                log.warn("Outbox subscriber {} failed on event {} ({} / order {}): {}", subscriber.name(),
+                        e.getId(), e.getEventType(), e.getAggregateId(), ex.getMessage());
+                error = subscriber.name() + ": " + ex.getMessage();
+            }
+        }
+        return error == null || fail(e, receivedBy, error, false);
+    }
+
+    /** Ghi nhận lần thử lỗi; luôn trả false (sự kiện chưa xong) */
+    private boolean fail(OutboxEvent e, Set<String> receivedBy, String error, boolean permanent) {
+        int attempts = e.getAttempts() + 1;
+        e.setAttempts(attempts);
+        e.setDeliveredTo(receivedBy.isEmpty() ? null : String.join(",", receivedBy));
+        e.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+        if (permanent || attempts >= maxAttempts) {
+            e.setStatus(OutboxStatus.FAILED);
+            e.setProcessedAt(LocalDateTime.now());
+            deadLettered.incrementAndGet();
+            log.error("Outbox event {} ({} / order {}) gave up after {} attempts: {}", e.getId(), e.getEventType(),
+                    e.getAggregateId(), attempts, error);
+        } else {
+            long factor = 1L << Math.min(attempts - 1, 20);
+            Duration backoff = BASE_BACKOFF.multipliedBy(factor);
+            e.setNextAttemptAt(LocalDateTime.now().plus(backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff));
+        }
+        return false;
+    }
+
+    @Override
+    @Transactional
+    public int purgeProcessed() {
+        return outboxEventRepository.deleteProcessedBefore(LocalDateTime.now().minus(retention));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStats() {
+        LocalDateTime oldest = outboxEventRepository.findOldestCreatedAt(OutboxStatus.PENDING);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", outboxEventRepository.countByStatus(OutboxStatus.PENDING));
+        stats.put("failed", outboxEventRepository.countByStatus(OutboxStatus.FAILED));
+        stats.put("oldestPendingAgeSeconds",
+                oldest != null ? Duration.between(oldest, LocalDateTime.now()).toSeconds() : 0);
+        stats.put("lastLagMillis", lastLagMillis.get());
+        stats.put("maxLagMillis", maxLagMillis.get());
+        stats.put("gaveUp", deadLettered.get());
+        stats.put("subscribers", subscribers.stream().map(OutboxSubscriber::name).toList());
+        stats.put("delivered", snapshot(delivered));
+        stats.put("failures", snapshot(failures));
+        return stats;
+    }
+
+    private static Map<String, Long> snapshot(Map<String, AtomicLong> counters) {
+        Map<String, Long> out = new TreeMap<>();
+        counters.forEach((k, v) -> out.put(k, v.get()));
+        return out;
+    }
+}
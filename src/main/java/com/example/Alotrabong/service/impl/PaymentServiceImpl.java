@@ -1,15 +1,26 @@
 package com.example.Alotrabong.service.impl;
 
+import com.example.Alotrabong.entity.Order;
 import com.example.Alotrabong.entity.Payment;
+import com.example.Alotrabong.entity.PaymentMethod;
+import com.example.Alotrabong.entity.PaymentStatus;
+import com.example.Alotrabong.exception.BadRequestException;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
+import com.example.Alotrabong.repository.OrderRepository;
 import com.example.Alotrabong.repository.PaymentRepository;
 import com.example.Alotrabong.service.PaymentService;
+import com.example.Alotrabong.util.LruMap;
+import com.example.Alotrabong.util.TransactionHooks;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
@@ -17,7 +28,14 @@ import java.util.List;
 @Transactional
 public class PaymentServiceImpl implements PaymentService {
 
+    private static final int MAX_CACHED_REFS = 10_000;
+    private static final Pattern UUID_HEX = Pattern.compile("[0-9a-fA-F]{32}");
+
     private final PaymentRepository paymentRepository;
+    private final OrderRepository orderRepository;
+
+    // txnRef -> orderId của các link thanh toán gần đây: callback tra trúng thì chỉ còn 1 lần đọc theo khoá chính
+    private final Map<String, String> orderIdByTxnRef = LruMap.synchronizedMap(MAX_CACHED_REFS);
 
     @Override
     @Transactional(readOnly = true)
@@ -38,10 +56,84 @@ public class PaymentServiceImpl implements PaymentService {
         log.info("Updating payment status: {} to {}", paymentId, status);
         Payment payment = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment not found"));
-        
-        // TODO: Update payment status logic
+        PaymentStatus newStatus;
+        try {
+            newStatus = PaymentStatus.valueOf(status.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new BadRequestException("Invalid payment status: " + status);
+        }
+
+        payment.setStatus(newStatus);
+        if (newStatus == PaymentStatus.PAID && payment.getPaidAt() == null) {
+            payment.setPaidAt(LocalDateTime.now());
+        }
         payment = paymentRepository.save(payment);
         log.info("Payment status updated: {}", paymentId);
         return payment;
     }
+
+    @Override
+    public String assignTxnRef(Order order, PaymentMethod provider) {
+        String txnRef = order.getTxnRef();
+        if (txnRef == null) {
+            // Giữ định dạng cũ (orderId bỏ '-') để link đã phát trước đây vẫn khớp
+            txnRef = order.getOrderId().replace("-", "");
+            orderRepository.assignTxnRef(order.getOrderId(), txnRef);
+            order.setTxnRef(txnRef);
+        }
+        if (!paymentRepository.existsByTxnRef(txnRef)) {
+            paymentRepository.save(Payment.builder()
+                    .orderId(order.getOrderId())
+                    .provider(provider)
+                    .amount(order.getTotalAmount())
+                    .status(PaymentStatus.UNPAID)
+                    .txnRef(txnRef)
+                    .build());
+        }
+        String ref = txnRef;
+        TransactionHooks.afterCommit(() -> orderIdByTxnRef.put(ref, order.getOrderId()));
+        return txnRef;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Order> findOrderByTxnRef(String txnRef) {
+        if (txnRef == null || txnRef.isBlank()) {
+            return Optional.empty();
+        }
+        String cachedOrderId = orderIdByTxnRef.get(txnRef);
+        if (cachedOrderId != null) {
+            return orderRepository.findById(cachedOrderId);
+        }
+
+        Optional<Order> order = orderRepository.findByTxnRef(txnRef);
+        if (order.isEmpty()) {
+            // Đơn tạo link trước khi có cột txn_ref: ghép lại dấu '-' của UUID rồi tìm theo khoá chính
+            String legacyId = legacyOrderId(txnRef);
+            order = legacyId != null ? orderRepository.findById(legacyId) : Optional.empty();
+        }
+        order.ifPresent(o -> orderIdByTxnRef.put(txnRef, o.getOrderId()));
+        return order;
+    }
+
+    @Override
+    public void recordGatewayResult(String txnRef, PaymentStatus status, String txnCode) {
+        if (txnRef == null || txnRef.isBlank()) {
+            return;
+        }
+        int updated = paymentRepository.updateStatusByTxnRef(txnRef, status, txnCode,
+                status == PaymentStatus.PAID ? LocalDateTime.now() : null);
+        log.info("Gateway result for txnRef {}: {} ({} payment rows)", txnRef, status, updated);
+    }
+
+    private static String legacyOrderId(String txnRef) {
+        if (txnRef.indexOf('-') >= 0) {
+            return txnRef;
+        }
+        if (!UUID_HEX.matcher(txnRef).matches()) {
+            return null;
+        }
+        return txnRef.substring(0, 8) + "-" + txnRef.substring(8, 12) + "-" + txnRef.substring(12, 16) + "-"
+                + txnRef.substring(16, 20) + "-" + txnRef.substring(20);
+    }
 }
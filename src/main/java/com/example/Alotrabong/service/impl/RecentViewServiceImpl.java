@@ -0,0 +1,222 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.RecentView;
+import com.example.Alotrabong.entity.User;
+import com.example.Alotrabong.repository.ItemRepository;
+import com.example.Alotrabong.repository.RecentViewRepository;
+import com.example.Alotrabong.repository.UserRepository;
+import com.example.Alotrabong.service.RecentViewService;
+import com.example.Alotrabong.util.LruMap;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ghi "món đã xem" kiểu write-behind: request chỉ ghi vào bộ đệm trong bộ nhớ,
+ * {@link #flush()} (chạy định kỳ) gộp trùng rồi ghi xuống recent_views trong 1 transaction.
+ * Mỗi user chỉ giữ tối đa {@link #RETENTION_PER_USER} món, cả trong bộ nhớ lẫn trong DB.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecentViewServiceImpl implements RecentViewService {
+
+    private static final int RETENTION_PER_USER = 20;
+    // Số user giữ danh sách đọc trong bộ nhớ (LRU)
+    private static final int MAX_CACHED_USERS = 10_000;
+    // Quá số user chờ ghi này thì flush sớm, không đợi lịch
+    private static final int EARLY_FLUSH_USERS = 5_000;
+
+    private final RecentViewRepository recentViewRepository;
+    private final UserRepository userRepository;
+    private final ItemRepository itemRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    // login -> itemId -> viewedAt, chờ ghi xuống DB (cũ trước, mới sau; đã gộp trùng)
+    private final ConcurrentHashMap<String, LinkedHashMap<String, LocalDateTime>> pending = new ConcurrentHashMap<>();
+
+    // login -> danh sách đã xem để đọc (cũ trước, mới sau), LRU theo user
+    private final Map<String, LinkedHashMap<String, LocalDateTime>> recent = LruMap.synchronizedMap(MAX_CACHED_USERS);
+
+    private final Object flushLock = new Object();
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean(false);
+    private final ExecutorService earlyFlusher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "recent-view-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Override
+    public void recordView(String login, String itemId) {
+        if (login == null || itemId == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        pending.compute(login, (k, views) -> {
+            LinkedHashMap<String, LocalDateTime> v = views != null ? views : new LinkedHashMap<>();
+            push(v, itemId, now);
+            return v;
+        });
+
+        LinkedHashMap<String, LocalDateTime> list = recent.get(login);
+        if (list != null) {
+            synchronized (list) {
+                push(list, itemId, now);
+            }
+        }
+
+        if (pending.size() > EARLY_FLUSH_USERS && earlyFlushQueued.compareAndSet(false, true)) {
+            earlyFlusher.submit(() -> {
+                earlyFlushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    @Override
+    public List<String> getRecentItemIds(String login, int limit) {
+        if (login == null || limit <= 0) {
+            return List.of();
+        }
+        LinkedHashMap<String, LocalDateTime> list = recent.get(login);
+        if (list == null) {
+            LinkedHashMap<String, LocalDateTime> loaded = hydrate(login);
+            synchronized (recent) {
+                list = recent.get(login);
+                if (list == null) {
+                    recent.put(login, loaded);
+                    list = loaded;
+                }
+            }
+        }
+
+        List<String> ids;
+        synchronized (list) {
+            ids = new ArrayList<>(list.keySet());
+        }
+        Collections.reverse(ids);
+        return ids.size() > limit ? List.copyOf(ids.subList(0, limit)) : ids;
+    }
+
+    /** Nạp danh sách từ DB rồi trộn với phần còn nằm trong bộ đệm chưa flush */
+    private LinkedHashMap<String, LocalDateTime> hydrate(String login) {
+        Map<String, LocalDateTime> merged = new HashMap<>();
+        User user = resolveUser(login);
+        if (user != null) {
+            for (Object[] row : recentViewRepository.findRecentItems(user.getUserId(),
+                    PageRequest.of(0, RETENTION_PER_USER))) {
+                merged.put((String) row[0], (LocalDateTime) row[1]);
+            }
+        }
+        pending.computeIfPresent(login, (k, views) -> {
+            views.forEach((id, at) -> merged.merge(id, at, (a, b) -> a.isAfter(b) ? a : b));
+            return views;
+        });
+
+        LinkedHashMap<String, LocalDateTime> list = new LinkedHashMap<>();
+        merged.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue(Comparator.nullsFirst(Comparator.naturalOrder())))
+                .forEach(e -> push(list, e.getKey(), e.getValue()));
+        return list;
+    }
+
+    // ======================= flush =======================
+
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, LinkedHashMap<String, LocalDateTime>> batch = new HashMap<>();
+            for (String login : new ArrayList<>(pending.keySet())) {
+                LinkedHashMap<String, LocalDateTime> views = pending.remove(login);
+                if (views != null && !views.isEmpty()) {
+                    batch.put(login, views);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                TransactionTemplate tx = new TransactionTemplate(transactionManager);
+                Integer written = tx.execute(status -> writeBatch(batch));
+                log.debug("Flushed {} recent views for {} users", written, batch.size());
+            } catch (Exception e) {
+                log.error("Recent views flush failed for {} users, re-queueing", batch.size(), e);
+                // Trả lại bộ đệm để lần flush sau thử tiếp (giữ bản mới hơn nếu user vừa xem thêm)
+                batch.forEach((login, views) -> pending.merge(login, views, (current, failed) -> {
+                    LinkedHashMap<String, LocalDateTime> m = new LinkedHashMap<>(failed);
+                    current.forEach((id, at) -> push(m, id, at));
+                    return m;
+                }));
+            }
+        }
+    }
+
+    private int writeBatch(Map<String, LinkedHashMap<String, LocalDateTime>> batch) {
+        int written = 0;
+        for (Map.Entry<String, LinkedHashMap<String, LocalDateTime>> e : batch.entrySet()) {
+            User user = resolveUser(e.getKey());
+            if (user == null) {
+                continue;
+            }
+            List<RecentView> inserts = new ArrayList<>();
+            for (Map.Entry<String, LocalDateTime> v : e.getValue().entrySet()) {
+                // Đã có dòng (user, item) thì chỉ cập nhật thời điểm xem
+                if (recentViewRepository.touch(user.getUserId(), v.getKey(), v.getValue()) == 0) {
+                    inserts.add(RecentView.builder()
+                            .user(user)
+                            .item(itemRepository.getReferenceById(v.getKey()))
+                            .viewedAt(v.getValue())
+                            .build());
+                }
+                written++;
+            }
+            recentViewRepository.saveAll(inserts);
+
+            // Cắt bớt phần cũ vượt quá giới hạn của user
+            List<Long> ids = recentViewRepository.findViewIdsNewestFirst(user.getUserId());
+            if (ids.size() > RETENTION_PER_USER) {
+                recentViewRepository.deleteAllByIdInBatch(ids.subList(RETENTION_PER_USER, ids.size()));
+            }
+        }
+        return written;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        earlyFlusher.shutdownNow();
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Could not flush recent views on shutdown: {}", e.getMessage());
+        }
+    }
+
+    // ======================= helpers =======================
+
+    private static void push(LinkedHashMap<String, LocalDateTime> views, String itemId, LocalDateTime at) {
+        views.remove(itemId); // đưa lên cuối = mới nhất
+        views.put(itemId, at);
+        Iterator<String> it = views.keySet().iterator();
+        while (views.size() > RETENTION_PER_USER && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private User resolveUser(String login) {
+        return userRepository.findByLogin(login)
+                .orElseGet(() -> userRepository.findById(login).orElse(null));
+    }
+}
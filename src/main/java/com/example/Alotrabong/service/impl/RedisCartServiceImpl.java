@@ -0,0 +1,688 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.AddToCartRequest;
+import com.example.Alotrabong.dto.CartBatchRequest;
+import com.example.Alotrabong.dto.CartItemDTO;
+import com.example.Alotrabong.dto.CartRepricingResult;
+import com.example.Alotrabong.dto.MenuCatalog;
+import com.example.Alotrabong.dto.MenuCatalog.BranchOffer;
+import com.example.Alotrabong.dto.MenuCatalog.CatalogBranch;
+import com.example.Alotrabong.dto.MenuCatalog.CatalogItem;
+import com.example.Alotrabong.entity.Cart;
+import com.example.Alotrabong.entity.CartItem;
+import com.example.Alotrabong.entity.User;
+import com.example.Alotrabong.event.CartChangedEvent;
+import com.example.Alotrabong.exception.BadRequestException;
+import com.example.Alotrabong.exception.ResourceNotFoundException;
+import com.example.Alotrabong.repository.CartItemRepository;
+import com.example.Alotrabong.repository.CartRepository;
+import com.example.Alotrabong.repository.InventoryRepository;
+import com.example.Alotrabong.repository.UserRepository;
+import com.example.Alotrabong.service.CartRepricingService;
+import com.example.Alotrabong.service.CartService;
+import com.example.Alotrabong.service.MenuCatalogService;
+import com.example.Alotrabong.util.LruMap;
+import com.example.Alotrabong.util.TransactionHooks;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Giỏ hàng sống trên Redis (app.cart.store=redis), SQL Server chỉ là bản lưu bền.
+ * <p>
+ * - Mỗi user 1 hash {@code cart:{userId}}: field = itemId, value = "cartItemId|qty|unitPrice".
+ * - unitPrice giống bản SQL: giá chi nhánh + phụ thu tuỳ chọn (cart_item_options) của dòng.
+ *   Mọi chỗ ghi giá (thêm món, lô thao tác, repriceCart) đều cộng phụ thu theo cartItemId.
+ * - Mọi thay đổi chạy bằng Lua (nguyên tử) và đánh dấu user vào set {@code cart:dirty}.
+ * - {@link #flush()} (chạy định kỳ) lấy các user bẩn, ghi trạng thái cuối cùng của giỏ xuống
+ *   carts/cart_items theo lô (chỉ insert/update/delete các dòng khác với SQL):
+ *   nhiều lần bấm "+ Giỏ" liên tiếp chỉ thành 1 lần ghi.
+ * - Redis chưa có giỏ (hết TTL / mới khởi động) thì nạp lại từ SQL.
+ */
+@Service
+@ConditionalOnProperty(name = "app.cart.store", havingValue = "redis")
+@RequiredArgsConstructor
+@Slf4j
+public class RedisCartServiceImpl implements CartService {
+
+    private static final int MAX_QTY = 99;
+    private static final String KEY_PREFIX = "cart:";
+    private static final String DIRTY_KEY = "cart:dirty";
+    // Field đánh dấu "đã nạp từ SQL" -> giỏ rỗng vẫn có hash, không nạp lại mỗi lần đọc
+    private static final String LOADED_FIELD = "~loaded";
+    private static final int FLUSH_BATCH = 200;
+    private static final int MAX_CACHED_USERS = 10_000;
+
+    // Thêm món: cộng dồn số lượng (giữ cartItemId cũ nếu đã có). Trả nil nếu giỏ chưa được nạp.
+    private static final RedisScript<String> ADD_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return false end
+            local cur = redis.call('HGET', KEYS[1], ARGV[1])
+            local id, qty = ARGV[2], 0
+            if cur then
+              local s1 = string.find(cur, '|', 1, true)
+              local s2 = string.find(cur, '|', s1 + 1, true)
+              id = string.sub(cur, 1, s1 - 1)
+              qty = tonumber(string.sub(cur, s1 + 1, s2 - 1))
+            end
+            qty = math.min(qty + tonumber(ARGV[3]), tonumber(ARGV[5]))
+            redis.call('HSET', KEYS[1], ARGV[1], id .. '|' .. qty .. '|' .. ARGV[4])
+            redis.call('EXPIRE', KEYS[1], ARGV[6])
+            redis.call('SADD', KEYS[2], ARGV[7])
+            return id .. '|' .. qty
+            """, String.class);
+
+    // Đặt số lượng cho 1 dòng (qty <= 0 -> xoá), chỉ khi cartItemId còn khớp
+    private static final RedisScript<Long> SET_SCRIPT = new DefaultRedisScript<>("""
+            local cur = redis.call('HGET', KEYS[1], ARGV[1])
+            if not cur or string.sub(cur, 1, #ARGV[2] + 1) ~= ARGV[2] .. '|' then return 0 end
+            if tonumber(ARGV[3]) <= 0 then
+              redis.call('HDEL', KEYS[1], ARGV[1])
+            else
+              redis.call('HSET', KEYS[1], ARGV[1], ARGV[2] .. '|' .. ARGV[3] .. '|' .. ARGV[4])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[5])
+            redis.call('SADD', KEYS[2], ARGV[6])
+            return 1
+            """, Long.class);
+
+    // Trừ số lượng đã đặt: ARGV = userId, ttl, rồi từng cặp (itemId, qty)
+    private static final RedisScript<Long> CONSUME_SCRIPT = new DefaultRedisScript<>("""
+            for i = 3, #ARGV, 2 do
+              local cur = redis.call('HGET', KEYS[1], ARGV[i])
+              if cur then
+                local s1 = string.find(cur, '|', 1, true)
+                local s2 = string.find(cur, '|', s1 + 1, true)
+                local left = tonumber(string.sub(cur, s1 + 1, s2 - 1)) - tonumber(ARGV[i + 1])
+                if left <= 0 then
+                  redis.call('HDEL', KEYS[1], ARGV[i])
+                else
+                  redis.call('HSET', KEYS[1], ARGV[i],
+                    string.sub(cur, 1, s1) .. left .. string.sub(cur, s2))
+                end
+              end
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('SADD', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    // Ghi đè nhiều dòng cùng lúc: ARGV = userId, ttl, rồi từng cặp (itemId, value; rỗng = xoá).
+    // Trả 0 nếu giỏ chưa được nạp (vừa hết TTL).
+    private static final RedisScript<Long> WRITE_LINES_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end
+            for i = 3, #ARGV, 2 do
+              if ARGV[i + 1] == '' then
+                redis.call('HDEL', KEYS[1], ARGV[i])
+              else
+                redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+              end
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('SADD', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    // Đổi đơn giá, giữ nguyên số lượng: ARGV = userId, ttl, rồi từng bộ (itemId, cartItemId, unitPrice)
+    private static final RedisScript<Long> PRICE_SCRIPT = new DefaultRedisScript<>("""
+            local n = 0
+            for i = 3, #ARGV, 3 do
+              local cur = redis.call('HGET', KEYS[1], ARGV[i])
+              if cur and string.sub(cur, 1, #ARGV[i + 1] + 1) == ARGV[i + 1] .. '|' then
+                local s1 = string.find(cur, '|', 1, true)
+                local s2 = string.find(cur, '|', s1 + 1, true)
+                redis.call('HSET', KEYS[1], ARGV[i], string.sub(cur, 1, s2) .. ARGV[i + 2])
+                n = n + 1
+              end
+            end
+            if n > 0 then
+              redis.call('EXPIRE', KEYS[1], ARGV[2])
+              redis.call('SADD', KEYS[2], ARGV[1])
+            end
+            return n
+            """, Long.class);
+
+    // Nạp giỏ từ SQL nếu Redis chưa có: ARGV = ttl, rồi từng cặp (field, value)
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end
+            redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final UserRepository userRepository;
+    private final InventoryRepository inventoryRepository;
+    private final MenuCatalogService menuCatalogService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CartRepricingService cartRepricingService;
+
+    @Value("${app.cart.redis-ttl:P7D}")
+    private Duration ttl;
+
+    // login/email/phone -> userId, để request không phải tra bảng users mỗi lần
+    private final Map<String, String> userIds = LruMap.synchronizedMap(MAX_CACHED_USERS);
+
+    private final Object flushLock = new Object();
+
+    private record Line(String itemId, String cartItemId, int qty, BigDecimal unitPrice) {
+    }
+
+    // =====================================================
+    // PUBLIC METHODS
+    // =====================================================
+
+    @Override
+    public CartItemDTO addToCart(String userIdOrLogin, AddToCartRequest request) {
+        int wantQty = (request.getQuantity() == null || request.getQuantity() <= 0) ? 1 : request.getQuantity();
+        wantQty = Math.min(wantQty, MAX_QTY);
+
+        String userId = resolveUserId(userIdOrLogin);
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+        CatalogItem item = catalog.findItem(request.getItemId())
+                .orElseThrow(() -> new ResourceNotFoundException("Item not found"));
+        if (!Boolean.TRUE.equals(item.getIsActive())) {
+            throw new BadRequestException("Item is inactive");
+        }
+
+        CatalogBranch branch = resolveBranch(catalog, request.getBranchId());
+        BigDecimal price = item.getPrice();
+        if (branch != null) {
+            BranchOffer offer = catalog.offer(branch.getBranchId(), item.getItemId());
+            if (offer != null) {
+                if (!offer.isAvailable()) {
+                    throw new BadRequestException("Item is not available at this branch");
+                }
+                if (offer.getPrice() != null) {
+                    price = offer.getPrice();
+                }
+            }
+            if (!hasSufficientInventory(branch.getBranchId(), item.getItemId(), wantQty)) {
+                throw new BadRequestException("Insufficient inventory");
+            }
+        }
+        // Dòng đã có thì giữ cartItemId cũ -> cộng phụ thu tuỳ chọn của dòng đó
+        ensureLoaded(userId);
+        Object cur = redisTemplate.opsForHash().get(key(userId), item.getItemId());
+        BigDecimal extra = BigDecimal.ZERO;
+        if (cur != null) {
+            String curId = String.valueOf(cur).split("\\|")[0];
+            extra = optionExtras(List.of(curId)).getOrDefault(curId, BigDecimal.ZERO);
+        }
+        BigDecimal unit = (price != null ? price : BigDecimal.ZERO).add(extra).setScale(2, RoundingMode.HALF_UP);
+
+        String result = null;
+        for (int attempt = 0; attempt < 2 && result == null; attempt++) {
+            ensureLoaded(userId);
+            result = redisTemplate.execute(ADD_SCRIPT, List.of(key(userId), DIRTY_KEY),
+                    item.getItemId(), UUID.randomUUID().toString(), String.valueOf(wantQty),
+                    unit.toPlainString(), String.valueOf(MAX_QTY), ttlSeconds(), userId);
+        }
+        if (result == null) {
+            throw new IllegalStateException("Cart store unavailable");
+        }
+        eventPublisher.publishEvent(new CartChangedEvent(userId, null));
+
+        String[] parts = result.split("\\|");
+        int qty = Integer.parseInt(parts[1]);
+        return toDTO(new Line(item.getItemId(), parts[0], qty, unit), catalog);
+    }
+
+    @Override
+    public List<CartItemDTO> getCartItems(String userIdOrLogin, String branchIdOrCode) {
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+        return readLines(resolveUserId(userIdOrLogin)).stream()
+                .map(l -> toDTO(l, catalog))
+                .toList();
+    }
+
+    @Override
+    public CartItemDTO updateCartItem(String userIdOrLogin, String cartItemId, int quantity) {
+        String userId = resolveUserId(userIdOrLogin);
+        Line line = findLine(userId, cartItemId);
+
+        int qty = Math.min(quantity, MAX_QTY);
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+        // Chỉ đổi số lượng; đơn giá giữ theo chi nhánh lúc thêm / lần repriceCart gần nhất
+        BigDecimal unit = line.unitPrice();
+
+        Long ok = redisTemplate.execute(SET_SCRIPT, List.of(key(userId), DIRTY_KEY),
+                line.itemId(), cartItemId, String.valueOf(qty), unit.toPlainString(), ttlSeconds(), userId);
+        if (ok == null || ok == 0) {
+            throw new ResourceNotFoundException("Cart item not found");
+        }
+        eventPublisher.publishEvent(new CartChangedEvent(userId, null));
+        if (qty <= 0) {
+            return null;
+        }
+        return toDTO(new Line(line.itemId(), cartItemId, qty, unit), catalog);
+    }
+
+    @Override
+    public void removeFromCart(String userIdOrLogin, String cartItemId) {
+        String userId = resolveUserId(userIdOrLogin);
+        Line line = findLine(userId, cartItemId);
+        redisTemplate.execute(SET_SCRIPT, List.of(key(userId), DIRTY_KEY),
+                line.itemId(), cartItemId, "0", "0", ttlSeconds(), userId);
+        eventPublisher.publishEvent(new CartChangedEvent(userId, null));
+    }
+
+    @Override
+    public void clearCart(String userIdOrLogin, String branchIdOrCode) {
+        String userId = resolveUserId(userIdOrLogin);
+        List<Line> lines = readLines(userId);
+        if (!lines.isEmpty()) {
+            consume(userId, lines);
+        }
+    }
+
+    @Override
+    public BigDecimal getCartTotal(String userIdOrLogin, String branchIdOrCode) {
+        return getCartItems(userIdOrLogin, branchIdOrCode).stream()
+                .map(CartItemDTO::getTotalPrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Override
+    public int getCartItemCount(String userIdOrLogin, String branchIdOrCode) {
+        return readLines(resolveUserId(userIdOrLogin)).stream().mapToInt(Line::qty).sum();
+    }
+
+    @Override
+    public int getCartCountForUser(String userId, HttpSession session) {
+        return getCartItemCount(userId, null);
+    }
+
+    @Override
+    public List<CartItemDTO> getCheckoutSnapshot(String userIdOrLogin) {
+        // 1 lệnh HGETALL = 1 thời điểm duy nhất của giỏ
+        return getCartItems(userIdOrLogin, null);
+    }
+
+    @Override
+    public void consumeCheckoutSnapshot(String userIdOrLogin, List<CartItemDTO> snapshot) {
+        String userId = resolveUserId(userIdOrLogin);
+        List<Line> lines = snapshot.stream()
+                .map(d -> new Line(d.getItemId(), d.getCartItemId(), d.getQuantity(), d.getUnitPrice()))
+                .toList();
+        // Đơn rollback thì giỏ giữ nguyên
+        TransactionHooks.afterCommit(() -> consume(userId, lines));
+    }
+
+    @Override
+    public List<CartItemDTO> applyBatch(String userIdOrLogin, CartBatchRequest request) {
+        List<CartBatchRequest.Operation> ops = request.getOperations() != null ? request.getOperations() : List.of();
+        String userId = resolveUserId(userIdOrLogin);
+        MenuCatalog catalog = menuCatalogService.getCatalog();
+        CatalogBranch branch = resolveBranch(catalog, request.getBranchId());
+
+        // itemId -> dòng (qty có thể về 0 = xoá), tính trên 1 lần đọc giỏ
+        Map<String, Line> lines = new LinkedHashMap<>();
+        Map<String, String> itemIdByLine = new HashMap<>();
+        for (Line l : readLines(userId)) {
+            lines.put(l.itemId(), l);
+            itemIdByLine.put(l.cartItemId(), l.itemId());
+        }
+
+        Set<String> touched = new LinkedHashSet<>();
+        for (int i = 0; i < ops.size(); i++) {
+            CartBatchRequest.Operation op = ops.get(i);
+            String where = "Operation #" + (i + 1) + ": ";
+            if (op.getAction() == CartBatchRequest.Action.ADD) {
+                CatalogItem item = op.getItemId() != null ? catalog.findItem(op.getItemId()).orElse(null) : null;
+                if (item == null) {
+                    throw new ResourceNotFoundException(where + "Item not found");
+                }
+                if (!Boolean.TRUE.equals(item.getIsActive())) {
+                    throw new BadRequestException(where + "Item is inactive");
+                }
+                int want = op.getQuantity() == null || op.getQuantity() <= 0 ? 1 : Math.min(op.getQuantity(), MAX_QTY);
+                Line cur = lines.get(item.getItemId());
+                lines.put(item.getItemId(), cur == null
+                        ? new Line(item.getItemId(), UUID.randomUUID().toString(), want, BigDecimal.ZERO)
+                        : new Line(cur.itemId(), cur.cartItemId(), Math.min(cur.qty() + want, MAX_QTY), cur.unitPrice()));
+                touched.add(item.getItemId());
+            } else {
+                String itemId = op.getCartItemId() != null ? itemIdByLine.get(op.getCartItemId()) : op.getItemId();
+                Line cur = itemId != null ? lines.get(itemId) : null;
+                if (cur == null) {
+                    throw new ResourceNotFoundException(where + "Cart item not found");
+                }
+                int qty = op.getAction() == CartBatchRequest.Action.REMOVE || op.getQuantity() == null
+                        ? 0 : Math.max(Math.min(op.getQuantity(), MAX_QTY), 0);
+                lines.put(itemId, new Line(cur.itemId(), cur.cartItemId(), qty, cur.unitPrice()));
+                touched.add(itemId);
+            }
+        }
+
+        // Giá lấy từ catalog trong bộ nhớ; tồn kho 1 query cho cả lô
+        List<String> check = touched.stream().filter(id -> lines.get(id).qty() > 0).toList();
+        Map<String, Integer> stock = new HashMap<>();
+        if (branch != null && !check.isEmpty()) {
+            for (Object[] row : inventoryRepository.findQuantities(branch.getBranchId(), check)) {
+                stock.put((String) row[0], row[1] == null ? 0 : ((Number) row[1]).intValue());
+            }
+        }
+        Map<String, BigDecimal> extras = optionExtras(touched.stream()
+                .map(id -> lines.get(id).cartItemId())
+                .toList());
+        List<String> args = new ArrayList<>();
+        args.add(userId);
+        args.add(ttlSeconds());
+        for (String itemId : touched) {
+            Line l = lines.get(itemId);
+            args.add(itemId);
+            if (l.qty() <= 0) {
+                args.add("");
+                continue;
+            }
+            CatalogItem item = catalog.findItem(itemId).orElse(null);
+            BigDecimal price = item != null ? item.getPrice() : l.unitPrice();
+            String name = item != null ? item.getName() : itemId;
+            if (branch != null) {
+                BranchOffer offer = catalog.offer(branch.getBranchId(), itemId);
+                if (offer != null) {
+                    if (!offer.isAvailable()) {
+                        throw new BadRequestException("Item is not available at this branch: " + name);
+                    }
+                    if (offer.getPrice() != null) {
+                        price = offer.getPrice();
+                    }
+                }
+            }
+            Integer inStock = stock.get(itemId);
+            if (inStock != null && inStock < l.qty()) {
+                throw new BadRequestException("Insufficient inventory: " + name);
+            }
+            BigDecimal unit = (price != null ? price : BigDecimal.ZERO)
+                    .add(extras.getOrDefault(l.cartItemId(), BigDecimal.ZERO))
+                    .setScale(2, RoundingMode.HALF_UP);
+            lines.put(itemId, new Line(itemId, l.cartItemId(), l.qty(), unit));
+            args.add(l.cartItemId() + "|" + l.qty() + "|" + unit.toPlainString());
+        }
+
+        // Đã kiểm tra xong mới ghi: 1 script = tất cả hoặc không gì cả
+        if (!touched.isEmpty()) {
+            Long ok = null;
+            for (int attempt = 0; attempt < 2 && (ok == null || ok == 0); attempt++) {
+                ensureLoaded(userId);
+                ok = redisTemplate.execute(WRITE_LINES_SCRIPT, List.of(key(userId), DIRTY_KEY), args.toArray());
+            }
+            if (ok == null || ok == 0) {
+                throw new IllegalStateException("Cart store unavailable");
+            }
+            eventPublisher.publishEvent(new CartChangedEvent(userId, null));
+        }
+        return lines.values().stream()
+                .filter(l -> l.qty() > 0)
+                .map(l -> toDTO(l, catalog))
+                .toList();
+    }
+
+    @Override
+    public CartRepricingResult repriceCart(String userIdOrLogin, String branchIdOrCode) {
+        String userId = resolveUserId(userIdOrLogin);
+        CatalogBranch branch = resolveBranch(menuCatalogService.getCatalog(), branchIdOrCode);
+        CartRepricingResult result = cartRepricingService.reprice(
+                getCartItems(userId, null), branch != null ? branch.getBranchId() : null);
+
+        List<String> args = new ArrayList<>();
+        args.add(userId);
+        args.add(ttlSeconds());
+        for (CartRepricingResult.Line l : result.getLines()) {
+            if (l.getStatus() != CartRepricingResult.Status.UNAVAILABLE && l.isPriceChanged()) {
+                args.add(l.getItemId());
+                args.add(l.getCartItemId());
+                args.add(l.getNewUnitPrice().toPlainString());
+            }
+        }
+        if (args.size() > 2) {
+            // Chỉ ghi giá, số lượng user vừa đổi trong lúc định giá vẫn giữ nguyên
+            redisTemplate.execute(PRICE_SCRIPT, List.of(key(userId), DIRTY_KEY), args.toArray());
+        }
+        return result;
+    }
+
+    // =====================================================
+    // WRITE-BEHIND
+    // =====================================================
+
+    /** Ghi giỏ của các user bẩn xuống carts/cart_items, mỗi lô {@link #FLUSH_BATCH} user 1 transaction */
+    public void flush() {
+        synchronized (flushLock) {
+            int users = 0;
+            List<String> batch;
+            while (!(batch = popDirty()).isEmpty()) {
+                List<String> current = batch;
+                try {
+                    new TransactionTemplate(transactionManager).executeWithoutResult(status -> writeBatch(current));
+                    users += current.size();
+                } catch (Exception e) {
+                    log.error("Cart flush failed for {} users, re-queueing", current.size(), e);
+                    redisTemplate.opsForSet().add(DIRTY_KEY, current.toArray(String[]::new));
+                    break;
+                }
+            }
+            if (users > 0) {
+                log.debug("Flushed {} carts to SQL", users);
+            }
+        }
+    }
+
+    private List<String> popDirty() {
+        List<String> popped = redisTemplate.opsForSet().pop(DIRTY_KEY, FLUSH_BATCH);
+        return popped != null ? popped : List.of();
+    }
+
+    private void writeBatch(List<String> userIdsBatch) {
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (String userId : userIdsBatch) {
+            Map<Object, Object> raw = redisTemplate.opsForHash().entries(key(userId));
+            if (raw.isEmpty()) {
+                continue; // hết TTL: SQL đang giữ bản mới nhất đã ghi
+            }
+            User user = userRepository.findById(userId).orElse(null);
+            if (user == null) {
+                continue;
+            }
+            Cart cart = cartRepository.findByUser(user)
+                    .orElseGet(() -> cartRepository.save(Cart.builder().user(user).build()));
+
+            // So với các dòng đang có trong SQL và chỉ ghi phần khác: dòng còn trên Redis giữ nguyên
+            // cart_item_id nên các option (cart_item_options, Redis không lưu) vẫn còn
+            Map<String, Line> stored = new HashMap<>();
+            for (Line l : jdbcTemplate.query(
+                    "select cart_item_id, item_id, quantity, unit_price from cart_items where cart_id = ?",
+                    (rs, n) -> new Line(rs.getString(2), rs.getString(1), rs.getInt(3), rs.getBigDecimal(4)),
+                    cart.getCartId())) {
+                stored.put(l.cartItemId(), l);
+            }
+            for (Line l : parse(raw)) {
+                Line old = stored.remove(l.cartItemId());
+                if (old == null) {
+                    inserts.add(new Object[] { l.cartItemId(), cart.getCartId(), l.itemId(), l.qty(), l.unitPrice() });
+                } else if (old.qty() != l.qty() || old.unitPrice() == null
+                        || old.unitPrice().compareTo(l.unitPrice()) != 0) {
+                    updates.add(new Object[] { l.qty(), l.unitPrice(), l.cartItemId() });
+                }
+            }
+            stored.keySet().forEach(cartItemId -> deletes.add(new Object[] { cartItemId }));
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("delete from cart_item_options where cart_item_id = ?", deletes);
+            jdbcTemplate.batchUpdate("delete from cart_items where cart_item_id = ?", deletes);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("update cart_items set quantity = ?, unit_price = ? where cart_item_id = ?", updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into cart_items (cart_item_id, cart_id, item_id, quantity, unit_price) "
+                    + "values (?, ?, ?, ?, ?)", inserts);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Could not flush carts on shutdown: {}", e.getMessage());
+        }
+    }
+
+    // =====================================================
+    // PRIVATE HELPERS
+    // =====================================================
+
+    private List<Line> readLines(String userId) {
+        ensureLoaded(userId);
+        return parse(redisTemplate.opsForHash().entries(key(userId)));
+    }
+
+    /** Cache miss: dựng hash từ carts/cart_items (không ghi đè nếu request khác đã nạp trước) */
+    private void ensureLoaded(String userId) {
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(key(userId)))) {
+            return;
+        }
+        List<String> args = new ArrayList<>();
+        args.add(ttlSeconds());
+        args.add(LOADED_FIELD);
+        args.add("1");
+        cartRepository.findByUser_UserId(userId).ifPresent(cart -> {
+            for (CartItem ci : cartItemRepository.findByCart(cart)) {
+                if (ci.getItem() == null || ci.getQuantity() == null || ci.getQuantity() <= 0) {
+                    continue;
+                }
+                BigDecimal unit = ci.getUnitPrice() != null ? ci.getUnitPrice() : BigDecimal.ZERO;
+                args.add(ci.getItem().getItemId());
+                args.add(ci.getCartItemId() + "|" + ci.getQuantity() + "|" + unit.toPlainString());
+            }
+        });
+        redisTemplate.execute(LOAD_SCRIPT, List.of(key(userId)), args.toArray());
+    }
+
+    private void consume(String userId, List<Line> lines) {
+        List<String> args = new ArrayList<>();
+        args.add(userId);
+        args.add(ttlSeconds());
+        for (Line l : lines) {
+            args.add(l.itemId());
+            args.add(String.valueOf(l.qty()));
+        }
+        redisTemplate.execute(CONSUME_SCRIPT, List.of(key(userId), DIRTY_KEY), args.toArray());
+        eventPublisher.publishEvent(new CartChangedEvent(userId, null));
+    }
+
+    /** cartItemId -> tổng phụ thu tuỳ chọn; dòng mới (chưa xuống SQL) chưa có tuỳ chọn nên không có trong map */
+    private Map<String, BigDecimal> optionExtras(Collection<String> cartItemIds) {
+        Map<String, BigDecimal> extras = new HashMap<>();
+        if (!cartItemIds.isEmpty()) {
+            for (Object[] row : cartItemRepository.sumOptionExtras(cartItemIds)) {
+                extras.put((String) row[0], (BigDecimal) row[1]);
+            }
+        }
+        return extras;
+    }
+
+    private Line findLine(String userId, String cartItemId) {
+        return readLines(userId).stream()
+                .filter(l -> l.cartItemId().equals(cartItemId))
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException("Cart item not found"));
+    }
+
+    private static List<Line> parse(Map<Object, Object> raw) {
+        List<Line> lines = new ArrayList<>();
+        raw.forEach((k, v) -> {
+            String field = String.valueOf(k);
+            if (LOADED_FIELD.equals(field)) {
+                return;
+            }
+            String[] parts = String.valueOf(v).split("\\|");
+            if (parts.length == 3) {
+                lines.add(new Line(field, parts[0], Integer.parseInt(parts[1]), new BigDecimal(parts[2])));
+            }
+        });
+        lines.sort(Comparator.comparing(Line::cartItemId));
+        return lines;
+    }
+
+    private String resolveUserId(String userIdOrLogin) {
+        if (userIdOrLogin == null || userIdOrLogin.isBlank()) {
+            throw new ResourceNotFoundException("User not found");
+        }
+        String cached = userIds.get(userIdOrLogin);
+        if (cached != null) {
+            return cached;
+        }
+        String userId = userRepository.findById(userIdOrLogin)
+                .or(() -> userRepository.findByLogin(userIdOrLogin))
+                .map(User::getUserId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        userIds.put(userIdOrLogin, userId);
+        return userId;
+    }
+
+    private static CatalogBranch resolveBranch(MenuCatalog catalog, String idOrCode) {
+        if (idOrCode != null && !idOrCode.isBlank()) {
+            Optional<CatalogBranch> byId = catalog.findBranch(idOrCode);
+            if (byId.isPresent()) {
+                return byId.get();
+            }
+            Optional<CatalogBranch> byCode = catalog.getBranches().stream()
+                    .filter(b -> idOrCode.equalsIgnoreCase(b.getBranchCode()))
+                    .findFirst();
+            if (byCode.isPresent()) {
+                return byCode.get();
+            }
+        }
+        return catalog.firstActiveBranch();
+    }
+
+    private boolean hasSufficientInventory(String branchId, String itemId, int wantQty) {
+        return inventoryRepository.findByBranch_BranchIdAndItem_ItemId(branchId, itemId)
+                .map(inv -> inv.getQuantity() != null && inv.getQuantity() >= wantQty)
+                .orElse(true);
+    }
+
+    private static CartItemDTO toDTO(Line l, MenuCatalog catalog) {
+        BigDecimal unit = l.unitPrice() != null ? l.unitPrice() : BigDecimal.ZERO;
+        return CartItemDTO.builder()
+                .cartItemId(l.cartItemId())
+                .itemId(l.itemId())
+                .itemName(catalog.findItem(l.itemId()).map(CatalogItem::getName).orElse(null))
+                .quantity(l.qty())
+                .unitPrice(unit)
+                .totalPrice(unit.multiply(BigDecimal.valueOf(l.qty())).setScale(2, RoundingMode.HALF_UP))
+                .build();
+    }
+
+    private static String key(String userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private String ttlSeconds() {
+        return String.valueOf(ttl.toSeconds());
+    }
+}
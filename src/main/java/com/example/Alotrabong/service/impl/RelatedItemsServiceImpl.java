@@ -0,0 +1,270 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.ItemRelated;
+import com.example.Alotrabong.entity.JobCheckpoint;
+import com.example.Alotrabong.entity.OrderStatus;
+import com.example.Alotrabong.repository.ItemCoPurchaseRepository;
+import com.example.Alotrabong.repository.ItemRelatedRepository;
+import com.example.Alotrabong.repository.JobCheckpointRepository;
+import com.example.Alotrabong.repository.OrderItemRepository;
+import com.example.Alotrabong.service.RelatedItemsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gợi ý "thường được mua cùng" tính sẵn từ order_items.
+ * <p>
+ * Job chạy tăng dần theo mốc createdAt của đơn (job_checkpoints): mỗi cửa sổ thời gian gom các dòng đơn
+ * thành giỏ, đếm cặp món vào item_co_purchase rồi tính lại top-N cho các món bị ảnh hưởng vào item_related.
+ * Khi phục vụ chỉ tra map itemId -> danh sách đã tính trong bộ nhớ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RelatedItemsServiceImpl implements RelatedItemsService {
+
+    static final String JOB_NAME = "item-co-purchase";
+    private static final int TOP_N = 12;
+    // Giỏ quá lớn (đơn sỉ) sinh ra quá nhiều cặp mà tín hiệu lại yếu -> chỉ lấy bấy nhiêu món đầu
+    private static final int MAX_BASKET_ITEMS = 30;
+    // Cặp xuất hiện ít hơn ngần này đơn coi như nhiễu
+    private static final long MIN_SUPPORT = 2;
+    private static final int WINDOW_DAYS = 7;
+    private static final int CHUNK = 500;
+    // Chừa lại chút thời gian cho các đơn đang ghi dở
+    private static final int SAFETY_LAG_MINUTES = 1;
+    private static final List<OrderStatus> EXCLUDED = List.of(OrderStatus.CANCELLED, OrderStatus.REFUNDED);
+
+    private final OrderItemRepository orderItemRepository;
+    private final ItemCoPurchaseRepository itemCoPurchaseRepository;
+    private final ItemRelatedRepository itemRelatedRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    private final AtomicReference<Map<String, List<String>>> related = new AtomicReference<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // ======================= serving =======================
+
+    @Override
+    public List<String> getRelatedItemIds(String itemId, int limit) {
+        if (itemId == null || limit <= 0) {
+            return List.of();
+        }
+        List<String> ids = snapshot().getOrDefault(itemId, List.of());
+        return ids.size() > limit ? ids.subList(0, limit) : ids;
+    }
+
+    @Override
+    public List<String> getRelatedForBasket(Collection<String> itemIds, int limit) {
+        if (itemIds == null || itemIds.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Map<String, List<String>> map = snapshot();
+        Set<String> inBasket = new HashSet<>(itemIds);
+        // Điểm theo thứ hạng: đứng đầu danh sách của món nào thì được nhiều điểm hơn
+        Map<String, Integer> score = new HashMap<>();
+        for (String id : inBasket) {
+            List<String> neighbours = map.getOrDefault(id, List.of());
+            for (int i = 0; i < neighbours.size(); i++) {
+                String n = neighbours.get(i);
+                if (!inBasket.contains(n)) {
+                    score.merge(n, TOP_N - i, Integer::sum);
+                }
+            }
+        }
+        return score.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private Map<String, List<String>> snapshot() {
+        Map<String, List<String>> map = related.get();
+        if (map == null) {
+            map = reloadSnapshot();
+        }
+        return map;
+    }
+
+    private Map<String, List<String>> reloadSnapshot() {
+        Map<String, List<String>> map = new HashMap<>();
+        for (ItemRelated r : itemRelatedRepository.findAll()) {
+            List<String> ids = parseIds(r.getRelatedIds());
+            if (!ids.isEmpty()) {
+                map.put(r.getItemId(), ids);
+            }
+        }
+        Map<String, List<String>> frozen = Map.copyOf(map);
+        related.set(frozen);
+        return frozen;
+    }
+
+    // ======================= job =======================
+
+    @Override
+    public void rebuildIncremental() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Co-purchase job already running, skipping");
+            return;
+        }
+        try {
+            LocalDateTime from = jobCheckpointRepository.findById(JOB_NAME)
+                    .map(JobCheckpoint::getLastProcessedAt)
+                    .orElse(null);
+            if (from == null) {
+                LocalDateTime first = orderItemRepository.findFirstOrderLineCreatedAt();
+                if (first == null) {
+                    return;
+                }
+                from = first.minusNanos(1_000);
+            }
+            LocalDateTime until = LocalDateTime.now().minusMinutes(SAFETY_LAG_MINUTES);
+
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            Set<String> touched = new HashSet<>();
+            long lines = 0;
+            while (from.isBefore(until)) {
+                LocalDateTime windowFrom = from;
+                LocalDateTime windowTo = min(from.plusDays(WINDOW_DAYS), until);
+                // Cộng dồn cặp và lưu mốc trong cùng transaction -> chạy lại không bị đếm 2 lần
+                Long n = tx.execute(status -> processWindow(windowFrom, windowTo, touched));
+                lines += n != null ? n : 0;
+                from = windowTo;
+            }
+
+            if (!touched.isEmpty()) {
+                tx.executeWithoutResult(status -> recomputeTopN(touched));
+                reloadSnapshot();
+            }
+            log.info("Co-purchase job processed {} order lines, {} items updated", lines, touched.size());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private long processWindow(LocalDateTime from, LocalDateTime to, Set<String> touched) {
+        List<Object[]> rows = orderItemRepository.findBasketLines(from, to, EXCLUDED);
+
+        // Gom theo đơn (kết quả đã sort theo orderId) rồi đếm cặp có hướng a -> b
+        Map<String, Map<String, Long>> pairs = new HashMap<>();
+        String currentOrder = null;
+        LinkedHashSet<String> basket = new LinkedHashSet<>();
+        for (Object[] row : rows) {
+            String orderId = (String) row[0];
+            if (!orderId.equals(currentOrder)) {
+                countPairs(basket, pairs);
+                basket.clear();
+                currentOrder = orderId;
+            }
+            if (row[1] != null && basket.size() < MAX_BASKET_ITEMS) {
+                basket.add((String) row[1]);
+            }
+        }
+        countPairs(basket, pairs);
+
+        applyCounts(pairs);
+        touched.addAll(pairs.keySet());
+
+        JobCheckpoint cp = jobCheckpointRepository.findById(JOB_NAME)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(JOB_NAME).build());
+        cp.setLastProcessedAt(to);
+        cp.setUpdatedAt(LocalDateTime.now());
+        jobCheckpointRepository.save(cp);
+        return rows.size();
+    }
+
+    private static void countPairs(Collection<String> basket, Map<String, Map<String, Long>> pairs) {
+        if (basket.size() < 2) {
+            return;
+        }
+        for (String a : basket) {
+            Map<String, Long> row = pairs.computeIfAbsent(a, k -> new HashMap<>());
+            for (String b : basket) {
+                if (!a.equals(b)) {
+                    row.merge(b, 1L, Long::sum);
+                }
+            }
+        }
+    }
+
+    /** Cộng dồn bằng batch update; cặp chưa có dòng (update count = 0) thì batch insert */
+    private void applyCounts(Map<String, Map<String, Long>> pairs) {
+        List<Object[]> updates = new ArrayList<>();
+        pairs.forEach((a, row) -> row.forEach((b, c) -> updates.add(new Object[] { a, b, c })));
+        if (updates.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        int[] counts = jdbcTemplate.batchUpdate(
+                "update item_co_purchase set pair_count = pair_count + ?, updated_at = ? "
+                        + "where item_id = ? and related_item_id = ?",
+                updates.stream().map(u -> new Object[] { u[2], now, u[0], u[1] }).toList());
+
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                Object[] u = updates.get(i);
+                inserts.add(new Object[] { u[0], u[1], u[2], now });
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "insert into item_co_purchase (item_id, related_item_id, pair_count, updated_at) values (?, ?, ?, ?)",
+                    inserts);
+        }
+    }
+
+    private void recomputeTopN(Set<String> itemIds) {
+        List<String> ids = new ArrayList<>(itemIds);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < ids.size(); i += CHUNK) {
+            List<String> chunk = ids.subList(i, Math.min(i + CHUNK, ids.size()));
+            Map<String, List<String>> top = new HashMap<>();
+            for (Object[] row : itemCoPurchaseRepository.findPairsForItems(chunk, MIN_SUPPORT)) {
+                List<String> list = top.computeIfAbsent((String) row[0], k -> new ArrayList<>());
+                if (list.size() < TOP_N) {
+                    list.add((String) row[1]);
+                }
+            }
+            List<ItemRelated> rows = chunk.stream()
+                    .map(id -> ItemRelated.builder()
+                            .itemId(id)
+                            .relatedIds(String.join(",", top.getOrDefault(id, List.of())))
+                            .updatedAt(now)
+                            .build())
+                    .toList();
+            itemRelatedRepository.saveAll(rows);
+        }
+    }
+
+    // ======================= helpers =======================
+
+    private static List<String> parseIds(String csv) {
+        if (csv == null || csv.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(csv.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
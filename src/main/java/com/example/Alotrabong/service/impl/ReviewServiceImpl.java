@@ -1,16 +1,24 @@
 package com.example.Alotrabong.service.impl;
 
+import com.example.Alotrabong.dto.KeysetCursor;
 import com.example.Alotrabong.dto.ReviewDTO;
+import com.example.Alotrabong.dto.ReviewFeedDTO;
 import com.example.Alotrabong.entity.Review;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
+import com.example.Alotrabong.repository.ReviewMediaRepository;
 import com.example.Alotrabong.repository.ReviewRepository;
+import com.example.Alotrabong.repository.UserRepository;
+import com.example.Alotrabong.service.ItemStatsService;
 import com.example.Alotrabong.service.ReviewService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,14 +27,73 @@ import java.util.stream.Collectors;
 @Transactional
 public class ReviewServiceImpl implements ReviewService {
 
+    public static final int DEFAULT_FEED_SIZE = 10;
+    private static final int MAX_FEED_SIZE = 50;
+
     private final ReviewRepository reviewRepository;
+    private final ReviewMediaRepository reviewMediaRepository;
+    private final UserRepository userRepository;
+    private final ItemStatsService itemStatsService;
 
     @Override
     @Transactional(readOnly = true)
     public List<ReviewDTO> getReviewsByItem(String itemId) {
-        return reviewRepository.findByItemIdOrderByCreatedAtDesc(itemId).stream()
-                .map(this::convertToDTO)
+        return getReviewFeed(itemId, null, DEFAULT_FEED_SIZE).getItems();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ReviewFeedDTO getReviewFeed(String itemId, String cursor, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_FEED_SIZE);
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        PageRequest window = PageRequest.of(0, limit + 1);
+
+        String[] after = KeysetCursor.decode(cursor);
+        LocalDateTime afterAt = after != null ? parseTime(after[0]) : null;
+        List<Review> rows = afterAt != null
+                ? reviewRepository.findFeedAfter(itemId, afterAt, after[1], window)
+                : reviewRepository.findFeedFirst(itemId, window);
+
+        boolean hasMore = rows.size() > limit;
+        List<Review> reviews = hasMore ? rows.subList(0, limit) : rows;
+        if (reviews.isEmpty()) {
+            return ReviewFeedDTO.builder().items(List.of()).build();
+        }
+
+        // Ảnh và tên người viết của cả trang: mỗi loại đúng 1 query
+        List<String> reviewIds = reviews.stream().map(Review::getReviewId).toList();
+        Map<String, List<String>> mediaByReview = new HashMap<>();
+        for (Object[] row : reviewMediaRepository.findUrlsByReviewIds(reviewIds)) {
+            if (row[1] != null) {
+                mediaByReview.computeIfAbsent((String) row[0], k -> new ArrayList<>()).add((String) row[1]);
+            }
+        }
+
+        Set<String> userIds = reviews.stream()
+                .map(Review::getUserId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, String> names = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            for (Object[] row : userRepository.findFullNamesByIds(userIds)) {
+                if (row[1] != null && !((String) row[1]).isBlank()) {
+                    names.put((String) row[0], (String) row[1]);
+                }
+            }
+        }
+
+        List<ReviewDTO> items = reviews.stream()
+                .map(r -> {
+                    ReviewDTO dto = convertToDTO(r);
+                    dto.setReviewerName(names.getOrDefault(r.getUserId(), maskUser(r.getUserId())));
+                    dto.setMediaUrls(mediaByReview.getOrDefault(r.getReviewId(), List.of()));
+                    return dto;
+                })
                 .collect(Collectors.toList());
+
+        Review last = reviews.get(reviews.size() - 1);
+        String next = hasMore ? KeysetCursor.encode(last.getCreatedAt(), last.getReviewId()) : null;
+        return ReviewFeedDTO.builder().items(items).nextCursor(next).build();
     }
 
     @Override
@@ -50,6 +117,8 @@ public class ReviewServiceImpl implements ReviewService {
                 .build();
         
         review = reviewRepository.save(review);
+        // Cùng transaction với review -> điểm trong item_stats không lệch khi 1 bên lỗi
+        itemStatsService.recordRatingChange(review.getItemId(), null, review.getRating());
         log.info("Review created successfully: {}", review.getReviewId());
         
         return convertToDTO(review);
@@ -62,8 +131,11 @@ public class ReviewServiceImpl implements ReviewService {
         Review review = reviewRepository.findById(reviewId)
                 .orElseThrow(() -> new ResourceNotFoundException("Review not found"));
         
+        Integer oldRating = isVisible(review) ? review.getRating() : null;
         review.setRating(reviewDTO.getRating());
         review.setComment(reviewDTO.getComment());
+        itemStatsService.recordRatingChange(review.getItemId(), oldRating,
+                isVisible(review) ? review.getRating() : null);
         
         review = reviewRepository.save(review);
         log.info("Review updated successfully: {}", reviewId);
@@ -78,12 +150,34 @@ public class ReviewServiceImpl implements ReviewService {
         Review review = reviewRepository.findById(reviewId)
                 .orElseThrow(() -> new ResourceNotFoundException("Review not found"));
         
+        if (isVisible(review)) {
+            itemStatsService.recordRatingChange(review.getItemId(), review.getRating(), null);
+        }
         review.setIsActive(false);
         reviewRepository.save(review);
         
         log.info("Review deactivated: {}", reviewId);
     }
 
+    // is_active null (dữ liệu cũ) vẫn được hiển thị
+    private static boolean isVisible(Review review) {
+        return !Boolean.FALSE.equals(review.getIsActive());
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            return null; // cursor hỏng -> đọc lại từ đầu
+        }
+    }
+
+    private static String maskUser(String userId) {
+        if (userId == null || userId.length() < 4)
+            return "User";
+        return "User-" + userId.substring(0, 4) + "****";
+    }
+
     private ReviewDTO convertToDTO(Review review) {
         return ReviewDTO.builder()
                 .reviewId(review.getReviewId())
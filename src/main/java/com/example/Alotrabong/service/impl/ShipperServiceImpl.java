@@ -2,13 +2,12 @@ package com.example.Alotrabong.service.impl;
 
 import com.example.Alotrabong.entity.Order;
 import com.example.Alotrabong.entity.OrderStatus;
-import com.example.Alotrabong.entity.PaymentStatus;
 import com.example.Alotrabong.entity.Shipment;
 import com.example.Alotrabong.entity.Shipper;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
-import com.example.Alotrabong.repository.OrderRepository;
 import com.example.Alotrabong.repository.ShipmentRepository;
 import com.example.Alotrabong.repository.ShipperRepository;
+import com.example.Alotrabong.service.OrderStateMachine;
 import com.example.Alotrabong.service.ShipperService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,7 +27,7 @@ public class ShipperServiceImpl implements ShipperService {
 
     private final ShipperRepository shipperRepository;
     private final ShipmentRepository shipmentRepository;
-    private final OrderRepository orderRepository;
+    private final OrderStateMachine orderStateMachine;
 
     @Override
     @Transactional(readOnly = true)
@@ -109,8 +108,8 @@ public class ShipperServiceImpl implements ShipperService {
         // Đồng bộ trạng thái order tương ứng
         Order order = shipment.getOrder();
         if (order != null) {
-            order.setStatus(OrderStatus.DELIVERING);
-            orderRepository.save(order);
+            orderStateMachine.transition(order, OrderStatus.DELIVERING, OrderStateMachine.Actor.SHIPPER,
+                    "Picked up, shipment " + shipmentId);
         }
 
         log.info("Shipment {} set to DELIVERING successfully", shipmentId);
@@ -131,10 +130,9 @@ public class ShipperServiceImpl implements ShipperService {
         shipment.setDeliveredTime(LocalDateTime.now());
         shipmentRepository.save(shipment);
 
-        Order order = shipment.getOrder();
-        order.setStatus(OrderStatus.DELIVERED);
-        order.setPaymentStatus(PaymentStatus.PAID);
-        orderRepository.save(order);
+        // Đơn -> DELIVERED, thu tiền (COD), thống kê món bán: OrderStateMachine
+        orderStateMachine.transition(shipment.getOrder(), OrderStatus.DELIVERED, OrderStateMachine.Actor.SHIPPER,
+                "Delivered, shipment " + shipmentId);
 
         log.info("✅ Shipment {} -> DELIVERED OK", shipmentId);
     }
@@ -11,6 +11,7 @@ import com.example.Alotrabong.entity.Role;
 import com.example.Alotrabong.entity.RoleCode;
 import com.example.Alotrabong.entity.User;
 import com.example.Alotrabong.entity.UserRole;
+import com.example.Alotrabong.event.UserProfileChangedEvent;
 import com.example.Alotrabong.exception.BadRequestException;
 import com.example.Alotrabong.exception.ResourceNotFoundException;
 import com.example.Alotrabong.repository.RoleRepository;
@@ -22,6 +23,7 @@ import com.example.Alotrabong.service.UserService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -47,6 +49,7 @@ public class UserServiceImpl implements UserService {
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
     private final OtpService otpService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ========= Helper =========
     private static String normalize(String s) {
@@ -233,6 +236,7 @@ public class UserServiceImpl implements UserService {
         // Admin flow tuỳ ý có thể cho đổi email/isActive… nếu bạn muốn
 
         user = userRepository.save(user);
+        eventPublisher.publishEvent(new UserProfileChangedEvent(userId));
         log.info("User updated successfully: {}", userId);
 
         return convertToDTO(user);
@@ -348,6 +352,7 @@ public class UserServiceImpl implements UserService {
         user.setEmail(email);
         user.setPhone(phone);
         user = userRepository.save(user);
+        eventPublisher.publishEvent(new UserProfileChangedEvent(userId));
         log.info("Profile updated for userId={} (email={})", userId, email);
 
         return convertToDTO(user);
@@ -2,6 +2,8 @@ package com.example.Alotrabong.service.impl;
 
 import com.example.Alotrabong.config.VnpayConfig;
 import com.example.Alotrabong.entity.Order;
+import com.example.Alotrabong.entity.PaymentMethod;
+import com.example.Alotrabong.service.PaymentService;
 import com.example.Alotrabong.service.VnpayService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +23,7 @@ public class VnpayServiceImpl implements VnpayService {
 
     private final VnpayConfig vnpayConfig;
     private final HttpServletRequest request;
+    private final PaymentService paymentService;
 
     /** Tạo URL redirect sang trang thanh toán VNPAY */
     @Override
@@ -45,8 +48,8 @@ public class VnpayServiceImpl implements VnpayService {
         long amount = total.movePointRight(2).longValueExact();
         params.put("vnp_Amount", String.valueOf(amount));
 
-        // 4) TxnRef: unique, bỏ dấu '-'
-        String txnRef = order.getOrderId().replace("-", "");
+        // 4) TxnRef: unique, lưu trên Order + Payment (có index) để callback tra thẳng, không quét bảng
+        String txnRef = paymentService.assignTxnRef(order, PaymentMethod.VNPAY);
         params.put("vnp_TxnRef", txnRef);
 
         // 5) OrderInfo: không dấu & không ký tự đặc biệt
@@ -0,0 +1,164 @@
+package com.example.Alotrabong.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: đặt / huỷ 1 hạn chót O(1), 1 thread quay bánh xe mỗi tick và chỉ xét
+ * đúng 1 ô, thay vì định kỳ quét bảng tìm bản ghi quá hạn.
+ * <p>
+ * Hạn chót xa hơn 1 vòng được ghi số vòng còn lại ({@code rounds}); mỗi lần bánh xe quay qua ô đó thì trừ 1.
+ * Mỗi key có tối đa 1 hạn: đặt lại sẽ huỷ hạn cũ. Callback chạy trên thread của bánh xe nên phải nhẹ
+ * (đẩy việc nặng sang executor khác).
+ */
+@Slf4j
+public class HashedTimingWheel {
+
+    private static final class Timeout {
+        final String key;
+        final long deadlineMillis;
+        long rounds;
+        volatile boolean cancelled;
+
+        Timeout(String key, long deadlineMillis) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+
+    private final String name;
+    private final long tickMillis;
+    private final int mask;
+    private final List<LinkedList<Timeout>> slots;
+    private final Consumer<String> onExpire;
+
+    // Thêm từ thread bất kỳ, thread bánh xe chuyển vào ô ở đầu mỗi tick
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Map<String, Timeout> byKey = new ConcurrentHashMap<>();
+
+    private volatile Thread worker;
+    private volatile boolean running;
+    private long startMillis;
+    private long tick; // chỉ thread bánh xe đọc/ghi
+
+    /**
+     * @param slotCount số ô, làm tròn lên luỹ thừa của 2
+     */
+    public HashedTimingWheel(String name, long tickMillis, int slotCount, Consumer<String> onExpire) {
+        int size = Integer.highestOneBit(Math.max(slotCount, 2) - 1) << 1;
+        this.name = name;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new LinkedList<>());
+        }
+        this.onExpire = onExpire;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startMillis = System.currentTimeMillis();
+        Thread t = new Thread(this::run, name);
+        t.setDaemon(true);
+        worker = t;
+        t.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        Thread t = worker;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    /** Đặt (hoặc đặt lại) hạn chót cho key; hạn đã qua sẽ chạy ở tick kế tiếp */
+    public void schedule(String key, Instant deadline) {
+        Timeout t = new Timeout(key, deadline.toEpochMilli());
+        Timeout previous = byKey.put(key, t);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        pending.add(t);
+    }
+
+    public void cancel(String key) {
+        Timeout t = byKey.remove(key);
+        if (t != null) {
+            t.cancelled = true;
+        }
+    }
+
+    public int size() {
+        return byKey.size();
+    }
+
+    // ======================= worker =======================
+
+    private void run() {
+        while (running) {
+            long next = startMillis + (tick + 1) * tickMillis;
+            long sleep = next - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+            transferPending();
+            expireSlot(slots.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout t;
+        while ((t = pending.poll()) != null) {
+            if (t.cancelled) {
+                continue;
+            }
+            // Tick mà hạn rơi vào; quá khứ thì xếp vào ô hiện tại
+            long due = Math.max((t.deadlineMillis - startMillis + tickMillis - 1) / tickMillis, tick);
+            t.rounds = (due - tick) / slots.size();
+            slots.get((int) (due & mask)).add(t);
+        }
+    }
+
+    private void expireSlot(LinkedList<Timeout> slot) {
+        Iterator<Timeout> it = slot.iterator();
+        while (it.hasNext()) {
+            Timeout t = it.next();
+            if (t.cancelled) {
+                it.remove();
+            } else if (t.rounds <= 0) {
+                it.remove();
+                byKey.remove(t.key, t);
+                try {
+                    onExpire.accept(t.key);
+                } catch (Exception e) {
+                    log.error("Timing wheel {} callback failed for {}", name, t.key, e);
+                }
+            } else {
+                t.rounds--;
+            }
+        }
+    }
+}
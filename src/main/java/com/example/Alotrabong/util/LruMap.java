@@ -0,0 +1,28 @@
+package com.example.Alotrabong.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LinkedHashMap theo thứ tự truy cập, tự bỏ entry lâu không dùng nhất khi vượt quá {@code maxEntries}.
+ */
+public class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+    private final int maxEntries;
+
+    public LruMap(int maxEntries) {
+        super(256, 0.75f, true);
+        this.maxEntries = maxEntries;
+    }
+
+    /** Bản an toàn đa luồng (get cũng đổi thứ tự nên phải khoá cả khi đọc) */
+    public static <K, V> Map<K, V> synchronizedMap(int maxEntries) {
+        return Collections.synchronizedMap(new LruMap<>(maxEntries));
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maxEntries;
+    }
+}
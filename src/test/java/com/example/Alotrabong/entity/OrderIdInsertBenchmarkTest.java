@@ -0,0 +1,154 @@
+package com.example.Alotrabong.entity;
+
+import com.example.Alotrabong.testsupport.Benchmark;
+import com.example.Alotrabong.testsupport.H2ServiceTest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chèn đơn vào đúng bảng orders/order_items (schema sinh từ entity): khoá UUIDv4 ngẫu nhiên rồi UUIDv7.
+ * <p>
+ * Trên H2 chỉ đo tốc độ chèn. Page split / phân mảnh chỉ đo được trên SQL Server: trỏ datasource sang
+ * 1 database nháp (ddl-auto của profile h2 là create-drop, sẽ tạo lại và xoá schema), vd:
+ * <pre>{@code
+ * mvn test -Dtest=OrderIdInsertBenchmarkTest -Dbenchmark=true -Dbenchmark.uuid.orders=200000 \
+ *   -Dspring.datasource.url="jdbc:sqlserver://localhost:1433;databaseName=AlotrabongBench;encrypt=true;trustServerCertificate=true" \
+ *   -Dspring.datasource.driver-class-name=com.microsoft.sqlserver.jdbc.SQLServerDriver \
+ *   -Dspring.datasource.username=sa -Dspring.datasource.password=... \
+ *   -Dspring.jpa.database-platform=org.hibernate.dialect.SQLServerDialect
+ * }</pre>
+ * Khi đó mỗi bảng báo thêm số trang lá cấp phát ({@code sys.dm_db_index_operational_stats.leaf_allocation_count},
+ * gồm cả trang nối cuối lẫn page split), số trang và độ phân mảnh của khoá chính
+ * ({@code sys.dm_db_index_physical_stats}). Cấp phát vượt số trang còn lại ≈ số page split.
+ */
+@Slf4j
+class OrderIdInsertBenchmarkTest extends H2ServiceTest {
+
+    private static final String ITEM_ID = "bench-item";
+    private static final List<String> TABLES = List.of("orders", "order_items");
+    private static final int CHUNK = 1_000;
+
+    @Override
+    protected List<String> tablesToClean() {
+        return List.of("order_items", "orders", "items");
+    }
+
+    @Benchmark
+    void benchmarkRandomVersusTimeOrderedKeys() {
+        int orders = Integer.getInteger("benchmark.uuid.orders", 200_000);
+        int linesPerOrder = Integer.getInteger("benchmark.uuid.lines", 3);
+        boolean sqlServer = isSqlServer();
+        insertItems(List.of(ITEM_ID));
+
+        insertPhase("random v4", orders, linesPerOrder, () -> UUID.randomUUID().toString(), sqlServer);
+        clearOrders(sqlServer);
+        insertPhase("v7", orders, linesPerOrder, () -> TimeOrderedUuidGenerator.next().toString(), sqlServer);
+
+        if (!sqlServer) {
+            log.info("[benchmark] uuid insert: not SQL Server, page split / fragmentation not measured");
+        }
+        assertThat(jdbcTemplate.queryForObject("select count(*) from orders", Long.class)).isEqualTo(orders);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from order_items", Long.class))
+                .isEqualTo((long) orders * linesPerOrder);
+    }
+
+    // ======================= phases =======================
+
+    private void insertPhase(String label, int orders, int linesPerOrder, Supplier<String> ids, boolean sqlServer) {
+        Map<String, Long> allocationsBefore = sqlServer ? leafAllocations() : Map.of();
+
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<Object[]> orderRows = new ArrayList<>();
+        List<Object[]> lineRows = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < orders; i++) {
+            String orderId = ids.get();
+            orderRows.add(new Object[] { orderId, "DELIVERED", BigDecimal.TEN, Timestamp.valueOf(createdAt) });
+            for (int n = 0; n < linesPerOrder; n++) {
+                lineRows.add(new Object[] { ids.get(), orderId, ITEM_ID, 1, BigDecimal.ONE });
+            }
+            if (orderRows.size() >= CHUNK) {
+                flush(orderRows, lineRows);
+            }
+        }
+        flush(orderRows, lineRows);
+        long ms = millisSince(start);
+
+        long rows = (long) orders * (1 + linesPerOrder);
+        log.info("[benchmark] uuid insert {}: {} orders + {} lines in {} ms ({} rows/s)",
+                label, orders, (long) orders * linesPerOrder, ms, rows * 1000L / Math.max(ms, 1));
+        if (sqlServer) {
+            Map<String, Long> allocationsAfter = leafAllocations();
+            for (String table : TABLES) {
+                Map<String, Object> physical = physicalStats(table);
+                log.info("[benchmark] uuid insert {}: {} leaf allocations {}, leaf pages {}, fragmentation {}%",
+                        label, table, allocationsAfter.get(table) - allocationsBefore.get(table),
+                        physical.get("page_count"), physical.get("avg_fragmentation_in_percent"));
+            }
+        }
+    }
+
+    private void flush(List<Object[]> orderRows, List<Object[]> lineRows) {
+        jdbcTemplate.batchUpdate(
+                "insert into orders (order_id, status, total_amount, created_at) values (?, ?, ?, ?)", orderRows);
+        jdbcTemplate.batchUpdate(
+                "insert into order_items (order_item_id, order_id, item_id, quantity, unit_price) values (?, ?, ?, ?, ?)",
+                lineRows);
+        orderRows.clear();
+        lineRows.clear();
+    }
+
+    /** Xoá dữ liệu pha trước; SQL Server rebuild lại index để pha sau bắt đầu từ cây rỗng, gọn */
+    private void clearOrders(boolean sqlServer) {
+        jdbcTemplate.update("delete from order_items");
+        jdbcTemplate.update("delete from orders");
+        if (sqlServer) {
+            for (String table : TABLES) {
+                jdbcTemplate.execute("alter index all on " + table + " rebuild");
+            }
+        }
+    }
+
+    // ======================= SQL Server stats =======================
+
+    private boolean isSqlServer() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+        return product != null && product.contains("SQL Server");
+    }
+
+    /** Bảng -> tổng leaf_allocation_count của khoá chính (cộng dồn từ khi metadata vào cache) */
+    private Map<String, Long> leafAllocations() {
+        Map<String, Long> result = new HashMap<>();
+        for (String table : TABLES) {
+            result.put(table, jdbcTemplate.queryForObject("""
+                    select coalesce(sum(os.leaf_allocation_count), 0)
+                    from sys.dm_db_index_operational_stats(db_id(), object_id(?), null, null) os
+                    join sys.indexes i on i.object_id = os.object_id and i.index_id = os.index_id
+                    where i.is_primary_key = 1
+                    """, Long.class, table));
+        }
+        return result;
+    }
+
+    private Map<String, Object> physicalStats(String table) {
+        return jdbcTemplate.queryForMap("""
+                select ps.page_count, cast(ps.avg_fragmentation_in_percent as decimal(5, 2)) as avg_fragmentation_in_percent
+                from sys.dm_db_index_physical_stats(db_id(), object_id(?), null, null, 'LIMITED') ps
+                join sys.indexes i on i.object_id = ps.object_id and i.index_id = ps.index_id
+                where i.is_primary_key = 1 and ps.index_level = 0
+                """, table);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.Alotrabong.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * UUIDv7 tự sinh: tăng ngặt (cả dạng UUID lẫn dạng chuỗi lưu trong cột varchar), đúng version / variant.
+ * Benchmark chèn vào orders/order_items: {@link OrderIdInsertBenchmarkTest}.
+ */
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void idsAreStrictlyIncreasingAsStrings() {
+        // Đủ nhiều để vượt 4096 id trong cùng 1 ms (nhánh mượn ms kế tiếp)
+        String previous = TimeOrderedUuidGenerator.next().toString();
+        for (int i = 0; i < 200_000; i++) {
+            UUID id = TimeOrderedUuidGenerator.next();
+            String current = id.toString();
+
+            assertThat(id.version()).isEqualTo(7);
+            assertThat(id.variant()).isEqualTo(2);
+            assertThat(current).isGreaterThan(previous);
+            previous = current;
+        }
+    }
+
+    @Test
+    void timestampIsCurrentEpochMillis() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedUuidGenerator.next();
+
+        long millis = id.getMostSignificantBits() >>> 16;
+        assertThat(millis).isBetween(before, System.currentTimeMillis() + 1_000);
+    }
+
+    @Test
+    void concurrentIdsAreUniqueAndIncreasingPerThread() throws Exception {
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                List<String> ids = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(TimeOrderedUuidGenerator.next().toString());
+                }
+                return ids;
+            }));
+        }
+        pool.shutdown();
+
+        Set<String> all = new HashSet<>();
+        for (Future<List<String>> f : futures) {
+            List<String> ids = f.get(1, TimeUnit.MINUTES);
+            assertThat(ids).isSorted();
+            all.addAll(ids);
+        }
+        assertThat(all).hasSize(threads * perThread);
+    }
+}
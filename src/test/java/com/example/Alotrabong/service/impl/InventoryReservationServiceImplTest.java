@@ -0,0 +1,81 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.Order;
+import com.example.Alotrabong.repository.OrderRepository;
+import com.example.Alotrabong.service.InventoryReservationService;
+import com.example.Alotrabong.service.OrderEventRecorder;
+import com.example.Alotrabong.testsupport.H2ServiceTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Giữ hàng -> xác nhận (chốt trừ hẳn) -> huỷ trước khi bếp làm: kho phải về đúng số ban đầu */
+@Import({ InventoryReservationServiceImpl.class, InventoryServiceImpl.class })
+class InventoryReservationServiceImplTest extends H2ServiceTest {
+
+    private static final String BRANCH = "b1";
+    private static final String ORDER = "o1";
+    private static final int INITIAL = 10;
+
+    @Autowired
+    private InventoryReservationService reservationService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @MockitoBean
+    private OrderEventRecorder orderEventRecorder;
+
+    @Override
+    protected List<String> tablesToClean() {
+        return List.of("inventory_reservations", "orders", "inventory", "items", "branches");
+    }
+
+    @BeforeEach
+    void seed() {
+        insertBranch(BRANCH);
+        insertItems(List.of("i1", "i2"));
+        for (String itemId : List.of("i1", "i2")) {
+            jdbcTemplate.update("insert into inventory (branch_id, item_id, quantity) values (?, ?, ?)",
+                    BRANCH, itemId, INITIAL);
+        }
+        jdbcTemplate.update("insert into orders (order_id, status, total_amount, created_at, branch_id) values (?, ?, ?, ?, ?)",
+                ORDER, "PENDING", BigDecimal.TEN, Timestamp.valueOf(LocalDateTime.now()), BRANCH);
+    }
+
+    @Test
+    void cancellingConfirmedOrderReturnsCommittedStock() {
+        Order order = orderRepository.findById(ORDER).orElseThrow();
+        assertThat(reservationService.reserve(order, Map.of("i1", 3, "i2", 2)).isSuccess()).isTrue();
+        assertThat(stock("i1")).isEqualTo(INITIAL - 3);
+
+        assertThat(reservationService.commit(ORDER)).isTrue();
+        // Không còn dòng HELD: nhả phần đang giữ không trả được gì
+        reservationService.release(ORDER);
+        assertThat(stock("i1")).isEqualTo(INITIAL - 3);
+
+        assertThat(reservationService.releaseCommitted(ORDER)).isTrue();
+        assertThat(stock("i1")).isEqualTo(INITIAL);
+        assertThat(stock("i2")).isEqualTo(INITIAL);
+
+        // Huỷ lặp lại không cộng trả lần 2
+        assertThat(reservationService.releaseCommitted(ORDER)).isFalse();
+        assertThat(stock("i1")).isEqualTo(INITIAL);
+    }
+
+    private int stock(String itemId) {
+        Integer qty = jdbcTemplate.queryForObject(
+                "select quantity from inventory where branch_id = ? and item_id = ?", Integer.class, BRANCH, itemId);
+        return qty != null ? qty : 0;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.dto.StockDeductionResult;
+import com.example.Alotrabong.service.InventoryService;
+import com.example.Alotrabong.testsupport.H2ServiceTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Trừ kho trên H2: tất cả-hoặc-không và chạy song song nhiều luồng không bán âm, không mất cập nhật */
+@Import(InventoryServiceImpl.class)
+class InventoryServiceImplTest extends H2ServiceTest {
+
+    private static final String BRANCH = "b1";
+    private static final List<String> ITEMS = List.of("i1", "i2", "i3", "i4", "i5");
+    private static final int INITIAL = 100;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Override
+    protected List<String> tablesToClean() {
+        return List.of("inventory", "items", "branches");
+    }
+
+    @BeforeEach
+    void seed() {
+        insertBranch(BRANCH);
+        insertItems(ITEMS);
+        for (String itemId : ITEMS) {
+            jdbcTemplate.update("insert into inventory (branch_id, item_id, quantity) values (?, ?, ?)",
+                    BRANCH, itemId, INITIAL);
+        }
+    }
+
+    @Test
+    void deductIsAllOrNothing() {
+        StockDeductionResult result = inventoryService.deduct(BRANCH, Map.of("i1", 5, "i2", 500));
+
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getShortages()).containsExactly(new StockDeductionResult.Shortage("i2", 500, INITIAL));
+        assertThat(stock("i1")).isEqualTo(INITIAL);
+        assertThat(stock("i2")).isEqualTo(INITIAL);
+    }
+
+    @Test
+    void itemsWithoutInventoryRowAreNotTracked() {
+        StockDeductionResult result = inventoryService.deduct(BRANCH, Map.of("i1", 3, "untracked", 7));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(stock("i1")).isEqualTo(INITIAL - 3);
+    }
+
+    @Test
+    void concurrentDeductionsNeverOversellOrLoseUpdates() throws Exception {
+        int threads = 8;
+        int attemptsPerThread = 200;
+        Map<String, AtomicInteger> sold = new ConcurrentHashMap<>();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    Map<String, Integer> basket = new TreeMap<>();
+                    int lines = 1 + random.nextInt(3);
+                    while (basket.size() < lines) {
+                        basket.put(ITEMS.get(random.nextInt(ITEMS.size())), 1 + random.nextInt(5));
+                    }
+
+                    if (!inventoryService.deduct(BRANCH, basket).isSuccess()) {
+                        rejected.incrementAndGet();
+                        continue;
+                    }
+                    basket.forEach((itemId, qty) -> sold.computeIfAbsent(itemId, k -> new AtomicInteger()).addAndGet(qty));
+                    // Thỉnh thoảng huỷ đơn -> cộng trả, để cộng và trừ chạy xen nhau
+                    if (random.nextInt(5) == 0) {
+                        inventoryService.restock(BRANCH, basket);
+                        basket.forEach((itemId, qty) -> sold.get(itemId).addAndGet(-qty));
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        pool.shutdown();
+        for (Future<?> f : futures) {
+            f.get(2, TimeUnit.MINUTES); // lỗi trong luồng (deadlock, timeout...) làm test fail
+        }
+
+        // Cầu (~8 x 200 x 6 đơn vị) vượt xa cung (5 x 100) nên chắc chắn có đơn bị từ chối
+        assertThat(rejected.get()).isPositive();
+        for (String itemId : ITEMS) {
+            int expected = INITIAL - sold.getOrDefault(itemId, new AtomicInteger()).get();
+            assertThat(stock(itemId)).as("stock of %s", itemId).isEqualTo(expected).isGreaterThanOrEqualTo(0);
+        }
+    }
+
+    private int stock(String itemId) {
+        Integer qty = jdbcTemplate.queryForObject(
+                "select quantity from inventory where branch_id = ? and item_id = ?", Integer.class, BRANCH, itemId);
+        return qty != null ? qty : 0;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.entity.Order;
+import com.example.Alotrabong.entity.OrderStatus;
+import com.example.Alotrabong.repository.OrderRepository;
+import com.example.Alotrabong.service.InventoryReservationService;
+import com.example.Alotrabong.service.ItemStatsService;
+import com.example.Alotrabong.service.OrderEventRecorder;
+import com.example.Alotrabong.service.OrderStateMachine;
+import com.example.Alotrabong.service.OrderStateMachine.Actor;
+import com.example.Alotrabong.testsupport.H2ServiceTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tác động kho của từng bước chuyển trạng thái (giữ hàng lúc đặt, chốt khi xác nhận, trả lại khi huỷ) */
+@Import({ OrderStateMachineImpl.class, InventoryReservationServiceImpl.class, InventoryServiceImpl.class })
+class OrderStateMachineImplTest extends H2ServiceTest {
+
+    private static final String BRANCH = "b1";
+    private static final String ORDER = "o1";
+    private static final int INITIAL = 10;
+
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+
+    @Autowired
+    private InventoryReservationService reservationService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @MockitoBean
+    private OrderEventRecorder orderEventRecorder;
+
+    @MockitoBean
+    private ItemStatsService itemStatsService;
+
+    @Override
+    protected List<String> tablesToClean() {
+        return List.of("inventory_reservations", "shipments", "orders", "inventory", "items", "branches");
+    }
+
+    @BeforeEach
+    void seed() {
+        insertBranch(BRANCH);
+        insertItems(List.of("i1"));
+        jdbcTemplate.update("insert into inventory (branch_id, item_id, quantity) values (?, ?, ?)",
+                BRANCH, "i1", INITIAL);
+        jdbcTemplate.update("insert into orders (order_id, status, total_amount, created_at, branch_id) values (?, ?, ?, ?, ?)",
+                ORDER, "PENDING", BigDecimal.TEN, Timestamp.valueOf(LocalDateTime.now()), BRANCH);
+        Order order = orderRepository.findById(ORDER).orElseThrow();
+        assertThat(reservationService.reserve(order, Map.of("i1", 4)).isSuccess()).isTrue();
+    }
+
+    @Test
+    void confirmThenCancelReturnsStock() {
+        Order order = orderRepository.findById(ORDER).orElseThrow();
+        order = orderStateMachine.transition(order, OrderStatus.CONFIRMED, Actor.BRANCH, null);
+        assertThat(stock()).isEqualTo(INITIAL - 4);
+
+        orderStateMachine.transition(order, OrderStatus.CANCELLED, Actor.CUSTOMER, "Đổi ý");
+
+        assertThat(stock()).isEqualTo(INITIAL);
+    }
+
+    @Test
+    void cancelAfterReadyKeepsStockDeducted() {
+        Order order = orderRepository.findById(ORDER).orElseThrow();
+        order = orderStateMachine.transition(order, OrderStatus.CONFIRMED, Actor.BRANCH, null);
+        order = orderStateMachine.transition(order, OrderStatus.READY, Actor.BRANCH, null);
+
+        orderStateMachine.transition(order, OrderStatus.CANCELLED, Actor.BRANCH, "Khách không nhận");
+
+        // Đồ ăn đã làm xong: nguyên liệu đã dùng, không cộng trả
+        assertThat(stock()).isEqualTo(INITIAL - 4);
+    }
+
+    private int stock() {
+        Integer qty = jdbcTemplate.queryForObject(
+                "select quantity from inventory where branch_id = ? and item_id = ?", Integer.class, BRANCH, "i1");
+        return qty != null ? qty : 0;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.Alotrabong.service.impl;
+
+import com.example.Alotrabong.testsupport.Benchmark;
+import com.example.Alotrabong.testsupport.H2ServiceTest;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Job "thường được mua cùng" trên H2 (service tự mở transaction theo từng cửa sổ).
+ * <p>
+ * Benchmark: {@code mvn test -Dtest=RelatedItemsServiceImplTest -Dbenchmark=true -Dbenchmark.related.lines=2000000}
+ */
+@Slf4j
+@Import(RelatedItemsServiceImpl.class)
+class RelatedItemsServiceImplTest extends H2ServiceTest {
+
+    @Autowired
+    private RelatedItemsServiceImpl relatedItemsService;
+
+    @Override
+    protected List<String> tablesToClean() {
+        return List.of("item_related", "item_co_purchase", "job_checkpoints", "order_items", "orders", "items");
+    }
+
+    @Test
+    void countsPairsOnceAndKeepsOnlySupportedNeighbours() {
+        insertItems(List.of("A", "B", "C", "D"));
+        LocalDateTime t = LocalDateTime.now().minusHours(2);
+        insertOrder("o1", "DELIVERED", t, "A", "B", "C");
+        insertOrder("o2", "DELIVERED", t.plusMinutes(1), "A", "B");
+        insertOrder("o3", "PENDING", t.plusMinutes(2), "A", "C");
+        insertOrder("o4", "CANCELLED", t.plusMinutes(3), "A", "B");
+        insertOrder("o5", "DELIVERED", t.plusMinutes(4), "D");
+
+        relatedItemsService.rebuildIncremental();
+
+        // A-B: o1, o2 (o4 bị huỷ không tính); A-C: o1, o3; B-C chỉ 1 đơn -> dưới MIN_SUPPORT
+        assertThat(relatedItemsService.getRelatedItemIds("A", 10)).containsExactlyInAnyOrder("B", "C");
+        assertThat(relatedItemsService.getRelatedItemIds("B", 10)).containsExactly("A");
+        assertThat(relatedItemsService.getRelatedItemIds("D", 10)).isEmpty();
+
+        // Lần chạy sau chỉ đọc đơn mới hơn mốc: lùi mốc về trước đơn o6 để giả lập đơn đến sau
+        jdbcTemplate.update("update job_checkpoints set last_processed_at = ? where job_name = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(30)), RelatedItemsServiceImpl.JOB_NAME);
+        insertOrder("o6", "DELIVERED", LocalDateTime.now().minusMinutes(20), "B", "C");
+
+        relatedItemsService.rebuildIncremental();
+
+        assertThat(relatedItemsService.getRelatedItemIds("B", 10)).containsExactlyInAnyOrder("A", "C");
+        assertThat(pairCount("A", "B")).isEqualTo(2L);
+        assertThat(pairCount("B", "C")).isEqualTo(2L);
+    }
+
+    @Benchmark
+    void benchmarkRebuildOverMillionsOfOrderLines() {
+        int targetLines = Integer.getInteger("benchmark.related.lines", 2_000_000);
+        int itemCount = Integer.getInteger("benchmark.related.items", 300);
+        int days = Integer.getInteger("benchmark.related.days", 90);
+
+        List<String> itemIds = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            itemIds.add("i" + i);
+        }
+        insertItems(itemIds);
+
+        // Đơn rải đều trong `days` ngày, kết thúc trước hiện tại 1 giờ; món phổ biến xuất hiện nhiều hơn
+        Random random = new Random(42);
+        LocalDateTime end = LocalDateTime.now().minusHours(1);
+        long spanSeconds = days * 86_400L;
+        long seedStart = System.nanoTime();
+        int lines = seedOrders(random, itemIds, "o", targetLines, end.minusSeconds(spanSeconds), spanSeconds);
+        long seedMs = millisSince(seedStart);
+
+        long start = System.nanoTime();
+        relatedItemsService.rebuildIncremental();
+        long fullMs = millisSince(start);
+
+        // Lần chạy tăng dần: 1 giờ đơn mới sau mốc
+        jdbcTemplate.update("update job_checkpoints set last_processed_at = ? where job_name = ?",
+                Timestamp.valueOf(end), RelatedItemsServiceImpl.JOB_NAME);
+        int newLines = seedOrders(random, itemIds, "n", 3_000, end.plusMinutes(1), 1_800);
+        start = System.nanoTime();
+        relatedItemsService.rebuildIncremental();
+        long incrementalMs = millisSince(start);
+
+        Long pairs = jdbcTemplate.queryForObject("select count(*) from item_co_purchase", Long.class);
+        Long relatedRows = jdbcTemplate.queryForObject("select count(*) from item_related", Long.class);
+        Runtime rt = Runtime.getRuntime();
+        log.info("[benchmark] related items: seeded {} lines in {} ms", lines, seedMs);
+        log.info("[benchmark] full build: {} ms ({} lines/s), {} pairs, {} item_related rows",
+                fullMs, lines * 1000L / Math.max(fullMs, 1), pairs, relatedRows);
+        log.info("[benchmark] incremental build: {} new lines in {} ms, heap used {} MB",
+                newLines, incrementalMs, (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024));
+
+        assertThat(relatedRows).isPositive();
+        assertThat(relatedItemsService.getRelatedItemIds("i0", 12)).isNotEmpty();
+    }
+
+    // ======================= data =======================
+
+    private int seedOrders(Random random, List<String> itemIds, String prefix, int targetLines,
+            LocalDateTime from, long spanSeconds) {
+        List<Object[]> orders = new ArrayList<>();
+        List<Object[]> lines = new ArrayList<>();
+        int total = 0;
+        int orderNo = 0;
+        while (total < targetLines) {
+            String orderId = prefix + orderNo++;
+            LocalDateTime createdAt = from.plusSeconds((long) (random.nextDouble() * spanSeconds));
+            orders.add(new Object[] { orderId, "DELIVERED", BigDecimal.TEN, Timestamp.valueOf(createdAt) });
+
+            Set<String> basket = new LinkedHashSet<>();
+            int size = 1 + random.nextInt(5);
+            while (basket.size() < size) {
+                // Bình phương -> phân bố lệch về các món đầu danh sách
+                double r = random.nextDouble();
+                basket.add(itemIds.get((int) (r * r * itemIds.size())));
+            }
+            int n = 0;
+            for (String itemId : basket) {
+                lines.add(new Object[] { orderId + "-" + n++, orderId, itemId, 1, BigDecimal.ONE });
+            }
+            total += basket.size();
+
+            if (lines.size() >= 10_000) {
+                flush(orders, lines);
+            }
+        }
+        flush(orders, lines);
+        return total;
+    }
+
+    private void flush(List<Object[]> orders, List<Object[]> lines) {
+        jdbcTemplate.batchUpdate(
+                "insert into orders (order_id, status, total_amount, created_at) values (?, ?, ?, ?)", orders);
+        jdbcTemplate.batchUpdate(
+                "insert into order_items (order_item_id, order_id, item_id, quantity, unit_price) values (?, ?, ?, ?, ?)",
+                lines);
+        orders.clear();
+        lines.clear();
+    }
+
+    private void insertOrder(String orderId, String status, LocalDateTime createdAt, String... itemIds) {
+        List<Object[]> orders = new ArrayList<>();
+        orders.add(new Object[] { orderId, status, BigDecimal.TEN, Timestamp.valueOf(createdAt) });
+        List<Object[]> lines = new ArrayList<>();
+        for (int i = 0; i < itemIds.length; i++) {
+            lines.add(new Object[] { orderId + "-" + i, orderId, itemIds[i], 1, BigDecimal.ONE });
+        }
+        flush(orders, lines);
+    }
+
+    private Long pairCount(String itemId, String relatedItemId) {
+        return jdbcTemplate.queryForObject(
+                "select pair_count from item_co_purchase where item_id = ? and related_item_id = ?",
+                Long.class, itemId, relatedItemId);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.Alotrabong.testsupport;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Test đo hiệu năng: chỉ chạy khi bật cờ, vd. {@code mvn test -Dtest=XxxTest -Dbenchmark=true}.
+ * Kích thước dữ liệu đọc từ system property {@code benchmark.*} của từng test.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Test
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public @interface Benchmark {
+}
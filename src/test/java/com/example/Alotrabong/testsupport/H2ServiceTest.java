@@ -0,0 +1,55 @@
+package com.example.Alotrabong.testsupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Nền chung cho test service trên H2 (profile "h2", xem application-h2.properties).
+ * <p>
+ * Service tự mở transaction (hoặc mỗi lần gọi là 1 transaction riêng) nên test không bọc transaction:
+ * dữ liệu seed bằng {@link JdbcTemplate} và bị xoá sau mỗi test theo {@link #tablesToClean()}.
+ * Benchmark đánh dấu {@link Benchmark}, kết quả ghi qua log.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public abstract class H2ServiceTest {
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    /** Bảng xoá sau mỗi test, bảng con trước bảng cha */
+    protected abstract List<String> tablesToClean();
+
+    @AfterEach
+    void cleanUpTables() {
+        for (String table : tablesToClean()) {
+            jdbcTemplate.update("delete from " + table);
+        }
+    }
+
+    protected void insertBranch(String branchId) {
+        jdbcTemplate.update("insert into branches (branch_id, branch_code, branch_name, is_active) values (?, ?, ?, ?)",
+                branchId, branchId.toUpperCase(), "Chi nhánh " + branchId, true);
+    }
+
+    protected void insertItems(Collection<String> itemIds) {
+        jdbcTemplate.batchUpdate("insert into items (item_id, item_name, base_price, is_active) values (?, ?, ?, ?)",
+                itemIds.stream().map(id -> new Object[] { id, "Món " + id, BigDecimal.TEN, true }).toList());
+    }
+
+    protected static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}